@@ -0,0 +1,101 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阻塞 I/O 负载下的吞吐对比：平台线程池（大小同 Tomcat 默认最大线程数 200）与每任务一个虚拟线程
+ * 每次操作并发提交 requests 个请求，每个请求阻塞 blockMillis（模拟外部接口或 JDBC 等待）后做少量计算，
+ * 结果按单个请求计（requests/s）
+ *
+ * 运行：mvn -Pbenchmark,java21 verify -Djmh.include=BlockingIoExecutorBenchmark
+ * JDK 17 上 virtual 不可用，可只跑平台线程：-Djmh.args="-p executor=platform"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingIoExecutorBenchmark {
+
+    private static final int REQUESTS = 2000;
+
+    @Param({"platform", "virtual"})
+    public String executor;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    @Param({"20"})
+    public int blockMillis;
+
+    private Executor taskExecutor;
+    private ExecutorService platformPool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("virtual".equals(executor)) {
+            try {
+                taskExecutor = new VirtualThreadTaskExecutor("benchmark-virtual-");
+            } catch (UnsupportedOperationException e) {
+                throw new IllegalStateException("虚拟线程需要 JDK 21+，当前 JDK " + Runtime.version(), e);
+            }
+        } else {
+            platformPool = Executors.newFixedThreadPool(platformThreads);
+            taskExecutor = platformPool;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public long handleRequests() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        long[] results = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            int request = i;
+            taskExecutor.execute(() -> {
+                try {
+                    Thread.sleep(blockMillis);
+                    results[request] = work(request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long sum = 0;
+        for (long result : results) {
+            sum += result;
+        }
+        return sum;
+    }
+
+    /**
+     * 阻塞返回后的少量计算（解析响应、组装结果）
+     */
+    private static long work(int seed) {
+        long x = seed * 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < 256; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,82 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交互日志扫描基准：records 条记录（约 1/4 为同一对的 ADD 增量），
+ * scan 只遍历字段，rebuildMatrix 合并后构建交互矩阵（即 rebuild-from-log 的全量重建）
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.include=InteractionLogBenchmark -Djmh.args="-p records=10000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InteractionLogBenchmark {
+
+    private static final long SEED = 20240601L;
+
+    @Param({"1000000"})
+    public int records;
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"1000"})
+    public int spots;
+
+    private Path directory;
+    private InteractionLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("interaction-log-bench");
+        log = InteractionLog.open(directory.resolve("interaction.log"));
+        Random random = new Random(SEED);
+        long now = System.currentTimeMillis() / 1000;
+        for (int i = 0; i < records; i++) {
+            long userId = 1 + random.nextInt(users);
+            long spotId = 1 + random.nextInt(spots);
+            if (random.nextInt(4) == 0) {
+                log.append(InteractionLog.OP_ADD, userId, spotId, Float.NaN, 1, random.nextInt(120),
+                        now - random.nextInt(86400 * 365));
+            } else {
+                log.append(InteractionLog.OP_PUT, userId, spotId, 1 + random.nextInt(5), random.nextInt(10),
+                        random.nextInt(600), now - random.nextInt(86400 * 365));
+            }
+        }
+        log.force();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        Files.deleteIfExists(log.getPath());
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long scan() throws IOException {
+        long[] checksum = new long[1];
+        log.scan((op, userId, spotId, rating, clickCount, dwellSeconds, visit) ->
+                checksum[0] += userId ^ spotId ^ clickCount ^ dwellSeconds ^ visit);
+        return checksum[0];
+    }
+
+    @Benchmark
+    public InteractionMatrix rebuildMatrix() throws IOException {
+        InteractionLog.Folder folder = new InteractionLog.Folder();
+        log.scan(folder);
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        folder.appendTo(builder);
+        return builder.build(1L);
+    }
+}
@@ -0,0 +1,47 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 景点相似度矩阵全量重建基准（离线任务，单次耗时较长，按单次执行计时）
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.include=ItemSimilarityBenchmark -Djmh.args="-p users=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ItemSimilarityBenchmark {
+
+    private static final long SEED = 20240601L;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"1000"})
+    public int spots;
+
+    private ItemBasedRecommendationService itemBasedRecommendationService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDataset dataset = SyntheticDataset.generate(users, spots, SEED);
+        InteractionMatrixService interactionMatrixService = new InteractionMatrixService();
+        ReflectionTestUtils.setField(interactionMatrixService, "matrix", dataset.matrix);
+
+        itemBasedRecommendationService = new ItemBasedRecommendationService();
+        ReflectionTestUtils.setField(itemBasedRecommendationService, "interactionMatrixService", interactionMatrixService);
+        ReflectionTestUtils.setField(itemBasedRecommendationService, "maxAgeHours", 24L);
+    }
+
+    @Benchmark
+    public ItemSimilarityMatrix precomputeItemSimilarityMatrix() {
+        itemBasedRecommendationService.precomputeItemSimilarityMatrix();
+        return itemBasedRecommendationService.getSimilarityMatrix();
+    }
+}
@@ -0,0 +1,210 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 矩阵分解（ALS）基准：全量训练耗时（单次计时）与单用户打分耗时
+ * 初始化时对抽样用户留出最近一次访问，分别用 ALS 与热门度排序计算 HR@10，确认模型学到了偏好而不只是热度
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.include=MatrixFactorizationBenchmark -Djmh.args="-p users=100000"
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatrixFactorizationBenchmark {
+
+    private static final int SAMPLE_USERS = 512;
+    private static final int MIN_SAMPLE_VISITS = 3;
+    private static final int HOLDOUT_USERS = 2000;
+    private static final int TOP_N = 10;
+    private static final long SEED = 20240601L;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"1000"})
+    public int spots;
+
+    @Param({"32"})
+    public int factors;
+
+    @Param({"10"})
+    public int iterations;
+
+    @Param({"5"})
+    public double regularization;
+
+    @Param({"10"})
+    public double alpha;
+
+    private SyntheticDataset dataset;
+    private ForkJoinPool pool;
+    private MatrixFactorizationService matrixFactorizationService;
+    private long[] sampleUserIds;
+
+    @State(Scope.Thread)
+    public static class UserCursor {
+        final ScoringBuffer buffer = new ScoringBuffer();
+        int position;
+
+        int next(int size) {
+            int current = position;
+            position = current + 1 == size ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = SyntheticDataset.generate(users, spots, SEED);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        sampleUserIds = dataset.sampleUsers(SAMPLE_USERS, MIN_SAMPLE_VISITS, SEED);
+
+        InteractionMatrixService interactionMatrixService = new InteractionMatrixService();
+        ReflectionTestUtils.setField(interactionMatrixService, "matrix", dataset.matrix);
+        matrixFactorizationService = new MatrixFactorizationService();
+        ReflectionTestUtils.setField(matrixFactorizationService, "interactionMatrixService", interactionMatrixService);
+        ReflectionTestUtils.setField(matrixFactorizationService, "enabled", true);
+        ReflectionTestUtils.setField(matrixFactorizationService, "factors", factors);
+        ReflectionTestUtils.setField(matrixFactorizationService, "iterations", iterations);
+        ReflectionTestUtils.setField(matrixFactorizationService, "regularization", regularization);
+        ReflectionTestUtils.setField(matrixFactorizationService, "alpha", alpha);
+        ReflectionTestUtils.setField(matrixFactorizationService, "candidateLimit", 50);
+        matrixFactorizationService.rebuild(BuildProgress.untracked());
+
+        reportHoldoutHitRate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        matrixFactorizationService.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public AlsModel train() {
+        return AlsTrainer.train(dataset.matrix, factors, iterations, regularization, alpha, SEED, pool, 1L);
+    }
+
+    /**
+     * 单用户打分：取用户向量并扫描全部景点取前N
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int score(UserCursor cursor) {
+        long userId = sampleUserIds[cursor.next(sampleUserIds.length)];
+        InteractionMatrix matrix = dataset.matrix;
+        int userIndex = matrix.userIndex(userId);
+        ScoringBuffer buffer = cursor.buffer.reset(dataset.catalog);
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            buffer.markVisited(matrix.entrySpotId(entry));
+        }
+        return matrixFactorizationService.recommendByMatrixFactorization(matrix, userIndex, buffer);
+    }
+
+    /**
+     * 留出抽样用户最近一次访问后训练，统计留出景点落在前 TOP_N 的比例
+     */
+    private void reportHoldoutHitRate() {
+        InteractionMatrix matrix = dataset.matrix;
+        long[] holdoutUsers = dataset.sampleUsers(HOLDOUT_USERS, MIN_SAMPLE_VISITS, SEED + 1);
+        Arrays.sort(holdoutUsers);
+        long[] heldOutSpots = new long[holdoutUsers.length];
+        Set<Long> heldOutEntries = new HashSet<>();
+        for (int i = 0; i < holdoutUsers.length; i++) {
+            int userIndex = matrix.userIndex(holdoutUsers[i]);
+            int latest = matrix.rowStart(userIndex);
+            for (int entry = latest + 1; entry < matrix.rowEnd(userIndex); entry++) {
+                if (matrix.entryVisitEpochSeconds(entry) > matrix.entryVisitEpochSeconds(latest)) {
+                    latest = entry;
+                }
+            }
+            heldOutSpots[i] = matrix.entrySpotId(latest);
+            heldOutEntries.add((long) latest);
+        }
+
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        for (int u = 0; u < matrix.userCount(); u++) {
+            for (int entry = matrix.rowStart(u); entry < matrix.rowEnd(u); entry++) {
+                if (!heldOutEntries.contains((long) entry)) {
+                    builder.add(matrix.userIdAt(u), matrix.entrySpotId(entry), matrix.entryRating(entry),
+                            matrix.entryClicks(entry), matrix.entryDwellSeconds(entry),
+                            matrix.entryVisitEpochSeconds(entry));
+                }
+            }
+        }
+        InteractionMatrix training = builder.build(2L);
+        AlsModel model = AlsTrainer.train(training, factors, iterations, regularization, alpha, SEED, pool, 1L);
+
+        // 热门度基线：按训练集中的访问人数排序
+        Integer[] byPopularity = new Integer[training.spotCount()];
+        for (int s = 0; s < byPopularity.length; s++) {
+            byPopularity[s] = s;
+        }
+        Arrays.sort(byPopularity, (a, b) -> Integer.compare(
+                training.colEnd(b) - training.colStart(b), training.colEnd(a) - training.colStart(a)));
+
+        float[] userVector = new float[factors];
+        double[] scores = new double[model.spotCount()];
+        int alsHits = 0;
+        int popularityHits = 0;
+        int evaluated = 0;
+        for (int i = 0; i < holdoutUsers.length; i++) {
+            int userIndex = training.userIndex(holdoutUsers[i]);
+            if (userIndex < 0 || !model.userVector(training, userIndex, userVector)) {
+                continue;
+            }
+            evaluated++;
+            Set<Long> visited = new HashSet<>();
+            for (int entry = training.rowStart(userIndex); entry < training.rowEnd(userIndex); entry++) {
+                visited.add(training.entrySpotId(entry));
+            }
+            for (int s = 0; s < scores.length; s++) {
+                scores[s] = visited.contains(model.spotIdAt(s)) ? Double.NEGATIVE_INFINITY
+                        : model.score(userVector, s);
+            }
+            int target = training.spotIndex(heldOutSpots[i]); // 模型的景点顺序与训练矩阵一致
+            if (target >= 0) {
+                int better = 0;
+                for (double score : scores) {
+                    if (score > scores[target]) {
+                        better++;
+                    }
+                }
+                if (better < TOP_N) {
+                    alsHits++;
+                }
+            }
+            int rank = 0;
+            for (int s : byPopularity) {
+                long spotId = training.spotIdAt(s);
+                if (visited.contains(spotId)) {
+                    continue;
+                }
+                if (spotId == heldOutSpots[i]) {
+                    popularityHits++;
+                    break;
+                }
+                if (++rank == TOP_N) {
+                    break;
+                }
+            }
+        }
+        System.out.printf("%n留出评估（%d 用户, %d 维, λ=%s, alpha=%s）: HR@%d ALS = %.3f, 热门度 = %.3f%n",
+                evaluated, factors, regularization, alpha, TOP_N,
+                (double) alsHits / Math.max(evaluated, 1), (double) popularityHits / Math.max(evaluated, 1));
+    }
+}
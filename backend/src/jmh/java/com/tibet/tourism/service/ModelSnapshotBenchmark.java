@@ -0,0 +1,106 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型快照读写基准：spots 个景点各 50 个相似景点，users 个用户各 15 个近邻，profiles 个标签画像
+ * read 即重启时恢复模型的耗时（内存映射读取并校验）
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.include=ModelSnapshotBenchmark -Djmh.args="-p users=1000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelSnapshotBenchmark {
+
+    private static final long SEED = 20240601L;
+    private static final int SIMILAR_SPOTS = 50;
+    private static final int NEIGHBORS = RecommendationService.MAX_SIMILAR_USERS;
+    private static final String[] TAGS = {"雪山", "湖泊", "寺庙", "草原", "冰川", "峡谷", "古城", "温泉"};
+
+    @Param({"10000"})
+    public int spots;
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"1000"})
+    public int profiles;
+
+    private Path directory;
+    private Path file;
+    private ModelSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(SEED);
+        Map<Long, Map<Long, Double>> rows = new HashMap<>();
+        for (long spotId = 1; spotId <= spots; spotId++) {
+            Map<Long, Double> row = new LinkedHashMap<>();
+            double similarity = 1.0;
+            for (int k = 0; k < SIMILAR_SPOTS; k++) {
+                similarity *= 0.95;
+                row.put(1L + random.nextInt(spots), similarity);
+            }
+            rows.put(spotId, row);
+        }
+
+        long[] userIds = new long[users];
+        int[] ptr = new int[users + 1];
+        long[] neighborIds = new long[users * NEIGHBORS];
+        float[] similarities = new float[users * NEIGHBORS];
+        for (int u = 0; u < users; u++) {
+            userIds[u] = u + 1L;
+            ptr[u + 1] = ptr[u] + NEIGHBORS;
+            for (int k = 0; k < NEIGHBORS; k++) {
+                neighborIds[u * NEIGHBORS + k] = 1L + random.nextInt(users);
+                similarities[u * NEIGHBORS + k] = 1.0f - k * 0.05f;
+            }
+        }
+
+        Map<Long, Map<String, Double>> tagProfiles = new HashMap<>();
+        for (long userId = 1; userId <= profiles; userId++) {
+            Map<String, Double> profile = new HashMap<>();
+            for (String tag : TAGS) {
+                if (random.nextBoolean()) {
+                    profile.put(tag, random.nextDouble());
+                }
+            }
+            tagProfiles.put(userId, profile);
+        }
+
+        snapshot = new ModelSnapshot(System.currentTimeMillis(), 1L, 2L, ItemSimilarityMatrix.of(rows, 1L, 1L),
+                new UserNeighborhoodIndex(1L, 1L, userIds, ptr, neighborIds, similarities), tagProfiles);
+        directory = Files.createTempDirectory("model-snapshot-bench");
+        file = directory.resolve("model-snapshot.bin");
+        ModelSnapshot.write(snapshot, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return ModelSnapshot.write(snapshot, file);
+    }
+
+    @Benchmark
+    public ModelSnapshot read() throws IOException {
+        return ModelSnapshot.read(file);
+    }
+}
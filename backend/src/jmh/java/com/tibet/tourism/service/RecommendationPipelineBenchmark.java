@@ -0,0 +1,292 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.dto.RecommendationContext;
+import com.tibet.tourism.entity.ScenicSpot;
+import com.tibet.tourism.service.UserSimilarityCalculator.SimilarityDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单次推荐流水线基准：逐阶段测量相似用户打分、候选生成、标签评分、上下文过滤、多样性重排以及端到端推荐（顺序与并发模式）
+ * 服务实例直接装配（不启动 Spring 容器），数据由 SyntheticDataset 生成；
+ * 上下文过滤与重排会改写评分缓冲区，因此每次调用先回放预先算好的候选得分，candidateReplay 给出回放本身的耗时
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.args="-p users=1000000 -p spots=10000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommendationPipelineBenchmark {
+
+    private static final int SAMPLE_USERS = 512;
+    private static final int MIN_SAMPLE_VISITS = 3;
+    private static final long SEED = 20240601L;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"1000"})
+    public int spots;
+
+    private SyntheticDataset dataset;
+    private RecommendationService recommendationService;
+    private ItemBasedRecommendationService itemBasedRecommendationService;
+    private UserNeighborhoodIndex neighborhoodIndex;
+    private RecommendationContext context;
+
+    // 抽样用户及其预先算好的中间结果
+    private long[] sampleUserIds;
+    private long[][] visitedSpotIds;
+    private Map<Long, Double>[] similarUsers;
+    private int[][] candidateOrdinals;
+    private double[][] candidateScores;
+
+    /**
+     * 每个线程轮流取抽样用户，并复用自己的评分缓冲区
+     */
+    @State(Scope.Thread)
+    public static class UserCursor {
+        final ScoringBuffer buffer = new ScoringBuffer();
+        int position;
+
+        int next(int size) {
+            int current = position;
+            position = current + 1 == size ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        dataset = SyntheticDataset.generate(users, spots, SEED);
+        sampleUserIds = dataset.sampleUsers(SAMPLE_USERS, MIN_SAMPLE_VISITS, SEED);
+        SimilarityKernel similarityKernel = new ScalarSimilarityKernel();
+        neighborhoodIndex = dataset.neighborhoodFor(sampleUserIds, similarityKernel);
+
+        InteractionMatrixService interactionMatrixService = new InteractionMatrixService();
+        ReflectionTestUtils.setField(interactionMatrixService, "matrix", dataset.matrix);
+
+        SpotCatalogService spotCatalogService = new SpotCatalogService();
+        ReflectionTestUtils.setField(spotCatalogService, "catalog", dataset.catalog);
+
+        UserNeighborhoodService userNeighborhoodService = new UserNeighborhoodService();
+        ((AtomicReference<UserNeighborhoodIndex>) ReflectionTestUtils.getField(userNeighborhoodService, "index"))
+                .set(neighborhoodIndex);
+
+        itemBasedRecommendationService = new ItemBasedRecommendationService();
+        ReflectionTestUtils.setField(itemBasedRecommendationService, "interactionMatrixService", interactionMatrixService);
+        ReflectionTestUtils.setField(itemBasedRecommendationService, "maxAgeHours", 24L);
+        itemBasedRecommendationService.precomputeItemSimilarityMatrix();
+
+        ColdStartOptimizationService coldStartOptimizationService = new ColdStartOptimizationService();
+        ReflectionTestUtils.setField(coldStartOptimizationService, "interactionMatrixService", interactionMatrixService);
+        ReflectionTestUtils.setField(coldStartOptimizationService, "spotCatalogService", spotCatalogService);
+        ReflectionTestUtils.setField(coldStartOptimizationService, "itemBasedRecommendationService",
+                itemBasedRecommendationService);
+
+        recommendationService = new RecommendationService();
+        ReflectionTestUtils.setField(recommendationService, "interactionMatrixService", interactionMatrixService);
+        ReflectionTestUtils.setField(recommendationService, "userNeighborhoodService", userNeighborhoodService);
+        ReflectionTestUtils.setField(recommendationService, "spotCatalogService", spotCatalogService);
+        ReflectionTestUtils.setField(recommendationService, "itemBasedRecommendationService", itemBasedRecommendationService);
+        ReflectionTestUtils.setField(recommendationService, "coldStartOptimizationService", coldStartOptimizationService);
+        ReflectionTestUtils.setField(recommendationService, "similarityKernel", similarityKernel);
+        ReflectionTestUtils.setField(recommendationService, "userLshService", new UserLshService()); // 未启用，走精确路径
+        ReflectionTestUtils.setField(recommendationService, "matrixFactorizationService",
+                new MatrixFactorizationService()); // 未启用，不参与打分
+        RecommendationMetrics recommendationMetrics = new RecommendationMetrics();
+        ReflectionTestUtils.setField(recommendationMetrics, "meterRegistry", new SimpleMeterRegistry());
+        recommendationMetrics.registerMeters();
+        ReflectionTestUtils.setField(recommendationService, "recommendationMetrics", recommendationMetrics);
+        ReflectionTestUtils.setField(recommendationService, "structuredEventLog", new StructuredEventLog()); // 未启动，不输出事件
+        ReflectionTestUtils.setField(recommendationService, "cacheMaxSize", SAMPLE_USERS * 2);
+        ReflectionTestUtils.setField(recommendationService, "cacheTtlMinutes", 30L);
+        recommendationService.initCaches();
+        // 并发模式的时限放宽到不会触发，只比较并行计算本身的收益
+        ReflectionTestUtils.setField(recommendationService, "concurrentEnabled", true); // 只影响异步接口
+        ReflectionTestUtils.setField(recommendationService, "signalPoolSize", 4);
+        ReflectionTestUtils.setField(recommendationService, "signalQueueCapacity", 64);
+        ReflectionTestUtils.setField(recommendationService, "signalTimeoutMillis", 10_000L);
+        ReflectionTestUtils.setField(recommendationService, "latencyBudgetEnabled", false);
+        recommendationService.initSignalExecutor();
+
+        // 旅伴已给出，不会触发依赖数据库的旅伴推断
+        context = new RecommendationContext();
+        context.setSeason("SUMMER");
+        context.setWeather("SUNNY");
+        context.setCurrentLatitude(29.65);
+        context.setCurrentLongitude(91.13);
+        context.setBudget(100);
+        context.setCompanion("FRIENDS");
+        context.setPreferredActivities("PHOTOGRAPHY,HIKING");
+
+        // 预先算出每个抽样用户的相似用户与进入过滤阶段前的候选得分
+        int sampleCount = sampleUserIds.length;
+        visitedSpotIds = new long[sampleCount][];
+        similarUsers = new Map[sampleCount];
+        candidateOrdinals = new int[sampleCount][];
+        candidateScores = new double[sampleCount][];
+        ScoringBuffer buffer = new ScoringBuffer();
+        for (int i = 0; i < sampleCount; i++) {
+            int userIndex = dataset.matrix.userIndex(sampleUserIds[i]);
+            visitedSpotIds[i] = visitedSpots(userIndex);
+            similarUsers[i] = rescoreNeighbors(userIndex, sampleUserIds[i]);
+            generateCandidates(i, buffer);
+            scoreTags(i, buffer);
+
+            int count = buffer.count(ScoringBuffer.CANDIDATE);
+            candidateOrdinals[i] = new int[count];
+            candidateScores[i] = new double[count];
+            int n = 0;
+            for (int t = 0; t < buffer.touchedCount(); t++) {
+                int ordinal = buffer.touchedOrdinal(t);
+                if (buffer.has(ScoringBuffer.CANDIDATE, ordinal)) {
+                    candidateOrdinals[i][n] = ordinal;
+                    candidateScores[i][n] = buffer.get(ScoringBuffer.CANDIDATE, ordinal);
+                    n++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 近邻重新打分：按当前矩阵重算离线索引中前K个近邻的相似度
+     */
+    @Benchmark
+    public Map<Long, Double> userSimilarity(UserCursor cursor) {
+        int i = cursor.next(sampleUserIds.length);
+        return rescoreNeighbors(dataset.matrix.userIndex(sampleUserIds[i]), sampleUserIds[i]);
+    }
+
+    /**
+     * 候选生成：User-Based CF + Item-Based CF，归一化后混合
+     */
+    @Benchmark
+    public int candidateGeneration(UserCursor cursor) {
+        int i = cursor.next(sampleUserIds.length);
+        return generateCandidates(i, cursor.buffer);
+    }
+
+    /**
+     * 标签评分：构建用户标签画像并遍历景点目录打分
+     */
+    @Benchmark
+    public int tagScoring(UserCursor cursor) {
+        int i = cursor.next(sampleUserIds.length);
+        resetWithVisited(i, cursor.buffer);
+        return scoreTags(i, cursor.buffer);
+    }
+
+    /**
+     * 回放候选得分的基线开销，从 contextFiltering 与 rerank 中扣除
+     */
+    @Benchmark
+    public int candidateReplay(UserCursor cursor) {
+        int i = cursor.next(sampleUserIds.length);
+        replayCandidates(i, cursor.buffer);
+        return cursor.buffer.touchedCount();
+    }
+
+    @Benchmark
+    public int contextFiltering(UserCursor cursor) {
+        int i = cursor.next(sampleUserIds.length);
+        replayCandidates(i, cursor.buffer);
+        recommendationService.applyContextAwareFiltering(cursor.buffer, context);
+        return cursor.buffer.touchedCount();
+    }
+
+    @Benchmark
+    public List<ScenicSpot> rerank(UserCursor cursor) {
+        int i = cursor.next(sampleUserIds.length);
+        replayCandidates(i, cursor.buffer);
+        return recommendationService.rerankWithDiversityAndExploration(cursor.buffer);
+    }
+
+    /**
+     * 端到端推荐（清除该用户的相似度与标签画像缓存，测量未命中缓存的路径）
+     */
+    @Benchmark
+    public List<ScenicSpot> recommendEndToEnd(UserCursor cursor) {
+        long userId = sampleUserIds[cursor.next(sampleUserIds.length)];
+        recommendationService.invalidateUserCache(userId);
+        return recommendationService.recommendSpotsForUser(userId, context, dataset.catalog);
+    }
+
+    /**
+     * 端到端推荐（并发模式：各路信号并行计算后合并）
+     */
+    @Benchmark
+    public List<ScenicSpot> recommendEndToEndConcurrent(UserCursor cursor) {
+        long userId = sampleUserIds[cursor.next(sampleUserIds.length)];
+        recommendationService.invalidateUserCache(userId);
+        return recommendationService.recommendSpotsForUserAsync(userId, context).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        recommendationService.shutdownSignalExecutor();
+    }
+
+    private Map<Long, Double> rescoreNeighbors(int userIndex, long userId) {
+        Map<Long, Double> userSimilarityMap = new HashMap<>();
+        Map<Long, SimilarityDetails> similarityDetailsMap = new HashMap<>();
+        recommendationService.rescoreIndexedNeighbors(dataset.matrix, userIndex, neighborhoodIndex,
+                neighborhoodIndex.userIndex(userId), userSimilarityMap, similarityDetailsMap);
+        return userSimilarityMap;
+    }
+
+    private int generateCandidates(int i, ScoringBuffer buffer) {
+        resetWithVisited(i, buffer);
+        int userIndex = dataset.matrix.userIndex(sampleUserIds[i]);
+        if (!similarUsers[i].isEmpty()) {
+            recommendationService.scoreByUserBasedCF(dataset.matrix, userIndex, similarUsers[i], buffer);
+        }
+        itemBasedRecommendationService.recommendByItemCF(sampleUserIds[i], buffer);
+        return recommendationService.blendCollaborativeScores(buffer);
+    }
+
+    private int scoreTags(int i, ScoringBuffer buffer) {
+        int userIndex = dataset.matrix.userIndex(sampleUserIds[i]);
+        Set<Long> visited = new HashSet<>();
+        for (long spotId : visitedSpotIds[i]) {
+            visited.add(spotId);
+        }
+        Map<String, Double> tagProfile = recommendationService.buildUserTagProfile(dataset.matrix, userIndex,
+                visited, dataset.catalog);
+        return recommendationService.scoreSpotsByTags(tagProfile, buffer);
+    }
+
+    private void resetWithVisited(int i, ScoringBuffer buffer) {
+        buffer.reset(dataset.catalog);
+        for (long spotId : visitedSpotIds[i]) {
+            buffer.markVisited(spotId);
+        }
+    }
+
+    private void replayCandidates(int i, ScoringBuffer buffer) {
+        resetWithVisited(i, buffer);
+        int[] ordinals = candidateOrdinals[i];
+        double[] scores = candidateScores[i];
+        for (int c = 0; c < ordinals.length; c++) {
+            buffer.set(ScoringBuffer.CANDIDATE, ordinals[c], scores[c]);
+        }
+    }
+
+    private long[] visitedSpots(int userIndex) {
+        InteractionMatrix matrix = dataset.matrix;
+        long[] spotIds = new long[matrix.rowEnd(userIndex) - matrix.rowStart(userIndex)];
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            spotIds[entry - matrix.rowStart(userIndex)] = matrix.entrySpotId(entry);
+        }
+        return spotIds;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相似度求交内核对比：scalar 与 vector 在不同行长度、不同长度比（活跃用户 vs 普通用户）下的耗时
+ * 每组参数预先生成一批有序行对，行内ID取自行长度8倍的取值空间（交集约占短行的1/8）
+ *
+ * 运行：mvn -Pbenchmark,vector verify -Djmh.include=SimilarityKernelBenchmark（不加 vector profile 时只能测 scalar）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class SimilarityKernelBenchmark {
+
+    private static final int PAIRS = 256;
+    private static final long SEED = 20240601L;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"8", "64", "512"})
+    public int rowLength;
+
+    @Param({"1", "16"})
+    public int lengthRatio;
+
+    private SimilarityKernel similarityKernel;
+    private long[][] shortRows;
+    private long[][] longRows;
+    private int[] matches1;
+    private int[] matches2;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        similarityKernel = SimilarityKernels.forName(kernel);
+        if (!similarityKernel.name().equals(kernel)) {
+            throw new IllegalStateException("相似度内核 " + kernel + " 不可用（vector 需加 -Pvector 构建）");
+        }
+        Random random = new Random(SEED);
+        int longLength = rowLength * lengthRatio;
+        int universe = longLength * 8;
+        shortRows = new long[PAIRS][];
+        longRows = new long[PAIRS][];
+        for (int p = 0; p < PAIRS; p++) {
+            shortRows[p] = sortedRow(random, rowLength, universe);
+            longRows[p] = sortedRow(random, longLength, universe);
+        }
+        matches1 = new int[rowLength];
+        matches2 = new int[rowLength];
+    }
+
+    @Benchmark
+    public int intersect() {
+        int p = next;
+        next = p + 1 == PAIRS ? 0 : p + 1;
+        long[] shortRow = shortRows[p];
+        long[] longRow = longRows[p];
+        return similarityKernel.intersect(shortRow, 0, shortRow.length, longRow, 0, longRow.length, matches1, matches2);
+    }
+
+    /**
+     * 从 [1, universe] 中不放回抽取 length 个ID并升序排列
+     */
+    private static long[] sortedRow(Random random, int length, int universe) {
+        long[] row = new long[length];
+        int picked = 0;
+        for (int id = 1; id <= universe && picked < length; id++) {
+            // 选择抽样：剩余需要数 / 剩余候选数
+            if (random.nextInt(universe - id + 1) < length - picked) {
+                row[picked++] = id;
+            }
+        }
+        return row;
+    }
+}
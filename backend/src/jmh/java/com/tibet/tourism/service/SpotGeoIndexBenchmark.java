@@ -0,0 +1,97 @@
+package com.tibet.tourism.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 附近景点查询基准：逐个景点计算 Haversine 距离的全量扫描与地理索引（SpotGeoIndex）对比
+ * 查询点在合成景点的经纬度范围内随机选取，radius 为半径查询（冷启动按位置推荐默认 50km），
+ * nearest 为 k 近邻查询（k = 10）
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.include=SpotGeoIndexBenchmark -Djmh.args="-p spots=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpotGeoIndexBenchmark {
+
+    private static final long SEED = 20240601L;
+    private static final int QUERIES = 1024;
+    private static final int K = 10;
+
+    @Param({"1000", "10000"})
+    public int spots;
+
+    @Param({"50"})
+    public double radiusKm;
+
+    private SpotCatalog catalog;
+    private double[] queryLatitudes;
+    private double[] queryLongitudes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = SyntheticDataset.generate(1, spots, SEED).catalog;
+        Random random = new Random(SEED);
+        queryLatitudes = new double[QUERIES];
+        queryLongitudes = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryLatitudes[i] = 27.5 + random.nextDouble() * 8.0;
+            queryLongitudes[i] = 79.0 + random.nextDouble() * 19.0;
+        }
+    }
+
+    @Benchmark
+    public int radiusScan() {
+        int q = next++ & (QUERIES - 1);
+        List<double[]> nearby = new ArrayList<>();
+        for (int ordinal = 0; ordinal < catalog.ordinalCount(); ordinal++) {
+            if (!catalog.hasLocation(ordinal)) {
+                continue;
+            }
+            double distance = SpotGeoIndex.haversineKm(queryLatitudes[q], queryLongitudes[q],
+                    catalog.latitudeAt(ordinal), catalog.longitudeAt(ordinal));
+            if (distance <= radiusKm) {
+                nearby.add(new double[]{ordinal, distance});
+            }
+        }
+        nearby.sort(Comparator.comparingDouble(entry -> entry[1]));
+        return nearby.size();
+    }
+
+    @Benchmark
+    public int radiusIndex() {
+        int q = next++ & (QUERIES - 1);
+        return catalog.geoIndex().withinRadius(queryLatitudes[q], queryLongitudes[q], radiusKm).size();
+    }
+
+    @Benchmark
+    public double nearestScan() {
+        int q = next++ & (QUERIES - 1);
+        List<double[]> all = new ArrayList<>(catalog.ordinalCount());
+        for (int ordinal = 0; ordinal < catalog.ordinalCount(); ordinal++) {
+            if (catalog.hasLocation(ordinal)) {
+                all.add(new double[]{ordinal, SpotGeoIndex.haversineKm(queryLatitudes[q], queryLongitudes[q],
+                        catalog.latitudeAt(ordinal), catalog.longitudeAt(ordinal))});
+            }
+        }
+        all.sort(Comparator.comparingDouble(entry -> entry[1]));
+        return all.get(Math.min(K, all.size()) - 1)[1];
+    }
+
+    @Benchmark
+    public double nearestIndex() {
+        int q = next++ & (QUERIES - 1);
+        SpotGeoIndex.Neighbors neighbors = catalog.geoIndex().nearest(queryLatitudes[q], queryLongitudes[q], K);
+        return neighbors.distanceKmAt(neighbors.size() - 1);
+    }
+}
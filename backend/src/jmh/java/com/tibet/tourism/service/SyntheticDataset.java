@@ -0,0 +1,228 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.entity.ScenicSpot;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 基准测试用的合成数据
+ * 景点热度服从 Zipf 分布，每个用户的访问次数服从对数正态分布（中位数约6次，长尾封顶200次），
+ * 用户有偏好的景点类别，约七成访问落在该类别内；标签按类别从各自的词表中抽取，另有少量长尾标签。
+ * 同一组参数和种子生成的数据完全相同，便于不同提交之间对比
+ */
+final class SyntheticDataset {
+
+    private static final double SPOT_ZIPF_EXPONENT = 1.1;
+    private static final double TAG_ZIPF_EXPONENT = 1.0;
+    private static final double VISIT_LOG_MEDIAN = Math.log(6);
+    private static final double VISIT_LOG_SIGMA = 0.8;
+    private static final int MAX_VISITS_PER_USER = 200;
+    private static final double HOME_CATEGORY_RATE = 0.7;
+    private static final int HISTORY_DAYS = 730;
+    private static final int LONG_TAIL_TAGS_PER_CATEGORY = 60;
+
+    private static final String[] SHARED_TAGS = {"摄影", "风景", "高海拔", "亲子", "休闲", "户外", "打卡", "美景"};
+    private static final String[][] CATEGORY_TAGS = {
+            {"雪山", "湖泊", "草原", "冰川", "徒步", "登山", "观星", "峡谷", "自然", "山水", "温泉", "湿地"},  // NATURAL
+            {"民俗", "博物馆", "古城", "手工艺", "唐卡", "藏戏", "文化", "人文", "市集", "藏餐"},            // CULTURAL
+            {"寺庙", "朝圣", "转经", "宗教", "佛塔", "经幡", "宗教艺术", "辩经"},                            // RELIGIOUS
+            {"宫殿", "遗址", "古堡", "历史", "壁画", "王朝", "古道", "要塞"}                                 // HISTORICAL
+    };
+    private static final double[] CATEGORY_WEIGHTS = {0.45, 0.2, 0.25, 0.1};
+    private static final double[] RATING_WEIGHTS = {0.05, 0.1, 0.25, 0.35, 0.25};
+
+    final int userCount;
+    final int spotCount;
+    final SpotCatalog catalog;
+    final InteractionMatrix matrix;
+
+    private SyntheticDataset(int userCount, int spotCount, SpotCatalog catalog, InteractionMatrix matrix) {
+        this.userCount = userCount;
+        this.spotCount = spotCount;
+        this.catalog = catalog;
+        this.matrix = matrix;
+    }
+
+    static SyntheticDataset generate(int userCount, int spotCount, long seed) {
+        Random random = new Random(seed);
+        ScenicSpot.Category[] categoryValues = ScenicSpot.Category.values();
+
+        // 景点：类别、海拔、坐标（西藏境内）、票价、评分
+        List<ScenicSpot> spots = new ArrayList<>(spotCount);
+        Map<Long, List<String>> tagsBySpot = new HashMap<>();
+        List<List<Long>> spotsByCategory = new ArrayList<>();
+        for (int c = 0; c < categoryValues.length; c++) {
+            spotsByCategory.add(new ArrayList<>());
+        }
+        double[] tagCdf = cumulativeZipf(CATEGORY_TAGS[0].length + LONG_TAIL_TAGS_PER_CATEGORY, TAG_ZIPF_EXPONENT);
+        for (long spotId = 1; spotId <= spotCount; spotId++) {
+            int category = sampleWeighted(random, CATEGORY_WEIGHTS);
+            ScenicSpot spot = new ScenicSpot();
+            spot.setId(spotId);
+            spot.setName("景点" + spotId);
+            spot.setCategory(categoryValues[category]);
+            spot.setAltitude((3000 + random.nextInt(2600)) + "m");
+            spot.setLatitude(decimal(27.5 + random.nextDouble() * 8.0, 6));
+            spot.setLongitude(decimal(79.0 + random.nextDouble() * 19.0, 6));
+            spot.setTicketPrice(random.nextInt(4) == 0 ? BigDecimal.ZERO : decimal(20 + random.nextInt(180), 2));
+            spot.setRating(decimal(3.0 + random.nextDouble() * 2.0, 1));
+            spot.setVisitCount(random.nextInt(30000));
+            spots.add(spot);
+            spotsByCategory.get(category).add(spotId);
+
+            int tagTotal = 2 + random.nextInt(5);
+            Set<String> tags = new LinkedHashSet<>();
+            while (tags.size() < tagTotal) {
+                if (random.nextDouble() < 0.25) {
+                    tags.add(SHARED_TAGS[random.nextInt(SHARED_TAGS.length)]);
+                    continue;
+                }
+                String[] pool = CATEGORY_TAGS[category];
+                int pick = sampleCdf(random, tagCdf);
+                tags.add(pick < pool.length ? pool[pick]
+                        : pool[pick % pool.length] + "·" + (pick - pool.length));
+            }
+            tagsBySpot.put(spotId, new ArrayList<>(tags));
+        }
+
+        // 热度排名随机打乱，避免热门景点恰好是ID最小的那些
+        List<Long> globalRanking = new ArrayList<>();
+        for (long spotId = 1; spotId <= spotCount; spotId++) {
+            globalRanking.add(spotId);
+        }
+        Collections.shuffle(globalRanking, random);
+        for (List<Long> categorySpots : spotsByCategory) {
+            Collections.shuffle(categorySpots, random);
+        }
+        double[] globalCdf = cumulativeZipf(spotCount, SPOT_ZIPF_EXPONENT);
+        double[][] categoryCdfs = new double[categoryValues.length][];
+        for (int c = 0; c < categoryValues.length; c++) {
+            categoryCdfs[c] = cumulativeZipf(spotsByCategory.get(c).size(), SPOT_ZIPF_EXPONENT);
+        }
+
+        // 交互：按用户ID升序追加，构建器无需再排序
+        long nowEpochSeconds = InteractionMatrix.toEpochSeconds(LocalDateTime.now());
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        long[] rowSpots = new long[MAX_VISITS_PER_USER];
+        for (long userId = 1; userId <= userCount; userId++) {
+            int homeCategory = sampleWeighted(random, CATEGORY_WEIGHTS);
+            List<Long> homeSpots = spotsByCategory.get(homeCategory);
+            int visits = (int) Math.round(Math.exp(VISIT_LOG_MEDIAN + VISIT_LOG_SIGMA * random.nextGaussian()));
+            visits = Math.max(1, Math.min(visits, Math.min(MAX_VISITS_PER_USER, spotCount)));
+
+            for (int v = 0; v < visits; v++) {
+                rowSpots[v] = !homeSpots.isEmpty() && random.nextDouble() < HOME_CATEGORY_RATE
+                        ? homeSpots.get(sampleCdf(random, categoryCdfs[homeCategory]))
+                        : globalRanking.get(sampleCdf(random, globalCdf));
+            }
+            Arrays.sort(rowSpots, 0, visits);
+            for (int v = 0; v < visits; v++) {
+                float rating = 1 + sampleWeighted(random, RATING_WEIGHTS);
+                int clicks = (int) Math.min(50, -Math.log(1 - random.nextDouble()) * 3);
+                int dwellSeconds = (int) Math.min(3600, -Math.log(1 - random.nextDouble()) * 300);
+                long visitEpochSeconds = nowEpochSeconds - (long) (random.nextDouble() * HISTORY_DAYS * 86400L);
+                builder.add(userId, rowSpots[v], rating, clicks, dwellSeconds, visitEpochSeconds);
+            }
+        }
+
+        return new SyntheticDataset(userCount, spotCount, SpotCatalog.of(spots, tagsBySpot, 1L), builder.build(1L));
+    }
+
+    /**
+     * 从有至少 minVisits 条记录的用户中按固定种子抽样，作为单次推荐基准的请求用户
+     */
+    long[] sampleUsers(int count, int minVisits, long seed) {
+        List<Long> eligible = new ArrayList<>();
+        for (int u = 0; u < matrix.userCount(); u++) {
+            if (matrix.rowEnd(u) - matrix.rowStart(u) >= minVisits) {
+                eligible.add(matrix.userIdAt(u));
+            }
+        }
+        Collections.shuffle(eligible, new Random(seed));
+        long[] sampled = new long[Math.min(count, eligible.size())];
+        for (int i = 0; i < sampled.length; i++) {
+            sampled[i] = eligible.get(i);
+        }
+        Arrays.sort(sampled);
+        return sampled;
+    }
+
+    /**
+     * 只为抽样用户构建近邻索引（全量离线构建在百万用户规模下耗时过长，不适合放在基准准备阶段）
+     */
+    UserNeighborhoodIndex neighborhoodFor(long[] sortedUserIds, SimilarityKernel kernel) {
+        int k = RecommendationService.MAX_SIMILAR_USERS;
+        long nowEpochSeconds = InteractionMatrix.toEpochSeconds(LocalDateTime.now());
+        int[] ptr = new int[sortedUserIds.length + 1];
+        long[] neighborIds = new long[sortedUserIds.length * k];
+        float[] similarities = new float[sortedUserIds.length * k];
+        int[] seenStamp = new int[matrix.userCount()];
+        int total = 0;
+        for (int i = 0; i < sortedUserIds.length; i++) {
+            ptr[i] = total;
+            int user = matrix.userIndex(sortedUserIds[i]);
+            int stamp = i + 1;
+            List<long[]> scored = new ArrayList<>();
+            for (int entry = matrix.rowStart(user); entry < matrix.rowEnd(user); entry++) {
+                int col = matrix.spotIndex(matrix.entrySpotId(entry));
+                for (int pos = matrix.colStart(col); pos < matrix.colEnd(col); pos++) {
+                    int other = matrix.colUserIndex(pos);
+                    if (other == user || seenStamp[other] == stamp) {
+                        continue;
+                    }
+                    seenStamp[other] = stamp;
+                    double similarity = UserSimilarityCalculator.calculate(kernel, matrix, user, other, nowEpochSeconds)
+                            .getSimilarity();
+                    if (similarity >= RecommendationService.MIN_SIMILARITY) {
+                        scored.add(new long[]{matrix.userIdAt(other), Double.doubleToLongBits(similarity)});
+                    }
+                }
+            }
+            scored.sort((a, b) -> Double.compare(Double.longBitsToDouble(b[1]), Double.longBitsToDouble(a[1])));
+            for (int n = 0; n < Math.min(k, scored.size()); n++) {
+                neighborIds[total] = scored.get(n)[0];
+                similarities[total] = (float) Double.longBitsToDouble(scored.get(n)[1]);
+                total++;
+            }
+        }
+        ptr[sortedUserIds.length] = total;
+        return new UserNeighborhoodIndex(1L, matrix.getVersion(), sortedUserIds.clone(), ptr,
+                Arrays.copyOf(neighborIds, total), Arrays.copyOf(similarities, total));
+    }
+
+    private static double[] cumulativeZipf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sampleCdf(Random random, double[] cdf) {
+        int pos = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(pos >= 0 ? pos : -pos - 1, cdf.length - 1);
+    }
+
+    private static int sampleWeighted(Random random, double[] weights) {
+        double r = random.nextDouble();
+        for (int i = 0; i < weights.length - 1; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static BigDecimal decimal(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+}
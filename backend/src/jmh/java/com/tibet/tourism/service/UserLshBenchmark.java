@@ -0,0 +1,213 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单用户近邻召回：exact（CSC列枚举全部重叠用户）与 lsh（MinHash 分桶召回）在召回 + 相似度打分 + 取前K上的耗时
+ * 抽样用户只取精确路径候选数超过 max-candidates 的重度重叠用户，即线上真正会切到 LSH 的用户；
+ * 初始化时打印 LSH 相对精确结果的 recall@K 与平均候选数
+ *
+ * 运行：mvn -Pbenchmark verify -Djmh.include=UserLshBenchmark -Djmh.args="-p users=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserLshBenchmark {
+
+    private static final int SAMPLE_USERS = 256;
+    private static final int MIN_SAMPLE_VISITS = 3;
+    private static final int K = RecommendationService.MAX_SIMILAR_USERS;
+    private static final long SEED = 20240601L;
+
+    @Param({"50000"})
+    public int users;
+
+    @Param({"1000"})
+    public int spots;
+
+    @Param({"exact", "lsh"})
+    public String path;
+
+    @Param({"32"})
+    public int bands;
+
+    @Param({"2"})
+    public int rows;
+
+    @Param({"256"})
+    public int bucketCapacity;
+
+    @Param({"2000"})
+    public int maxCandidates;
+
+    private InteractionMatrix matrix;
+    private UserLshService userLshService;
+    private SimilarityKernel kernel;
+    private int[] sampleUsers;
+    private long nowEpochSeconds;
+
+    @State(Scope.Thread)
+    public static class UserCursor {
+        int[] seenStamp;
+        int position;
+        int stamp;
+
+        int next(int size) {
+            int current = position;
+            position = current + 1 == size ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDataset dataset = SyntheticDataset.generate(users, spots, SEED);
+        matrix = dataset.matrix;
+        kernel = new ScalarSimilarityKernel();
+        nowEpochSeconds = System.currentTimeMillis() / 1000;
+
+        userLshService = new UserLshService();
+        ReflectionTestUtils.setField(userLshService, "enabled", true);
+        ReflectionTestUtils.setField(userLshService, "bands", bands);
+        ReflectionTestUtils.setField(userLshService, "rows", rows);
+        ReflectionTestUtils.setField(userLshService, "bucketCapacity", bucketCapacity);
+        ReflectionTestUtils.setField(userLshService, "maxCandidates", maxCandidates);
+        userLshService.onInteractionMatrixChanged(new InteractionMatrixChangedEvent(matrix, Collections.emptyList()));
+
+        // 只保留会切换到 LSH 的用户
+        long[] sampled = dataset.sampleUsers(SAMPLE_USERS * 4, MIN_SAMPLE_VISITS, SEED);
+        int[] selected = new int[SAMPLE_USERS];
+        int count = 0;
+        for (int i = 0; i < sampled.length && count < SAMPLE_USERS; i++) {
+            int userIndex = matrix.userIndex(sampled[i]);
+            if (userLshService.shouldUseLsh(matrix, userIndex)) {
+                selected[count++] = userIndex;
+            }
+        }
+        if (count == 0) {
+            throw new IllegalStateException("没有候选数超过 " + maxCandidates + " 的抽样用户，请增大 users");
+        }
+        sampleUsers = Arrays.copyOf(selected, count);
+
+        if ("lsh".equals(path)) {
+            reportRecall();
+        }
+    }
+
+    @Benchmark
+    public long[] topNeighbors(UserCursor cursor) {
+        if (cursor.seenStamp == null) {
+            cursor.seenStamp = new int[matrix.userCount()];
+        }
+        int user = sampleUsers[cursor.next(sampleUsers.length)];
+        int[] candidates = "lsh".equals(path) ? lshCandidates(user) : exactCandidates(user, cursor);
+        return topK(user, candidates);
+    }
+
+    /**
+     * 以精确路径的前K个近邻为基准，统计 LSH 路径的 recall@K 与平均候选数
+     */
+    private void reportRecall() {
+        int[] seenStamp = new int[matrix.userCount()];
+        UserCursor cursor = new UserCursor();
+        cursor.seenStamp = seenStamp;
+        long hits = 0;
+        long total = 0;
+        long exactCandidateTotal = 0;
+        long lshCandidateTotal = 0;
+        for (int user : sampleUsers) {
+            int[] exact = exactCandidates(user, cursor);
+            int[] approximate = lshCandidates(user);
+            exactCandidateTotal += exact.length;
+            lshCandidateTotal += approximate.length;
+            long[] expected = topK(user, exact);
+            long[] actual = topK(user, approximate);
+            Arrays.sort(actual);
+            for (long neighbor : expected) {
+                if (Arrays.binarySearch(actual, neighbor) >= 0) {
+                    hits++;
+                }
+            }
+            total += expected.length;
+        }
+        System.out.printf("%nLSH %d×%d: %d 个重度重叠用户, recall@%d = %.3f, 平均候选数 exact %.0f / lsh %.0f, %d 个桶（已满 %d）%n",
+                bands, rows, sampleUsers.length, K, total == 0 ? 1.0 : (double) hits / total,
+                (double) exactCandidateTotal / sampleUsers.length, (double) lshCandidateTotal / sampleUsers.length,
+                userLshService.getIndex().bucketCount(), userLshService.getIndex().fullBucketCount());
+    }
+
+    private int[] exactCandidates(int user, UserCursor cursor) {
+        int stamp = ++cursor.stamp;
+        int[] candidates = new int[64];
+        int count = 0;
+        for (int entry = matrix.rowStart(user); entry < matrix.rowEnd(user); entry++) {
+            int col = matrix.spotIndex(matrix.entrySpotId(entry));
+            for (int pos = matrix.colStart(col); pos < matrix.colEnd(col); pos++) {
+                int other = matrix.colUserIndex(pos);
+                if (other == user || cursor.seenStamp[other] == stamp) {
+                    continue;
+                }
+                cursor.seenStamp[other] = stamp;
+                if (count == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, count * 2);
+                }
+                candidates[count++] = other;
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private int[] lshCandidates(int user) {
+        long[] candidateIds = userLshService.candidates(matrix, user);
+        int[] candidates = new int[candidateIds.length];
+        int count = 0;
+        for (long candidateId : candidateIds) {
+            int other = matrix.userIndex(candidateId);
+            if (other >= 0) {
+                candidates[count++] = other;
+            }
+        }
+        return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * 计算相似度并保留前K个（相似度低于阈值的丢弃），返回近邻ID
+     */
+    private long[] topK(int user, int[] candidates) {
+        int[] topUsers = new int[K];
+        double[] topScores = new double[K];
+        int size = 0;
+        for (int other : candidates) {
+            double similarity = UserSimilarityCalculator.calculate(kernel, matrix, user, other, nowEpochSeconds)
+                    .getSimilarity();
+            if (similarity < RecommendationService.MIN_SIMILARITY) {
+                continue;
+            }
+            if (size == K && similarity <= topScores[K - 1]) {
+                continue;
+            }
+            int pos = size == K ? K - 1 : size++;
+            while (pos > 0 && topScores[pos - 1] < similarity) {
+                topUsers[pos] = topUsers[pos - 1];
+                topScores[pos] = topScores[pos - 1];
+                pos--;
+            }
+            topUsers[pos] = other;
+            topScores[pos] = similarity;
+        }
+        long[] neighborIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            neighborIds[i] = matrix.userIdAt(topUsers[i]);
+        }
+        return neighborIds;
+    }
+}
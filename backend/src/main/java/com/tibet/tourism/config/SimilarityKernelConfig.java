@@ -0,0 +1,22 @@
+package com.tibet.tourism.config;
+
+import com.tibet.tourism.service.SimilarityKernel;
+import com.tibet.tourism.service.SimilarityKernels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SimilarityKernelConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityKernelConfig.class);
+
+    @Bean
+    public SimilarityKernel similarityKernel(@Value("${recommendation.similarity.kernel:scalar}") String kernel) {
+        SimilarityKernel similarityKernel = SimilarityKernels.forName(kernel);
+        logger.info("🧮 用户相似度内核: {}", similarityKernel.name());
+        return similarityKernel;
+    }
+}
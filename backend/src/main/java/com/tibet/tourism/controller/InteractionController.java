@@ -0,0 +1,69 @@
+package com.tibet.tourism.controller;
+
+import com.tibet.tourism.dto.InteractionEventBatch;
+import com.tibet.tourism.entity.User;
+import com.tibet.tourism.repository.UserRepository;
+import com.tibet.tourism.service.InteractionIngestionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 用户交互事件上报Controller
+ * 事件入队后立即返回 202，由后台批量写入访问记录，不在请求中等待数据库
+ * 需要登录，事件记到当前登录用户名下
+ */
+@RestController
+@RequestMapping("/api/spots/interactions")
+public class InteractionController {
+
+    @Autowired
+    private InteractionIngestionService interactionIngestionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * 批量上报交互事件（view / click / dwell / rate）
+     * 请求体中的 userId 可省略，填写时必须与当前登录用户一致
+     */
+    @PostMapping
+    public ResponseEntity<?> submitEvents(@RequestBody InteractionEventBatch batch) {
+        User user = getCurrentUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "用户未登录"));
+        }
+        if (batch.getUserId() != null && !batch.getUserId().equals(user.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "不能为其他用户上报交互事件"));
+        }
+        if (batch.getEvents() == null || batch.getEvents().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "事件不能为空"));
+        }
+        try {
+            InteractionIngestionService.SubmitResult result =
+                    interactionIngestionService.submit(user.getId(), batch.getEvents());
+            return ResponseEntity.accepted().body(Map.of(
+                    "accepted", result.getAccepted(),
+                    "rejected", result.getRejected(),
+                    "dropped", result.getDropped()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private User getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
+            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+            return userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.tibet.tourism.controller;
+
+import com.tibet.tourism.service.ModelBuildJob;
+import com.tibet.tourism.service.ModelBuildJobService;
+import com.tibet.tourism.service.ModelBuildRun;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线模型构建任务Controller（管理员接口）
+ * 任务：item-similarity / user-neighborhood / popularity / tag-profiles
+ */
+@RestController
+@RequestMapping("/api/spots/admin/jobs")
+@CrossOrigin(origins = "*")
+public class ModelBuildJobController {
+
+    @Autowired
+    private ModelBuildJobService modelBuildJobService;
+
+    /**
+     * 各任务的 cron、阈值、距上次触发的新增交互数、运行中与最近一次运行
+     */
+    @GetMapping
+    public List<Map<String, Object>> getJobs() {
+        return modelBuildJobService.getJobs();
+    }
+
+    /**
+     * 最近的运行记录（新的在前）
+     */
+    @GetMapping("/runs")
+    public List<ModelBuildRun> getRuns() {
+        return modelBuildJobService.getHistory();
+    }
+
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<?> getRun(@PathVariable long runId) {
+        ModelBuildRun run = modelBuildJobService.getRun(runId);
+        return run != null ? ResponseEntity.ok(run) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 提交构建，立即返回 202 与运行记录（同一任务已在排队或运行时返回该次运行）
+     */
+    @PostMapping("/{job}")
+    public ResponseEntity<?> submit(@PathVariable String job) {
+        ModelBuildJob buildJob = ModelBuildJob.fromName(job);
+        if (buildJob == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "未知任务: " + job));
+        }
+        return ResponseEntity.accepted().body(modelBuildJobService.submit(buildJob, "manual"));
+    }
+
+    /**
+     * 取消排队或运行中的构建，已发布的模型保持不变
+     */
+    @PostMapping("/{job}/cancel")
+    public ResponseEntity<?> cancel(@PathVariable String job) {
+        ModelBuildJob buildJob = ModelBuildJob.fromName(job);
+        if (buildJob == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "未知任务: " + job));
+        }
+        ModelBuildRun run = modelBuildJobService.cancel(buildJob);
+        if (run == null) {
+            return ResponseEntity.ok(Map.of("cancelled", false, "message", "没有排队或运行中的构建"));
+        }
+        return ResponseEntity.ok(Map.of("cancelled", true, "runId", run.getId()));
+    }
+}
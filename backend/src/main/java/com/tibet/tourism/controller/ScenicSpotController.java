@@ -4,16 +4,30 @@ import com.tibet.tourism.dto.RecommendationContext;
 import com.tibet.tourism.dto.RecommendationDebugResponse;
 import com.tibet.tourism.entity.ScenicSpot;
 import com.tibet.tourism.dto.UserPreferenceDTO;
+import com.tibet.tourism.service.AlsModel;
 import com.tibet.tourism.service.ColdStartOptimizationService;
 import com.tibet.tourism.service.CompanionInferenceService;
 import com.tibet.tourism.service.ItemBasedRecommendationService;
+import com.tibet.tourism.service.MatrixFactorizationService;
+import com.tibet.tourism.service.ModelBuildJob;
+import com.tibet.tourism.service.ModelBuildJobService;
+import com.tibet.tourism.service.ModelBuildRun;
+import com.tibet.tourism.service.ModelSnapshotService;
+import com.tibet.tourism.service.RecommendationFeedService;
 import com.tibet.tourism.service.RecommendationService;
 import com.tibet.tourism.service.ScenicSpotService;
+import com.tibet.tourism.service.SegmentedLruCache;
+import com.tibet.tourism.service.UserNeighborhoodIndex;
+import com.tibet.tourism.service.UserNeighborhoodService;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/spots")
@@ -35,6 +49,21 @@ public class ScenicSpotController {
     @Autowired
     private ColdStartOptimizationService coldStartOptimizationService;
 
+    @Autowired
+    private UserNeighborhoodService userNeighborhoodService;
+
+    @Autowired
+    private RecommendationFeedService recommendationFeedService;
+
+    @Autowired
+    private MatrixFactorizationService matrixFactorizationService;
+
+    @Autowired
+    private ModelSnapshotService modelSnapshotService;
+
+    @Autowired
+    private ModelBuildJobService modelBuildJobService;
+
     @GetMapping
     public List<ScenicSpot> getAllSpots(
             @RequestParam(required = false) String category,
@@ -93,7 +122,7 @@ public class ScenicSpotController {
     }
 
     @GetMapping("/recommendations")
-    public List<ScenicSpot> getRecommendations(
+    public CompletableFuture<List<ScenicSpot>> getRecommendations(
             @RequestParam Long userId,
             @RequestParam(required = false, defaultValue = "zh") String locale,
             // 上下文参数（可选）
@@ -131,38 +160,45 @@ public class ScenicSpotController {
             context.setConsiderBudget(considerBudget);
         }
         
-        List<ScenicSpot> spots = recommendationService.recommendSpotsForUser(userId, context);
-        if ("bo".equals(locale)) {
-            spots.forEach(spot -> {
-                if (spot.getNameTibetan() != null && !spot.getNameTibetan().isEmpty()) {
-                    spot.setName(spot.getNameTibetan());
-                }
-                if (spot.getDescriptionTibetan() != null && !spot.getDescriptionTibetan().isEmpty()) {
-                    spot.setDescription(spot.getDescriptionTibetan());
-                }
-            });
+        // 无上下文参数时从预计算结果返回（过期则后台重算）；带上下文时异步计算，不占用请求线程
+        if (context == null) {
+            return CompletableFuture.completedFuture(
+                    localizeRecommendations(recommendationFeedService.getRecommendations(userId), locale));
         }
-        return spots;
+        return recommendationService.recommendSpotsForUserAsync(userId, context)
+                .thenApply(spots -> localizeRecommendations(spots, locale));
     }
     
     @PostMapping("/recommendations")
-    public List<ScenicSpot> getRecommendationsWithContext(
+    public CompletableFuture<List<ScenicSpot>> getRecommendationsWithContext(
             @RequestParam Long userId,
             @RequestParam(required = false, defaultValue = "zh") String locale,
             @RequestBody(required = false) RecommendationContext context) {
         
-        List<ScenicSpot> spots = recommendationService.recommendSpotsForUser(userId, context);
-        if ("bo".equals(locale)) {
-            spots.forEach(spot -> {
-                if (spot.getNameTibetan() != null && !spot.getNameTibetan().isEmpty()) {
-                    spot.setName(spot.getNameTibetan());
-                }
-                if (spot.getDescriptionTibetan() != null && !spot.getDescriptionTibetan().isEmpty()) {
-                    spot.setDescription(spot.getDescriptionTibetan());
-                }
-            });
+        return recommendationService.recommendSpotsForUserAsync(userId, context)
+                .thenApply(spots -> localizeRecommendations(spots, locale));
+    }
+
+    /**
+     * 推荐结果可能来自共享的预计算快照，藏文本地化时返回副本而不修改原对象
+     */
+    private List<ScenicSpot> localizeRecommendations(List<ScenicSpot> spots, String locale) {
+        if (!"bo".equals(locale)) {
+            return spots;
         }
-        return spots;
+        List<ScenicSpot> localized = new ArrayList<>(spots.size());
+        for (ScenicSpot spot : spots) {
+            ScenicSpot copy = new ScenicSpot();
+            BeanUtils.copyProperties(spot, copy, "tags");
+            if (copy.getNameTibetan() != null && !copy.getNameTibetan().isEmpty()) {
+                copy.setName(copy.getNameTibetan());
+            }
+            if (copy.getDescriptionTibetan() != null && !copy.getDescriptionTibetan().isEmpty()) {
+                copy.setDescription(copy.getDescriptionTibetan());
+            }
+            localized.add(copy);
+        }
+        return localized;
     }
 
     @GetMapping("/recommendations/debug")
@@ -248,25 +284,96 @@ public class ScenicSpotController {
     
     /**
      * 预计算景点相似度矩阵（管理员接口）
-     * 建议每天凌晨执行一次
+     * 默认每天凌晨4点由构建任务自动执行；这里提交到同一调度器并等待完成，不会与其他构建重叠
      */
     @PostMapping("/admin/precompute-similarity")
     public Map<String, Object> precomputeItemSimilarity() {
+        ModelBuildRun run = modelBuildJobService.runAndWait(ModelBuildJob.ITEM_SIMILARITY, "manual");
+        boolean succeeded = run.getStatus() == ModelBuildRun.Status.SUCCEEDED;
+        return Map.of(
+            "success", succeeded,
+            "message", succeeded ? "景点相似度矩阵计算完成" : "计算失败: " + run.getStatus() + " " + run.getMessage(),
+            "runId", run.getId(),
+            "duration", run.getDurationMillis()
+        );
+    }
+    
+    /**
+     * 重建用户近邻索引（管理员接口）
+     * 默认每天凌晨3:30与新增交互达到阈值时自动执行，数据大量变更后可手动触发
+     */
+    @PostMapping("/admin/rebuild-neighborhoods")
+    public Map<String, Object> rebuildUserNeighborhoods() {
+        ModelBuildRun run = modelBuildJobService.runAndWait(ModelBuildJob.USER_NEIGHBORHOOD, "manual");
+        boolean rebuilt = run.getStatus() == ModelBuildRun.Status.SUCCEEDED;
+        UserNeighborhoodIndex index = userNeighborhoodService.getIndex();
+        return Map.of(
+            "success", rebuilt,
+            "message", rebuilt ? "用户近邻索引构建完成" : "用户近邻索引构建未完成: " + run.getStatus() + " " + run.getMessage(),
+            "version", index.getVersion(),
+            "users", index.userCount(),
+            "runId", run.getId(),
+            "duration", run.getDurationMillis()
+        );
+    }
+    
+    /**
+     * 重新训练矩阵分解模型（管理员接口）
+     * 默认每天凌晨5点由构建任务自动执行，训练期间继续使用旧模型；这里提交到同一调度器并等待完成
+     */
+    @PostMapping("/admin/retrain-matrix-factorization")
+    public Map<String, Object> retrainMatrixFactorization() {
+        ModelBuildRun run = modelBuildJobService.runAndWait(ModelBuildJob.MATRIX_FACTORIZATION, "manual");
+        boolean trained = run.getStatus() == ModelBuildRun.Status.SUCCEEDED;
+        AlsModel model = matrixFactorizationService.getModel();
+        return Map.of(
+            "success", trained,
+            "message", trained ? "矩阵分解模型训练完成" : "矩阵分解模型训练未完成: " + run.getStatus() + " " + run.getMessage(),
+            "version", model.getVersion(),
+            "users", model.userCount(),
+            "spots", model.spotCount(),
+            "runId", run.getId(),
+            "duration", run.getDurationMillis()
+        );
+    }
+    
+    /**
+     * 写出推荐模型快照（管理员接口）
+     * 默认每天凌晨4:15与应用关闭时自动写出，重启时据此恢复相似度矩阵、近邻索引与标签画像
+     * 会写磁盘，仅限管理员
+     */
+    @PostMapping("/admin/model-snapshot")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> saveModelSnapshot() {
         long startTime = System.currentTimeMillis();
-        try {
-            itemBasedRecommendationService.precomputeItemSimilarityMatrix();
-            long endTime = System.currentTimeMillis();
-            return Map.of(
-                "success", true,
-                "message", "景点相似度矩阵计算完成",
-                "duration", endTime - startTime
-            );
-        } catch (Exception e) {
-            return Map.of(
-                "success", false,
-                "message", "计算失败: " + e.getMessage()
-            );
-        }
+        long bytes = modelSnapshotService.save();
+        return Map.of(
+            "success", bytes >= 0,
+            "message", bytes >= 0 ? "模型快照已写出" : "模型快照未启用、相似度矩阵尚未构建或写出失败",
+            "bytes", bytes,
+            "duration", System.currentTimeMillis() - startTime
+        );
+    }
+    
+    /**
+     * 批量预计算推荐结果（管理员接口）
+     * 用于推送活动和首页预热；请求体为用户ID列表，为空时处理全部有访问记录的用户
+     * 会为全部用户重新计算推荐，仅限管理员
+     */
+    @PostMapping("/admin/recommendations/precompute")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> precomputeRecommendationFeeds(@RequestBody(required = false) List<Long> userIds) {
+        return recommendationFeedService.precomputeFeeds(userIds);
+    }
+    
+    /**
+     * 推荐缓存统计（管理员接口）
+     */
+    @GetMapping("/admin/cache-stats")
+    public List<SegmentedLruCache.CacheStats> getRecommendationCacheStats() {
+        List<SegmentedLruCache.CacheStats> stats = new ArrayList<>(recommendationService.getCacheStats());
+        stats.add(recommendationFeedService.getFeedStoreStats());
+        return stats;
     }
     
     /**
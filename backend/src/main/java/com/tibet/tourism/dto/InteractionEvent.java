@@ -0,0 +1,62 @@
+package com.tibet.tourism.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 客户端上报的单条交互事件
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class InteractionEvent {
+
+    /**
+     * 景点ID
+     */
+    private Long spotId;
+
+    /**
+     * 事件类型：VIEW(浏览详情), CLICK(点击), DWELL(停留), RATE(评分)
+     */
+    private String type;
+
+    /**
+     * 停留秒数（DWELL 事件）
+     */
+    private Integer dwellSeconds;
+
+    /**
+     * 评分 1-5（RATE 事件）
+     */
+    private Integer rating;
+
+    public Long getSpotId() {
+        return spotId;
+    }
+
+    public void setSpotId(Long spotId) {
+        this.spotId = spotId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Integer getDwellSeconds() {
+        return dwellSeconds;
+    }
+
+    public void setDwellSeconds(Integer dwellSeconds) {
+        this.dwellSeconds = dwellSeconds;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public void setRating(Integer rating) {
+        this.rating = rating;
+    }
+}
@@ -0,0 +1,32 @@
+package com.tibet.tourism.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * 客户端批量上报的交互事件（同一用户）
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class InteractionEventBatch {
+
+    private Long userId;
+
+    private List<InteractionEvent> events;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public List<InteractionEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<InteractionEvent> events) {
+        this.events = events;
+    }
+}
@@ -192,6 +192,7 @@ public class RecommendationDebugResponse {
         private Double collaborativeScore; // 混合协同过滤得分
         private Double userBasedScore; // User-Based CF得分
         private Double itemBasedScore; // Item-Based CF得分
+        private Double matrixFactorizationScore; // 矩阵分解（ALS）得分
         private Double tagScore;
         private Double finalScore;
         private Double normalizedCollaborativeScore; // 归一化后的协同得分
@@ -286,11 +287,46 @@ public class RecommendationDebugResponse {
         public void setItemBasedScore(Double itemBasedScore) {
             this.itemBasedScore = itemBasedScore;
         }
+
+        public Double getMatrixFactorizationScore() {
+            return matrixFactorizationScore;
+        }
+
+        public void setMatrixFactorizationScore(Double matrixFactorizationScore) {
+            this.matrixFactorizationScore = matrixFactorizationScore;
+        }
     }
     
     // 新增：算法配置信息
     private Map<String, Object> algorithmConfig;
     private Long computationTimeMs; // 计算耗时（毫秒）
+    private Map<String, Object> dataVersions; // 本次计算所用的数据快照版本
+    private boolean degraded; // 是否因延迟预算或信号超时跳过了部分阶段
+    private List<String> skippedStages; // 被跳过的阶段
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
+
+    public List<String> getSkippedStages() {
+        return skippedStages;
+    }
+
+    public void setSkippedStages(List<String> skippedStages) {
+        this.skippedStages = skippedStages;
+    }
+
+    public Map<String, Object> getDataVersions() {
+        return dataVersions;
+    }
+
+    public void setDataVersions(Map<String, Object> dataVersions) {
+        this.dataVersions = dataVersions;
+    }
 
     public Map<String, Object> getAlgorithmConfig() {
         return algorithmConfig;
@@ -2,6 +2,7 @@ package com.tibet.tourism.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.tibet.tourism.event.SpotCatalogListener;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -10,6 +11,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "scenic_spots")
+@EntityListeners(SpotCatalogListener.class)
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "tags"})
 public class ScenicSpot {
     @Id
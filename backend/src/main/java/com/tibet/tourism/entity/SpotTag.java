@@ -1,10 +1,12 @@
 package com.tibet.tourism.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tibet.tourism.event.SpotCatalogListener;
 import jakarta.persistence.*;
 
 @Entity
 @Table(name = "spot_tags")
+@EntityListeners(SpotCatalogListener.class)
 public class SpotTag {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,11 +1,13 @@
 package com.tibet.tourism.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tibet.tourism.event.UserVisitHistoryListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "user_visit_history")
+@EntityListeners(UserVisitHistoryListener.class)
 public class UserVisitHistory {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,38 @@
+package com.tibet.tourism.event;
+
+import com.tibet.tourism.service.InteractionMatrix;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 交互矩阵快照替换事件
+ * 在新的矩阵快照发布后发出，携带该快照本身，监听方可按版本顺序增量处理；
+ * userIds 为空表示全量重建，所有用户都可能变化
+ */
+public class InteractionMatrixChangedEvent {
+
+    private final InteractionMatrix matrix;
+    private final Collection<Long> userIds;
+
+    public InteractionMatrixChangedEvent(InteractionMatrix matrix, Collection<Long> userIds) {
+        this.matrix = matrix;
+        this.userIds = userIds == null ? Collections.emptyList() : Collections.unmodifiableCollection(userIds);
+    }
+
+    public InteractionMatrix getMatrix() {
+        return matrix;
+    }
+
+    public long getVersion() {
+        return matrix.getVersion();
+    }
+
+    public Collection<Long> getUserIds() {
+        return userIds;
+    }
+
+    public boolean isFullRebuild() {
+        return userIds.isEmpty();
+    }
+}
@@ -0,0 +1,27 @@
+package com.tibet.tourism.event;
+
+import com.tibet.tourism.service.ModelBuildJob;
+
+/**
+ * 模型构建请求事件
+ * 推荐服务在请求路径上发现模型缺失时发出，由 ModelBuildJobService 提交到构建队列，
+ * 请求本身不等待构建（同一任务已在排队或运行时合并）
+ */
+public class ModelBuildRequestedEvent {
+
+    private final ModelBuildJob job;
+    private final String trigger;
+
+    public ModelBuildRequestedEvent(ModelBuildJob job, String trigger) {
+        this.job = job;
+        this.trigger = trigger;
+    }
+
+    public ModelBuildJob getJob() {
+        return job;
+    }
+
+    public String getTrigger() {
+        return trigger;
+    }
+}
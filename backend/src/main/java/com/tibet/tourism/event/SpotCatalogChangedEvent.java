@@ -0,0 +1,18 @@
+package com.tibet.tourism.event;
+
+/**
+ * 景点目录变更事件
+ * 景点或景点标签新增、修改、删除后发布，供依赖景点属性的缓存与索引失效
+ */
+public class SpotCatalogChangedEvent {
+
+    private final Long spotId;
+
+    public SpotCatalogChangedEvent(Long spotId) {
+        this.spotId = spotId;
+    }
+
+    public Long getSpotId() {
+        return spotId;
+    }
+}
@@ -0,0 +1,35 @@
+package com.tibet.tourism.event;
+
+import com.tibet.tourism.entity.ScenicSpot;
+import com.tibet.tourism.entity.SpotTag;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * ScenicSpot / SpotTag 实体监听器
+ * 由 Hibernate 通过 Spring 容器实例化，将景点与标签写入转换为 SpotCatalogChangedEvent
+ */
+public class SpotCatalogListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (eventPublisher == null) {
+            return;
+        }
+        Long spotId = null;
+        if (entity instanceof ScenicSpot spot) {
+            spotId = spot.getId();
+        } else if (entity instanceof SpotTag tag && tag.getSpot() != null) {
+            spotId = tag.getSpot().getId();
+        }
+        eventPublisher.publishEvent(new SpotCatalogChangedEvent(spotId));
+    }
+}
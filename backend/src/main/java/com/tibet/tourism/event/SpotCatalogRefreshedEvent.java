@@ -0,0 +1,25 @@
+package com.tibet.tourism.event;
+
+import com.tibet.tourism.service.SpotCatalog;
+
+/**
+ * 景点目录快照替换事件
+ * 新的景点目录快照发布后发出，依赖景点属性的缓存应在此时失效，
+ * 保证重新计算时读到的是新快照
+ */
+public class SpotCatalogRefreshedEvent {
+
+    private final SpotCatalog catalog;
+
+    public SpotCatalogRefreshedEvent(SpotCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    public SpotCatalog getCatalog() {
+        return catalog;
+    }
+
+    public long getVersion() {
+        return catalog.getVersion();
+    }
+}
@@ -0,0 +1,38 @@
+package com.tibet.tourism.event;
+
+import com.tibet.tourism.entity.UserVisitHistory;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * UserVisitHistory 实体监听器
+ * 由 Hibernate 通过 Spring 容器实例化，将实体写入转换为 VisitHistoryChangedEvent
+ */
+public class UserVisitHistoryListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(UserVisitHistory history) {
+        if (eventPublisher == null || history.getUser() == null) {
+            return;
+        }
+        Long spotId = history.getSpot() != null ? history.getSpot().getId() : null;
+        eventPublisher.publishEvent(VisitHistoryChangedEvent.saved(history.getUser().getId(), spotId,
+                history.getRating(), history.getClickCount(), history.getDwellSeconds(), history.getVisitDate()));
+    }
+
+    @PostRemove
+    public void onRemove(UserVisitHistory history) {
+        if (eventPublisher == null || history.getUser() == null) {
+            return;
+        }
+        Long spotId = history.getSpot() != null ? history.getSpot().getId() : null;
+        eventPublisher.publishEvent(VisitHistoryChangedEvent.removed(history.getUser().getId(), spotId));
+    }
+}
@@ -0,0 +1,81 @@
+package com.tibet.tourism.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户访问记录变更事件
+ * 在 user_visit_history 新增、修改或删除后发布，供推荐相关的内存索引增量更新。
+ * 由实体监听器发布时带有该条记录的快照（删除时 removed 为 true），供交互日志追加；
+ * 交互事件批量写库时只知道增量，不带快照
+ */
+public class VisitHistoryChangedEvent {
+
+    private final Long userId;
+    private final Long spotId;
+    private final boolean snapshot;
+    private final boolean removed;
+    private final Integer rating;
+    private final Integer clickCount;
+    private final Integer dwellSeconds;
+    private final LocalDateTime visitDate;
+
+    public VisitHistoryChangedEvent(Long userId, Long spotId) {
+        this(userId, spotId, false, false, null, null, null, null);
+    }
+
+    private VisitHistoryChangedEvent(Long userId, Long spotId, boolean snapshot, boolean removed, Integer rating,
+                                     Integer clickCount, Integer dwellSeconds, LocalDateTime visitDate) {
+        this.userId = userId;
+        this.spotId = spotId;
+        this.snapshot = snapshot;
+        this.removed = removed;
+        this.rating = rating;
+        this.clickCount = clickCount;
+        this.dwellSeconds = dwellSeconds;
+        this.visitDate = visitDate;
+    }
+
+    public static VisitHistoryChangedEvent saved(Long userId, Long spotId, Integer rating, Integer clickCount,
+                                                 Integer dwellSeconds, LocalDateTime visitDate) {
+        return new VisitHistoryChangedEvent(userId, spotId, true, false, rating, clickCount, dwellSeconds, visitDate);
+    }
+
+    public static VisitHistoryChangedEvent removed(Long userId, Long spotId) {
+        return new VisitHistoryChangedEvent(userId, spotId, true, true, null, null, null, null);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getSpotId() {
+        return spotId;
+    }
+
+    /**
+     * 是否带有记录快照
+     */
+    public boolean hasSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public Integer getClickCount() {
+        return clickCount;
+    }
+
+    public Integer getDwellSeconds() {
+        return dwellSeconds;
+    }
+
+    public LocalDateTime getVisitDate() {
+        return visitDate;
+    }
+}
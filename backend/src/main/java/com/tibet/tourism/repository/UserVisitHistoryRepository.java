@@ -2,6 +2,10 @@ package com.tibet.tourism.repository;
 
 import com.tibet.tourism.entity.UserVisitHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface UserVisitHistoryRepository extends JpaRepository<UserVisitHistory, Long> {
@@ -9,4 +13,14 @@ public interface UserVisitHistoryRepository extends JpaRepository<UserVisitHisto
     List<UserVisitHistory> findBySpotId(Long spotId);
     List<UserVisitHistory> findBySpotIdIn(List<Long> spotIds);
     List<UserVisitHistory> findByUserIdIn(List<Long> userIds);
+
+    // 仅投影交互矩阵所需的列，避免装载 User/ScenicSpot 实体
+    // 列顺序：userId, spotId, rating, clickCount, dwellSeconds, visitDate
+    @Query("SELECT h.user.id, h.spot.id, h.rating, h.clickCount, h.dwellSeconds, h.visitDate " +
+           "FROM UserVisitHistory h WHERE h.user IS NOT NULL AND h.spot IS NOT NULL")
+    List<Object[]> findAllInteractionRows();
+
+    @Query("SELECT h.user.id, h.spot.id, h.rating, h.clickCount, h.dwellSeconds, h.visitDate " +
+           "FROM UserVisitHistory h WHERE h.user.id IN :userIds AND h.spot IS NOT NULL")
+    List<Object[]> findInteractionRowsByUserIdIn(@Param("userIds") Collection<Long> userIds);
 }
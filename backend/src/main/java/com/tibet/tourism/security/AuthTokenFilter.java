@@ -1,5 +1,6 @@
 package com.tibet.tourism.security;
 
+import com.tibet.tourism.service.StructuredEventLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -23,25 +24,19 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private StructuredEventLog structuredEventLog;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
             String path = request.getServletPath();
-            
-            if (path.startsWith("/api/admin/")) {
-                System.out.println("=== [AuthTokenFilter] 处理管理员请求: " + path);
-                System.out.println("=== [AuthTokenFilter] JWT token存在: " + (jwt != null));
-                if (jwt != null) {
-                    System.out.println("=== [AuthTokenFilter] JWT token长度: " + jwt.length());
-                    System.out.println("=== [AuthTokenFilter] JWT token前20字符: " + jwt.substring(0, Math.min(20, jwt.length())));
-                }
-            }
+            boolean adminPath = path.startsWith("/api/admin/") || path.startsWith("/api/spots/admin/");
             
             if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
                 String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                System.out.println("=== [AuthTokenFilter] JWT验证成功，用户名: " + username);
                 
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
@@ -49,22 +44,23 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authentication);
                 
-                if (path.startsWith("/api/admin/")) {
-                    System.out.println("=== [AuthTokenFilter] 认证已设置，权限: " + userDetails.getAuthorities());
-                }
-            } else {
-                if (path.startsWith("/api/admin/")) {
-                    if (jwt == null) {
-                        System.out.println("=== [AuthTokenFilter] 错误: JWT token为空");
-                    } else {
-                        System.out.println("=== [AuthTokenFilter] 错误: JWT token验证失败");
-                    }
+                // 认证成功的管理员请求按采样记录
+                if (adminPath && structuredEventLog.shouldLog(JwtUtils.AUTH_EVENT, false)) {
+                    structuredEventLog.emit(structuredEventLog.event(JwtUtils.AUTH_EVENT)
+                            .with("result", "accepted")
+                            .with("path", path)
+                            .with("user", username)
+                            .with("authorities", userDetails.getAuthorities()));
                 }
+            } else if (jwt == null && adminPath && structuredEventLog.shouldLog(JwtUtils.AUTH_EVENT, true)) {
+                // 无效 token 已由 JwtUtils 记录，这里只补充缺少 token 的管理员请求
+                structuredEventLog.emit(structuredEventLog.event(JwtUtils.AUTH_EVENT)
+                        .with("result", "rejected")
+                        .with("reason", "missing_token")
+                        .with("path", path));
             }
         } catch (Exception e) {
-            logger.error("Cannot set user authentication: {}", e);
-            System.err.println("=== [AuthTokenFilter] 异常: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Cannot set user authentication", e);
         }
 
         filterChain.doFilter(request, response);
@@ -78,9 +74,11 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         // 注意：对于需要同时支持匿名和认证访问的接口（如查看评论），不应在此处跳过
         // 这里只跳过完全不需要用户上下文的公开接口，或者会导致401问题的特殊接口
         // /api/auth/me 和 /api/auth/me/** 需要认证，所以不跳过
+        // /api/spots/interactions 按登录用户记录交互事件、/api/spots/admin/** 需要管理员角色，也不跳过
         boolean skip = (servletPath.startsWith("/api/auth/") && 
                        !servletPath.startsWith("/api/auth/me")) ||
-               servletPath.startsWith("/api/spots/") ||
+               (servletPath.startsWith("/api/spots/") && !servletPath.startsWith("/api/spots/interactions")
+                       && !servletPath.startsWith("/api/spots/admin/")) ||
                servletPath.startsWith("/api/news/") ||
                servletPath.startsWith("/api/heritage/") ||
                servletPath.equals("/api/routes/generate") || // 只跳过AI生成接口
@@ -93,18 +91,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
-        
-        // 调试日志：检查Authorization头
-        if (request.getServletPath().startsWith("/api/admin/")) {
-            System.out.println("=== [AuthTokenFilter] Authorization头: " + (headerAuth != null ? headerAuth.substring(0, Math.min(50, headerAuth.length())) + "..." : "null"));
-        }
 
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
-            String token = headerAuth.substring(7);
-            if (request.getServletPath().startsWith("/api/admin/")) {
-                System.out.println("=== [AuthTokenFilter] 解析出的token长度: " + token.length());
-            }
-            return token;
+            return headerAuth.substring(7);
         }
 
         return null;
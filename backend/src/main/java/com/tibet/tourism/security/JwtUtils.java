@@ -1,6 +1,10 @@
 package com.tibet.tourism.security;
 
+import com.tibet.tourism.service.StructuredEventLog;
 import io.jsonwebtoken.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,6 +15,13 @@ import java.util.Date;
 @Component
 public class JwtUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+
+    static final String AUTH_EVENT = "auth"; // 结构化事件类型，logger 为 events.auth
+
+    @Autowired
+    private StructuredEventLog structuredEventLog;
+
     @Value("${jwt.secret:tibetTourismSecretKey12345678901234567890}")
     private String jwtSecret;
 
@@ -33,24 +44,30 @@ public class JwtUtils {
     }
 
     public boolean validateJwtToken(String authToken) {
+        String reason;
         try {
             Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            System.out.println("=== [JwtUtils] Token验证成功");
+            logger.debug("Token验证成功");
             return true;
         } catch (SignatureException e) {
-            System.err.println("=== [JwtUtils] Invalid JWT signature: " + e.getMessage());
-            System.err.println("=== [JwtUtils] 使用的密钥长度: " + (jwtSecret != null ? jwtSecret.length() : 0));
+            reason = "invalid_signature";
         } catch (MalformedJwtException e) {
-            System.err.println("=== [JwtUtils] Invalid JWT token: " + e.getMessage());
+            reason = "malformed";
         } catch (ExpiredJwtException e) {
-            System.err.println("=== [JwtUtils] JWT token is expired: " + e.getMessage());
+            reason = "expired";
         } catch (UnsupportedJwtException e) {
-            System.err.println("=== [JwtUtils] JWT token is unsupported: " + e.getMessage());
+            reason = "unsupported";
         } catch (IllegalArgumentException e) {
-            System.err.println("=== [JwtUtils] JWT claims string is empty: " + e.getMessage());
+            reason = "empty_claims";
         } catch (Exception e) {
-            System.err.println("=== [JwtUtils] JWT验证异常: " + e.getClass().getName() + " - " + e.getMessage());
-            e.printStackTrace();
+            logger.warn("JWT验证异常", e);
+            reason = "error";
+        }
+        // 验证失败不经采样，但仍异步写出且受 events.auth 日志级别控制
+        if (structuredEventLog.shouldLog(AUTH_EVENT, true)) {
+            structuredEventLog.emit(structuredEventLog.event(AUTH_EVENT)
+                    .with("result", "rejected")
+                    .with("reason", reason));
         }
         return false;
     }
@@ -60,6 +60,8 @@ public class WebSecurityConfig {
                     .requestMatchers("/api/auth/register").permitAll()
                     .requestMatchers("/api/auth/me").authenticated()
                     .requestMatchers("/api/auth/me/**").authenticated()
+                    .requestMatchers("/api/spots/admin/**").hasRole("ADMIN") // 模型构建、预计算等管理接口
+                    .requestMatchers("/api/spots/interactions/**").authenticated() // 交互事件记到登录用户名下
                     .requestMatchers("/api/spots/**").permitAll()
                     .requestMatchers("/api/news/**").permitAll()
                     .requestMatchers("/api/heritage/**").permitAll()
@@ -82,6 +84,8 @@ public class WebSecurityConfig {
                     .requestMatchers("/api/test/**").permitAll()
                     .requestMatchers("/h2-console/**").permitAll()
                     .requestMatchers("/api/admin/**").authenticated()
+                    .requestMatchers("/actuator/health").permitAll()
+                    .requestMatchers("/actuator/**").authenticated() // 推荐指标等监控端点
                     .anyRequest().authenticated()
             );
         
@@ -0,0 +1,124 @@
+package com.tibet.tourism.service;
+
+import java.util.Arrays;
+
+/**
+ * 隐式反馈矩阵分解模型（不可变快照）
+ * 用户与景点的隐向量按行扁平存放在 float[] 中（第 i 行位于 [i * factors, (i + 1) * factors)），
+ * 用户和景点ID均按升序排列，与交互矩阵、景点目录的顺序一致，打分时可以顺序归并而不必逐个查找。
+ * 另保存景点向量的 Gram 矩阵 YᵀY，用于为训练后才出现或记录有变化的用户即时求解向量（fold-in）
+ */
+public final class AlsModel {
+
+    private static final AlsModel EMPTY = new AlsModel(0L, -1L, 0, 0d, 0d,
+            new long[0], new float[0], new long[0], new float[0], new double[0]);
+
+    private final long version;
+    private final long sourceMatrixVersion;
+    private final long builtAtMillis;
+    private final int factors;
+    private final double regularization;
+    private final double alpha;
+
+    private final long[] userIds;
+    private final float[] userFactors;
+    private final long[] spotIds;
+    private final float[] itemFactors;
+    private final double[] itemGram;     // factors * factors
+
+    AlsModel(long version, long sourceMatrixVersion, int factors, double regularization, double alpha,
+             long[] userIds, float[] userFactors, long[] spotIds, float[] itemFactors, double[] itemGram) {
+        this.version = version;
+        this.sourceMatrixVersion = sourceMatrixVersion;
+        this.builtAtMillis = System.currentTimeMillis();
+        this.factors = factors;
+        this.regularization = regularization;
+        this.alpha = alpha;
+        this.userIds = userIds;
+        this.userFactors = userFactors;
+        this.spotIds = spotIds;
+        this.itemFactors = itemFactors;
+        this.itemGram = itemGram;
+    }
+
+    public static AlsModel empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return spotIds.length == 0;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 训练所用交互矩阵的版本
+     */
+    public long getSourceMatrixVersion() {
+        return sourceMatrixVersion;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    public int getFactors() {
+        return factors;
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    public int spotCount() {
+        return spotIds.length;
+    }
+
+    public long spotIdAt(int spotIndex) {
+        return spotIds[spotIndex];
+    }
+
+    /**
+     * 取用户向量写入 out（长度至少为 factors）
+     * 模型由同一版本的交互矩阵训练且包含该用户时直接复制；否则固定景点向量，按用户当前的访问记录求解。
+     * 用户没有任何模型中的景点时返回 false
+     */
+    boolean userVector(InteractionMatrix matrix, int userIndex, float[] out) {
+        if (matrix.getVersion() == sourceMatrixVersion) {
+            int row = Arrays.binarySearch(userIds, matrix.userIdAt(userIndex));
+            if (row >= 0) {
+                System.arraycopy(userFactors, row * factors, out, 0, factors);
+                return true;
+            }
+        }
+        AlsTrainer.RowSolver solver = new AlsTrainer.RowSolver(factors);
+        solver.begin(itemGram, regularization * (matrix.rowEnd(userIndex) - matrix.rowStart(userIndex)));
+        int matched = 0;
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            int spotIndex = Arrays.binarySearch(spotIds, matrix.entrySpotId(entry));
+            if (spotIndex >= 0) {
+                solver.add(itemFactors, spotIndex * factors, AlsTrainer.confidence(matrix, entry, alpha));
+                matched++;
+            }
+        }
+        if (matched == 0) {
+            return false;
+        }
+        solver.solve(out, 0);
+        return true;
+    }
+
+    /**
+     * 用户向量与景点向量的内积
+     */
+    double score(float[] userVector, int spotIndex) {
+        int offset = spotIndex * factors;
+        double sum = 0.0;
+        for (int f = 0; f < factors; f++) {
+            sum += userVector[f] * itemFactors[offset + f];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,264 @@
+package com.tibet.tourism.service;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 隐式反馈 ALS 训练（Hu, Koren, Volinsky 2008）
+ * 偏好 p = 1（有访问记录），置信度 c = 1 + alpha × (评分 / 5 + 行为权重)，行为权重由点击次数和停留时长得出。
+ * 交替固定一侧向量、逐行求解另一侧的正规方程：
+ *   (YᵀY + Yᵤᵀ(Cᵤ − I)Yᵤ + λ·nᵤ·I) xᵤ = YᵤᵀCᵤ·1
+ * 正则项按行的访问记录数 nᵤ 缩放（加权 λ 正则），同一个 λ 在不同数据规模下都适用。
+ * YᵀY 每半轮只算一次，单行只需累加自己的非零项，再做一次 Cholesky 分解。
+ * 用户行、景点列分别按块用 fork-join 并行求解，各块写入不相交的向量区间
+ */
+final class AlsTrainer {
+
+    private static final int MIN_BLOCK_SIZE = 64;        // 每个并行任务最少求解的行数
+    private static final double INIT_SCALE = 0.01d;
+    private static final double RATING_SCALE = 5d;
+
+    private AlsTrainer() {
+    }
+
+    /**
+     * 交互条目的置信度
+     */
+    static double confidence(InteractionMatrix matrix, int entry, double alpha) {
+        return 1.0 + alpha * (matrix.entryRating(entry) / RATING_SCALE + matrix.entryEngagement(entry));
+    }
+
+    static AlsModel train(InteractionMatrix matrix, int factors, int iterations, double regularization,
+                          double alpha, long seed, ForkJoinPool pool, long version) {
+        return train(matrix, factors, iterations, regularization, alpha, seed, pool, version,
+                BuildProgress.untracked());
+    }
+
+    /**
+     * 按轮推进进度，每轮开始前检查取消标记
+     */
+    static AlsModel train(InteractionMatrix matrix, int factors, int iterations, double regularization,
+                          double alpha, long seed, ForkJoinPool pool, long version, BuildProgress progress) {
+        int userCount = matrix.userCount();
+        int spotCount = matrix.spotCount();
+        int nnz = matrix.nonZeroCount();
+
+        // 用户侧：行指针、条目所在列、置信度（按 CSR 顺序）
+        int[] rowPtr = new int[userCount + 1];
+        int[] rowColumns = new int[nnz];
+        float[] rowConfidence = new float[nnz];
+        for (int u = 0; u < userCount; u++) {
+            rowPtr[u + 1] = matrix.rowEnd(u);
+            for (int entry = matrix.rowStart(u); entry < matrix.rowEnd(u); entry++) {
+                rowColumns[entry] = matrix.spotIndex(matrix.entrySpotId(entry));
+                rowConfidence[entry] = (float) confidence(matrix, entry, alpha);
+            }
+        }
+
+        // 景点侧：列指针、列内用户、置信度（按 CSC 顺序）
+        int[] colPtr = new int[spotCount + 1];
+        int[] colUsers = new int[nnz];
+        float[] colConfidence = new float[nnz];
+        for (int s = 0; s < spotCount; s++) {
+            colPtr[s + 1] = matrix.colEnd(s);
+            for (int pos = matrix.colStart(s); pos < matrix.colEnd(s); pos++) {
+                colUsers[pos] = matrix.colUserIndex(pos);
+                colConfidence[pos] = rowConfidence[matrix.colEntry(pos)];
+            }
+        }
+
+        float[] userFactors = new float[userCount * factors];
+        float[] itemFactors = new float[spotCount * factors];
+        Random random = new Random(seed);
+        for (int i = 0; i < itemFactors.length; i++) {
+            itemFactors[i] = (float) (random.nextGaussian() * INIT_SCALE);
+        }
+
+        int parallelism = Math.max(1, pool.getParallelism());
+        progress.begin(iterations);
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            progress.checkCancelled();
+            double[] itemGram = gram(itemFactors, spotCount, factors);
+            pool.invoke(new SolveTask(rowPtr, rowColumns, rowConfidence, itemFactors, userFactors, itemGram,
+                    regularization, factors, 0, userCount, blockSize(userCount, parallelism)));
+            double[] userGram = gram(userFactors, userCount, factors);
+            pool.invoke(new SolveTask(colPtr, colUsers, colConfidence, userFactors, itemFactors, userGram,
+                    regularization, factors, 0, spotCount, blockSize(spotCount, parallelism)));
+            progress.advance(1);
+        }
+
+        long[] userIds = new long[userCount];
+        for (int u = 0; u < userCount; u++) {
+            userIds[u] = matrix.userIdAt(u);
+        }
+        long[] spotIds = new long[spotCount];
+        for (int s = 0; s < spotCount; s++) {
+            spotIds[s] = matrix.spotIdAt(s);
+        }
+        return new AlsModel(version, matrix.getVersion(), factors, regularization, alpha,
+                userIds, userFactors, spotIds, itemFactors, gram(itemFactors, spotCount, factors));
+    }
+
+    private static int blockSize(int rows, int parallelism) {
+        return Math.max(MIN_BLOCK_SIZE, rows / (parallelism * 4));
+    }
+
+    /**
+     * 计算 VᵀV（factors × factors，行主序）
+     */
+    static double[] gram(float[] vectors, int rows, int factors) {
+        double[] gram = new double[factors * factors];
+        for (int r = 0; r < rows; r++) {
+            int offset = r * factors;
+            for (int i = 0; i < factors; i++) {
+                double vi = vectors[offset + i];
+                for (int j = i; j < factors; j++) {
+                    gram[i * factors + j] += vi * vectors[offset + j];
+                }
+            }
+        }
+        for (int i = 0; i < factors; i++) {
+            for (int j = 0; j < i; j++) {
+                gram[i * factors + j] = gram[j * factors + i];
+            }
+        }
+        return gram;
+    }
+
+    /**
+     * 按行区间递归拆分的求解任务：固定 fixed 一侧，求解 target 一侧 [from, to) 的行
+     */
+    private static final class SolveTask extends RecursiveAction {
+        private final int[] ptr;
+        private final int[] others;
+        private final float[] confidence;
+        private final float[] fixed;
+        private final float[] target;
+        private final double[] gram;
+        private final double regularization;
+        private final int factors;
+        private final int from;
+        private final int to;
+        private final int blockSize;
+
+        SolveTask(int[] ptr, int[] others, float[] confidence, float[] fixed, float[] target, double[] gram,
+                  double regularization, int factors, int from, int to, int blockSize) {
+            this.ptr = ptr;
+            this.others = others;
+            this.confidence = confidence;
+            this.fixed = fixed;
+            this.target = target;
+            this.gram = gram;
+            this.regularization = regularization;
+            this.factors = factors;
+            this.from = from;
+            this.to = to;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > blockSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SolveTask(ptr, others, confidence, fixed, target, gram, regularization, factors,
+                                from, mid, blockSize),
+                        new SolveTask(ptr, others, confidence, fixed, target, gram, regularization, factors,
+                                mid, to, blockSize));
+                return;
+            }
+            // 块内复用求解器的工作数组
+            RowSolver solver = new RowSolver(factors);
+            for (int row = from; row < to; row++) {
+                if (ptr[row] == ptr[row + 1]) {
+                    Arrays.fill(target, row * factors, (row + 1) * factors, 0f);
+                    continue;
+                }
+                solver.begin(gram, regularization * (ptr[row + 1] - ptr[row]));
+                for (int k = ptr[row]; k < ptr[row + 1]; k++) {
+                    solver.add(fixed, others[k] * factors, confidence[k]);
+                }
+                solver.solve(target, row * factors);
+            }
+        }
+    }
+
+    /**
+     * 单行正规方程求解器：A = G + λ'I + Σ (c − 1) y yᵀ（λ' 由调用方按行缩放），b = Σ c y，Cholesky 分解后前代回代
+     * 非线程安全，每个线程持有一个实例
+     */
+    static final class RowSolver {
+        private final int factors;
+        private final double[] a;
+        private final double[] b;
+
+        RowSolver(int factors) {
+            this.factors = factors;
+            this.a = new double[factors * factors];
+            this.b = new double[factors];
+        }
+
+        void begin(double[] gram, double regularization) {
+            System.arraycopy(gram, 0, a, 0, a.length);
+            for (int i = 0; i < factors; i++) {
+                a[i * factors + i] += regularization;
+                b[i] = 0.0;
+            }
+        }
+
+        void add(float[] vectors, int offset, double confidence) {
+            double extra = confidence - 1.0;
+            for (int i = 0; i < factors; i++) {
+                double yi = vectors[offset + i];
+                b[i] += confidence * yi;
+                double scaled = extra * yi;
+                int rowOffset = i * factors;
+                for (int j = 0; j <= i; j++) {
+                    a[rowOffset + j] += scaled * vectors[offset + j];
+                }
+            }
+        }
+
+        /**
+         * 只使用 A 的下三角；A 正定（含 λI），分解总能成功
+         */
+        void solve(float[] out, int outOffset) {
+            int n = factors;
+            for (int j = 0; j < n; j++) {
+                double diagonal = a[j * n + j];
+                for (int k = 0; k < j; k++) {
+                    diagonal -= a[j * n + k] * a[j * n + k];
+                }
+                diagonal = Math.sqrt(Math.max(diagonal, 1e-12));
+                a[j * n + j] = diagonal;
+                for (int i = j + 1; i < n; i++) {
+                    double sum = a[i * n + j];
+                    for (int k = 0; k < j; k++) {
+                        sum -= a[i * n + k] * a[j * n + k];
+                    }
+                    a[i * n + j] = sum / diagonal;
+                }
+            }
+            // L z = b
+            for (int i = 0; i < n; i++) {
+                double sum = b[i];
+                for (int k = 0; k < i; k++) {
+                    sum -= a[i * n + k] * b[k];
+                }
+                b[i] = sum / a[i * n + i];
+            }
+            // Lᵀ x = z
+            for (int i = n - 1; i >= 0; i--) {
+                double sum = b[i];
+                for (int k = i + 1; k < n; k++) {
+                    sum -= a[k * n + i] * b[k];
+                }
+                b[i] = sum / a[i * n + i];
+            }
+            for (int i = 0; i < n; i++) {
+                out[outOffset + i] = (float) b[i];
+            }
+        }
+    }
+}
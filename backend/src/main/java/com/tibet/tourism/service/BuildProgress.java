@@ -0,0 +1,62 @@
+package com.tibet.tourism.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型构建进度与取消标记
+ * 构建方开始时设定总量并随处理推进，在循环中定期调用 checkCancelled；
+ * 取消只设置标记，构建在下一次检查时抛出 CancellationException，已发布的旧模型不受影响
+ */
+public final class BuildProgress {
+
+    private volatile long total;
+    private final AtomicLong completed = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+     * 不需要跟踪进度的调用方使用（从不取消）
+     */
+    public static BuildProgress untracked() {
+        return new BuildProgress();
+    }
+
+    public void begin(long total) {
+        this.total = total;
+        completed.set(0L);
+    }
+
+    public void advance(long amount) {
+        completed.addAndGet(amount);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * 完成比例（0~1），尚未设定总量时为 0
+     */
+    public double fraction() {
+        long currentTotal = total;
+        return currentTotal <= 0 ? 0.0 : Math.min(1.0, (double) completed.get() / currentTotal);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("构建已取消");
+        }
+    }
+}
@@ -2,10 +2,7 @@ package com.tibet.tourism.service;
 
 import com.tibet.tourism.entity.ScenicSpot;
 import com.tibet.tourism.entity.User;
-import com.tibet.tourism.entity.UserVisitHistory;
-import com.tibet.tourism.repository.ScenicSpotRepository;
 import com.tibet.tourism.repository.UserRepository;
-import com.tibet.tourism.repository.UserVisitHistoryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +13,7 @@ import java.util.stream.Collectors;
 
 /**
  * 冷启动优化服务
- * 处理新用户和新物品的冷启动问题
+ * 处理新用户和新物品的冷启动问题；景点与标签读取景点目录快照
  */
 @Service
 public class ColdStartOptimizationService {
@@ -28,23 +25,22 @@ public class ColdStartOptimizationService {
     private static final int NEW_ITEM_THRESHOLD = 5; // 访问记录少于5条视为新物品
     
     @Autowired
-    private ScenicSpotRepository spotRepository;
+    private SpotCatalogService spotCatalogService;
     
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
-    private UserVisitHistoryRepository historyRepository;
+    private ItemBasedRecommendationService itemBasedRecommendationService;
     
     @Autowired
-    private ItemBasedRecommendationService itemBasedRecommendationService;
+    private InteractionMatrixService interactionMatrixService;
     
     /**
      * 判断用户是否为新用户（冷启动状态）
      */
     public boolean isNewUser(Long userId) {
-        List<UserVisitHistory> history = historyRepository.findByUserId(userId);
-        return history == null || history.size() < NEW_USER_THRESHOLD;
+        return interactionMatrixService.getMatrix().rowLength(userId) < NEW_USER_THRESHOLD;
     }
     
     /**
@@ -52,8 +48,7 @@ public class ColdStartOptimizationService {
      */
     public boolean isNewItem(Long spotId) {
         try {
-            List<UserVisitHistory> history = historyRepository.findBySpotId(spotId);
-            return history == null || history.size() < NEW_ITEM_THRESHOLD;
+            return interactionMatrixService.getMatrix().colLength(spotId) < NEW_ITEM_THRESHOLD;
         } catch (Exception e) {
             logger.warn("⚠️  检查新物品状态失败: spotId={}, error={}", spotId, e.getMessage());
             return false;
@@ -65,7 +60,7 @@ public class ColdStartOptimizationService {
      * 策略1：基于用户属性的推荐（城市、IP地址等）
      */
     public List<ScenicSpot> recommendForNewUserByAttributes(Long userId) {
-        logger.info("🆕 新用户冷启动推荐（基于用户属性）: userId={}", userId);
+        logger.debug("🆕 新用户冷启动推荐（基于用户属性）: userId={}", userId);
         
         Optional<User> userOpt = userRepository.findById(userId);
         if (!userOpt.isPresent()) {
@@ -77,21 +72,21 @@ public class ColdStartOptimizationService {
         
         // 策略1：基于用户所在城市推荐
         if (user.getCity() != null && !user.getCity().isEmpty()) {
-            List<ScenicSpot> citySpots = spotRepository.findAll().stream()
+            List<ScenicSpot> citySpots = spotCatalogService.getCatalog().getSpots().stream()
                     .filter(spot -> spot.getLocation() != null && 
                             spot.getLocation().contains(user.getCity()))
                     .sorted(Comparator.comparing(ScenicSpot::getVisitCount).reversed())
                     .limit(5)
                     .collect(Collectors.toList());
             recommendations.addAll(citySpots);
-            logger.info("📍 基于城市 {} 推荐 {} 个景点", user.getCity(), citySpots.size());
+            logger.debug("📍 基于城市 {} 推荐 {} 个景点", user.getCity(), citySpots.size());
         }
         
         // 策略2：基于热门景点（如果城市推荐不足）
         if (recommendations.size() < 5) {
             List<ScenicSpot> popularSpots = getPopularSpots(10 - recommendations.size());
             recommendations.addAll(popularSpots);
-            logger.info("🔥 补充热门景点 {} 个", popularSpots.size());
+            logger.debug("🔥 补充热门景点 {} 个", popularSpots.size());
         }
         
         // 去重
@@ -111,7 +106,7 @@ public class ColdStartOptimizationService {
             String preferredCategory,
             String companionType) {
         
-        logger.info("🆕 新用户冷启动推荐（基于偏好问卷）: userId={}, tags={}, category={}, companion={}", 
+        logger.debug("🆕 新用户冷启动推荐（基于偏好问卷）: userId={}, tags={}, category={}, companion={}", 
                 userId, preferredTags, preferredCategory, companionType);
         
         List<ScenicSpot> candidates = new ArrayList<>();
@@ -125,8 +120,9 @@ public class ColdStartOptimizationService {
         if (preferredCategory != null) {
             try {
                 ScenicSpot.Category category = ScenicSpot.Category.valueOf(preferredCategory.toUpperCase());
-                List<ScenicSpot> categorySpots = spotRepository.findByCategory(category);
-                candidates.addAll(categorySpots);
+                spotCatalogService.getCatalog().getSpots().stream()
+                        .filter(spot -> spot.getCategory() == category)
+                        .forEach(candidates::add);
             } catch (IllegalArgumentException e) {
                 logger.warn("⚠️  无效的类别: {}", preferredCategory);
             }
@@ -160,7 +156,7 @@ public class ColdStartOptimizationService {
             Double longitude, 
             Double maxDistanceKm) {
         
-        logger.info("🆕 新用户冷启动推荐（基于位置）: lat={}, lng={}, maxDistance={}km", 
+        logger.debug("🆕 新用户冷启动推荐（基于位置）: lat={}, lng={}, maxDistance={}km", 
                 latitude, longitude, maxDistanceKm);
         
         if (latitude == null || longitude == null) {
@@ -169,17 +165,15 @@ public class ColdStartOptimizationService {
         
         double maxDistance = maxDistanceKm != null ? maxDistanceKm : 50.0; // 默认50km
         
-        List<ScenicSpot> allSpots = spotRepository.findAll();
+        // 地理索引半径查询，只计算附近景点的距离
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        SpotGeoIndex.Neighbors neighbors = catalog.geoIndex().withinRadius(latitude, longitude, maxDistance);
+        List<SpotWithDistance> nearbySpots = new ArrayList<>(neighbors.size());
+        for (int i = 0; i < neighbors.size(); i++) {
+            nearbySpots.add(new SpotWithDistance(catalog.spotAt(neighbors.ordinalAt(i)), neighbors.distanceKmAt(i)));
+        }
         
-        return allSpots.stream()
-                .filter(spot -> spot.getLatitude() != null && spot.getLongitude() != null)
-                .map(spot -> {
-                    double spotLat = spot.getLatitude().doubleValue();
-                    double spotLng = spot.getLongitude().doubleValue();
-                    double distance = calculateDistance(latitude, longitude, spotLat, spotLng);
-                    return new SpotWithDistance(spot, distance);
-                })
-                .filter(s -> s.distance <= maxDistance)
+        return nearbySpots.stream()
                 .sorted(Comparator.<SpotWithDistance>comparingDouble(s -> s.distance)
                         .thenComparing((SpotWithDistance s) -> s.spot.getVisitCount() != null ? s.spot.getVisitCount() : 0, Comparator.reverseOrder()))
                 .limit(10)
@@ -192,11 +186,11 @@ public class ColdStartOptimizationService {
      * 基于内容相似度推荐新景点
      */
     public List<ScenicSpot> recommendNewItems(Long userId) {
-        logger.info("🆕 新物品冷启动推荐: userId={}", userId);
+        logger.debug("🆕 新物品冷启动推荐: userId={}", userId);
         
         // 找到所有新物品（访问记录少的景点）
-        List<ScenicSpot> allSpots = spotRepository.findAll();
-        List<ScenicSpot> newItems = allSpots.stream()
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        List<ScenicSpot> newItems = catalog.getSpots().stream()
                 .filter(spot -> isNewItem(spot.getId()))
                 .collect(Collectors.toList());
         
@@ -206,23 +200,19 @@ public class ColdStartOptimizationService {
         
         // 基于内容相似度排序
         // 1. 如果用户有少量历史，基于历史偏好推荐相似的新物品
-        List<UserVisitHistory> userHistory = historyRepository.findByUserId(userId);
-        if (!userHistory.isEmpty()) {
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        int userIndex = matrix.userIndex(userId);
+        if (userIndex >= 0 && matrix.rowEnd(userIndex) > matrix.rowStart(userIndex)) {
             // 获取用户偏好的标签
-            Set<String> userTags = userHistory.stream()
-                    .flatMap(h -> {
-                        if (h.getSpot() != null && h.getSpot().getTags() != null) {
-                            return h.getSpot().getTags().stream()
-                                    .map(tag -> tag.getTag());
-                        }
-                        return Collections.<String>emptySet().stream();
-                    })
-                    .collect(Collectors.toSet());
+            Set<String> userTags = new HashSet<>();
+            for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+                userTags.addAll(catalog.tags(matrix.entrySpotId(entry)));
+            }
             
             // 基于标签匹配排序
             return newItems.stream()
                     .map(spot -> {
-                        double score = calculateContentSimilarity(spot, userTags);
+                        double score = calculateContentSimilarity(catalog.tags(spot.getId()), userTags);
                         return new SpotWithScore(spot, score);
                     })
                     .sorted(Comparator.comparing((SpotWithScore s) -> s.score).reversed())
@@ -253,7 +243,7 @@ public class ColdStartOptimizationService {
             String preferredCategory,
             String companionType) {
         
-        logger.info("🔄 混合冷启动推荐: userId={}", userId);
+        logger.debug("🔄 混合冷启动推荐: userId={}", userId);
         
         Map<Long, Double> candidateScores = new HashMap<>();
         
@@ -289,19 +279,19 @@ public class ColdStartOptimizationService {
         }
         
         // 按得分排序
+        SpotCatalog catalog = spotCatalogService.getCatalog();
         return candidateScores.entrySet().stream()
                 .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
                 .limit(10)
-                .map(entry -> spotRepository.findById(entry.getKey()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
+                .map(entry -> catalog.get(entry.getKey()))
+                .filter(Objects::nonNull)
                 .collect(Collectors.<ScenicSpot>toList());
     }
     
     // ========== 辅助方法 ==========
     
     private List<ScenicSpot> getPopularSpots(int limit) {
-        return spotRepository.findAll().stream()
+        return spotCatalogService.getCatalog().getSpots().stream()
                 .sorted(Comparator
                         .<ScenicSpot>comparingInt(s -> s.getVisitCount() != null ? s.getVisitCount() : 0)
                         .reversed()
@@ -312,12 +302,10 @@ public class ColdStartOptimizationService {
     }
     
     private List<ScenicSpot> findSpotsByTags(List<String> tags, int limit) {
-        return spotRepository.findAll().stream()
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        return catalog.getSpots().stream()
                 .filter(spot -> {
-                    if (spot.getTags() == null) return false;
-                    Set<String> spotTags = spot.getTags().stream()
-                            .map(t -> t.getTag())
-                            .collect(Collectors.toSet());
+                    List<String> spotTags = catalog.tags(spot.getId());
                     return tags.stream().anyMatch(spotTags::contains);
                 })
                 .sorted(Comparator.comparing(ScenicSpot::getVisitCount).reversed())
@@ -338,14 +326,12 @@ public class ColdStartOptimizationService {
                 .collect(Collectors.toList());
     }
     
-    private double calculateContentSimilarity(ScenicSpot spot, Set<String> userTags) {
-        if (spot.getTags() == null || userTags.isEmpty()) {
+    private double calculateContentSimilarity(List<String> tags, Set<String> userTags) {
+        if (tags.isEmpty() || userTags.isEmpty()) {
             return 0.0;
         }
         
-        Set<String> spotTags = spot.getTags().stream()
-                .map(t -> t.getTag())
-                .collect(Collectors.toSet());
+        Set<String> spotTags = new HashSet<>(tags);
         
         // Jaccard相似度
         Set<String> intersection = new HashSet<>(userTags);
@@ -357,17 +343,6 @@ public class ColdStartOptimizationService {
         return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
     }
     
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // 地球半径（公里）
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
-    
     // 内部类：景点与距离
     private static class SpotWithDistance {
         ScenicSpot spot;
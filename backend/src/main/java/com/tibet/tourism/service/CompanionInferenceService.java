@@ -58,7 +58,7 @@ public class CompanionInferenceService {
      * @return 旅伴类型推断结果
      */
     public CompanionInference inferCompanionType(Long userId) {
-        logger.info("🔍 开始推断用户 {} 的旅伴类型", userId);
+        logger.debug("🔍 开始推断用户 {} 的旅伴类型", userId);
         
         // 1. 基于预订票数推断
         CompanionInference bookingInference = inferFromBookings(userId);
@@ -72,10 +72,12 @@ public class CompanionInferenceService {
         // 4. 综合推断
         CompanionInference finalInference = combineInferences(bookingInference, patternInference, preferenceInference);
         
-        logger.info("✅ 推断完成: {} (置信度: {:.2f}%) - {}", 
-                finalInference.getCompanionType(), 
-                finalInference.getConfidence() * 100,
-                finalInference.getReason());
+        if (logger.isDebugEnabled()) {
+            logger.debug("✅ 推断完成: {} (置信度: {}%) - {}",
+                    finalInference.getCompanionType(),
+                    String.format("%.2f", finalInference.getConfidence() * 100),
+                    finalInference.getReason());
+        }
         
         return finalInference;
     }
@@ -0,0 +1,468 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.dto.InteractionEvent;
+import com.tibet.tourism.event.VisitHistoryChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 用户交互事件写入服务（浏览、点击、停留、评分 -> user_visit_history）
+ * 请求线程只做校验并放入有界的无锁队列，队列满时丢弃事件而不阻塞；
+ * 后台写入线程按（用户, 景点）聚合后定期批量写库：先批量 UPDATE 已有记录，再批量 INSERT 不存在的记录，
+ * 提交后逐对追加交互日志（ADD）并发布 VisitHistoryChangedEvent，交互矩阵及其下游的缓存与索引随之增量更新
+ */
+@Service
+public class InteractionIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InteractionIngestionService.class);
+
+    public enum Type {
+        VIEW,   // 浏览详情：只更新访问时间（无记录时新建）
+        CLICK,  // 点击：点击次数 +1
+        DWELL,  // 停留：累加停留秒数
+        RATE    // 评分：以最后一次为准
+    }
+
+    // 一对（用户, 景点）理论上只有一条记录；若已有多条，UPDATE 会同时累加到每一条
+    private static final String UPDATE_SQL = "UPDATE user_visit_history SET "
+            + "click_count = COALESCE(click_count, 0) + ?, "
+            + "dwell_seconds = COALESCE(dwell_seconds, 0) + ?, "
+            + "rating = COALESCE(?, rating), "
+            + "visit_date = ? "
+            + "WHERE user_id = ? AND spot_id = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO user_visit_history "
+            + "(user_id, spot_id, rating, click_count, dwell_seconds, visit_date) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SpotCatalogService spotCatalogService;
+
+    @Autowired
+    private InteractionLogService interactionLogService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.interaction-ingest.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${app.interaction-ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.interaction-ingest.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${app.interaction-ingest.max-events-per-request:200}")
+    private int maxEventsPerRequest;
+
+    @Value("${app.interaction-ingest.max-dwell-seconds:3600}")
+    private int maxDwellSeconds;
+
+    @Value("${app.interaction-ingest.max-pending-pairs:50000}")
+    private int maxPendingPairs;
+
+    private final ConcurrentLinkedQueue<Interaction> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(); // 队列长度（ConcurrentLinkedQueue.size() 需要遍历）
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder updatedRows = new LongAdder();
+    private final LongAdder insertedRows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    // 以下仅由写入线程访问
+    private final Map<PairKey, Aggregate> pending = new HashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private Timer flushTimer;
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    @PostConstruct
+    void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        registerMeters();
+        running = true;
+        writer = new Thread(this::runWriter, "interaction-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void registerMeters() {
+        FunctionCounter.builder("app.interaction.events", accepted, LongAdder::sum)
+                .description("交互事件数").tag("result", "accepted").register(meterRegistry);
+        FunctionCounter.builder("app.interaction.events", rejected, LongAdder::sum)
+                .description("交互事件数").tag("result", "rejected").register(meterRegistry);
+        FunctionCounter.builder("app.interaction.events", dropped, LongAdder::sum)
+                .description("交互事件数").tag("result", "dropped").register(meterRegistry);
+        FunctionCounter.builder("app.interaction.rows", updatedRows, LongAdder::sum)
+                .description("写入的访问记录数").tag("op", "updated").register(meterRegistry);
+        FunctionCounter.builder("app.interaction.rows", insertedRows, LongAdder::sum)
+                .description("写入的访问记录数").tag("op", "inserted").register(meterRegistry);
+        FunctionCounter.builder("app.interaction.flush.failures", failedFlushes, LongAdder::sum)
+                .description("批量写库失败次数（未写入的聚合结果保留到下次重试）").register(meterRegistry);
+        Gauge.builder("app.interaction.queue.size", queued, AtomicInteger::get)
+                .description("待写入的交互事件数").register(meterRegistry);
+        flushTimer = Timer.builder("app.interaction.flush")
+                .description("单次批量写库耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 接收一批事件，只做校验与入队，不访问数据库
+     * 景点不在目录中、类型未知、评分不在 1-5、停留秒数不为正的事件计为 rejected；队列已满的计为 dropped
+     *
+     * @throws IllegalArgumentException 单次事件数超过上限
+     */
+    public SubmitResult submit(long userId, List<InteractionEvent> events) {
+        if (events.size() > maxEventsPerRequest) {
+            throw new IllegalArgumentException("单次最多上报 " + maxEventsPerRequest + " 条事件");
+        }
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        long now = System.currentTimeMillis();
+        int acceptedCount = 0;
+        int rejectedCount = 0;
+        int droppedCount = 0;
+        for (InteractionEvent event : events) {
+            Interaction interaction = toInteraction(userId, event, catalog, now);
+            if (interaction == null) {
+                rejectedCount++;
+                continue;
+            }
+            if (queued.incrementAndGet() > queueCapacity) {
+                queued.decrementAndGet();
+                droppedCount++;
+                continue;
+            }
+            queue.offer(interaction);
+            acceptedCount++;
+        }
+        accepted.add(acceptedCount);
+        rejected.add(rejectedCount);
+        dropped.add(droppedCount);
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return new SubmitResult(acceptedCount, rejectedCount, droppedCount);
+    }
+
+    private Interaction toInteraction(long userId, InteractionEvent event, SpotCatalog catalog, long now) {
+        if (event == null || event.getSpotId() == null || event.getType() == null
+                || catalog.ordinal(event.getSpotId()) < 0) {
+            return null;
+        }
+        Type type;
+        try {
+            type = Type.valueOf(event.getType().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int value = 0;
+        if (type == Type.DWELL) {
+            if (event.getDwellSeconds() == null || event.getDwellSeconds() <= 0) {
+                return null;
+            }
+            value = Math.min(event.getDwellSeconds(), maxDwellSeconds);
+        } else if (type == Type.RATE) {
+            if (event.getRating() == null || event.getRating() < 1 || event.getRating() > 5) {
+                return null;
+            }
+            value = event.getRating();
+        }
+        return new Interaction(userId, event.getSpotId(), type, value, now);
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    private void runWriter() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (running) {
+            drainQueue();
+            long now = System.nanoTime();
+            if (pending.size() >= batchSize || (now - nextFlush >= 0 && !pending.isEmpty())) {
+                flush();
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+            } else if (now - nextFlush >= 0) {
+                nextFlush = now + flushIntervalNanos;
+            } else {
+                LockSupport.parkNanos(this, nextFlush - now);
+            }
+        }
+        // 关闭时写出剩余事件
+        drainQueue();
+        flush();
+    }
+
+    /**
+     * 把队列中的事件合并到待写入的聚合结果；待写入的（用户, 景点）对达到上限时丢弃新的对
+     */
+    private void drainQueue() {
+        Interaction interaction;
+        while ((interaction = queue.poll()) != null) {
+            queued.decrementAndGet();
+            PairKey key = new PairKey(interaction.userId, interaction.spotId);
+            Aggregate aggregate = pending.get(key);
+            if (aggregate == null) {
+                if (pending.size() >= maxPendingPairs) {
+                    dropped.increment();
+                    continue;
+                }
+                aggregate = new Aggregate(interaction.userId, interaction.spotId);
+                pending.put(key, aggregate);
+            }
+            aggregate.add(interaction);
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Aggregate> rows = new ArrayList<>(pending.values());
+        long start = System.nanoTime();
+        List<Aggregate> written;
+        try {
+            // 用户已被删除的聚合结果不写入，计为 rejected
+            // 写库与追加 ADD 在日志锁内完成：全量重建读库并重置日志期间提交的增量不会丢失，也不会重复计入
+            written = interactionLogService.callLocked(() -> {
+                List<Aggregate> committed = transactionTemplate.execute(status -> write(rows));
+                for (Aggregate row : committed) {
+                    interactionLogService.appendDelta(row.userId, row.spotId, row.rating, row.clicks,
+                            row.dwellSeconds, row.lastAtMillis / 1000);
+                }
+                return committed;
+            });
+        } catch (Exception e) {
+            failedFlushes.increment();
+            logger.error("❌ 交互事件写库失败，{} 条聚合记录保留到下次重试: {}", rows.size(), e.getMessage());
+            return;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        pending.clear();
+        int skippedEvents = 0;
+        for (Aggregate row : rows) {
+            skippedEvents += row.events;
+        }
+        for (Aggregate row : written) {
+            skippedEvents -= row.events;
+            eventPublisher.publishEvent(new VisitHistoryChangedEvent(row.userId, row.spotId));
+        }
+        rejected.add(skippedEvents);
+        logger.debug("交互事件写库: {} 对（用户, 景点）, 跳过 {} 对", written.size(), rows.size() - written.size());
+    }
+
+    /**
+     * 在同一事务中批量更新、插入，返回实际写入的聚合结果（用户已不存在的被跳过）
+     */
+    private List<Aggregate> write(List<Aggregate> rows) {
+        Set<Long> users = existingUsers(rows);
+        List<Aggregate> valid = new ArrayList<>(rows.size());
+        for (Aggregate row : rows) {
+            if (users.contains(row.userId)) {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return valid;
+        }
+
+        int[][] updateCounts = jdbcTemplate.batchUpdate(UPDATE_SQL, valid, batchSize, (ps, row) -> {
+            ps.setInt(1, row.clicks);
+            ps.setInt(2, row.dwellSeconds);
+            ps.setObject(3, row.rating, Types.INTEGER);
+            ps.setTimestamp(4, new Timestamp(row.lastAtMillis));
+            ps.setLong(5, row.userId);
+            ps.setLong(6, row.spotId);
+        });
+        List<Aggregate> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updateCounts) {
+            for (int count : batch) {
+                // 驱动无法给出行数（SUCCESS_NO_INFO）时按已更新处理
+                if (count == 0) {
+                    missing.add(valid.get(index));
+                }
+                index++;
+            }
+        }
+        updatedRows.add(valid.size() - missing.size());
+
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing, batchSize, (ps, row) -> {
+                ps.setLong(1, row.userId);
+                ps.setLong(2, row.spotId);
+                ps.setObject(3, row.rating, Types.INTEGER);
+                ps.setInt(4, row.clicks);
+                ps.setInt(5, row.dwellSeconds);
+                ps.setTimestamp(6, new Timestamp(row.lastAtMillis));
+            });
+            insertedRows.add(missing.size());
+        }
+        return valid;
+    }
+
+    private Set<Long> existingUsers(List<Aggregate> rows) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (Aggregate row : rows) {
+            userIds.add(row.userId);
+        }
+        Set<Long> existing = new HashSet<>();
+        List<Long> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            existing.addAll(jdbcTemplate.queryForList(
+                    "SELECT id FROM users WHERE id IN (" + placeholders + ")", Long.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread current = writer;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 单次上报的处理结果
+     */
+    public static final class SubmitResult {
+        private final int accepted;
+        private final int rejected;
+        private final int dropped;
+
+        SubmitResult(int accepted, int rejected, int dropped) {
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.dropped = dropped;
+        }
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public int getDropped() {
+            return dropped;
+        }
+    }
+
+    private static final class Interaction {
+        final long userId;
+        final long spotId;
+        final Type type;
+        final int value;
+        final long atMillis;
+
+        Interaction(long userId, long spotId, Type type, int value, long atMillis) {
+            this.userId = userId;
+            this.spotId = spotId;
+            this.type = type;
+            this.value = value;
+            this.atMillis = atMillis;
+        }
+    }
+
+    private static final class PairKey {
+        final long userId;
+        final long spotId;
+
+        PairKey(long userId, long spotId) {
+            this.userId = userId;
+            this.spotId = spotId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PairKey other)) {
+                return false;
+            }
+            return userId == other.userId && spotId == other.spotId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(userId) + Long.hashCode(spotId);
+        }
+    }
+
+    /**
+     * 一对（用户, 景点）待写入的增量
+     */
+    private static final class Aggregate {
+        final long userId;
+        final long spotId;
+        int clicks;
+        int dwellSeconds;
+        Integer rating;
+        long lastAtMillis;
+        int events;
+
+        Aggregate(long userId, long spotId) {
+            this.userId = userId;
+            this.spotId = spotId;
+        }
+
+        void add(Interaction interaction) {
+            switch (interaction.type) {
+                case CLICK -> clicks++;
+                case DWELL -> dwellSeconds += interaction.value;
+                case RATE -> rating = interaction.value;
+                default -> {
+                }
+            }
+            lastAtMillis = Math.max(lastAtMillis, interaction.atMillis);
+            events++;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.tibet.tourism.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 交互日志：只追加、定长记录的二进制文件，通过内存映射的 FileChannel 读写
+ * 文件头 64 字节（魔数、格式版本、记录长度、已提交记录数、创建时间、不完整标记），之后每条记录 40 字节：
+ * <pre>
+ *   0  long  userId
+ *   8  long  spotId
+ *  16  long  访问时间（epoch 秒，无访问时间为 InteractionMatrix.NO_VISIT_TIME）
+ *  24  float 评分（NaN 表示无评分 / 不修改）
+ *  28  int   点击次数
+ *  32  int   停留秒数
+ *  36  byte  操作：PUT 覆盖该（用户, 景点）的值，ADD 累加点击与停留、更新评分与访问时间，DELETE 删除
+ * </pre>
+ * 每次追加先写记录再推进文件头中的记录数，读取方只读取已提交的记录，进程中断时最多丢失未提交的一条。
+ * 日志停用（追加失败等）时在文件头标记为不完整，之后的变更不再写入，这样的文件不能再用于重建。
+ * 扫描不创建实体对象，按记录回调基本类型字段；{@link Folder} 按追加顺序合并出每对（用户, 景点）的最终值，
+ * 用于重建交互矩阵与压缩日志。日志不是事实来源，数据库仍是准绳，可随时由数据库重新初始化
+ */
+public final class InteractionLog implements Closeable {
+
+    public static final int MAGIC = 0x54544C47;       // "TTLG"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int RECORD_BYTES = 40;
+
+    public static final byte OP_PUT = 1;
+    public static final byte OP_ADD = 2;
+    public static final byte OP_DELETE = 3;
+
+    private static final int COUNT_OFFSET = 16;
+    private static final int INCOMPLETE_OFFSET = 32; // 0 表示完整（旧文件此处为 0）
+    private static final long WINDOW_BYTES = RECORD_BYTES * (1L << 20);   // 追加映射窗口：约 100 万条记录
+    private static final long SCAN_CHUNK_BYTES = RECORD_BYTES * (1L << 24); // 扫描映射块：约 1600 万条记录
+
+    /**
+     * 记录回调（基本类型参数，扫描过程中不分配对象）
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void accept(byte op, long userId, long spotId, float rating, int clickCount,
+                    int dwellSeconds, long visitEpochSeconds);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private volatile long recordCount;
+
+    private InteractionLog(Path path, FileChannel channel, MappedByteBuffer header, long recordCount) {
+        this.path = path;
+        this.channel = channel;
+        this.header = header;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * 打开日志，文件不存在时创建；文件头不合法时抛出 IOException
+     */
+    public static InteractionLog open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, FORMAT_VERSION);
+                header.putInt(8, RECORD_BYTES);
+                header.putLong(COUNT_OFFSET, 0L);
+                header.putLong(24, System.currentTimeMillis());
+            } else {
+                validateHeader(header, path);
+            }
+            return new InteractionLog(path, channel, header, header.getLong(COUNT_OFFSET));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void validateHeader(MappedByteBuffer header, Path path) throws IOException {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(8) != RECORD_BYTES) {
+            throw new IOException("不是有效的交互日志文件: " + path);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 已提交的记录数
+     */
+    public long recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 日志是否完整：标记为不完整后，文件中缺少停用之后的变更
+     */
+    public boolean isComplete() {
+        return header.getInt(INCOMPLETE_OFFSET) == 0;
+    }
+
+    /**
+     * 标记日志不完整并刷盘，停用日志前调用
+     */
+    public synchronized void markIncomplete() {
+        header.putInt(INCOMPLETE_OFFSET, 1);
+        header.force();
+    }
+
+    public synchronized void append(byte op, long userId, long spotId, float rating, int clickCount,
+                                    int dwellSeconds, long visitEpochSeconds) throws IOException {
+        long offset = HEADER_BYTES + recordCount * RECORD_BYTES;
+        if (window == null || offset + RECORD_BYTES > windowStart + window.capacity()) {
+            // 映射超出文件末尾时文件自动扩展，按窗口大小增长
+            windowStart = offset;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW_BYTES);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int position = (int) (offset - windowStart);
+        window.putLong(position, userId);
+        window.putLong(position + 8, spotId);
+        window.putLong(position + 16, visitEpochSeconds);
+        window.putFloat(position + 24, rating);
+        window.putInt(position + 28, clickCount);
+        window.putInt(position + 32, dwellSeconds);
+        window.put(position + 36, op);
+        recordCount++;
+        header.putLong(COUNT_OFFSET, recordCount);
+    }
+
+    /**
+     * 将映射的修改刷到磁盘（追加本身只写入页缓存）
+     */
+    public synchronized void force() {
+        if (window != null) {
+            window.force();
+        }
+        header.force();
+    }
+
+    /**
+     * 按追加顺序扫描已提交的记录，返回扫描的记录数
+     */
+    public long scan(RecordVisitor visitor) throws IOException {
+        return scan(channel, recordCount, visitor);
+    }
+
+    /**
+     * 只读扫描日志文件（离线工具使用）
+     */
+    public static long scan(Path path, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            validateHeader(header, path);
+            long count = Math.min(header.getLong(COUNT_OFFSET), (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+            return scan(channel, count, visitor);
+        }
+    }
+
+    private static long scan(FileChannel channel, long count, RecordVisitor visitor) throws IOException {
+        long end = HEADER_BYTES + count * RECORD_BYTES;
+        for (long start = HEADER_BYTES; start < end; start += SCAN_CHUNK_BYTES) {
+            long length = Math.min(SCAN_CHUNK_BYTES, end - start);
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            for (int position = 0; position < length; position += RECORD_BYTES) {
+                visitor.accept(chunk.get(position + 36),
+                        chunk.getLong(position),
+                        chunk.getLong(position + 8),
+                        chunk.getFloat(position + 24),
+                        chunk.getInt(position + 28),
+                        chunk.getInt(position + 32),
+                        chunk.getLong(position + 16));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 将合并结果写为只含 PUT 记录的新日志，再原子替换目标文件
+     */
+    public static void writeCompacted(Folder folder, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".compacting");
+        Files.deleteIfExists(temp);
+        try (InteractionLog compacted = open(temp)) {
+            IOException[] failure = new IOException[1];
+            folder.forEach((op, userId, spotId, rating, clickCount, dwellSeconds, visitEpochSeconds) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    compacted.append(OP_PUT, userId, spotId, rating, clickCount, dwellSeconds, visitEpochSeconds);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            compacted.force();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        header.force();
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * 按追加顺序合并记录：每对（用户, 景点）保留最终值，DELETE 之后的对不再输出。
+     * 用开放寻址表按对定位槽位，各字段存放在基本类型数组中
+     */
+    public static final class Folder implements RecordVisitor {
+        private long[] users = new long[1024];
+        private long[] spots = new long[1024];
+        private float[] ratings = new float[1024];
+        private int[] clicks = new int[1024];
+        private int[] dwells = new int[1024];
+        private long[] visits = new long[1024];
+        private boolean[] live = new boolean[1024];
+        private int size;
+        private int liveCount;
+        private int[] table = new int[2048]; // 槽位 + 1，0 表示空
+
+        @Override
+        public void accept(byte op, long userId, long spotId, float rating, int clickCount,
+                           int dwellSeconds, long visitEpochSeconds) {
+            int slot = slot(userId, spotId);
+            switch (op) {
+                case OP_PUT -> {
+                    setLive(slot, true);
+                    ratings[slot] = rating;
+                    clicks[slot] = clickCount;
+                    dwells[slot] = dwellSeconds;
+                    visits[slot] = visitEpochSeconds;
+                }
+                case OP_ADD -> {
+                    if (!live[slot]) {
+                        setLive(slot, true);
+                        ratings[slot] = Float.NaN;
+                        clicks[slot] = 0;
+                        dwells[slot] = 0;
+                        visits[slot] = InteractionMatrix.NO_VISIT_TIME;
+                    }
+                    if (!Float.isNaN(rating)) {
+                        ratings[slot] = rating;
+                    }
+                    clicks[slot] += clickCount;
+                    dwells[slot] += dwellSeconds;
+                    visits[slot] = Math.max(visits[slot], visitEpochSeconds);
+                }
+                case OP_DELETE -> setLive(slot, false);
+                default -> {
+                    // 未知操作（更高版本写入）忽略
+                }
+            }
+        }
+
+        /**
+         * 合并后仍存在的（用户, 景点）对数
+         */
+        public int liveCount() {
+            return liveCount;
+        }
+
+        /**
+         * 按首次出现的顺序输出仍存在的对（op 为 PUT）
+         */
+        public void forEach(RecordVisitor visitor) {
+            for (int slot = 0; slot < size; slot++) {
+                if (live[slot]) {
+                    visitor.accept(OP_PUT, users[slot], spots[slot], ratings[slot], clicks[slot],
+                            dwells[slot], visits[slot]);
+                }
+            }
+        }
+
+        /**
+         * 将合并结果加入交互矩阵构建器，无评分的按默认评分
+         */
+        public void appendTo(InteractionMatrix.Builder builder) {
+            for (int slot = 0; slot < size; slot++) {
+                if (live[slot]) {
+                    builder.add(users[slot], spots[slot],
+                            Float.isNaN(ratings[slot]) ? InteractionMatrix.DEFAULT_RATING : ratings[slot],
+                            clicks[slot], dwells[slot], visits[slot]);
+                }
+            }
+        }
+
+        private void setLive(int slot, boolean value) {
+            if (live[slot] != value) {
+                liveCount += value ? 1 : -1;
+                live[slot] = value;
+            }
+        }
+
+        private int slot(long userId, long spotId) {
+            int mask = table.length - 1;
+            int i = hash(userId, spotId) & mask;
+            while (true) {
+                int entry = table[i];
+                if (entry == 0) {
+                    break;
+                }
+                if (users[entry - 1] == userId && spots[entry - 1] == spotId) {
+                    return entry - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            if (size == users.length) {
+                grow();
+            }
+            int slot = size++;
+            users[slot] = userId;
+            spots[slot] = spotId;
+            visits[slot] = InteractionMatrix.NO_VISIT_TIME;
+            ratings[slot] = Float.NaN;
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            } else {
+                table[i] = slot + 1;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int capacity = users.length * 2;
+            users = Arrays.copyOf(users, capacity);
+            spots = Arrays.copyOf(spots, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            clicks = Arrays.copyOf(clicks, capacity);
+            dwells = Arrays.copyOf(dwells, capacity);
+            visits = Arrays.copyOf(visits, capacity);
+            live = Arrays.copyOf(live, capacity);
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            int mask = capacity - 1;
+            for (int slot = 0; slot < size; slot++) {
+                int i = hash(users[slot], spots[slot]) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = slot + 1;
+            }
+        }
+
+        private static int hash(long userId, long spotId) {
+            long h = userId * 0x9E3779B97F4A7C15L + spotId;
+            h ^= h >>> 32;
+            h *= 0xBF58476D1CE4E5B9L;
+            return (int) (h ^ (h >>> 29));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.VisitHistoryChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 交互日志服务：在写数据库的同时把访问记录变更追加到内存映射的交互日志（InteractionLog）
+ * - 实体保存/删除（提交后）追加 PUT / DELETE，交互事件批量写库后追加 ADD
+ * - 启动时交互矩阵从数据库构建后，用矩阵快照重新初始化日志，保证日志与数据库一致（读库到重置完成都持有日志锁）
+ * - rebuild-from-log 开启时，全量重建交互矩阵改为扫描上一次运行留下的日志，不再查询数据库
+ * - 按 cron 定期压缩：每对（用户, 景点）只保留一条 PUT 记录
+ * 日志写入失败只记录错误并停用日志，不影响数据库写入；停用时文件被标记为不完整，下次启动改为从数据库重建
+ */
+@Service
+public class InteractionLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InteractionLogService.class);
+
+    @Value("${recommendation.interaction-log.enabled:false}")
+    private boolean enabled;
+
+    @Value("${recommendation.interaction-log.path:data/interaction.log}")
+    private String path;
+
+    @Value("${recommendation.interaction-log.rebuild-from-log:false}")
+    private boolean rebuildFromLog;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile InteractionLog log;
+
+    @PostConstruct
+    void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log = InteractionLog.open(Paths.get(path));
+            logger.info("📼 交互日志已打开: {}（{} 条记录）", log.getPath().toAbsolutePath(), log.recordCount());
+        } catch (IOException e) {
+            logger.error("❌ 打开交互日志失败，日志停用: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从日志重建交互矩阵：未开启 rebuild-from-log 或日志为空时返回 false，由调用方改为查询数据库
+     */
+    public boolean replayInto(InteractionMatrix.Builder builder) {
+        InteractionLog current = log;
+        if (current == null || !rebuildFromLog || current.recordCount() == 0) {
+            return false;
+        }
+        if (!current.isComplete()) {
+            logger.warn("⚠️ 交互日志在之前的运行中停用过，内容不完整，改为从数据库重建");
+            return false;
+        }
+        long startTime = System.currentTimeMillis();
+        InteractionLog.Folder folder = new InteractionLog.Folder();
+        try {
+            long records = current.scan(folder);
+            folder.appendTo(builder);
+            logger.info("📼 从交互日志重建: {} 条记录合并为 {} 条交互, 耗时 {}ms",
+                    records, folder.liveCount(), System.currentTimeMillis() - startTime);
+            return true;
+        } catch (IOException e) {
+            logger.error("❌ 读取交互日志失败，改为从数据库重建: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 持有日志锁执行 action，期间的追加等待；用于把"读数据库 + 重置日志"或"写数据库 + 追加增量"作为一个整体，
+     * 避免重置时丢掉读库之后的追加，或把读库之前已提交的增量再追加一次
+     */
+    public <T> T callLocked(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 用矩阵快照重新初始化日志（矩阵从数据库全量构建之后调用，调用方应在读库前通过 callLocked 持有日志锁）
+     */
+    public void resetFrom(InteractionMatrix matrix) {
+        if (log == null) {
+            return;
+        }
+        InteractionLog.Folder folder = new InteractionLog.Folder();
+        for (int u = 0; u < matrix.userCount(); u++) {
+            long userId = matrix.userIdAt(u);
+            for (int e = matrix.rowStart(u); e < matrix.rowEnd(u); e++) {
+                folder.accept(InteractionLog.OP_PUT, userId, matrix.entrySpotId(e), matrix.entryRating(e),
+                        matrix.entryClicks(e), matrix.entryDwellSeconds(e), matrix.entryVisitEpochSeconds(e));
+            }
+        }
+        replaceWith(folder, "初始化");
+    }
+
+    /**
+     * 定期压缩日志
+     */
+    @Scheduled(cron = "${recommendation.interaction-log.compact-cron:0 30 4 * * ?}")
+    public void compact() {
+        InteractionLog current = log;
+        if (current == null) {
+            return;
+        }
+        // 扫描与替换在同一把锁内完成，期间的追加等待，不会丢失
+        lock.lock();
+        try {
+            InteractionLog.Folder folder = new InteractionLog.Folder();
+            current.scan(folder);
+            replaceWith(folder, "压缩");
+        } catch (IOException e) {
+            logger.error("❌ 压缩交互日志失败: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写出合并结果并替换当前日志，替换期间的追加等待锁
+     */
+    private void replaceWith(InteractionLog.Folder folder, String action) {
+        long startTime = System.currentTimeMillis();
+        Path target = null;
+        lock.lock();
+        try {
+            InteractionLog current = log;
+            if (current == null) {
+                return;
+            }
+            long before = current.recordCount();
+            target = current.getPath();
+            current.close();
+            log = null;
+            InteractionLog.writeCompacted(folder, target);
+            log = InteractionLog.open(target);
+            logger.info("📼 交互日志{}完成: {} -> {} 条记录, 耗时 {}ms",
+                    action, before, log.recordCount(), System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            logger.error("❌ 交互日志{}失败，日志停用: {}", action, e.getMessage());
+            log = null;
+            markIncomplete(target);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 实体保存或删除提交后追加 PUT / DELETE（交互事件写库发布的事件不带快照，由 appendDelta 追加）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitHistoryChanged(VisitHistoryChangedEvent event) {
+        if (log == null || !event.hasSnapshot() || event.getUserId() == null || event.getSpotId() == null) {
+            return;
+        }
+        if (event.isRemoved()) {
+            append(InteractionLog.OP_DELETE, event.getUserId(), event.getSpotId(), Float.NaN, 0, 0,
+                    InteractionMatrix.NO_VISIT_TIME);
+        } else {
+            append(InteractionLog.OP_PUT, event.getUserId(), event.getSpotId(),
+                    event.getRating() != null ? event.getRating() : Float.NaN,
+                    event.getClickCount() != null ? event.getClickCount() : 0,
+                    event.getDwellSeconds() != null ? event.getDwellSeconds() : 0,
+                    InteractionMatrix.toEpochSeconds(event.getVisitDate()));
+        }
+    }
+
+    /**
+     * 追加增量：点击与停留累加，评分为 null 时不修改
+     */
+    public void appendDelta(long userId, long spotId, Integer rating, int clickCount, int dwellSeconds,
+                            long visitEpochSeconds) {
+        if (log == null) {
+            return;
+        }
+        append(InteractionLog.OP_ADD, userId, spotId, rating != null ? rating : Float.NaN,
+                clickCount, dwellSeconds, visitEpochSeconds);
+    }
+
+    private void append(byte op, long userId, long spotId, float rating, int clickCount, int dwellSeconds,
+                        long visitEpochSeconds) {
+        lock.lock();
+        try {
+            InteractionLog current = log;
+            if (current == null) {
+                return;
+            }
+            current.append(op, userId, spotId, rating, clickCount, dwellSeconds, visitEpochSeconds);
+        } catch (IOException e) {
+            logger.error("❌ 追加交互日志失败，日志停用（数据库不受影响）: {}", e.getMessage());
+            disable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停用日志：文件先标记为不完整，之后的变更不再写入，下次启动不会用它重建
+     */
+    private void disable() {
+        InteractionLog current = log;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.markIncomplete();
+        } catch (RuntimeException e) {
+            logger.error("❌ 标记交互日志不完整失败: {}", e.getMessage());
+        }
+        closeQuietly();
+    }
+
+    /**
+     * 替换失败后目标文件（旧日志或新写出的日志）不再更新：标记为不完整，标记失败时删除
+     */
+    private void markIncomplete(Path target) {
+        if (target == null || !Files.exists(target)) {
+            return;
+        }
+        try (InteractionLog stale = InteractionLog.open(target)) {
+            stale.markIncomplete();
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException deleteFailed) {
+                logger.error("❌ 无法标记或删除停用的交互日志 {}: {}", target, deleteFailed.getMessage());
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        InteractionLog current = log;
+        log = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // 已停用
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            closeQuietly();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
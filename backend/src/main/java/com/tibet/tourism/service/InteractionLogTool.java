@@ -0,0 +1,102 @@
+package com.tibet.tourism.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+/**
+ * 交互日志离线工具（不启动 Spring，直接读写日志文件）
+ * <pre>
+ *   java -cp target/classes com.tibet.tourism.service.InteractionLogTool stats   data/interaction.log
+ *   java -cp target/classes com.tibet.tourism.service.InteractionLogTool compact data/interaction.log [输出文件]
+ *   java -cp target/classes com.tibet.tourism.service.InteractionLogTool replay  data/interaction.log [输出CSV]
+ * </pre>
+ * - stats：扫描全部记录，输出各操作的记录数、合并后的交互数与扫描吞吐
+ * - compact：合并为每对（用户, 景点）一条 PUT 记录；不指定输出文件时原地替换（应用运行中请勿原地压缩）
+ * - replay：按追加顺序回放，输出合并后的访问记录 CSV（user_id,spot_id,rating,click_count,dwell_seconds,visit_date），
+ *   可用于导入数据库或与数据库比对
+ */
+public final class InteractionLogTool {
+
+    private InteractionLogTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+        Path log = Paths.get(args[1]);
+        switch (args[0]) {
+            case "stats" -> stats(log);
+            case "compact" -> compact(log, args.length > 2 ? Paths.get(args[2]) : log);
+            case "replay" -> replay(log, args.length > 2 ? Paths.get(args[2]) : null);
+            default -> usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("用法: InteractionLogTool <stats|compact|replay> <日志文件> [输出文件]");
+        System.exit(2);
+    }
+
+    private static void stats(Path log) throws IOException {
+        long[] opCounts = new long[4];
+        InteractionLog.Folder folder = new InteractionLog.Folder();
+        long start = System.nanoTime();
+        long records = InteractionLog.scan(log, (op, userId, spotId, rating, clickCount, dwellSeconds, visit) -> {
+            opCounts[op >= 1 && op <= 3 ? op : 0]++;
+            folder.accept(op, userId, spotId, rating, clickCount, dwellSeconds, visit);
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("文件: %s (%,d 字节)%n", log, Files.size(log));
+        System.out.printf("记录: %,d（PUT %,d / ADD %,d / DELETE %,d / 未知 %,d）%n",
+                records, opCounts[InteractionLog.OP_PUT], opCounts[InteractionLog.OP_ADD],
+                opCounts[InteractionLog.OP_DELETE], opCounts[0]);
+        System.out.printf("合并后交互: %,d%n", folder.liveCount());
+        System.out.printf("扫描并合并耗时: %.3fs（%,.0f 条/秒）%n", seconds, records / Math.max(seconds, 1e-9));
+    }
+
+    private static void compact(Path log, Path output) throws IOException {
+        InteractionLog.Folder folder = new InteractionLog.Folder();
+        long records = InteractionLog.scan(log, folder);
+        InteractionLog.writeCompacted(folder, output);
+        System.out.printf("压缩完成: %,d -> %,d 条记录, 输出 %s%n", records, folder.liveCount(), output);
+    }
+
+    private static void replay(Path log, Path output) throws IOException {
+        InteractionLog.Folder folder = new InteractionLog.Folder();
+        InteractionLog.scan(log, folder);
+        Writer writer = output != null
+                ? Files.newBufferedWriter(output, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            writer.write("user_id,spot_id,rating,click_count,dwell_seconds,visit_date\n");
+            folder.forEach((op, userId, spotId, rating, clickCount, dwellSeconds, visit) -> {
+                LocalDateTime visitDate = InteractionMatrix.toLocalDateTime(visit);
+                try {
+                    writer.write(userId + "," + spotId + ","
+                            + (Float.isNaN(rating) ? "" : Math.round(rating)) + ","
+                            + clickCount + "," + dwellSeconds + ","
+                            + (visitDate != null ? visitDate : "") + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.flush();
+            if (output != null) {
+                writer.close();
+            }
+        }
+    }
+}
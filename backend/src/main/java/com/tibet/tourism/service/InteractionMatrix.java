@@ -0,0 +1,454 @@
+package com.tibet.tourism.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * 用户-景点交互稀疏矩阵（不可变快照）
+ * CSR 按用户存储行，CSC 按景点存储列；键为 long 型ID，权重为 float，
+ * 推荐热路径直接读取数组，避免逐请求查询数据库和装载实体
+ */
+public final class InteractionMatrix {
+
+    /** 无访问时间时的占位值 */
+    public static final long NO_VISIT_TIME = Long.MIN_VALUE;
+
+    static final float DEFAULT_RATING = 3f;
+    private static final double CLICK_WEIGHT = 0.1d;
+    private static final double DWELL_WEIGHT = 0.05d;
+
+    private static final InteractionMatrix EMPTY = new Builder().build(0L);
+
+    private final long version;
+    private final long builtAtMillis;
+
+    // CSR：按用户ID升序的行，行内按景点ID升序
+    private final long[] userIds;
+    private final int[] rowPtr;
+    private final long[] entrySpotIds;
+    private final float[] entryRatings;
+    private final float[] entryEngagement;
+    private final int[] entryClicks;
+    private final int[] entryDwellSeconds;
+    private final long[] entryVisitEpochSeconds;
+
+    // CSC：按景点ID升序的列，列内按用户ID升序，值为指向CSR条目的下标
+    private final long[] spotIds;
+    private final int[] colPtr;
+    private final long[] colUserIds;
+    private final int[] colUserIndices;
+    private final int[] colEntries;
+
+    private InteractionMatrix(long version, long[] userIds, int[] rowPtr, long[] entrySpotIds,
+                              float[] entryRatings, int[] entryClicks, int[] entryDwellSeconds,
+                              long[] entryVisitEpochSeconds) {
+        this.version = version;
+        this.builtAtMillis = System.currentTimeMillis();
+        this.userIds = userIds;
+        this.rowPtr = rowPtr;
+        this.entrySpotIds = entrySpotIds;
+        this.entryRatings = entryRatings;
+        this.entryClicks = entryClicks;
+        this.entryDwellSeconds = entryDwellSeconds;
+        this.entryVisitEpochSeconds = entryVisitEpochSeconds;
+
+        int nnz = entrySpotIds.length;
+        this.entryEngagement = new float[nnz];
+        for (int e = 0; e < nnz; e++) {
+            entryEngagement[e] = (float) engagementWeight(entryClicks[e], entryDwellSeconds[e]);
+        }
+
+        // 由CSR构建CSC：先得到去重后的景点ID，再做计数排序
+        long[] sortedSpots = entrySpotIds.clone();
+        Arrays.sort(sortedSpots);
+        int distinct = 0;
+        for (int i = 0; i < sortedSpots.length; i++) {
+            if (i == 0 || sortedSpots[i] != sortedSpots[i - 1]) {
+                sortedSpots[distinct++] = sortedSpots[i];
+            }
+        }
+        this.spotIds = Arrays.copyOf(sortedSpots, distinct);
+
+        int[] entryColumns = new int[nnz];
+        this.colPtr = new int[distinct + 1];
+        for (int e = 0; e < nnz; e++) {
+            int col = Arrays.binarySearch(spotIds, entrySpotIds[e]);
+            entryColumns[e] = col;
+            colPtr[col + 1]++;
+        }
+        for (int c = 0; c < distinct; c++) {
+            colPtr[c + 1] += colPtr[c];
+        }
+        this.colUserIds = new long[nnz];
+        this.colUserIndices = new int[nnz];
+        this.colEntries = new int[nnz];
+        int[] cursor = Arrays.copyOf(colPtr, distinct);
+        for (int u = 0; u < userIds.length; u++) {
+            for (int e = rowPtr[u]; e < rowPtr[u + 1]; e++) {
+                int pos = cursor[entryColumns[e]]++;
+                colUserIds[pos] = userIds[u];
+                colUserIndices[pos] = u;
+                colEntries[pos] = e;
+            }
+        }
+    }
+
+    public static InteractionMatrix empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 行为权重 - 结合点击次数和停留时间
+     */
+    public static double engagementWeight(int clickCount, int dwellSeconds) {
+        double clickWeight = Math.log1p(Math.max(clickCount, 0)) * CLICK_WEIGHT;
+        double dwellWeight = Math.min(Math.max(dwellSeconds, 0) / 60.0, 5.0) * DWELL_WEIGHT;
+        return clickWeight + dwellWeight;
+    }
+
+    public static long toEpochSeconds(LocalDateTime time) {
+        return time == null ? NO_VISIT_TIME : time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochSeconds) {
+        if (epochSeconds == NO_VISIT_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(java.time.Instant.ofEpochSecond(epochSeconds), ZoneId.systemDefault());
+    }
+
+    // ========== 元信息 ==========
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    public int spotCount() {
+        return spotIds.length;
+    }
+
+    public int nonZeroCount() {
+        return entrySpotIds.length;
+    }
+
+    // ========== CSR：用户行 ==========
+
+    /**
+     * 用户行下标，不存在返回 -1
+     */
+    public int userIndex(long userId) {
+        int idx = Arrays.binarySearch(userIds, userId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    public long userIdAt(int userIndex) {
+        return userIds[userIndex];
+    }
+
+    public int rowStart(int userIndex) {
+        return rowPtr[userIndex];
+    }
+
+    public int rowEnd(int userIndex) {
+        return rowPtr[userIndex + 1];
+    }
+
+    public int rowLength(long userId) {
+        int idx = userIndex(userId);
+        return idx < 0 ? 0 : rowPtr[idx + 1] - rowPtr[idx];
+    }
+
+    public long entrySpotId(int entry) {
+        return entrySpotIds[entry];
+    }
+
+    public float entryRating(int entry) {
+        return entryRatings[entry];
+    }
+
+    public float entryEngagement(int entry) {
+        return entryEngagement[entry];
+    }
+
+    public int entryClicks(int entry) {
+        return entryClicks[entry];
+    }
+
+    public int entryDwellSeconds(int entry) {
+        return entryDwellSeconds[entry];
+    }
+
+    public long entryVisitEpochSeconds(int entry) {
+        return entryVisitEpochSeconds[entry];
+    }
+
+    /**
+     * 全部条目的景点ID（按行拼接，行内升序），返回内部数组，调用方不得修改
+     */
+    long[] entrySpotIds() {
+        return entrySpotIds;
+    }
+
+    /**
+     * 在用户行内查找景点条目，不存在返回 -1
+     */
+    public int findEntry(int userIndex, long spotId) {
+        int idx = Arrays.binarySearch(entrySpotIds, rowPtr[userIndex], rowPtr[userIndex + 1], spotId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    // ========== CSC：景点列 ==========
+
+    /**
+     * 景点列下标，不存在返回 -1
+     */
+    public int spotIndex(long spotId) {
+        int idx = Arrays.binarySearch(spotIds, spotId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    public long spotIdAt(int spotIndex) {
+        return spotIds[spotIndex];
+    }
+
+    public int colStart(int spotIndex) {
+        return colPtr[spotIndex];
+    }
+
+    public int colEnd(int spotIndex) {
+        return colPtr[spotIndex + 1];
+    }
+
+    public int colLength(long spotId) {
+        int idx = spotIndex(spotId);
+        return idx < 0 ? 0 : colPtr[idx + 1] - colPtr[idx];
+    }
+
+    public long colUserId(int pos) {
+        return colUserIds[pos];
+    }
+
+    /**
+     * 列内位置对应的用户行下标
+     */
+    public int colUserIndex(int pos) {
+        return colUserIndices[pos];
+    }
+
+    /**
+     * 列内位置对应的CSR条目下标
+     */
+    public int colEntry(int pos) {
+        return colEntries[pos];
+    }
+
+    // ========== 增量合并 ==========
+
+    /**
+     * 用 replacement 中的用户行替换当前矩阵对应行，并移除 removedUsers 中的用户，生成新快照
+     * 两个CSR均按用户ID有序，合并为线性归并
+     */
+    public InteractionMatrix replaceRows(InteractionMatrix replacement, Set<Long> removedUsers, long newVersion) {
+        Builder builder = new Builder();
+        int a = 0;
+        int b = 0;
+        while (a < userIds.length || b < replacement.userIds.length) {
+            boolean takeReplacement;
+            if (a >= userIds.length) {
+                takeReplacement = true;
+            } else if (b >= replacement.userIds.length) {
+                takeReplacement = false;
+            } else {
+                takeReplacement = replacement.userIds[b] <= userIds[a];
+            }
+
+            if (takeReplacement) {
+                long userId = replacement.userIds[b];
+                if (a < userIds.length && userIds[a] == userId) {
+                    a++; // 旧行被替换
+                }
+                builder.appendRow(replacement, b++);
+            } else {
+                if (!removedUsers.contains(userIds[a])) {
+                    builder.appendRow(this, a);
+                }
+                a++;
+            }
+        }
+        return builder.buildSorted(newVersion);
+    }
+
+    /**
+     * 矩阵构建器：收集原始访问记录，按(用户, 景点)聚合重复记录
+     * 评分取最大值，点击和停留累加，访问时间取最近一次
+     */
+    public static final class Builder {
+        private long[] users = new long[16];
+        private long[] spots = new long[16];
+        private float[] ratings = new float[16];
+        private int[] clicks = new int[16];
+        private int[] dwells = new int[16];
+        private long[] visits = new long[16];
+        private int size;
+        private boolean sorted = true;
+
+        public Builder add(long userId, long spotId, Integer rating, Integer clickCount,
+                           Integer dwellSeconds, LocalDateTime visitDate) {
+            return add(userId, spotId,
+                    rating == null ? DEFAULT_RATING : rating.floatValue(),
+                    clickCount == null ? 0 : clickCount,
+                    dwellSeconds == null ? 0 : dwellSeconds,
+                    toEpochSeconds(visitDate));
+        }
+
+        public Builder add(long userId, long spotId, float rating, int clickCount,
+                           int dwellSeconds, long visitEpochSeconds) {
+            ensureCapacity(size + 1);
+            if (size > 0 && compare(users[size - 1], spots[size - 1], userId, spotId) > 0) {
+                sorted = false;
+            }
+            users[size] = userId;
+            spots[size] = spotId;
+            ratings[size] = rating;
+            clicks[size] = clickCount;
+            dwells[size] = dwellSeconds;
+            visits[size] = visitEpochSeconds;
+            size++;
+            return this;
+        }
+
+        private void appendRow(InteractionMatrix source, int userIndex) {
+            long userId = source.userIds[userIndex];
+            for (int e = source.rowPtr[userIndex]; e < source.rowPtr[userIndex + 1]; e++) {
+                add(userId, source.entrySpotIds[e], source.entryRatings[e], source.entryClicks[e],
+                        source.entryDwellSeconds[e], source.entryVisitEpochSeconds[e]);
+            }
+        }
+
+        public InteractionMatrix build(long version) {
+            if (!sorted) {
+                sortRecords();
+            }
+            return buildSorted(version);
+        }
+
+        private InteractionMatrix buildSorted(long version) {
+            // 聚合相邻的重复(用户, 景点)记录
+            int out = 0;
+            int userCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (out > 0 && users[out - 1] == users[i] && spots[out - 1] == spots[i]) {
+                    int last = out - 1;
+                    ratings[last] = Math.max(ratings[last], ratings[i]);
+                    clicks[last] += clicks[i];
+                    dwells[last] += dwells[i];
+                    visits[last] = Math.max(visits[last], visits[i]);
+                    continue;
+                }
+                if (out == 0 || users[out - 1] != users[i]) {
+                    userCount++;
+                }
+                users[out] = users[i];
+                spots[out] = spots[i];
+                ratings[out] = ratings[i];
+                clicks[out] = clicks[i];
+                dwells[out] = dwells[i];
+                visits[out] = visits[i];
+                out++;
+            }
+
+            long[] userIds = new long[userCount];
+            int[] rowPtr = new int[userCount + 1];
+            int u = -1;
+            for (int i = 0; i < out; i++) {
+                if (u < 0 || userIds[u] != users[i]) {
+                    u++;
+                    userIds[u] = users[i];
+                    rowPtr[u] = i;
+                }
+            }
+            rowPtr[userCount] = out;
+
+            return new InteractionMatrix(version, userIds, rowPtr,
+                    Arrays.copyOf(spots, out), Arrays.copyOf(ratings, out),
+                    Arrays.copyOf(clicks, out), Arrays.copyOf(dwells, out),
+                    Arrays.copyOf(visits, out));
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= users.length) {
+                return;
+            }
+            int capacity = Math.max(required, users.length * 2);
+            users = Arrays.copyOf(users, capacity);
+            spots = Arrays.copyOf(spots, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            clicks = Arrays.copyOf(clicks, capacity);
+            dwells = Arrays.copyOf(dwells, capacity);
+            visits = Arrays.copyOf(visits, capacity);
+        }
+
+        /**
+         * 按(用户, 景点)排序：先对下标做归并排序，再按下标重排各列
+         */
+        private void sortRecords() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int[] buffer = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int lo = 0; lo < size - width; lo += 2 * width) {
+                    int mid = lo + width;
+                    int hi = Math.min(lo + 2 * width, size);
+                    int i = lo, j = mid, k = lo;
+                    while (i < mid && j < hi) {
+                        buffer[k++] = compare(users[order[i]], spots[order[i]], users[order[j]], spots[order[j]]) <= 0
+                                ? order[i++] : order[j++];
+                    }
+                    while (i < mid) buffer[k++] = order[i++];
+                    while (j < hi) buffer[k++] = order[j++];
+                    System.arraycopy(buffer, lo, order, lo, hi - lo);
+                }
+            }
+
+            long[] newUsers = new long[users.length];
+            long[] newSpots = new long[users.length];
+            float[] newRatings = new float[users.length];
+            int[] newClicks = new int[users.length];
+            int[] newDwells = new int[users.length];
+            long[] newVisits = new long[users.length];
+            for (int i = 0; i < size; i++) {
+                int src = order[i];
+                newUsers[i] = users[src];
+                newSpots[i] = spots[src];
+                newRatings[i] = ratings[src];
+                newClicks[i] = clicks[src];
+                newDwells[i] = dwells[src];
+                newVisits[i] = visits[src];
+            }
+            users = newUsers;
+            spots = newSpots;
+            ratings = newRatings;
+            clicks = newClicks;
+            dwells = newDwells;
+            visits = newVisits;
+            sorted = true;
+        }
+
+        private static int compare(long user1, long spot1, long user2, long spot2) {
+            int byUser = Long.compare(user1, user2);
+            return byUser != 0 ? byUser : Long.compare(spot1, spot2);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import com.tibet.tourism.event.VisitHistoryChangedEvent;
+import com.tibet.tourism.repository.UserVisitHistoryRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户-景点交互矩阵服务
+ * 启动时全量构建矩阵快照；访问记录变更后在后台线程中按用户增量合并，
+ * 读取方始终拿到完整的不可变快照
+ */
+@Service
+public class InteractionMatrixService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InteractionMatrixService.class);
+
+    private static final int PATCH_QUERY_BATCH = 500; // 增量加载时每批查询的用户数
+    private static final long PATCH_RETRY_INITIAL_MS = 1_000L; // 增量更新失败后首次重试的延迟
+    private static final long PATCH_RETRY_MAX_MS = 60_000L;    // 重试延迟上限（每次失败翻倍）
+
+    @Autowired
+    private UserVisitHistoryRepository historyRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private InteractionLogService interactionLogService;
+
+    private volatile InteractionMatrix matrix = InteractionMatrix.empty();
+    private volatile boolean initialized;
+
+    private final AtomicLong versionSequence = new AtomicLong();
+    // 用户访问记录版本：增量更新时记为该次矩阵版本，未单独更新过的用户取最近一次全量重建的版本
+    private final Map<Long, Long> userHistoryVersions = new ConcurrentHashMap<>();
+    private volatile long fullRebuildVersion;
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean patchScheduled = new AtomicBoolean();
+    private int consecutivePatchFailures; // 仅在 patch 线程中读写
+    private final ScheduledExecutorService patchExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "interaction-matrix-patch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 当前矩阵快照
+     */
+    public InteractionMatrix getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * 用户访问记录的版本，版本不变说明该用户的矩阵行未变化
+     */
+    public long getUserHistoryVersion(Long userId) {
+        Long version = userHistoryVersions.get(userId);
+        return version != null ? version : fullRebuildVersion;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void initialize() {
+        rebuild();
+    }
+
+    /**
+     * 全量重建矩阵：开启 rebuild-from-log 且有交互日志时扫描日志，否则查询数据库并用结果重新初始化日志
+     */
+    public synchronized void rebuild() {
+        long startTime = System.currentTimeMillis();
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        boolean fromLog = interactionLogService.replayInto(builder);
+        if (fromLog) {
+            matrix = builder.build(versionSequence.incrementAndGet());
+        } else {
+            // 从读库到重置日志都持有日志锁：期间提交的变更等重置完成后再追加，不会被新日志覆盖
+            matrix = interactionLogService.callLocked(() -> {
+                appendRows(builder, historyRepository.findAllInteractionRows());
+                InteractionMatrix built = builder.build(versionSequence.incrementAndGet());
+                interactionLogService.resetFrom(built);
+                return built;
+            });
+        }
+        // 先发布矩阵再推进版本：读到新版本的一方一定能读到新矩阵
+        fullRebuildVersion = matrix.getVersion();
+        userHistoryVersions.clear();
+        initialized = true;
+        logger.info("📊 交互矩阵重建完成（{}）: {} 用户 × {} 景点, {} 条交互, 耗时 {}ms",
+                fromLog ? "交互日志" : "数据库", matrix.userCount(), matrix.spotCount(), matrix.nonZeroCount(),
+                System.currentTimeMillis() - startTime);
+        eventPublisher.publishEvent(new InteractionMatrixChangedEvent(matrix, null));
+        // 重建期间提交的变更可能不在本次读取结果中，矩阵发布后逐个重新加载
+        schedulePatchesIfPending();
+    }
+
+    /**
+     * 访问记录提交后标记该用户待更新
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitHistoryChanged(VisitHistoryChangedEvent event) {
+        if (event.getUserId() != null) {
+            markUserDirty(event.getUserId());
+        }
+    }
+
+    /**
+     * 标记用户行需要从数据库重新加载，多次标记会在后台合并为一次矩阵更新
+     */
+    public void markUserDirty(Long userId) {
+        // 首次重建完成前只记录，由 rebuild() 发布矩阵后统一调度（重建读库之后提交的变更不会丢失）
+        dirtyUsers.add(userId);
+        if (initialized) {
+            schedulePatchesIfPending();
+        }
+    }
+
+    private void schedulePatchesIfPending() {
+        if (!dirtyUsers.isEmpty() && patchScheduled.compareAndSet(false, true)) {
+            try {
+                patchExecutor.execute(this::applyPendingPatches);
+            } catch (RejectedExecutionException e) {
+                patchScheduled.set(false); // 应用关闭中
+            }
+        }
+    }
+
+    private void applyPendingPatches() {
+        patchScheduled.set(false);
+        List<Long> users = new ArrayList<>(dirtyUsers);
+        if (users.isEmpty()) {
+            return;
+        }
+        dirtyUsers.removeAll(users);
+
+        try {
+            synchronized (this) {
+                InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+                for (int from = 0; from < users.size(); from += PATCH_QUERY_BATCH) {
+                    List<Long> batch = users.subList(from, Math.min(from + PATCH_QUERY_BATCH, users.size()));
+                    appendRows(builder, historyRepository.findInteractionRowsByUserIdIn(batch));
+                }
+                InteractionMatrix replacement = builder.build(0L);
+
+                Set<Long> removedUsers = new HashSet<>();
+                for (Long userId : users) {
+                    if (replacement.userIndex(userId) < 0) {
+                        removedUsers.add(userId);
+                    }
+                }
+                matrix = matrix.replaceRows(replacement, removedUsers, versionSequence.incrementAndGet());
+                for (Long userId : users) {
+                    userHistoryVersions.put(userId, matrix.getVersion());
+                }
+                logger.debug("交互矩阵增量更新: {} 个用户, 版本 {}", users.size(), matrix.getVersion());
+                // 在锁内发布，保证监听方按版本顺序收到快照
+                eventPublisher.publishEvent(new InteractionMatrixChangedEvent(matrix, users));
+            }
+            consecutivePatchFailures = 0;
+        } catch (Exception e) {
+            // 重新排队并按指数退避安排重试，不依赖之后是否还有其他用户被标记
+            dirtyUsers.addAll(users);
+            long delayMillis = Math.min(PATCH_RETRY_MAX_MS,
+                    PATCH_RETRY_INITIAL_MS << Math.min(consecutivePatchFailures, 16));
+            consecutivePatchFailures++;
+            logger.error("交互矩阵增量更新失败，重新排队 {} 个用户，{}ms 后重试", users.size(), delayMillis, e);
+            if (patchScheduled.compareAndSet(false, true)) {
+                try {
+                    patchExecutor.schedule(this::applyPendingPatches, delayMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException rejected) {
+                    patchScheduled.set(false); // 应用关闭中
+                }
+            }
+        }
+    }
+
+    private void appendRows(InteractionMatrix.Builder builder, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            if (row[0] == null || row[1] == null) {
+                continue;
+            }
+            builder.add(((Number) row[0]).longValue(),
+                    ((Number) row[1]).longValue(),
+                    (Integer) row[2],
+                    (Integer) row[3],
+                    (Integer) row[4],
+                    (LocalDateTime) row[5]);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        patchExecutor.shutdownNow();
+    }
+}
@@ -1,17 +1,18 @@
 package com.tibet.tourism.service;
 
-import com.tibet.tourism.entity.ScenicSpot;
-import com.tibet.tourism.entity.UserVisitHistory;
-import com.tibet.tourism.repository.ScenicSpotRepository;
-import com.tibet.tourism.repository.UserVisitHistoryRepository;
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import com.tibet.tourism.event.ModelBuildRequestedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 基于物品的协同过滤推荐服务
@@ -22,288 +23,288 @@ public class ItemBasedRecommendationService {
     
     private static final Logger logger = LoggerFactory.getLogger(ItemBasedRecommendationService.class);
     
-    // 景点相似度矩阵缓存
-    private final Map<Long, Map<Long, Double>> itemSimilarityMatrix = new ConcurrentHashMap<>();
+    // 景点相似度矩阵：不可变快照，构建完成后整体替换引用
+    private volatile ItemSimilarityMatrix itemSimilarityMatrix = ItemSimilarityMatrix.empty();
+    private final AtomicLong versionSequence = new AtomicLong();
     private static final double MIN_ITEM_SIMILARITY = 0.1; // 最小景点相似度阈值
     private static final int MAX_SIMILAR_ITEMS = 50; // 每个景点最多保留的相似景点数
     
     @Autowired
-    private ScenicSpotRepository spotRepository;
-    
+    private InteractionMatrixService interactionMatrixService;
+
     @Autowired
-    private UserVisitHistoryRepository historyRepository;
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${recommendation.item-similarity.max-age-hours:24}")
+    private long maxAgeHours;
+
+    // 景点对累加器及其对应的矩阵快照，由 accumulatorLock 保护
+    private final Object accumulatorLock = new Object();
+    private volatile ItemSimilarityAccumulator accumulator;
+    private InteractionMatrix accumulatedMatrix;
+
+    // 全量构建进行中、或累加器尚未建立（首次构建前、交互矩阵全量重建后、从快照恢复后）时到达的增量变更，
+    // 由全量构建结束时补上；以下字段均由 accumulatorLock 保护
+    private final Set<Long> pendingUsers = new HashSet<>();
+    private InteractionMatrix pendingMatrix;
+    private boolean rebuilding;
+    private long requiredMatrixVersion; // 最近一次交互矩阵全量重建的版本，早于它的构建结果不能作为增量基础
+
+    // 从模型快照恢复后，紧随其后的启动全量重建改由快照服务在后台执行
+    private boolean deferNextFullRebuild;
     
     /**
      * 预计算景点相似度矩阵（离线计算）
-     * 建议每天凌晨执行一次
+     * 日常由访问记录变更增量维护，全量重建作为一致性校验，由 ModelBuildJobService 按 cron 每天凌晨执行
      */
     public void precomputeItemSimilarityMatrix() {
+        rebuild(BuildProgress.untracked());
+    }
+
+    /**
+     * 全量重建并返回发布的矩阵；取消时抛出 CancellationException，当前矩阵保持不变
+     * 构建在锁外进行，期间到达的增量更新排队（不阻塞交互矩阵的增量线程），发布时再基于本次构建的矩阵补齐
+     */
+    public ItemSimilarityMatrix rebuild(BuildProgress progress) {
         logger.info("═══════════════════════════════════════════════════════════");
         logger.info("🔄 开始预计算景点相似度矩阵");
         logger.info("═══════════════════════════════════════════════════════════");
         
         long startTime = System.currentTimeMillis();
-        itemSimilarityMatrix.clear();
-        
-        // 获取所有景点
-        List<ScenicSpot> allSpots = spotRepository.findAll();
-        logger.info("📊 景点总数: {}", allSpots.size());
-        
-        // 获取所有用户访问记录，构建用户-景点评分矩阵
-        List<UserVisitHistory> allHistories = historyRepository.findAll();
-        Map<Long, Map<Long, Double>> userItemMatrix = buildUserItemMatrix(allHistories);
-        logger.info("📊 用户-景点矩阵: {} 用户 × {} 景点", 
-                userItemMatrix.size(), 
-                allSpots.size());
+        InteractionMatrix matrix;
+        synchronized (accumulatorLock) {
+            matrix = interactionMatrixService.getMatrix();
+            rebuilding = true;
+        }
         
-        // 并行计算景点相似度
-        Map<Long, Map<Long, Double>> similarityMatrix = allSpots.parallelStream()
-                .collect(Collectors.toConcurrentMap(
-                    ScenicSpot::getId,
-                    spot1 -> {
-                        Map<Long, Double> similarities = new HashMap<>();
-                        
-                        for (ScenicSpot spot2 : allSpots) {
-                            if (spot1.getId().equals(spot2.getId())) {
-                                continue; // 跳过自己
-                            }
-                            
-                            double similarity = calculateItemSimilarity(
-                                    spot1.getId(), 
-                                    spot2.getId(), 
-                                    userItemMatrix
-                            );
-                            
-                            if (similarity >= MIN_ITEM_SIMILARITY) {
-                                similarities.put(spot2.getId(), similarity);
-                            }
-                        }
-                        
-                        // 只保留相似度最高的N个
-                        return similarities.entrySet().stream()
-                                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                                .limit(MAX_SIMILAR_ITEMS)
-                                .collect(Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    Map.Entry::getValue,
-                                    (v1, v2) -> v1,
-                                    LinkedHashMap::new
-                                ));
+        boolean published = false;
+        try {
+            // 按用户行累加景点对的共现统计量
+            long anchorEpochSeconds = InteractionMatrix.toEpochSeconds(LocalDateTime.now());
+            ItemSimilarityAccumulator rebuilt = ItemSimilarityAccumulator.build(matrix, anchorEpochSeconds, progress);
+            logger.info("📊 用户-景点矩阵: {} 用户 × {} 景点, {} 个共现景点对", 
+                    matrix.userCount(), 
+                    matrix.spotCount(),
+                    rebuilt.pairCount());
+            Map<Long, Map<Long, Double>> similarityRows = rebuilt.allRows(MIN_ITEM_SIMILARITY, MAX_SIMILAR_ITEMS);
+            
+            synchronized (accumulatorLock) {
+                // 一致性校验：增量维护的累加器应与全量结果的共现结构一致
+                if (accumulator != null && accumulatedMatrix != null
+                        && accumulatedMatrix.getVersion() == matrix.getVersion()) {
+                    int mismatched = accumulator.countMismatchedPairs(rebuilt);
+                    if (mismatched > 0) {
+                        logger.warn("⚠️  增量维护的景点相似度与全量结果不一致: {} 个景点对", mismatched);
+                    } else {
+                        logger.info("✅ 增量维护的景点相似度与全量结果一致");
                     }
-                ));
-        
-        itemSimilarityMatrix.putAll(similarityMatrix);
+                }
+                
+                // 在旁路构建新快照后一次性替换，并发读取始终看到完整矩阵
+                itemSimilarityMatrix = ItemSimilarityMatrix.of(similarityRows, versionSequence.incrementAndGet(),
+                        matrix.getVersion());
+                if (matrix.getVersion() >= requiredMatrixVersion) {
+                    accumulator = rebuilt;
+                    accumulatedMatrix = matrix;
+                } else {
+                    // 构建期间交互矩阵被全量重建：本次结果照常提供，增量更新继续排队到下一次构建
+                    logger.warn("⚠️  构建期间交互矩阵已全量重建（版本 {} → {}），等待下一次全量构建",
+                            matrix.getVersion(), requiredMatrixVersion);
+                }
+                published = true;
+                finishRebuild();
+            }
+        } finally {
+            if (!published) {
+                synchronized (accumulatorLock) {
+                    finishRebuild(); // 取消或失败：旧累加器仍有效，补上排队的变更
+                }
+            }
+        }
         
         long endTime = System.currentTimeMillis();
-        logger.info("✅ 景点相似度矩阵计算完成，耗时: {}ms", endTime - startTime);
+        ItemSimilarityMatrix current = itemSimilarityMatrix;
+        logger.info("✅ 景点相似度矩阵计算完成（版本 {}），耗时: {}ms", current.getVersion(), endTime - startTime);
         logger.info("📊 平均每个景点有 {} 个相似景点", 
-                itemSimilarityMatrix.values().stream()
-                        .mapToInt(Map::size)
-                        .average()
-                        .orElse(0.0));
+                current.isEmpty() ? 0.0 : (double) current.neighborCount() / current.spotCount());
         logger.info("═══════════════════════════════════════════════════════════\n");
+        return current;
     }
-    
+
     /**
-     * 构建用户-景点评分矩阵
+     * 交互矩阵变更：全量重建时提交后台构建任务，增量更新时只刷新受影响的景点行
      */
-    private Map<Long, Map<Long, Double>> buildUserItemMatrix(List<UserVisitHistory> histories) {
-        Map<Long, Map<Long, Double>> matrix = new HashMap<>();
-        
-        for (UserVisitHistory history : histories) {
-            if (history.getUser() == null || history.getSpot() == null) {
-                continue;
+    @EventListener
+    public void onInteractionMatrixChanged(InteractionMatrixChangedEvent event) {
+        if (event.isFullRebuild()) {
+            boolean deferred;
+            synchronized (accumulatorLock) {
+                // 累加器基于旧矩阵，之后的增量无法在其上补齐：排队到全量构建完成
+                accumulator = null;
+                accumulatedMatrix = null;
+                requiredMatrixVersion = event.getMatrix().getVersion();
+                deferred = deferNextFullRebuild;
+                deferNextFullRebuild = false;
             }
-            
-            Long userId = history.getUser().getId();
-            Long spotId = history.getSpot().getId();
-            
-            // 计算评分（考虑评分、时间衰减、行为权重）
-            double rating = normalizeRating(history.getRating());
-            double timeWeight = calculateTimeWeight(history.getVisitDate());
-            double engagementWeight = calculateEngagementWeight(
-                    history.getClickCount(), 
-                    history.getDwellSeconds()
-            );
-            
-            double finalRating = rating + timeWeight + engagementWeight;
-            
-            matrix.computeIfAbsent(userId, k -> new HashMap<>())
-                    .put(spotId, finalRating);
+            if (deferred) {
+                logger.info("📦 景点相似度矩阵已从模型快照恢复，全量重建转入后台");
+                return;
+            }
+            // 在构建任务线程上执行，不占用交互矩阵的重建线程，构建期间旧矩阵继续提供
+            eventPublisher.publishEvent(new ModelBuildRequestedEvent(ModelBuildJob.ITEM_SIMILARITY, "startup"));
+            return;
+        }
+        try {
+            applyIncrementalUpdate(event.getMatrix(), event.getUserIds());
+        } catch (Exception e) {
+            logger.error("景点相似度增量更新失败，等待下次全量重建", e);
         }
-        
-        return matrix;
     }
-    
+
     /**
-     * 计算两个景点之间的相似度（使用调整后的余弦相似度）
+     * 结束全量构建：补上排队期间、且累加器对应矩阵尚未包含的变更（调用方持有 accumulatorLock）
      */
-    private double calculateItemSimilarity(
-            Long spotId1, 
-            Long spotId2, 
-            Map<Long, Map<Long, Double>> userItemMatrix) {
-        
-        // 找到同时访问过这两个景点的用户
-        Set<Long> commonUsers = new HashSet<>();
-        
-        for (Long userId : userItemMatrix.keySet()) {
-            Map<Long, Double> userRatings = userItemMatrix.get(userId);
-            if (userRatings != null 
-                && userRatings.containsKey(spotId1) 
-                && userRatings.containsKey(spotId2)) {
-                commonUsers.add(userId);
+    private void finishRebuild() {
+        rebuilding = false;
+        InteractionMatrix queuedMatrix = pendingMatrix;
+        if (accumulator != null && queuedMatrix != null) {
+            applyUserChanges(queuedMatrix, pendingUsers);
+        }
+        if (accumulator != null) {
+            pendingUsers.clear();
+            pendingMatrix = null;
+        }
+    }
+
+    /**
+     * 发布从模型快照读回的相似度矩阵，并跳过随后的启动全量重建（由调用方安排后台重建）
+     * 累加器不持久化，后台重建完成前的增量更新排队，由重建补齐
+     */
+    void restoreSnapshot(ItemSimilarityMatrix restored, InteractionMatrix matrix) {
+        synchronized (accumulatorLock) {
+            itemSimilarityMatrix = restored.withVersions(versionSequence.incrementAndGet(), matrix.getVersion());
+            deferNextFullRebuild = true;
+        }
+    }
+
+    private void applyIncrementalUpdate(InteractionMatrix matrix, Collection<Long> userIds) {
+        synchronized (accumulatorLock) {
+            if (rebuilding || accumulator == null || accumulatedMatrix == null) {
+                // 全量构建进行中或尚未建立累加器：记下用户与最新矩阵，构建结束时据此补齐
+                pendingUsers.addAll(userIds);
+                if (pendingMatrix == null || matrix.getVersion() > pendingMatrix.getVersion()) {
+                    pendingMatrix = matrix;
+                }
+                return;
             }
+            applyUserChanges(matrix, userIds);
         }
-        
-        if (commonUsers.size() < 2) {
-            return 0.0; // 至少需要2个共同用户
+    }
+
+    /**
+     * 把 accumulatedMatrix 到 matrix 之间指定用户的变更应用到累加器，并替换受影响的景点行（调用方持有 accumulatorLock）
+     */
+    private void applyUserChanges(InteractionMatrix matrix, Collection<Long> userIds) {
+        if (matrix.getVersion() <= accumulatedMatrix.getVersion()) {
+            return;
         }
-        
-        // 计算调整后的余弦相似度
-        double sumProduct = 0.0;
-        double sumSq1 = 0.0, sumSq2 = 0.0;
-        
-        // 计算两个景点的平均评分
-        double avgRating1 = commonUsers.stream()
-                .mapToDouble(userId -> userItemMatrix.get(userId).get(spotId1))
-                .average()
-                .orElse(0.0);
-        
-        double avgRating2 = commonUsers.stream()
-                .mapToDouble(userId -> userItemMatrix.get(userId).get(spotId2))
-                .average()
-                .orElse(0.0);
-        
-        // 计算调整后的余弦相似度
-        for (Long userId : commonUsers) {
-            Map<Long, Double> userRatings = userItemMatrix.get(userId);
-            double rating1 = userRatings.get(spotId1) - avgRating1;
-            double rating2 = userRatings.get(spotId2) - avgRating2;
-            
-            sumProduct += rating1 * rating2;
-            sumSq1 += rating1 * rating1;
-            sumSq2 += rating2 * rating2;
+        Set<Long> affectedSpots = accumulator.applyUserChanges(accumulatedMatrix, matrix, userIds);
+        accumulatedMatrix = matrix;
+        Map<Long, Map<Long, Double>> replacedRows = new HashMap<>();
+        for (Long spotId : affectedSpots) {
+            replacedRows.put(spotId, accumulator.similarRow(spotId, MIN_ITEM_SIMILARITY, MAX_SIMILAR_ITEMS));
         }
-        
-        double denominator = Math.sqrt(sumSq1) * Math.sqrt(sumSq2);
-        if (denominator == 0.0) {
-            return 0.0;
+        if (!replacedRows.isEmpty()) {
+            itemSimilarityMatrix = itemSimilarityMatrix.withRows(replacedRows, versionSequence.incrementAndGet(),
+                    matrix.getVersion());
         }
-        
-        return sumProduct / denominator;
+        logger.debug("景点相似度增量更新: {} 个用户, {} 个景点行, 矩阵版本 {}",
+                userIds.size(), affectedSpots.size(), matrix.getVersion());
     }
     
     /**
-     * 基于物品的推荐
+     * 计算交互的评分（考虑评分、时间衰减、行为权重）
      */
-    public Map<Long, Double> recommendByItemCF(Long userId, Set<Long> visitedSpotIds) {
-        if (visitedSpotIds == null || visitedSpotIds.isEmpty()) {
-            return Collections.emptyMap();
+    static double entryRating(InteractionMatrix matrix, int entry, long nowEpochSeconds) {
+        return matrix.entryRating(entry)
+                + calculateTimeWeight(matrix.entryVisitEpochSeconds(entry), nowEpochSeconds)
+                + matrix.entryEngagement(entry);
+    }
+    
+    /**
+     * 基于物品的推荐，得分直接累加到评分缓冲区的 ITEM_BASED 通道（缓冲区中须已标记用户访问过的景点）
+     * 返回写入的得分条数
+     */
+    int recommendByItemCF(Long userId, ScoringBuffer buffer) {
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        int userIndex = matrix.userIndex(userId);
+        if (userIndex < 0) {
+            return 0;
         }
         
-        // 如果相似度矩阵为空，先计算
-        if (itemSimilarityMatrix.isEmpty()) {
-            logger.warn("⚠️  景点相似度矩阵为空，开始预计算...");
-            precomputeItemSimilarityMatrix();
+        // 相似度矩阵尚未构建（也未从快照恢复）：提交后台构建，本次请求不含 Item-Based 得分
+        if (accumulator == null && itemSimilarityMatrix.getVersion() == 0L) {
+            logger.debug("景点相似度矩阵为空，已提交后台构建");
+            eventPublisher.publishEvent(new ModelBuildRequestedEvent(ModelBuildJob.ITEM_SIMILARITY, "on-demand"));
+            return 0;
         }
         
-        // 获取用户的历史访问记录（用于评分权重）
-        List<UserVisitHistory> userHistories = historyRepository.findByUserId(userId);
-        Map<Long, Double> userRatings = userHistories.stream()
-                .filter(h -> h.getSpot() != null && h.getSpot().getId() != null)
-                .collect(Collectors.toMap(
-                    h -> h.getSpot().getId(),
-                    h -> normalizeRating(h.getRating()) + 
-                         calculateTimeWeight(h.getVisitDate()) +
-                         calculateEngagementWeight(h.getClickCount(), h.getDwellSeconds()),
-                    (v1, v2) -> Math.max(v1 != null ? v1 : 0.0, v2 != null ? v2 : 0.0)
-                ));
-        
-        // 计算推荐得分
-        Map<Long, Double> itemScores = new HashMap<>();
-        
-        for (Long visitedSpotId : visitedSpotIds) {
-            // 获取用户对该景点的评分权重
-            double userRating = userRatings.getOrDefault(visitedSpotId, 3.0);
-            
-            // 获取与该景点相似的景点
-            Map<Long, Double> similarSpots = itemSimilarityMatrix.get(visitedSpotId);
-            if (similarSpots == null || similarSpots.isEmpty()) {
+        ItemSimilarityMatrix similarityMatrix = itemSimilarityMatrix;
+        long nowEpochSeconds = InteractionMatrix.toEpochSeconds(LocalDateTime.now());
+        int scored = 0;
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            int spotIndex = similarityMatrix.spotIndex(matrix.entrySpotId(entry));
+            if (spotIndex < 0) {
                 continue;
             }
-            
-            // 计算推荐得分
-            for (Map.Entry<Long, Double> entry : similarSpots.entrySet()) {
-                Long similarSpotId = entry.getKey();
-                double similarity = entry.getValue();
-                
-                // 跳过已访问的景点
-                if (visitedSpotIds.contains(similarSpotId)) {
+            double userRating = entryRating(matrix, entry, nowEpochSeconds);
+            for (int pos = similarityMatrix.neighborStart(spotIndex); pos < similarityMatrix.neighborEnd(spotIndex); pos++) {
+                int ordinal = buffer.ordinal(similarityMatrix.neighborId(pos));
+                if (ordinal < 0 || buffer.isVisited(ordinal)) {
                     continue;
                 }
-                
                 // 得分 = 相似度 × 用户对该景点的评分权重
-                double score = similarity * userRating;
-                itemScores.merge(similarSpotId, score, Double::sum);
+                buffer.add(ScoringBuffer.ITEM_BASED, ordinal, similarityMatrix.similarity(pos) * userRating);
+                scored++;
             }
         }
-        
-        logger.info("📊 Item-Based CF生成 {} 个候选景点", itemScores.size());
-        
-        return itemScores;
+        return scored;
     }
     
     /**
      * 获取与指定景点相似的景点
      */
     public Map<Long, Double> getSimilarSpots(Long spotId, int limit) {
-        Map<Long, Double> similarSpots = itemSimilarityMatrix.get(spotId);
-        if (similarSpots == null || similarSpots.isEmpty()) {
-            return Collections.emptyMap();
-        }
-        
-        return similarSpots.entrySet().stream()
-                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                .limit(limit)
-                .collect(Collectors.toMap(
-                    Map.Entry::getKey,
-                    Map.Entry::getValue,
-                    (v1, v2) -> v1,
-                    LinkedHashMap::new
-                ));
+        return itemSimilarityMatrix.similarSpots(spotId, limit);
+    }
+
+    /**
+     * 当前发布的相似度矩阵快照
+     */
+    public ItemSimilarityMatrix getSimilarityMatrix() {
+        return itemSimilarityMatrix;
     }
     
     /**
      * 检查相似度矩阵是否需要更新
      */
     public boolean isSimilarityMatrixStale() {
-        // 如果矩阵为空，需要更新
-        if (itemSimilarityMatrix.isEmpty()) {
+        ItemSimilarityMatrix current = itemSimilarityMatrix;
+        // 尚未构建过，需要更新
+        if (current.getVersion() == 0L) {
             return true;
         }
         
-        // 可以添加时间戳检查逻辑
-        // 例如：如果超过24小时未更新，返回true
-        return false;
+        // 距上次全量构建超过最大时长（增量维护会累积时间权重的锚定偏差）
+        return System.currentTimeMillis() - current.getBuiltAtMillis() > maxAgeHours * 3_600_000L;
     }
     
     // 辅助方法（与RecommendationService中的方法类似）
-    private double normalizeRating(Integer rating) {
-        return rating == null ? 3.0 : rating.doubleValue();
-    }
-    
-    private double calculateTimeWeight(java.time.LocalDateTime visitDate) {
-        if (visitDate == null) {
+    private static double calculateTimeWeight(long visitEpochSeconds, long nowEpochSeconds) {
+        if (visitEpochSeconds == InteractionMatrix.NO_VISIT_TIME) {
             return 0.0;
         }
-        long days = Math.max(0, java.time.Duration.between(visitDate, java.time.LocalDateTime.now()).toDays());
+        long days = Math.max(0, (nowEpochSeconds - visitEpochSeconds) / 86400L);
         return Math.pow(0.95, days / 30.0); // 指数衰减
     }
-    
-    private double calculateEngagementWeight(Integer clickCount, Integer dwellSeconds) {
-        double clickWeight = clickCount == null ? 0.0 : Math.log1p(clickCount) * 0.1;
-        double dwellWeight = dwellSeconds == null ? 0.0 : Math.min(dwellSeconds / 60.0, 5.0) * 0.05;
-        return clickWeight + dwellWeight;
-    }
 }
-
@@ -0,0 +1,285 @@
+package com.tibet.tourism.service;
+
+import java.util.*;
+
+/**
+ * 景点对相似度累加器
+ * 为每对共同被访问的景点保存 n、Σx、Σy、Σx²、Σy²、Σxy，
+ * 调整余弦（共同用户上的均值中心化）可由这些量直接求出：
+ *   Σ(x-x̄)(y-ȳ) = Σxy - ΣxΣy/n，Σ(x-x̄)² = Σx² - (Σx)²/n
+ * 单个用户的访问记录变化时只需减去旧贡献、加上新贡献，并刷新受影响的景点行。
+ * 交互评分中的时间权重以累加器的锚定时间计算，保证旧贡献可以精确扣除；
+ * 全量重建时重新锚定。非线程安全，由调用方加锁
+ */
+public final class ItemSimilarityAccumulator {
+
+    private static final int MIN_COMMON_USERS = 2; // 至少需要2个共同用户
+    private static final double VARIANCE_EPSILON = 1e-9; // 抵消误差下视为零方差
+
+    private final long anchorEpochSeconds;
+
+    private final Map<Long, Integer> spotOrdinals = new HashMap<>();
+    private long[] ordinalSpotIds = new long[16];
+    private final List<Set<Integer>> partners = new ArrayList<>();
+    private final Map<Long, PairStats> pairs = new HashMap<>();
+
+    private ItemSimilarityAccumulator(long anchorEpochSeconds) {
+        this.anchorEpochSeconds = anchorEpochSeconds;
+    }
+
+    /**
+     * 从交互矩阵全量构建
+     */
+    public static ItemSimilarityAccumulator build(InteractionMatrix matrix, long anchorEpochSeconds) {
+        return build(matrix, anchorEpochSeconds, BuildProgress.untracked());
+    }
+
+    /**
+     * 按用户行累加，进度以用户数计，每 1024 个用户检查一次取消
+     */
+    public static ItemSimilarityAccumulator build(InteractionMatrix matrix, long anchorEpochSeconds,
+                                                  BuildProgress progress) {
+        ItemSimilarityAccumulator accumulator = new ItemSimilarityAccumulator(anchorEpochSeconds);
+        progress.begin(matrix.userCount());
+        progress.checkCancelled();
+        for (int user = 0; user < matrix.userCount(); user++) {
+            if (user > 0 && (user & 1023) == 0) {
+                progress.advance(1024);
+                progress.checkCancelled();
+            }
+            int start = matrix.rowStart(user);
+            int end = matrix.rowEnd(user);
+            int[] ordinals = new int[end - start];
+            double[] values = new double[end - start];
+            for (int entry = start; entry < end; entry++) {
+                ordinals[entry - start] = accumulator.ordinal(matrix.entrySpotId(entry));
+                values[entry - start] = accumulator.entryValue(matrix, entry);
+            }
+            for (int i = 0; i < ordinals.length; i++) {
+                for (int j = i + 1; j < ordinals.length; j++) {
+                    accumulator.accumulate(ordinals[i], values[i], ordinals[j], values[j], 1);
+                }
+            }
+        }
+        progress.advance(matrix.userCount() - progress.getCompleted());
+        return accumulator;
+    }
+
+    public long getAnchorEpochSeconds() {
+        return anchorEpochSeconds;
+    }
+
+    public int pairCount() {
+        return pairs.size();
+    }
+
+    /**
+     * 用新快照中的用户行替换旧快照中的对应行，返回相似度行发生变化的景点ID
+     */
+    public Set<Long> applyUserChanges(InteractionMatrix oldMatrix, InteractionMatrix newMatrix, Collection<Long> userIds) {
+        Set<Integer> affected = new HashSet<>();
+        for (Long userId : userIds) {
+            Map<Integer, Double> oldRow = rowValues(oldMatrix, userId);
+            Map<Integer, Double> newRow = rowValues(newMatrix, userId);
+
+            Set<Integer> union = new TreeSet<>(oldRow.keySet());
+            union.addAll(newRow.keySet());
+            Integer[] spots = union.toArray(new Integer[0]);
+
+            for (int i = 0; i < spots.length; i++) {
+                for (int j = i + 1; j < spots.length; j++) {
+                    int a = spots[i];
+                    int b = spots[j];
+                    Double oldA = oldRow.get(a), oldB = oldRow.get(b);
+                    Double newA = newRow.get(a), newB = newRow.get(b);
+                    boolean inOld = oldA != null && oldB != null;
+                    boolean inNew = newA != null && newB != null;
+                    if (inOld && inNew && oldA.equals(newA) && oldB.equals(newB)) {
+                        continue; // 该景点对上的贡献未变
+                    }
+                    if (!inOld && !inNew) {
+                        continue;
+                    }
+                    if (inOld) {
+                        accumulate(a, oldA, b, oldB, -1);
+                    }
+                    if (inNew) {
+                        accumulate(a, newA, b, newB, 1);
+                    }
+                    affected.add(a);
+                    affected.add(b);
+                }
+            }
+        }
+
+        Set<Long> affectedSpotIds = new HashSet<>();
+        for (int ordinal : affected) {
+            affectedSpotIds.add(ordinalSpotIds[ordinal]);
+        }
+        return affectedSpotIds;
+    }
+
+    /**
+     * 计算指定景点的相似景点行（按相似度降序，最多 limit 个）
+     */
+    public Map<Long, Double> similarRow(long spotId, double minSimilarity, int limit) {
+        Integer ordinal = spotOrdinals.get(spotId);
+        if (ordinal == null) {
+            return Collections.emptyMap();
+        }
+        List<Map.Entry<Long, Double>> similarities = new ArrayList<>();
+        for (int partner : partners.get(ordinal)) {
+            PairStats stats = pairs.get(pairKey(ordinal, partner));
+            double similarity = stats == null ? 0.0 : stats.similarity();
+            if (similarity >= minSimilarity) {
+                similarities.add(Map.entry(ordinalSpotIds[partner], similarity));
+            }
+        }
+        similarities.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+
+        Map<Long, Double> row = new LinkedHashMap<>();
+        for (int i = 0; i < similarities.size() && i < limit; i++) {
+            row.put(similarities.get(i).getKey(), similarities.get(i).getValue());
+        }
+        return row;
+    }
+
+    /**
+     * 所有景点的相似景点行
+     */
+    public Map<Long, Map<Long, Double>> allRows(double minSimilarity, int limit) {
+        Map<Long, Map<Long, Double>> rows = new HashMap<>();
+        for (int ordinal = 0; ordinal < partners.size(); ordinal++) {
+            long spotId = ordinalSpotIds[ordinal];
+            Map<Long, Double> row = similarRow(spotId, minSimilarity, limit);
+            if (!row.isEmpty()) {
+                rows.put(spotId, row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 与另一累加器比较共现结构（景点对集合及共同用户数），返回不一致的景点对数量
+     * 共现计数与锚定时间无关，可用于校验增量维护是否遗漏了变更
+     */
+    public int countMismatchedPairs(ItemSimilarityAccumulator other) {
+        int mismatched = 0;
+        for (Map.Entry<Long, PairStats> entry : pairs.entrySet()) {
+            int a = (int) (entry.getKey() >>> 32);
+            int b = (int) entry.getKey().longValue();
+            Integer otherA = other.spotOrdinals.get(ordinalSpotIds[a]);
+            Integer otherB = other.spotOrdinals.get(ordinalSpotIds[b]);
+            PairStats otherStats = otherA == null || otherB == null ? null : other.pairs.get(pairKey(otherA, otherB));
+            if (otherStats == null || otherStats.n != entry.getValue().n) {
+                mismatched++;
+            }
+        }
+        for (Map.Entry<Long, PairStats> entry : other.pairs.entrySet()) {
+            int a = (int) (entry.getKey() >>> 32);
+            int b = (int) entry.getKey().longValue();
+            Integer ownA = spotOrdinals.get(other.ordinalSpotIds[a]);
+            Integer ownB = spotOrdinals.get(other.ordinalSpotIds[b]);
+            if (ownA == null || ownB == null || !pairs.containsKey(pairKey(ownA, ownB))) {
+                mismatched++;
+            }
+        }
+        return mismatched;
+    }
+
+    private Map<Integer, Double> rowValues(InteractionMatrix matrix, long userId) {
+        int userIndex = matrix.userIndex(userId);
+        if (userIndex < 0) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, Double> row = new HashMap<>();
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            row.put(ordinal(matrix.entrySpotId(entry)), entryValue(matrix, entry));
+        }
+        return row;
+    }
+
+    private double entryValue(InteractionMatrix matrix, int entry) {
+        return ItemBasedRecommendationService.entryRating(matrix, entry, anchorEpochSeconds);
+    }
+
+    private void accumulate(int ordinalA, double valueA, int ordinalB, double valueB, int sign) {
+        // 规范化为 a < b，x 始终属于较小序号的景点
+        if (ordinalA > ordinalB) {
+            int tmpOrdinal = ordinalA;
+            ordinalA = ordinalB;
+            ordinalB = tmpOrdinal;
+            double tmpValue = valueA;
+            valueA = valueB;
+            valueB = tmpValue;
+        }
+        long key = pairKey(ordinalA, ordinalB);
+        PairStats stats = pairs.get(key);
+        if (stats == null) {
+            if (sign < 0) {
+                return;
+            }
+            stats = new PairStats();
+            pairs.put(key, stats);
+            partners.get(ordinalA).add(ordinalB);
+            partners.get(ordinalB).add(ordinalA);
+        }
+        stats.n += sign;
+        stats.sumX += sign * valueA;
+        stats.sumY += sign * valueB;
+        stats.sumXX += sign * valueA * valueA;
+        stats.sumYY += sign * valueB * valueB;
+        stats.sumXY += sign * valueA * valueB;
+        if (stats.n <= 0) {
+            pairs.remove(key);
+            partners.get(ordinalA).remove(ordinalB);
+            partners.get(ordinalB).remove(ordinalA);
+        }
+    }
+
+    private int ordinal(long spotId) {
+        Integer ordinal = spotOrdinals.get(spotId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        int next = partners.size();
+        if (next == ordinalSpotIds.length) {
+            ordinalSpotIds = Arrays.copyOf(ordinalSpotIds, next * 2);
+        }
+        ordinalSpotIds[next] = spotId;
+        spotOrdinals.put(spotId, next);
+        partners.add(new HashSet<>());
+        return next;
+    }
+
+    private static long pairKey(int a, int b) {
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 单个景点对的累加量
+     */
+    private static final class PairStats {
+        private int n;
+        private double sumX;
+        private double sumY;
+        private double sumXX;
+        private double sumYY;
+        private double sumXY;
+
+        double similarity() {
+            if (n < MIN_COMMON_USERS) {
+                return 0.0;
+            }
+            double numerator = sumXY - sumX * sumY / n;
+            double varianceX = sumXX - sumX * sumX / n;
+            double varianceY = sumYY - sumY * sumY / n;
+            if (varianceX <= VARIANCE_EPSILON || varianceY <= VARIANCE_EPSILON) {
+                return 0.0;
+            }
+            return numerator / (Math.sqrt(varianceX) * Math.sqrt(varianceY));
+        }
+    }
+}
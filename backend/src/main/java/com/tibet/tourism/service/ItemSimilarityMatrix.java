@@ -0,0 +1,264 @@
+package com.tibet.tourism.service;
+
+import java.util.*;
+
+/**
+ * 景点相似度矩阵（不可变快照）
+ * 景点ID升序存放，每个景点的相似景点按相似度降序存放在扁平的基本类型数组中；
+ * 构建或增量更新都生成新快照，由持有方通过一次引用替换发布，读取方不会看到半成品
+ */
+public final class ItemSimilarityMatrix {
+
+    private static final ItemSimilarityMatrix EMPTY =
+            new ItemSimilarityMatrix(0L, -1L, 0L, new long[0], new int[]{0}, new long[0], new float[0]);
+
+    private final long version;
+    private final long sourceMatrixVersion;
+    private final long builtAtMillis;
+
+    private final long[] spotIds;       // 升序
+    private final int[] ptr;            // spotIds.length + 1
+    private final long[] neighborIds;   // 每个景点内按相似度降序
+    private final float[] similarities;
+
+    private ItemSimilarityMatrix(long version, long sourceMatrixVersion, long builtAtMillis, long[] spotIds,
+                                 int[] ptr, long[] neighborIds, float[] similarities) {
+        this.version = version;
+        this.sourceMatrixVersion = sourceMatrixVersion;
+        this.builtAtMillis = builtAtMillis;
+        this.spotIds = spotIds;
+        this.ptr = ptr;
+        this.neighborIds = neighborIds;
+        this.similarities = similarities;
+    }
+
+    public static ItemSimilarityMatrix empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 由各景点的相似景点行构建（行内须已按相似度降序）
+     */
+    public static ItemSimilarityMatrix of(Map<Long, Map<Long, Double>> rows, long version, long sourceMatrixVersion) {
+        return of(rows, version, sourceMatrixVersion, System.currentTimeMillis());
+    }
+
+    private static ItemSimilarityMatrix of(Map<Long, Map<Long, Double>> rows, long version,
+                                           long sourceMatrixVersion, long builtAtMillis) {
+        long[] spotIds = new long[rows.size()];
+        int i = 0;
+        int total = 0;
+        for (Map.Entry<Long, Map<Long, Double>> row : rows.entrySet()) {
+            spotIds[i++] = row.getKey();
+            total += row.getValue().size();
+        }
+        Arrays.sort(spotIds);
+
+        int[] ptr = new int[spotIds.length + 1];
+        long[] neighborIds = new long[total];
+        float[] similarities = new float[total];
+        int pos = 0;
+        for (int s = 0; s < spotIds.length; s++) {
+            ptr[s] = pos;
+            for (Map.Entry<Long, Double> neighbor : rows.get(spotIds[s]).entrySet()) {
+                neighborIds[pos] = neighbor.getKey();
+                similarities[pos] = neighbor.getValue().floatValue();
+                pos++;
+            }
+        }
+        ptr[spotIds.length] = pos;
+        return new ItemSimilarityMatrix(version, sourceMatrixVersion, builtAtMillis,
+                spotIds, ptr, neighborIds, similarities);
+    }
+
+    /**
+     * 由快照文件读回的扁平数组恢复（版本号为 0，由持有方通过 withVersions 重新编号）
+     */
+    static ItemSimilarityMatrix restore(long builtAtMillis, long[] spotIds, int[] ptr, long[] neighborIds,
+                                        float[] similarities) {
+        return new ItemSimilarityMatrix(0L, -1L, builtAtMillis, spotIds, ptr, neighborIds, similarities);
+    }
+
+    /**
+     * 共享数据、替换版本号的新快照；构建时间沿用当前快照
+     */
+    ItemSimilarityMatrix withVersions(long newVersion, long newSourceMatrixVersion) {
+        return new ItemSimilarityMatrix(newVersion, newSourceMatrixVersion, builtAtMillis,
+                spotIds, ptr, neighborIds, similarities);
+    }
+
+    /**
+     * 替换部分景点行生成新快照，空行表示移除该景点；构建时间沿用当前快照
+     * 未变化的连续景点行按段整体复制，只有被替换的行从 Map 写入，开销与变化行数和数组长度成正比，不装箱
+     */
+    public ItemSimilarityMatrix withRows(Map<Long, Map<Long, Double>> replacedRows, long newVersion,
+                                         long newSourceMatrixVersion) {
+        long[] replacedIds = new long[replacedRows.size()];
+        int r = 0;
+        for (Long spotId : replacedRows.keySet()) {
+            replacedIds[r++] = spotId;
+        }
+        Arrays.sort(replacedIds);
+
+        // 第一遍：合并两个有序ID序列，统计新快照的景点数与相似景点总数
+        int newSpotCount = 0;
+        int total = 0;
+        int i = 0;
+        for (long replacedId : replacedIds) {
+            int runEnd = runEnd(replacedId);
+            newSpotCount += runEnd - i;
+            total += ptr[runEnd] - ptr[i];
+            i = runEnd;
+            if (i < spotIds.length && spotIds[i] == replacedId) {
+                i++;
+            }
+            int size = replacedRows.get(replacedId).size();
+            if (size > 0) {
+                newSpotCount++;
+                total += size;
+            }
+        }
+        newSpotCount += spotIds.length - i;
+        total += ptr[spotIds.length] - ptr[i];
+
+        // 第二遍：写入新数组
+        long[] newSpotIds = new long[newSpotCount];
+        int[] newPtr = new int[newSpotCount + 1];
+        long[] newNeighborIds = new long[total];
+        float[] newSimilarities = new float[total];
+        int s = 0;
+        int pos = 0;
+        i = 0;
+        for (long replacedId : replacedIds) {
+            int runEnd = runEnd(replacedId);
+            s = copyRun(i, runEnd, newSpotIds, newPtr, newNeighborIds, newSimilarities, s, pos);
+            pos += ptr[runEnd] - ptr[i];
+            i = runEnd;
+            if (i < spotIds.length && spotIds[i] == replacedId) {
+                i++;
+            }
+            Map<Long, Double> row = replacedRows.get(replacedId);
+            if (!row.isEmpty()) {
+                newSpotIds[s] = replacedId;
+                newPtr[s++] = pos;
+                for (Map.Entry<Long, Double> neighbor : row.entrySet()) {
+                    newNeighborIds[pos] = neighbor.getKey();
+                    newSimilarities[pos] = neighbor.getValue().floatValue();
+                    pos++;
+                }
+            }
+        }
+        s = copyRun(i, spotIds.length, newSpotIds, newPtr, newNeighborIds, newSimilarities, s, pos);
+        pos += ptr[spotIds.length] - ptr[i];
+        newPtr[s] = pos;
+        return new ItemSimilarityMatrix(newVersion, newSourceMatrixVersion, builtAtMillis,
+                newSpotIds, newPtr, newNeighborIds, newSimilarities);
+    }
+
+    /**
+     * spotIds 中第一个不小于 spotId 的下标（未变化行段的结束位置）
+     */
+    private int runEnd(long spotId) {
+        int idx = Arrays.binarySearch(spotIds, spotId);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    /**
+     * 把当前快照 [from, to) 的景点行整段复制到新数组的 s / pos 处，返回新的景点写入位置
+     */
+    private int copyRun(int from, int to, long[] newSpotIds, int[] newPtr, long[] newNeighborIds,
+                        float[] newSimilarities, int s, int pos) {
+        if (from >= to) {
+            return s;
+        }
+        int start = ptr[from];
+        int length = ptr[to] - start;
+        System.arraycopy(spotIds, from, newSpotIds, s, to - from);
+        System.arraycopy(neighborIds, start, newNeighborIds, pos, length);
+        System.arraycopy(similarities, start, newSimilarities, pos, length);
+        int shift = pos - start;
+        for (int k = from; k < to; k++) {
+            newPtr[s++] = ptr[k] + shift;
+        }
+        return s;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 构建时所用交互矩阵的版本
+     */
+    public long getSourceMatrixVersion() {
+        return sourceMatrixVersion;
+    }
+
+    /**
+     * 最近一次全量构建的时间
+     */
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    public boolean isEmpty() {
+        return spotIds.length == 0;
+    }
+
+    public int spotCount() {
+        return spotIds.length;
+    }
+
+    public int neighborCount() {
+        return neighborIds.length;
+    }
+
+    /**
+     * 景点在矩阵中的下标，不存在返回 -1
+     */
+    public int spotIndex(long spotId) {
+        int idx = Arrays.binarySearch(spotIds, spotId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    public long spotIdAt(int spotIndex) {
+        return spotIds[spotIndex];
+    }
+
+    public int neighborStart(int spotIndex) {
+        return ptr[spotIndex];
+    }
+
+    public int neighborEnd(int spotIndex) {
+        return ptr[spotIndex + 1];
+    }
+
+    public long neighborId(int pos) {
+        return neighborIds[pos];
+    }
+
+    public float similarity(int pos) {
+        return similarities[pos];
+    }
+
+    /**
+     * 指定景点的前 limit 个相似景点（按相似度降序）
+     */
+    public Map<Long, Double> similarSpots(long spotId, int limit) {
+        int s = spotIndex(spotId);
+        return s < 0 ? Collections.emptyMap() : row(s, limit);
+    }
+
+    private Map<Long, Double> row(int spotIndex, int limit) {
+        Map<Long, Double> row = new LinkedHashMap<>();
+        int start = ptr[spotIndex];
+        int end = ptr[spotIndex + 1];
+        if (limit < end - start) {
+            end = start + Math.max(limit, 0);
+        }
+        for (int pos = start; pos < end; pos++) {
+            row.put(neighborIds[pos], (double) similarities[pos]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,209 @@
+package com.tibet.tourism.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 矩阵分解推荐服务（隐式反馈 ALS）
+ * 离线在进程内训练用户/景点隐向量，训练完成后带版本号整体替换模型；
+ * 在线为用户打分只需一次用户向量与全部景点向量的内积扫描，取前N个未访问景点写入 MATRIX_FACTORIZATION 通道。
+ * 训练之后新增或变更了访问记录的用户按当前记录即时求解向量，不必等待下次训练。
+ * 训练由 ModelBuildJobService 调度（启动、cron 与管理员触发），不会与其他模型构建重叠
+ */
+@Service
+public class MatrixFactorizationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixFactorizationService.class);
+
+    private static final long INIT_SEED = 20240601L;
+
+    @Autowired
+    private InteractionMatrixService interactionMatrixService;
+
+    @Value("${recommendation.als.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.als.factors:32}")
+    private int factors;
+
+    @Value("${recommendation.als.iterations:10}")
+    private int iterations;
+
+    @Value("${recommendation.als.regularization:5}")
+    private double regularization;
+
+    @Value("${recommendation.als.alpha:10}")
+    private double alpha;
+
+    @Value("${recommendation.als.candidates:50}")
+    private int candidateLimit;
+
+    @Value("${recommendation.als.weight:0.2}")
+    private double weight;
+
+    @Value("${recommendation.als.replace-user-cf:false}")
+    private boolean replaceUserBasedCF;
+
+    private volatile AlsModel model = AlsModel.empty();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final ForkJoinPool trainingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // 每个线程复用的用户向量与前N缓冲
+    private static final ThreadLocal<ScoringScratch> SCRATCH = ThreadLocal.withInitial(ScoringScratch::new);
+
+    /**
+     * 当前模型
+     */
+    public AlsModel getModel() {
+        return model;
+    }
+
+    /**
+     * 模型已就绪且配置为替代 User-Based CF 时，推荐流程跳过相似用户计算
+     */
+    public boolean isReplacingUserBasedCF() {
+        return enabled && replaceUserBasedCF && !model.isEmpty();
+    }
+
+    /**
+     * 混合协同过滤中矩阵分解得分的权重（替代 User-Based CF 时由调用方沿用其权重）
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 基于当前交互矩阵全量训练并发布，返回新模型；交互矩阵为空时不训练，返回 null
+     * 取消时抛出 CancellationException，当前模型保持不变
+     */
+    public AlsModel rebuild(BuildProgress progress) {
+        long startTime = System.currentTimeMillis();
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        if (matrix.nonZeroCount() == 0) {
+            logger.info("交互矩阵为空，跳过矩阵分解训练");
+            return null;
+        }
+        AlsModel trained = AlsTrainer.train(matrix, factors, iterations, regularization, alpha, INIT_SEED,
+                trainingPool, versionSequence.incrementAndGet(), progress);
+        model = trained;
+        logger.info("🧮 矩阵分解模型训练完成: 版本 {}, {} 用户 × {} 景点, {} 维, {} 轮, 耗时 {}ms",
+                trained.getVersion(), trained.userCount(), trained.spotCount(), factors, iterations,
+                System.currentTimeMillis() - startTime);
+        return trained;
+    }
+
+    /**
+     * 矩阵分解打分：按序号顺序归并景点目录与模型中的景点，跳过已访问景点，
+     * 取内积最高的前 candidates 个写入 MATRIX_FACTORIZATION 通道，返回写入的景点数
+     */
+    int recommendByMatrixFactorization(InteractionMatrix matrix, int userIndex, ScoringBuffer buffer) {
+        AlsModel current = model;
+        if (!enabled || current.isEmpty() || userIndex < 0 || candidateLimit <= 0) {
+            return 0;
+        }
+        ScoringScratch scratch = SCRATCH.get().prepare(current.getFactors(), candidateLimit);
+        if (!current.userVector(matrix, userIndex, scratch.userVector)) {
+            return 0;
+        }
+
+        // 景点目录与模型中的景点ID均升序，一次归并即可对齐
+        SpotCatalog catalog = buffer.getCatalog();
+        int ordinalCount = catalog.ordinalCount();
+        int spotIndex = 0;
+        int size = 0;
+        for (int ordinal = 0; ordinal < ordinalCount && spotIndex < current.spotCount(); ordinal++) {
+            long spotId = catalog.spotIdAt(ordinal);
+            while (spotIndex < current.spotCount() && current.spotIdAt(spotIndex) < spotId) {
+                spotIndex++;
+            }
+            if (spotIndex == current.spotCount() || current.spotIdAt(spotIndex) != spotId
+                    || buffer.isVisited(ordinal)) {
+                continue;
+            }
+            size = scratch.offer(size, ordinal, current.score(scratch.userVector, spotIndex));
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.set(ScoringBuffer.MATRIX_FACTORIZATION, scratch.topOrdinals[i], scratch.topScores[i]);
+        }
+        return size;
+    }
+
+    /**
+     * 打分用的线程内工作区：用户向量与按得分维护的最小堆
+     */
+    private static final class ScoringScratch {
+        float[] userVector = new float[0];
+        int[] topOrdinals = new int[0];
+        double[] topScores = new double[0];
+
+        ScoringScratch prepare(int factors, int limit) {
+            if (userVector.length < factors) {
+                userVector = new float[factors];
+            }
+            if (topOrdinals.length != limit) {
+                topOrdinals = new int[limit];
+                topScores = new double[limit];
+            }
+            return this;
+        }
+
+        /**
+         * 加入候选，堆满后只替换堆顶（当前最低分），返回新的元素个数
+         */
+        int offer(int size, int ordinal, double score) {
+            if (size < topOrdinals.length) {
+                int pos = size;
+                while (pos > 0) {
+                    int parent = (pos - 1) >>> 1;
+                    if (topScores[parent] <= score) {
+                        break;
+                    }
+                    topOrdinals[pos] = topOrdinals[parent];
+                    topScores[pos] = topScores[parent];
+                    pos = parent;
+                }
+                topOrdinals[pos] = ordinal;
+                topScores[pos] = score;
+                return size + 1;
+            }
+            if (score <= topScores[0]) {
+                return size;
+            }
+            int pos = 0;
+            while (true) {
+                int child = pos * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && topScores[child + 1] < topScores[child]) {
+                    child++;
+                }
+                if (topScores[child] >= score) {
+                    break;
+                }
+                topOrdinals[pos] = topOrdinals[child];
+                topScores[pos] = topScores[child];
+                pos = child;
+            }
+            topOrdinals[pos] = ordinal;
+            topScores[pos] = score;
+            return size;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trainingPool.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package com.tibet.tourism.service;
+
+/**
+ * 离线模型构建任务
+ */
+public enum ModelBuildJob {
+    ITEM_SIMILARITY("item-similarity"),      // 景点相似度矩阵全量重建
+    USER_NEIGHBORHOOD("user-neighborhood"),  // 用户近邻索引
+    POPULARITY("popularity"),                // 热门景点排名（冷启动与兜底）
+    TAG_PROFILES("tag-profiles"),            // 活跃用户标签画像预热
+    MATRIX_FACTORIZATION("matrix-factorization"); // 隐式反馈 ALS 模型
+
+    private final String tag;
+
+    ModelBuildJob(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * 按名称查找（接受 item-similarity 或 ITEM_SIMILARITY），不存在返回 null
+     */
+    public static ModelBuildJob fromName(String name) {
+        for (ModelBuildJob job : values()) {
+            if (job.tag.equalsIgnoreCase(name) || job.name().equalsIgnoreCase(name)) {
+                return job;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,427 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import com.tibet.tourism.event.ModelBuildRequestedEvent;
+import com.tibet.tourism.event.VisitHistoryChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 离线模型构建任务调度：景点相似度、用户近邻、热门排名、标签画像与矩阵分解
+ * - 触发方式：cron、新增交互数达到阈值、启动、管理员手动触发、请求路径发现模型缺失（ModelBuildRequestedEvent）
+ * - 所有构建在同一个后台线程上依次执行，任意两个构建不会重叠；同一任务已在排队或运行时，新的触发合并到该次运行
+ * - 构建方按进度推进并定期检查取消标记，取消或失败时已发布的旧模型保持不变
+ * - 保留最近 history-size 次运行记录；构建耗时、模型条目数与字节数通过 Micrometer 暴露，用于容量规划：
+ *   recommendation.model.build{job,status}、recommendation.model.entries{job}、recommendation.model.bytes{job}、
+ *   recommendation.model.build.progress{job}
+ */
+@Service
+public class ModelBuildJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelBuildJobService.class);
+
+    @Autowired
+    private ItemBasedRecommendationService itemBasedRecommendationService;
+
+    @Autowired
+    private UserNeighborhoodService userNeighborhoodService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private MatrixFactorizationService matrixFactorizationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${recommendation.jobs.history-size:50}")
+    private int historySize;
+
+    @Value("${recommendation.jobs.item-similarity.cron:0 0 4 * * ?}")
+    private String itemSimilarityCron;
+
+    @Value("${recommendation.jobs.item-similarity.threshold:0}")
+    private long itemSimilarityThreshold;
+
+    @Value("${recommendation.jobs.user-neighborhood.cron:0 30 3 * * ?}")
+    private String userNeighborhoodCron;
+
+    @Value("${recommendation.jobs.user-neighborhood.threshold:500}")
+    private long userNeighborhoodThreshold;
+
+    @Value("${recommendation.jobs.popularity.cron:0 0 * * * ?}")
+    private String popularityCron;
+
+    @Value("${recommendation.jobs.popularity.threshold:200}")
+    private long popularityThreshold;
+
+    @Value("${recommendation.jobs.tag-profiles.cron:0 45 4 * * ?}")
+    private String tagProfilesCron;
+
+    @Value("${recommendation.jobs.tag-profiles.threshold:0}")
+    private long tagProfilesThreshold;
+
+    @Value("${recommendation.jobs.matrix-factorization.cron:0 0 5 * * ?}")
+    private String matrixFactorizationCron;
+
+    @Value("${recommendation.jobs.matrix-factorization.threshold:0}")
+    private long matrixFactorizationThreshold;
+
+    private final AtomicLong runSequence = new AtomicLong();
+    private final AtomicLong interactionCount = new AtomicLong();   // 启动以来的新增交互数
+    private final Map<ModelBuildJob, Long> thresholds = new EnumMap<>(ModelBuildJob.class);
+    private final Map<ModelBuildJob, String> crons = new EnumMap<>(ModelBuildJob.class);
+    private final Map<ModelBuildJob, AtomicLong> interactionsAtLastTrigger = new EnumMap<>(ModelBuildJob.class);
+    private final Map<ModelBuildJob, AtomicLong> lastEntries = new EnumMap<>(ModelBuildJob.class);
+    private final Map<ModelBuildJob, AtomicLong> lastBytes = new EnumMap<>(ModelBuildJob.class);
+
+    // 排队或运行中的任务与最近完成的运行，由 activeRuns 加锁保护
+    private final Map<ModelBuildJob, ModelBuildRun> activeRuns = new EnumMap<>(ModelBuildJob.class);
+    private final Map<ModelBuildJob, ModelBuildRun> lastFinished = new EnumMap<>(ModelBuildJob.class);
+    private final Deque<ModelBuildRun> history = new ArrayDeque<>();
+
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "model-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void registerJobs() {
+        thresholds.put(ModelBuildJob.ITEM_SIMILARITY, itemSimilarityThreshold);
+        thresholds.put(ModelBuildJob.USER_NEIGHBORHOOD, userNeighborhoodThreshold);
+        thresholds.put(ModelBuildJob.POPULARITY, popularityThreshold);
+        thresholds.put(ModelBuildJob.TAG_PROFILES, tagProfilesThreshold);
+        thresholds.put(ModelBuildJob.MATRIX_FACTORIZATION, matrixFactorizationThreshold);
+        crons.put(ModelBuildJob.ITEM_SIMILARITY, itemSimilarityCron);
+        crons.put(ModelBuildJob.USER_NEIGHBORHOOD, userNeighborhoodCron);
+        crons.put(ModelBuildJob.POPULARITY, popularityCron);
+        crons.put(ModelBuildJob.TAG_PROFILES, tagProfilesCron);
+        crons.put(ModelBuildJob.MATRIX_FACTORIZATION, matrixFactorizationCron);
+        for (ModelBuildJob job : ModelBuildJob.values()) {
+            interactionsAtLastTrigger.put(job, new AtomicLong());
+            lastEntries.put(job, new AtomicLong());
+            lastBytes.put(job, new AtomicLong());
+            Gauge.builder("recommendation.model.entries", lastEntries.get(job), AtomicLong::get)
+                    .description("最近一次构建的模型条目数").tag("job", job.getTag()).register(meterRegistry);
+            Gauge.builder("recommendation.model.bytes", lastBytes.get(job), AtomicLong::get)
+                    .description("最近一次构建的模型序列化字节数").baseUnit("bytes").tag("job", job.getTag())
+                    .register(meterRegistry);
+            Gauge.builder("recommendation.model.build.progress", this, service -> service.activeProgress(job))
+                    .description("运行中构建的完成比例，未运行时为 0").tag("job", job.getTag()).register(meterRegistry);
+        }
+    }
+
+    /**
+     * 启动完成后在后台构建近邻索引（已从一致的模型快照恢复时跳过）、热门排名与矩阵分解模型
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void initialize() {
+        if (userNeighborhoodService.isEnabled()) {
+            if (userNeighborhoodService.isCurrent()) {
+                logger.info("👥 用户近邻索引已从模型快照恢复且与交互矩阵一致，跳过启动构建");
+            } else {
+                submit(ModelBuildJob.USER_NEIGHBORHOOD, "startup");
+            }
+        }
+        submit(ModelBuildJob.POPULARITY, "startup");
+        submitIfEnabled(ModelBuildJob.MATRIX_FACTORIZATION, "startup");
+    }
+
+    @Scheduled(cron = "${recommendation.jobs.item-similarity.cron:0 0 4 * * ?}")
+    public void scheduledItemSimilarity() {
+        submitIfEnabled(ModelBuildJob.ITEM_SIMILARITY, "cron");
+    }
+
+    @Scheduled(cron = "${recommendation.jobs.user-neighborhood.cron:0 30 3 * * ?}")
+    public void scheduledUserNeighborhood() {
+        submitIfEnabled(ModelBuildJob.USER_NEIGHBORHOOD, "cron");
+    }
+
+    @Scheduled(cron = "${recommendation.jobs.popularity.cron:0 0 * * * ?}")
+    public void scheduledPopularity() {
+        submitIfEnabled(ModelBuildJob.POPULARITY, "cron");
+    }
+
+    @Scheduled(cron = "${recommendation.jobs.tag-profiles.cron:0 45 4 * * ?}")
+    public void scheduledTagProfiles() {
+        submitIfEnabled(ModelBuildJob.TAG_PROFILES, "cron");
+    }
+
+    @Scheduled(cron = "${recommendation.jobs.matrix-factorization.cron:0 0 5 * * ?}")
+    public void scheduledMatrixFactorization() {
+        submitIfEnabled(ModelBuildJob.MATRIX_FACTORIZATION, "cron");
+    }
+
+    /**
+     * 请求路径发现模型缺失时提交构建，请求不等待
+     */
+    @EventListener
+    public void onModelBuildRequested(ModelBuildRequestedEvent event) {
+        submitIfEnabled(event.getJob(), event.getTrigger());
+    }
+
+    /**
+     * 访问记录提交后计数（每个事件对应一对用户-景点的新增或更新）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitHistoryChanged(VisitHistoryChangedEvent event) {
+        interactionCount.incrementAndGet();
+    }
+
+    /**
+     * 交互矩阵增量更新后检查阈值：此时矩阵已包含这些交互，触发的构建能读到它们
+     */
+    @EventListener
+    public void onInteractionMatrixChanged(InteractionMatrixChangedEvent event) {
+        if (event.isFullRebuild()) {
+            return;
+        }
+        long count = interactionCount.get();
+        for (ModelBuildJob job : ModelBuildJob.values()) {
+            long threshold = thresholds.get(job);
+            if (threshold > 0 && count - interactionsAtLastTrigger.get(job).get() >= threshold) {
+                submitIfEnabled(job, "threshold");
+            }
+        }
+    }
+
+    private void submitIfEnabled(ModelBuildJob job, String trigger) {
+        if (job == ModelBuildJob.USER_NEIGHBORHOOD && !userNeighborhoodService.isEnabled()) {
+            return;
+        }
+        if (job == ModelBuildJob.MATRIX_FACTORIZATION && !matrixFactorizationService.isEnabled()) {
+            return;
+        }
+        submit(job, trigger);
+    }
+
+    /**
+     * 提交构建；同一任务已在排队或运行时返回该次运行，不重复提交
+     */
+    public ModelBuildRun submit(ModelBuildJob job, String trigger) {
+        synchronized (activeRuns) {
+            ModelBuildRun active = activeRuns.get(job);
+            if (active != null) {
+                logger.debug("模型构建 {} 已在{}，合并本次触发（{}）", job.getTag(),
+                        active.getStatus() == ModelBuildRun.Status.QUEUED ? "排队" : "运行", trigger);
+                return active;
+            }
+            ModelBuildRun run = new ModelBuildRun(runSequence.incrementAndGet(), job, trigger);
+            activeRuns.put(job, run);
+            interactionsAtLastTrigger.get(job).set(interactionCount.get());
+            history.addFirst(run);
+            while (history.size() > Math.max(1, historySize)) {
+                history.removeLast();
+            }
+            try {
+                buildExecutor.execute(() -> execute(run));
+            } catch (RejectedExecutionException e) {
+                complete(run, ModelBuildRun.Status.FAILED, "调度器已关闭");
+            }
+            return run;
+        }
+    }
+
+    /**
+     * 提交构建并等待结束（管理员同步接口使用）
+     */
+    public ModelBuildRun runAndWait(ModelBuildJob job, String trigger) {
+        return submit(job, trigger).completion().join();
+    }
+
+    /**
+     * 取消排队或运行中的构建，返回被取消的运行，没有活动运行时返回 null
+     */
+    public ModelBuildRun cancel(ModelBuildJob job) {
+        synchronized (activeRuns) {
+            ModelBuildRun active = activeRuns.get(job);
+            if (active != null) {
+                active.progress().cancel();
+                logger.info("🛑 已请求取消模型构建 {}（运行 #{}）", job.getTag(), active.getId());
+            }
+            return active;
+        }
+    }
+
+    private void execute(ModelBuildRun run) {
+        ModelBuildJob job = run.job();
+        BuildProgress progress = run.progress();
+        if (progress.isCancelled()) {
+            complete(run, ModelBuildRun.Status.CANCELLED, "排队中被取消");
+            return;
+        }
+        run.markRunning();
+        logger.info("🏗️  模型构建开始: {}（运行 #{}, 触发: {}）", job.getTag(), run.getId(), run.getTrigger());
+        try {
+            switch (job) {
+                case ITEM_SIMILARITY -> {
+                    ItemSimilarityMatrix matrix = itemBasedRecommendationService.rebuild(progress);
+                    run.recordSize(matrix.neighborCount(), ModelSnapshot.sectionBytes(matrix));
+                    complete(run, ModelBuildRun.Status.SUCCEEDED,
+                            "版本 " + matrix.getVersion() + ", " + matrix.spotCount() + " 个景点");
+                }
+                case USER_NEIGHBORHOOD -> {
+                    UserNeighborhoodIndex index = userNeighborhoodService.rebuild(progress);
+                    if (index == null) {
+                        complete(run, ModelBuildRun.Status.FAILED, "已有近邻索引构建在进行");
+                        return;
+                    }
+                    run.recordSize(index.neighborCount(), ModelSnapshot.sectionBytes(index));
+                    complete(run, ModelBuildRun.Status.SUCCEEDED,
+                            "版本 " + index.getVersion() + ", " + index.userCount() + " 个用户");
+                }
+                case POPULARITY -> {
+                    long[] ranking = recommendationService.rebuildPopularity(progress);
+                    run.recordSize(ranking.length, 8L * ranking.length);
+                    complete(run, ModelBuildRun.Status.SUCCEEDED, ranking.length + " 个景点");
+                }
+                case TAG_PROFILES -> {
+                    Map<Long, Map<String, Double>> profiles = recommendationService.rebuildTagProfiles(progress);
+                    long weights = profiles.values().stream().mapToLong(Map::size).sum();
+                    run.recordSize(weights, ModelSnapshot.sectionBytes(profiles));
+                    complete(run, ModelBuildRun.Status.SUCCEEDED, profiles.size() + " 个用户画像");
+                }
+                case MATRIX_FACTORIZATION -> {
+                    AlsModel model = matrixFactorizationService.rebuild(progress);
+                    if (model == null) {
+                        complete(run, ModelBuildRun.Status.SUCCEEDED, "交互矩阵为空，未训练");
+                        return;
+                    }
+                    // 隐向量为 float，另有用户/景点ID与 factors × factors 的 Gram 矩阵
+                    long rows = (long) model.userCount() + model.spotCount();
+                    long entries = rows * model.getFactors();
+                    run.recordSize(entries, 4L * entries + 8L * rows + 8L * model.getFactors() * model.getFactors());
+                    complete(run, ModelBuildRun.Status.SUCCEEDED,
+                            "版本 " + model.getVersion() + ", " + model.userCount() + " 个用户 × "
+                                    + model.spotCount() + " 个景点");
+                }
+            }
+        } catch (CancellationException e) {
+            complete(run, ModelBuildRun.Status.CANCELLED, "运行中被取消");
+        } catch (Exception e) {
+            logger.error("模型构建 {} 失败（运行 #{}）", job.getTag(), run.getId(), e);
+            complete(run, ModelBuildRun.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * 结束运行：先移出活动表（等待方收到结果后可立即重新提交），再记录指标并完成
+     */
+    private void complete(ModelBuildRun run, ModelBuildRun.Status status, String message) {
+        ModelBuildJob job = run.job();
+        synchronized (activeRuns) {
+            activeRuns.remove(job, run);
+            lastFinished.put(job, run);
+        }
+        run.finish(status, message);
+        if (status == ModelBuildRun.Status.SUCCEEDED) {
+            lastEntries.get(job).set(run.getEntries());
+            lastBytes.get(job).set(run.getBytes());
+        }
+        if (run.getStartedAtMillis() > 0) {
+            Timer.builder("recommendation.model.build")
+                    .description("模型构建耗时")
+                    .tag("job", job.getTag())
+                    .tag("status", status.name().toLowerCase())
+                    .register(meterRegistry)
+                    .record(run.getDurationMillis(), TimeUnit.MILLISECONDS);
+        }
+        logger.info("🏗️  模型构建结束: {}（运行 #{}）{}, 耗时 {}ms, 条目 {}, 字节 {}{}",
+                job.getTag(), run.getId(), status, run.getDurationMillis(), run.getEntries(), run.getBytes(),
+                message != null ? ", " + message : "");
+    }
+
+    private double activeProgress(ModelBuildJob job) {
+        synchronized (activeRuns) {
+            ModelBuildRun active = activeRuns.get(job);
+            return active != null ? active.getProgress() : 0.0;
+        }
+    }
+
+    /**
+     * 各任务的触发配置、距上次触发的新增交互数、活动运行与最近完成的运行
+     */
+    public List<Map<String, Object>> getJobs() {
+        long count = interactionCount.get();
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        synchronized (activeRuns) {
+            for (ModelBuildJob job : ModelBuildJob.values()) {
+                Map<String, Object> status = new LinkedHashMap<>();
+                status.put("job", job.getTag());
+                status.put("cron", crons.get(job));
+                status.put("threshold", thresholds.get(job));
+                status.put("interactionsSinceLastTrigger", count - interactionsAtLastTrigger.get(job).get());
+                status.put("active", activeRuns.get(job));
+                status.put("lastRun", lastFinished.get(job));
+                jobs.add(status);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * 最近的运行记录（新的在前）
+     */
+    public List<ModelBuildRun> getHistory() {
+        synchronized (activeRuns) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    public ModelBuildRun getRun(long runId) {
+        synchronized (activeRuns) {
+            for (ModelBuildRun run : history) {
+                if (run.getId() == runId) {
+                    return run;
+                }
+            }
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+        List<ModelBuildRun> active;
+        synchronized (activeRuns) {
+            active = new ArrayList<>(activeRuns.values());
+        }
+        for (ModelBuildRun run : active) {
+            run.progress().cancel();
+            if (run.getStatus() == ModelBuildRun.Status.QUEUED) {
+                complete(run, ModelBuildRun.Status.CANCELLED, "调度器已关闭");
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.tibet.tourism.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次模型构建的记录：触发方式、状态、进度、耗时与模型规模
+ * 由构建线程更新，查询接口直接序列化读取
+ */
+public final class ModelBuildRun {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final long id;
+    private final ModelBuildJob job;
+    private final String trigger;
+    private final long queuedAtMillis;
+    private final BuildProgress progress = new BuildProgress();
+    private final CompletableFuture<ModelBuildRun> completion = new CompletableFuture<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long startedAtMillis;
+    private volatile long finishedAtMillis;
+    private volatile long entries = -1L;
+    private volatile long bytes = -1L;
+    private volatile String message;
+
+    ModelBuildRun(long id, ModelBuildJob job, String trigger) {
+        this.id = id;
+        this.job = job;
+        this.trigger = trigger;
+        this.queuedAtMillis = System.currentTimeMillis();
+    }
+
+    void markRunning() {
+        startedAtMillis = System.currentTimeMillis();
+        status = Status.RUNNING;
+    }
+
+    void recordSize(long entries, long bytes) {
+        this.entries = entries;
+        this.bytes = bytes;
+    }
+
+    void finish(Status status, String message) {
+        this.message = message;
+        this.finishedAtMillis = System.currentTimeMillis();
+        this.status = status;
+        completion.complete(this);
+    }
+
+    ModelBuildJob job() {
+        return job;
+    }
+
+    BuildProgress progress() {
+        return progress;
+    }
+
+    /**
+     * 构建结束（成功、失败或取消）时完成
+     */
+    public CompletableFuture<ModelBuildRun> completion() {
+        return completion;
+    }
+
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getJob() {
+        return job.getTag();
+    }
+
+    public String getTrigger() {
+        return trigger;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getQueuedAtMillis() {
+        return queuedAtMillis;
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    /**
+     * 构建耗时，排队中为 0，运行中为已用时间
+     */
+    public long getDurationMillis() {
+        if (startedAtMillis == 0L) {
+            return 0L;
+        }
+        return (finishedAtMillis != 0L ? finishedAtMillis : System.currentTimeMillis()) - startedAtMillis;
+    }
+
+    public double getProgress() {
+        return status == Status.SUCCEEDED ? 1.0 : progress.fraction();
+    }
+
+    public long getProcessed() {
+        return progress.getCompleted();
+    }
+
+    public long getTotal() {
+        return progress.getTotal();
+    }
+
+    /**
+     * 模型条目数（相似景点对、近邻、排名景点或画像标签权重），未成功时为 -1
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * 模型序列化后的字节数（与模型快照格式一致），未成功时为 -1
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
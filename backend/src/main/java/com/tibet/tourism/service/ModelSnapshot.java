@@ -0,0 +1,371 @@
+package com.tibet.tourism.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 推荐模型快照：景点相似度矩阵、用户近邻索引与热点用户的标签画像，序列化为带版本的二进制文件，
+ * 重启后通过内存映射读回，不必等待全量构建即可提供完整质量的推荐
+ * 文件头 64 字节（小端）：
+ * <pre>
+ *   0  int   魔数 "TTMS"
+ *   4  int   格式版本
+ *   8  long  写出时间
+ *  16  long  景点目录指纹
+ *  24  long  交互矩阵指纹
+ *  32  long  相似度矩阵最近一次全量构建时间
+ *  40  long  近邻索引构建时间
+ *  48  long  正文长度
+ *  56  int   正文 CRC32
+ * </pre>
+ * 正文依次为相似度矩阵、近邻索引（各为 ID 数组、行指针、近邻 ID、相似度的扁平数组）与标签画像（标签字典 + 每个用户的 [标签下标, 权重]）。
+ * 指纹按内容计算，与进程内递增的版本号无关，重启后仍可用来判断快照是否与当前数据一致
+ */
+public final class ModelSnapshot {
+
+    public static final int MAGIC = 0x54544D53;       // "TTMS"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+
+    private final long createdAtMillis;
+    private final long catalogFingerprint;
+    private final long matrixFingerprint;
+    private final ItemSimilarityMatrix itemSimilarity;
+    private final UserNeighborhoodIndex neighborhood;
+    private final Map<Long, Map<String, Double>> tagProfiles;
+
+    ModelSnapshot(long createdAtMillis, long catalogFingerprint, long matrixFingerprint,
+                  ItemSimilarityMatrix itemSimilarity, UserNeighborhoodIndex neighborhood,
+                  Map<Long, Map<String, Double>> tagProfiles) {
+        this.createdAtMillis = createdAtMillis;
+        this.catalogFingerprint = catalogFingerprint;
+        this.matrixFingerprint = matrixFingerprint;
+        this.itemSimilarity = itemSimilarity;
+        this.neighborhood = neighborhood;
+        this.tagProfiles = tagProfiles;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getCatalogFingerprint() {
+        return catalogFingerprint;
+    }
+
+    public long getMatrixFingerprint() {
+        return matrixFingerprint;
+    }
+
+    /**
+     * 读回的相似度矩阵，版本号为 0，由持有方重新编号后发布
+     */
+    public ItemSimilarityMatrix getItemSimilarity() {
+        return itemSimilarity;
+    }
+
+    /**
+     * 读回的近邻索引，版本号为 0，由持有方重新编号后发布
+     */
+    public UserNeighborhoodIndex getNeighborhood() {
+        return neighborhood;
+    }
+
+    public Map<Long, Map<String, Double>> getTagProfiles() {
+        return tagProfiles;
+    }
+
+    /**
+     * 景点目录指纹：景点ID、分类与标签
+     */
+    public static long fingerprint(SpotCatalog catalog) {
+        long hash = mix(0L, catalog.ordinalCount());
+        for (int ordinal = 0; ordinal < catalog.ordinalCount(); ordinal++) {
+            hash = mix(hash, catalog.spotIdAt(ordinal));
+            hash = mix(hash, catalog.categoryAt(ordinal));
+            for (String tag : catalog.tagsAt(ordinal)) {
+                hash = mix(hash, tag.hashCode());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 交互矩阵指纹：每条交互的用户、景点与各字段
+     */
+    public static long fingerprint(InteractionMatrix matrix) {
+        long hash = mix(mix(0L, matrix.userCount()), matrix.nonZeroCount());
+        for (int u = 0; u < matrix.userCount(); u++) {
+            hash = mix(hash, matrix.userIdAt(u));
+            for (int e = matrix.rowStart(u); e < matrix.rowEnd(u); e++) {
+                hash = mix(hash, matrix.entrySpotId(e));
+                hash = mix(hash, Float.floatToIntBits(matrix.entryRating(e)));
+                hash = mix(hash, ((long) matrix.entryClicks(e) << 32) | (matrix.entryDwellSeconds(e) & 0xFFFFFFFFL));
+                hash = mix(hash, matrix.entryVisitEpochSeconds(e));
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * 相似度矩阵在快照中的字节数
+     */
+    static long sectionBytes(ItemSimilarityMatrix items) {
+        return 8L + 8L * items.spotCount() + 4L * (items.spotCount() + 1) + 12L * items.neighborCount();
+    }
+
+    /**
+     * 近邻索引在快照中的字节数
+     */
+    static long sectionBytes(UserNeighborhoodIndex users) {
+        return 8L + 8L * users.userCount() + 4L * (users.userCount() + 1) + 12L * users.neighborCount();
+    }
+
+    /**
+     * 标签画像在快照中的字节数（不含标签字典）
+     */
+    static long sectionBytes(Map<Long, Map<String, Double>> tagProfiles) {
+        long bytes = 4L;
+        for (Map<String, Double> profile : tagProfiles.values()) {
+            bytes += 12L + 12L * profile.size();
+        }
+        return bytes;
+    }
+
+    /**
+     * 写出快照：先写临时文件并刷盘，再原子替换目标文件，返回文件字节数
+     */
+    public static long write(ModelSnapshot snapshot, Path target) throws IOException {
+        ItemSimilarityMatrix items = snapshot.itemSimilarity;
+        UserNeighborhoodIndex users = snapshot.neighborhood;
+
+        // 标签字典
+        Map<String, Integer> tagIndex = new HashMap<>();
+        List<byte[]> tagBytes = new ArrayList<>();
+        for (Map<String, Double> profile : snapshot.tagProfiles.values()) {
+            for (String tag : profile.keySet()) {
+                if (tagIndex.putIfAbsent(tag, tagBytes.size()) == null) {
+                    tagBytes.add(tag.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        long dictionaryBytes = 4L;
+        for (byte[] bytes : tagBytes) {
+            dictionaryBytes += 4L + bytes.length;
+        }
+
+        long bodyBytes = sectionBytes(items) + sectionBytes(users) + dictionaryBytes + sectionBytes(snapshot.tagProfiles);
+        if (HEADER_BYTES + bodyBytes > Integer.MAX_VALUE) {
+            throw new IOException("模型快照超过 2GB: " + (HEADER_BYTES + bodyBytes) + " 字节");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_BYTES + bodyBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_BYTES);
+
+        buffer.putInt(items.spotCount()).putInt(items.neighborCount());
+        for (int s = 0; s < items.spotCount(); s++) {
+            buffer.putLong(items.spotIdAt(s));
+        }
+        for (int s = 0; s < items.spotCount(); s++) {
+            buffer.putInt(items.neighborStart(s));
+        }
+        buffer.putInt(items.neighborCount());
+        for (int pos = 0; pos < items.neighborCount(); pos++) {
+            buffer.putLong(items.neighborId(pos));
+        }
+        for (int pos = 0; pos < items.neighborCount(); pos++) {
+            buffer.putFloat(items.similarity(pos));
+        }
+
+        buffer.putInt(users.userCount()).putInt(users.neighborCount());
+        for (int u = 0; u < users.userCount(); u++) {
+            buffer.putLong(users.userIdAt(u));
+        }
+        for (int u = 0; u < users.userCount(); u++) {
+            buffer.putInt(users.neighborStart(u));
+        }
+        buffer.putInt(users.neighborCount());
+        for (int pos = 0; pos < users.neighborCount(); pos++) {
+            buffer.putLong(users.neighborId(pos));
+        }
+        for (int pos = 0; pos < users.neighborCount(); pos++) {
+            buffer.putFloat(users.similarity(pos));
+        }
+
+        buffer.putInt(tagBytes.size());
+        for (byte[] bytes : tagBytes) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.putInt(snapshot.tagProfiles.size());
+        for (Map.Entry<Long, Map<String, Double>> profile : snapshot.tagProfiles.entrySet()) {
+            buffer.putLong(profile.getKey()).putInt(profile.getValue().size());
+            for (Map.Entry<String, Double> weight : profile.getValue().entrySet()) {
+                buffer.putInt(tagIndex.get(weight.getKey())).putDouble(weight.getValue());
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, (int) bodyBytes);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(8, snapshot.createdAtMillis);
+        buffer.putLong(16, snapshot.catalogFingerprint);
+        buffer.putLong(24, snapshot.matrixFingerprint);
+        buffer.putLong(32, items.getBuiltAtMillis());
+        buffer.putLong(40, users.getBuiltAtMillis());
+        buffer.putLong(48, bodyBytes);
+        buffer.putInt(56, (int) crc.getValue());
+        buffer.rewind();
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".writing");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return buffer.capacity();
+    }
+
+    /**
+     * 通过只读内存映射读取快照；文件头、格式版本、长度或校验和不符时抛出 IOException
+     */
+    public static ModelSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("不是有效的模型快照文件: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("不是有效的模型快照文件: " + path);
+            }
+            if (buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("不支持的模型快照格式版本 " + buffer.getInt(4) + ": " + path);
+            }
+            long bodyBytes = buffer.getLong(48);
+            if (bodyBytes != size - HEADER_BYTES) {
+                throw new IOException("模型快照长度不符（文件可能被截断）: " + path);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_BYTES, (int) bodyBytes));
+            if ((int) crc.getValue() != buffer.getInt(56)) {
+                throw new IOException("模型快照校验和不符: " + path);
+            }
+
+            long createdAtMillis = buffer.getLong(8);
+            long catalogFingerprint = buffer.getLong(16);
+            long matrixFingerprint = buffer.getLong(24);
+            long itemBuiltAtMillis = buffer.getLong(32);
+            long neighborhoodBuiltAtMillis = buffer.getLong(40);
+            buffer.position(HEADER_BYTES);
+            try {
+                int spotCount = buffer.getInt();
+                int itemNeighbors = buffer.getInt();
+                long[] spotIds = readLongs(buffer, spotCount);
+                int[] itemPtr = readPointers(buffer, spotCount, itemNeighbors);
+                long[] itemNeighborIds = readLongs(buffer, itemNeighbors);
+                float[] itemSimilarities = readFloats(buffer, itemNeighbors);
+
+                int userCount = buffer.getInt();
+                int userNeighbors = buffer.getInt();
+                long[] userIds = readLongs(buffer, userCount);
+                int[] userPtr = readPointers(buffer, userCount, userNeighbors);
+                long[] userNeighborIds = readLongs(buffer, userNeighbors);
+                float[] userSimilarities = readFloats(buffer, userNeighbors);
+
+                String[] tags = new String[checkCount(buffer, buffer.getInt(), 4)];
+                for (int t = 0; t < tags.length; t++) {
+                    byte[] bytes = new byte[checkCount(buffer, buffer.getInt(), 1)];
+                    buffer.get(bytes);
+                    tags[t] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                int profileCount = checkCount(buffer, buffer.getInt(), 12);
+                Map<Long, Map<String, Double>> tagProfiles = new HashMap<>(profileCount * 2);
+                for (int p = 0; p < profileCount; p++) {
+                    long userId = buffer.getLong();
+                    int weights = checkCount(buffer, buffer.getInt(), 12);
+                    Map<String, Double> profile = new HashMap<>(weights * 2);
+                    for (int w = 0; w < weights; w++) {
+                        profile.put(tags[buffer.getInt()], buffer.getDouble());
+                    }
+                    tagProfiles.put(userId, profile);
+                }
+
+                return new ModelSnapshot(createdAtMillis, catalogFingerprint, matrixFingerprint,
+                        ItemSimilarityMatrix.restore(itemBuiltAtMillis, spotIds, itemPtr, itemNeighborIds,
+                                itemSimilarities),
+                        new UserNeighborhoodIndex(0L, -1L, neighborhoodBuiltAtMillis, userIds, userPtr,
+                                userNeighborIds, userSimilarities),
+                        Collections.unmodifiableMap(tagProfiles));
+            } catch (RuntimeException e) {
+                // 校验和通过但结构不合法（写出方缺陷），按损坏处理
+                throw new IOException("模型快照结构不合法: " + path + " (" + e + ")", e);
+            }
+        }
+    }
+
+    private static int checkCount(ByteBuffer buffer, int count, int minBytesPerElement) throws IOException {
+        if (count < 0 || (long) count * minBytesPerElement > buffer.remaining()) {
+            throw new IOException("模型快照计数越界: " + count);
+        }
+        return count;
+    }
+
+    private static long[] readLongs(ByteBuffer buffer, int count) throws IOException {
+        long[] values = new long[checkCount(buffer, count, 8)];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * 8);
+        return values;
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) throws IOException {
+        float[] values = new float[checkCount(buffer, count, 4)];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    /**
+     * 行指针：单调不减，首元素为 0，末元素为近邻总数
+     */
+    private static int[] readPointers(ByteBuffer buffer, int rows, int total) throws IOException {
+        int[] ptr = new int[checkCount(buffer, rows + 1, 4)];
+        buffer.asIntBuffer().get(ptr);
+        buffer.position(buffer.position() + ptr.length * 4);
+        if (ptr[0] != 0 || ptr[rows] != total) {
+            throw new IOException("模型快照行指针不合法");
+        }
+        for (int i = 1; i <= rows; i++) {
+            if (ptr[i] < ptr[i - 1]) {
+                throw new IOException("模型快照行指针不合法");
+            }
+        }
+        return ptr;
+    }
+}
@@ -0,0 +1,171 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * 模型快照服务：把景点相似度矩阵、用户近邻索引与标签画像缓存持久化为二进制快照（ModelSnapshot），
+ * 重启时在交互矩阵首次全量构建时恢复，启动不再等待相似度计算
+ * - 启动时读取快照文件（内存映射），首次全量构建交互矩阵时按景点目录与交互矩阵的内容指纹校验
+ * - 相似度矩阵与近邻索引直接发布；累加器不持久化，相似度矩阵总是提交一次后台构建任务以恢复增量维护
+ * - 指纹一致时近邻索引跳过启动构建、标签画像预热缓存；不一致（快照过期）时近邻索引照常后台重建、标签画像丢弃
+ * - 后台重建完成后、按 cron 以及应用关闭时写出新快照
+ */
+@Service
+public class ModelSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelSnapshotService.class);
+
+    @Autowired
+    private ItemBasedRecommendationService itemBasedRecommendationService;
+
+    @Autowired
+    private UserNeighborhoodService userNeighborhoodService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private InteractionMatrixService interactionMatrixService;
+
+    @Autowired
+    private SpotCatalogService spotCatalogService;
+
+    @Autowired
+    private ModelBuildJobService modelBuildJobService;
+
+    @Value("${recommendation.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.snapshot.path:data/model-snapshot.bin}")
+    private String path;
+
+    private volatile ModelSnapshot pending;        // 已读取、等待首次全量构建时校验的快照
+    private volatile boolean restored;
+    private volatile Map<Long, Map<String, Double>> pendingTagProfiles;
+
+    @PostConstruct
+    void load() {
+        Path file = Paths.get(path);
+        if (!enabled || !Files.exists(file)) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            pending = ModelSnapshot.read(file);
+            logger.info("📦 模型快照已读取: {}（{} 个景点行, {} 个用户近邻, {} 个标签画像）, 耗时 {}ms",
+                    file.toAbsolutePath(), pending.getItemSimilarity().spotCount(),
+                    pending.getNeighborhood().userCount(), pending.getTagProfiles().size(),
+                    System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            logger.warn("⚠️  模型快照不可用，按正常流程构建: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 交互矩阵首次全量构建：先于各模型的监听器校验并发布快照
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onInteractionMatrixChanged(InteractionMatrixChangedEvent event) {
+        ModelSnapshot snapshot = pending;
+        if (snapshot == null || !event.isFullRebuild()) {
+            return;
+        }
+        pending = null;
+        InteractionMatrix matrix = event.getMatrix();
+        boolean catalogFresh = snapshot.getCatalogFingerprint() == ModelSnapshot.fingerprint(spotCatalogService.getCatalog());
+        boolean matrixFresh = snapshot.getMatrixFingerprint() == ModelSnapshot.fingerprint(matrix);
+        boolean fresh = catalogFresh && matrixFresh;
+
+        itemBasedRecommendationService.restoreSnapshot(snapshot.getItemSimilarity(), matrix);
+        userNeighborhoodService.restoreSnapshot(snapshot.getNeighborhood(), fresh ? matrix.getVersion() : -1L);
+        if (fresh) {
+            // 全量构建事件会清空画像缓存，等启动完成后再预热
+            pendingTagProfiles = snapshot.getTagProfiles();
+        }
+        restored = true;
+        logger.info("📦 模型快照已恢复（{}）: 景点目录{}, 交互矩阵{}, 写出于 {}ms 前",
+                fresh ? "最新" : "已过期，后台重建", catalogFresh ? "一致" : "已变化", matrixFresh ? "一致" : "已变化",
+                System.currentTimeMillis() - snapshot.getCreatedAtMillis());
+    }
+
+    /**
+     * 启动完成（交互矩阵已构建）后预热标签画像，并提交相似度矩阵的后台构建任务，成功后写出新快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void afterStartup() {
+        Map<Long, Map<String, Double>> profiles = pendingTagProfiles;
+        pendingTagProfiles = null;
+        if (profiles != null) {
+            recommendationService.restoreTagProfiles(profiles);
+            logger.info("🏷️  从模型快照预热 {} 个标签画像", profiles.size());
+        }
+        if (restored) {
+            modelBuildJobService.submit(ModelBuildJob.ITEM_SIMILARITY, "snapshot").completion().thenAccept(run -> {
+                if (run.getStatus() == ModelBuildRun.Status.SUCCEEDED) {
+                    save();
+                }
+            });
+        }
+    }
+
+    /**
+     * 每天凌晨4:15（相似度矩阵与近邻索引重建之后）写出快照
+     */
+    @Scheduled(cron = "${recommendation.snapshot.cron:0 15 4 * * ?}")
+    public void scheduledSave() {
+        save();
+    }
+
+    /**
+     * 写出当前模型快照，返回文件字节数，未启用或失败返回 -1
+     */
+    public synchronized long save() {
+        if (!enabled) {
+            return -1L;
+        }
+        ItemSimilarityMatrix itemSimilarity = itemBasedRecommendationService.getSimilarityMatrix();
+        if (itemSimilarity.getVersion() == 0L) {
+            return -1L; // 尚未构建，不覆盖已有快照
+        }
+        long startTime = System.currentTimeMillis();
+        Path file = Paths.get(path);
+        try {
+            ModelSnapshot snapshot = new ModelSnapshot(System.currentTimeMillis(),
+                    ModelSnapshot.fingerprint(spotCatalogService.getCatalog()),
+                    ModelSnapshot.fingerprint(interactionMatrixService.getMatrix()),
+                    itemSimilarity, userNeighborhoodService.getIndex(), recommendationService.tagProfileSnapshot());
+            long bytes = ModelSnapshot.write(snapshot, file);
+            logger.info("📦 模型快照已写出: {}（{} 字节）, 耗时 {}ms",
+                    file.toAbsolutePath(), bytes, System.currentTimeMillis() - startTime);
+            return bytes;
+        } catch (IOException e) {
+            logger.error("❌ 写出模型快照失败: {}", e.getMessage());
+            return -1L;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        save();
+    }
+}
@@ -3,25 +3,79 @@ package com.tibet.tourism.service;
 import com.tibet.tourism.dto.PriceInfo;
 import com.tibet.tourism.entity.ScenicSpot;
 import com.tibet.tourism.repository.ScenicSpotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 价格更新服务
+ * 批量更新时各景点的外部抓取并发执行：启用虚拟线程（JDK 21+）时每个景点一个虚拟线程，
+ * 否则使用固定大小的平台线程池；同时进行的抓取数都由 app.price-update.concurrency 限制
  */
 @Service
 public class PriceUpdateService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PriceUpdateService.class);
+
     @Autowired
     private ScenicSpotRepository scenicSpotRepository;
 
     @Autowired
     private PriceFetchService priceFetchService;
 
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.price-update.concurrency:4}")
+    private int concurrency;
+
+    private Executor fetchExecutor;
+    private ExecutorService fetchPool; // 平台线程模式下的线程池，关闭时释放
+    private Semaphore fetchPermits;
+
+    @PostConstruct
+    void initFetchExecutor() {
+        int permits = Math.max(1, concurrency);
+        fetchPermits = new Semaphore(permits);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            fetchExecutor = new VirtualThreadTaskExecutor("price-fetch-");
+            logger.info("🧵 批量价格抓取使用虚拟线程，并发上限 {}", permits);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            fetchPool = Executors.newFixedThreadPool(permits, runnable -> {
+                Thread thread = new Thread(runnable, "price-fetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            fetchExecutor = fetchPool;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fetchPool != null) {
+            fetchPool.shutdownNow();
+        }
+    }
+
     /**
      * 更新单个景点的价格
      */
@@ -29,7 +83,13 @@ public class PriceUpdateService {
     public PriceUpdateResult updateSpotPrice(Long spotId, boolean forceUpdate) {
         ScenicSpot spot = scenicSpotRepository.findById(Long.valueOf(spotId))
             .orElseThrow(() -> new RuntimeException("景点不存在"));
+        return updatePrice(spot, forceUpdate);
+    }
 
+    /**
+     * 抓取并保存单个景点的价格（抓取受并发上限限制）
+     */
+    private PriceUpdateResult updatePrice(ScenicSpot spot, boolean forceUpdate) {
         // 如果已有价格且不强制更新，跳过
         if (!forceUpdate && spot.getTicketPrice() != null && 
             spot.getTicketPrice().compareTo(BigDecimal.ZERO) > 0) {
@@ -37,7 +97,13 @@ public class PriceUpdateService {
         }
 
         try {
-            PriceInfo priceInfo = priceFetchService.fetchPrice(spot);
+            PriceInfo priceInfo;
+            fetchPermits.acquire();
+            try {
+                priceInfo = priceFetchService.fetchPrice(spot);
+            } finally {
+                fetchPermits.release();
+            }
             
             if (priceInfo == null || priceInfo.getBasePrice() == null) {
                 return new PriceUpdateResult(false, "未能获取到价格信息", null);
@@ -56,6 +122,9 @@ public class PriceUpdateService {
 
             return new PriceUpdateResult(true, "价格更新成功", priceInfo);
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new PriceUpdateResult(false, "价格更新失败: 已中断", null);
         } catch (Exception e) {
             return new PriceUpdateResult(false, "价格更新失败: " + e.getMessage(), null);
         }
@@ -63,16 +132,20 @@ public class PriceUpdateService {
 
     /**
      * 批量更新所有景点的价格
+     * 各景点并发抓取、各自保存，不在一个长事务中等待外部请求
      */
-    @Transactional
     public BatchUpdateResult batchUpdatePrices(boolean forceUpdate) {
         List<ScenicSpot> spots = scenicSpotRepository.findAll();
+        List<CompletableFuture<PriceUpdateResult>> updates = new ArrayList<>(spots.size());
+        for (ScenicSpot spot : spots) {
+            updates.add(CompletableFuture.supplyAsync(() -> updatePrice(spot, forceUpdate), fetchExecutor));
+        }
+
         int successCount = 0;
         int failCount = 0;
         int skipCount = 0;
-
-        for (ScenicSpot spot : spots) {
-            PriceUpdateResult result = updateSpotPrice(spot.getId(), forceUpdate);
+        for (CompletableFuture<PriceUpdateResult> update : updates) {
+            PriceUpdateResult result = update.join();
             if (result.isSuccess()) {
                 successCount++;
             } else if (result.getMessage().contains("跳过")) {
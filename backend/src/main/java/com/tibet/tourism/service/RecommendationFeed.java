@@ -0,0 +1,61 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.entity.ScenicSpot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 预计算的用户推荐结果
+ * 记录计算时所用数据快照的版本，便于判断是否过期：
+ * historyVersion（该用户访问记录的版本）与 catalogVersion 用于判断过期，其余版本用于排查
+ */
+public final class RecommendationFeed {
+
+    private final Long userId;
+    private final List<ScenicSpot> spots;
+    private final long historyVersion;
+    private final long matrixVersion;
+    private final long itemSimilarityVersion;
+    private final long catalogVersion;
+    private final long computedAtMillis;
+
+    public RecommendationFeed(Long userId, List<ScenicSpot> spots, long historyVersion, long matrixVersion,
+                              long itemSimilarityVersion, long catalogVersion) {
+        this.userId = userId;
+        this.spots = Collections.unmodifiableList(spots);
+        this.historyVersion = historyVersion;
+        this.matrixVersion = matrixVersion;
+        this.itemSimilarityVersion = itemSimilarityVersion;
+        this.catalogVersion = catalogVersion;
+        this.computedAtMillis = System.currentTimeMillis();
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public List<ScenicSpot> getSpots() {
+        return spots;
+    }
+
+    public long getHistoryVersion() {
+        return historyVersion;
+    }
+
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    public long getItemSimilarityVersion() {
+        return itemSimilarityVersion;
+    }
+
+    public long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public long getComputedAtMillis() {
+        return computedAtMillis;
+    }
+}
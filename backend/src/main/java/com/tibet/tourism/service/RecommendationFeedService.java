@@ -0,0 +1,276 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.entity.ScenicSpot;
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 推荐结果预计算与服务
+ * 批量预计算用于推送活动和首页预热：按块并行地为大量用户生成推荐并写入 RecommendationFeedStore，
+ * 同一批次共享交互矩阵、相似度矩阵和景点目录快照。
+ * 在线请求优先返回已存结果；访问记录版本变化或结果过旧时先返回旧结果，再在后台重新计算
+ */
+@Service
+public class RecommendationFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationFeedService.class);
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private InteractionMatrixService interactionMatrixService;
+
+    @Autowired
+    private ItemBasedRecommendationService itemBasedRecommendationService;
+
+    @Autowired
+    private RecommendationFeedStore feedStore;
+
+    @Autowired
+    private SpotCatalogService spotCatalogService;
+
+    @Autowired
+    private RecommendationMetrics recommendationMetrics;
+
+    @Value("${recommendation.feed.batch-chunk-size:256}")
+    private int chunkSize;
+
+    @Value("${recommendation.feed.max-age-minutes:60}")
+    private long maxAgeMinutes;
+
+    @Value("${recommendation.feed.refresh-threads:2}")
+    private int refreshThreads;
+
+    @Value("${recommendation.single-flight.enabled:true}")
+    private boolean singleFlightEnabled;
+
+    private final ForkJoinPool batchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private ExecutorService refreshExecutor;
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+    // 同一用户的首次请求同时到达时（如首页连续刷新）只计算一次
+    private final SingleFlight<Long, RecommendationFeed> feedFlight = new SingleFlight<>("feed");
+
+    @PostConstruct
+    public void initRefreshExecutor() {
+        recommendationMetrics.bindSingleFlight(feedFlight);
+        refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads), runnable -> {
+            Thread thread = new Thread(runnable, "recommendation-feed-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 结果存储的统计信息（容量、命中、淘汰）
+     */
+    public SegmentedLruCache.CacheStats getFeedStoreStats() {
+        return feedStore.stats();
+    }
+
+    /**
+     * 读取预计算结果，不存在返回 null
+     */
+    public RecommendationFeed getFeed(Long userId) {
+        return feedStore.get(userId);
+    }
+
+    /**
+     * 获取用户推荐（无上下文）
+     * 已有结果直接返回，过期时同时安排后台重算；首次请求同步计算并保存
+     * 景点目录已替换时，排序沿用旧结果，景点对象换成当前目录中的（已删除的景点不返回）
+     */
+    public List<ScenicSpot> getRecommendations(Long userId) {
+        RecommendationFeed feed = feedStore.get(userId);
+        if (feed == null) {
+            return computeAndStoreFeed(userId).getSpots();
+        }
+        if (isStale(feed)) {
+            scheduleRefresh(userId);
+        }
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        if (feed.getCatalogVersion() == catalog.getVersion()) {
+            return feed.getSpots();
+        }
+        List<ScenicSpot> spots = new ArrayList<>(feed.getSpots().size());
+        for (ScenicSpot spot : feed.getSpots()) {
+            ScenicSpot current = catalog.get(spot.getId());
+            if (current != null) {
+                spots.add(current);
+            }
+        }
+        return spots;
+    }
+
+    /**
+     * 结果是否过期：用户访问记录或景点目录版本已变化，或距计算时间超过最大时长（其他用户的数据也会影响结果）
+     */
+    public boolean isStale(RecommendationFeed feed) {
+        if (feed.getHistoryVersion() != interactionMatrixService.getUserHistoryVersion(feed.getUserId())) {
+            return true;
+        }
+        if (feed.getCatalogVersion() != spotCatalogService.getCatalog().getVersion()) {
+            return true;
+        }
+        return System.currentTimeMillis() - feed.getComputedAtMillis() > maxAgeMinutes * 60_000L;
+    }
+
+    /**
+     * 在后台重新计算用户推荐，同一用户同时只有一个任务
+     */
+    public void scheduleRefresh(Long userId) {
+        if (!refreshing.add(userId)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    feedStore.put(computeFeed(userId, spotCatalogService.getCatalog()));
+                } catch (Exception e) {
+                    logger.warn("用户 {} 推荐后台重算失败: {}", userId, e.getMessage());
+                } finally {
+                    refreshing.remove(userId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(userId);
+        }
+    }
+
+    /**
+     * 访问记录增量更新后，为已有结果的用户提前重算，下次请求即可拿到新结果；
+     * 排在其他监听之后，保证重算时相似度等缓存已失效。全量重建不主动重算，由请求时的版本检查处理
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onInteractionMatrixChanged(InteractionMatrixChangedEvent event) {
+        for (Long userId : event.getUserIds()) {
+            if (feedStore.contains(userId)) {
+                scheduleRefresh(userId);
+            }
+        }
+    }
+
+    /**
+     * 为指定用户批量预计算推荐；userIds 为空时处理交互矩阵中的全部用户
+     */
+    public Map<String, Object> precomputeFeeds(Collection<Long> userIds) {
+        long startTime = System.currentTimeMillis();
+        List<Long> targets = userIds == null || userIds.isEmpty() ? allMatrixUsers() : new ArrayList<>(userIds);
+        logger.info("📦 开始批量预计算推荐: {} 个用户, 每块 {} 个", targets.size(), chunkSize);
+        if (targets.size() > feedStore.capacity()) {
+            logger.warn("⚠️ 预计算用户数 {} 超过结果存储容量 {}，较早写入的结果会被淘汰",
+                    targets.size(), feedStore.capacity());
+        }
+
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < targets.size(); from += chunkSize) {
+            List<Long> chunk = targets.subList(from, Math.min(from + chunkSize, targets.size()));
+            chunks.add(() -> {
+                for (Long userId : chunk) {
+                    try {
+                        feedStore.put(computeFeed(userId, catalog));
+                        succeeded.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        logger.warn("用户 {} 推荐预计算失败: {}", userId, e.getMessage());
+                    }
+                }
+                return null;
+            });
+        }
+
+        for (Future<Void> future : batchPool.invokeAll(chunks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.error("推荐预计算任务异常", e.getCause());
+            }
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("✅ 批量预计算完成: 成功 {}, 失败 {}, 耗时 {}ms", succeeded.get(), failed.get(), duration);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", targets.size());
+        result.put("succeeded", succeeded.get());
+        result.put("failed", failed.get());
+        result.put("storedFeeds", feedStore.size());
+        result.put("duration", duration);
+        return result;
+    }
+
+    private RecommendationFeed computeAndStoreFeed(Long userId) {
+        if (!singleFlightEnabled) {
+            RecommendationFeed feed = computeFeed(userId, spotCatalogService.getCatalog());
+            feedStore.put(feed);
+            return feed;
+        }
+        try {
+            return feedFlight.execute(userId, () -> {
+                RecommendationFeed feed = computeFeed(userId, spotCatalogService.getCatalog());
+                feedStore.put(feed);
+                return CompletableFuture.completedFuture(feed);
+            }).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private RecommendationFeed computeFeed(Long userId, SpotCatalog catalog) {
+        // 先记录版本再计算：计算期间数据若有更新，结果会被视为旧版本
+        long historyVersion = interactionMatrixService.getUserHistoryVersion(userId);
+        long matrixVersion = interactionMatrixService.getMatrix().getVersion();
+        long itemSimilarityVersion = itemBasedRecommendationService.getSimilarityMatrix().getVersion();
+        List<ScenicSpot> spots = recommendationService.recommendSpotsForUser(userId, null, catalog);
+        return new RecommendationFeed(userId, spots, historyVersion, matrixVersion, itemSimilarityVersion,
+                catalog.getVersion());
+    }
+
+    private List<Long> allMatrixUsers() {
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        List<Long> users = new ArrayList<>(matrix.userCount());
+        for (int u = 0; u < matrix.userCount(); u++) {
+            users.add(matrix.userIdAt(u));
+        }
+        return users;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchPool.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+}
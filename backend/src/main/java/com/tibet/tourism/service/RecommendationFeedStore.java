@@ -0,0 +1,70 @@
+package com.tibet.tourism.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 预计算推荐结果存储（堆内）
+ * 按用户ID O(1) 读取；访问记录与景点目录的变化都通过版本号判断过期（见 RecommendationFeedService），
+ * 过期结果继续提供并在后台重算，目录替换时不整体清空，避免所有用户同时在请求线程上重算。
+ * 容量有界（分段LRU），超出 recommendation.feed.max-size 时淘汰最久未读的用户，被淘汰的用户下次请求时重新计算
+ */
+@Component
+public class RecommendationFeedStore {
+
+    @Autowired
+    private RecommendationMetrics recommendationMetrics;
+
+    @Value("${recommendation.feed.max-size:100000}")
+    private int maxSize;
+
+    private SegmentedLruCache<Long, RecommendationFeed> feeds;
+
+    @PostConstruct
+    void initStore() {
+        // 结果的时效由版本号与 max-age-minutes 判断，缓存本身不设 TTL
+        feeds = new SegmentedLruCache<>("recommendationFeed", maxSize, 0L);
+        recommendationMetrics.bindCache(feeds);
+    }
+
+    public RecommendationFeed get(Long userId) {
+        return feeds.get(userId);
+    }
+
+    /**
+     * 是否已有该用户的结果（不计入命中统计）
+     */
+    public boolean contains(Long userId) {
+        return feeds.peek(userId) != null;
+    }
+
+    /**
+     * 写入结果；并发计算时不会用较旧版本覆盖较新的结果
+     */
+    public void put(RecommendationFeed feed) {
+        feeds.merge(feed.getUserId(), feed,
+                (current, candidate) -> candidate.getHistoryVersion() >= current.getHistoryVersion() ? candidate : current);
+    }
+
+    public void invalidate(Long userId) {
+        feeds.invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        feeds.invalidateAll();
+    }
+
+    public int size() {
+        return feeds.size();
+    }
+
+    public int capacity() {
+        return maxSize;
+    }
+
+    public SegmentedLruCache.CacheStats stats() {
+        return feeds.stats();
+    }
+}
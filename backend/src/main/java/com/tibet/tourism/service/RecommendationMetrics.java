@@ -0,0 +1,216 @@
+package com.tibet.tourism.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推荐流水线指标（Micrometer）
+ * - recommendation.request：单次推荐总耗时，按 path（personalized / cold_start）区分
+ * - recommendation.stage：各阶段耗时，按 stage 区分
+ * - recommendation.candidates：各路候选景点数分布，按 source 区分
+ * - recommendation.fallback：兜底与降级次数，按 reason 区分
+ * - recommendation.degradation：因超出延迟预算而跳过阶段的次数，按 level 区分
+ * - recommendation.cache.gets / recommendation.cache.hit.ratio：相似度与标签画像缓存的命中情况
+ * - recommendation.singleflight.calls / recommendation.singleflight.coalesced.ratio：相同请求合并计算的情况
+ * 计量器在初始化时按枚举一次性注册，热路径只做数组下标访问和一次 record；
+ * 百分位与直方图在 application.yml 的 management.metrics.distribution 中配置
+ */
+@Component
+public class RecommendationMetrics {
+
+    public enum Stage {
+        COMPANION_INFERENCE("companion_inference"),
+        HISTORY_LOAD("history_load"),
+        SIMILARITY("similarity"),
+        USER_CF("user_cf"),
+        ITEM_CF("item_cf"),
+        MATRIX_FACTORIZATION("matrix_factorization"),
+        TAG_SCORING("tag_scoring"),
+        CONTEXT_FILTERING("context_filtering"),
+        RERANK("rerank");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    public enum CandidateSource {
+        USER_BASED("user_based"),
+        ITEM_BASED("item_based"),
+        MATRIX_FACTORIZATION("matrix_factorization"),
+        TAG("tag"),
+        FILTERED("filtered");      // 上下文过滤后剩余的候选
+
+        private final String tag;
+
+        CandidateSource(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Fallback {
+        COLD_START("cold_start"),                       // 无访问记录
+        NO_SIMILAR_USERS("no_similar_users"),           // 未找到相似用户，仅靠其他信号
+        EMPTY_RERANK("empty_rerank"),                   // 重排后为空，返回热门景点
+        COMPANION_INFERENCE_FAILED("companion_inference_failed"),
+        ITEM_CF_FAILED("item_cf_failed"),
+        SIGNAL_SKIPPED("signal_skipped");               // 并发模式下信号超时或失败，按缺失处理
+
+        private final String tag;
+
+        Fallback(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * 延迟预算降级级别：已用时间越多跳过的阶段越多，依次为 User-Based CF、Item-Based CF、上下文打分
+     */
+    public enum Degradation {
+        USER_CF(Stage.USER_CF),
+        ITEM_CF(Stage.ITEM_CF),
+        CONTEXT_FILTERING(Stage.CONTEXT_FILTERING);
+
+        private final Stage stage;
+
+        Degradation(Stage stage) {
+            this.stage = stage;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<CandidateSource, DistributionSummary> candidateSummaries = new EnumMap<>(CandidateSource.class);
+    private final Map<Fallback, Counter> fallbackCounters = new EnumMap<>(Fallback.class);
+    private final Map<Degradation, Counter> degradationCounters = new EnumMap<>(Degradation.class);
+    private Timer personalizedTimer;
+    private Timer coldStartTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("recommendation.stage")
+                    .description("推荐流水线各阶段耗时")
+                    .tag("stage", stage.tag)
+                    .register(meterRegistry));
+        }
+        for (CandidateSource source : CandidateSource.values()) {
+            candidateSummaries.put(source, DistributionSummary.builder("recommendation.candidates")
+                    .description("各路候选景点数")
+                    .baseUnit("spots")
+                    .tag("source", source.tag)
+                    .register(meterRegistry));
+        }
+        for (Fallback fallback : Fallback.values()) {
+            fallbackCounters.put(fallback, Counter.builder("recommendation.fallback")
+                    .description("兜底与降级次数")
+                    .tag("reason", fallback.tag)
+                    .register(meterRegistry));
+        }
+        for (Degradation degradation : Degradation.values()) {
+            degradationCounters.put(degradation, Counter.builder("recommendation.degradation")
+                    .description("超出延迟预算而跳过阶段的次数")
+                    .tag("level", degradation.stage.tag)
+                    .register(meterRegistry));
+        }
+        personalizedTimer = requestTimer("personalized");
+        coldStartTimer = requestTimer("cold_start");
+    }
+
+    private Timer requestTimer(String path) {
+        return Timer.builder("recommendation.request")
+                .description("单次推荐总耗时")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录阶段耗时，返回当前时间，便于下一阶段接着计时
+     */
+    public long lap(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers.get(stage).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void recordStage(Stage stage, long elapsedNanos) {
+        stageTimers.get(stage).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRequest(long elapsedNanos, boolean coldStart) {
+        (coldStart ? coldStartTimer : personalizedTimer).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCandidates(CandidateSource source, int count) {
+        candidateSummaries.get(source).record(count);
+    }
+
+    public void recordFallback(Fallback fallback) {
+        fallbackCounters.get(fallback).increment();
+    }
+
+    public void recordDegradation(Degradation degradation) {
+        degradationCounters.get(degradation).increment();
+    }
+
+    /**
+     * 注册缓存的命中/未命中计数与命中率（抓取时读取统计快照）
+     */
+    public void bindCache(SegmentedLruCache<?, ?> cache) {
+        String name = cache.stats().getName();
+        FunctionCounter.builder("recommendation.cache.gets", cache, c -> c.stats().getHits())
+                .tags("cache", name, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("recommendation.cache.gets", cache, c -> c.stats().getMisses())
+                .tags("cache", name, "result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("recommendation.cache.hit.ratio", cache, c -> c.stats().getHitRate())
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("recommendation.cache.size", cache, c -> c.stats().getSize())
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册请求合并的调用计数（发起计算 / 加入已有计算）、合并率与进行中的计算数
+     */
+    public void bindSingleFlight(SingleFlight<?, ?> flight) {
+        String name = flight.getName();
+        FunctionCounter.builder("recommendation.singleflight.calls", flight, SingleFlight::getLeaderCount)
+                .tags("flight", name, "result", "leader")
+                .register(meterRegistry);
+        FunctionCounter.builder("recommendation.singleflight.calls", flight, SingleFlight::getJoinedCount)
+                .tags("flight", name, "result", "joined")
+                .register(meterRegistry);
+        Gauge.builder("recommendation.singleflight.coalesced.ratio", flight, SingleFlight::getCoalescedRate)
+                .tag("flight", name)
+                .register(meterRegistry);
+        Gauge.builder("recommendation.singleflight.in.flight", flight, SingleFlight::inFlightCount)
+                .tag("flight", name)
+                .register(meterRegistry);
+    }
+}
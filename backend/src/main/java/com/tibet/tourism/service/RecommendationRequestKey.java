@@ -0,0 +1,66 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.dto.RecommendationContext;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 推荐请求的合并键：用户ID + 归一化后的推荐上下文
+ * 只归一化不影响结果的差异：季节、天气、时间段、旅伴在打分时都按大写比较，这里统一转为大写；
+ * 是否考虑距离/预算为 null 与 false 等价。其余字段按原值比较。
+ * 必须在计算开始前创建（计算过程中会写入推断出的旅伴类型）
+ */
+final class RecommendationRequestKey {
+
+    private final Long userId;
+    private final Object[] fields; // 上下文为 null 时为 null（不做上下文过滤，与空上下文不同）
+    private final int hash;
+
+    private RecommendationRequestKey(Long userId, Object[] fields) {
+        this.userId = userId;
+        this.fields = fields;
+        this.hash = 31 * Objects.hashCode(userId) + Arrays.hashCode(fields);
+    }
+
+    static RecommendationRequestKey of(Long userId, RecommendationContext context) {
+        if (context == null) {
+            return new RecommendationRequestKey(userId, null);
+        }
+        return new RecommendationRequestKey(userId, new Object[]{
+                upperCase(context.getSeason()),
+                upperCase(context.getWeather()),
+                context.getCurrentLocation(),
+                context.getCurrentLatitude(),
+                context.getCurrentLongitude(),
+                upperCase(context.getTimeOfDay()),
+                upperCase(context.getCompanion()),
+                context.getBudget(),
+                context.getTravelDays(),
+                context.getPreferredActivities(),
+                Boolean.TRUE.equals(context.getConsiderDistance()),
+                Boolean.TRUE.equals(context.getConsiderBudget())
+        });
+    }
+
+    private static String upperCase(String value) {
+        return value != null ? value.toUpperCase(Locale.ROOT) : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecommendationRequestKey other)) {
+            return false;
+        }
+        return hash == other.hash && Objects.equals(userId, other.userId) && Arrays.equals(fields, other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
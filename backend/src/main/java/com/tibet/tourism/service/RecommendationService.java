@@ -6,20 +6,29 @@ import com.tibet.tourism.dto.RecommendationDebugResponse.CandidateScoreEntry;
 import com.tibet.tourism.dto.RecommendationDebugResponse.HistoryEntry;
 import com.tibet.tourism.dto.RecommendationDebugResponse.SimilarUserEntry;
 import com.tibet.tourism.entity.ScenicSpot;
-import com.tibet.tourism.entity.SpotTag;
-import com.tibet.tourism.entity.UserVisitHistory;
-import com.tibet.tourism.repository.ScenicSpotRepository;
-import com.tibet.tourism.repository.SpotTagRepository;
-import com.tibet.tourism.repository.UserVisitHistoryRepository;
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import com.tibet.tourism.event.SpotCatalogRefreshedEvent;
+import com.tibet.tourism.service.UserSimilarityCalculator.SimilarityDetails;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,9 +37,10 @@ public class RecommendationService {
     private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
 
     // 基础配置常量
-    private static final int MAX_SIMILAR_USERS = 15; // 增加相似用户数量以提高召回率
+    static final int MAX_SIMILAR_USERS = 15; // 增加相似用户数量以提高召回率
     private static final int MAX_RESULTS = 10;
-    private static final double MIN_SIMILARITY = 0.05; // 降低阈值以增加召回
+    private static final String RECOMMENDATION_EVENT = "recommendation"; // 结构化事件类型，logger 为 events.recommendation
+    static final double MIN_SIMILARITY = 0.05; // 降低阈值以增加召回
     @SuppressWarnings("unused")
     private static final double RECENCY_WINDOW_DAYS = 365d; // 扩展时间窗口（保留用于未来扩展）
     private static final double DEFAULT_RATING = 3d;
@@ -41,10 +51,7 @@ public class RecommendationService {
     private static final double CONTENT_WEIGHT = 0.3d; // 内容过滤权重
     private static final double DIVERSITY_PENALTY = 0.15d; // 多样性惩罚系数
     private static final double EXPLORATION_RATE = 0.1d; // 探索率（ε-greedy）
-    private static final double MIN_COMMON_ITEMS = 2; // 最小共同访问景点数
     private static final double EXPONENTIAL_DECAY_FACTOR = 0.95d; // 指数衰减因子
-    private static final double CLICK_WEIGHT = 0.1d; // 点击权重
-    private static final double DWELL_WEIGHT = 0.05d; // 停留时间权重（秒）
     private static final double SEASONAL_BOOST = 1.2d; // 季节性增强
     
     // 上下文感知参数
@@ -55,14 +62,16 @@ public class RecommendationService {
     private static final double BUDGET_PENALTY = 0.8d; // 超出预算的惩罚系数
     private static final double COMPANION_MATCH_BOOST = 1.15d; // 旅伴匹配增强
 
+    private static final long SECONDS_PER_DAY = 86400L;
+
     @Autowired
-    private UserVisitHistoryRepository historyRepository;
+    private InteractionMatrixService interactionMatrixService;
 
     @Autowired
-    private ScenicSpotRepository spotRepository;
+    private UserNeighborhoodService userNeighborhoodService;
 
     @Autowired
-    private SpotTagRepository spotTagRepository;
+    private SpotCatalogService spotCatalogService;
     
     @Autowired
     private CompanionInferenceService companionInferenceService;
@@ -72,11 +81,107 @@ public class RecommendationService {
     
     @Autowired
     private ColdStartOptimizationService coldStartOptimizationService;
+
+    @Autowired
+    private SimilarityKernel similarityKernel;
+
+    @Autowired
+    private UserLshService userLshService;
+
+    @Autowired
+    private MatrixFactorizationService matrixFactorizationService;
+
+    @Autowired
+    private RecommendationMetrics recommendationMetrics;
+
+    @Autowired
+    private StructuredEventLog structuredEventLog;
     
-    // 缓存：用户相似度映射（可扩展为Redis缓存）
-    private final Map<Long, Map<Long, Double>> similarityCache = new ConcurrentHashMap<>();
-    private final Map<Long, Map<String, Double>> tagProfileCache = new ConcurrentHashMap<>();
-    private static final int CACHE_SIZE_LIMIT = 1000; // 缓存大小限制
+    // 缓存：用户相似度映射与标签画像（有界SLRU + TTL，随交互矩阵和景点目录变更失效）
+    @Value("${recommendation.cache.max-size:1000}")
+    private int cacheMaxSize;
+
+    @Value("${recommendation.cache.ttl-minutes:30}")
+    private long cacheTtlMinutes;
+
+    private SegmentedLruCache<Long, Map<Long, Double>> similarityCache;
+    private SegmentedLruCache<Long, Map<String, Double>> tagProfileCache;
+
+    // 热门景点排名（景点ID按热度降序），由 POPULARITY 任务重建，尚未构建时兜底推荐按需计算
+    private volatile long[] popularityRanking;
+
+    // 并发模式：各路信号并行计算，超时的信号按缺失处理
+    @Value("${recommendation.concurrent.enabled:false}")
+    private boolean concurrentEnabled;
+
+    @Value("${recommendation.concurrent.pool-size:8}")
+    private int signalPoolSize;
+
+    @Value("${recommendation.concurrent.queue-capacity:512}")
+    private int signalQueueCapacity;
+
+    @Value("${recommendation.concurrent.companion-timeout-ms:100}")
+    private long companionTimeoutMillis;
+
+    @Value("${recommendation.concurrent.signal-timeout-ms:150}")
+    private long signalTimeoutMillis;
+
+    private ThreadPoolExecutor signalExecutor;
+
+    // 相同用户与上下文的并发在线请求共享一次计算
+    @Value("${recommendation.single-flight.enabled:true}")
+    private boolean singleFlightEnabled;
+
+    private final SingleFlight<RecommendationRequestKey, List<ScenicSpot>> recommendationFlight =
+            new SingleFlight<>("recommendation");
+
+    // 延迟预算：已用时间达到预算的一定比例后依次跳过 User-Based CF、Item-Based CF 与上下文打分
+    @Value("${recommendation.latency-budget.enabled:true}")
+    private boolean latencyBudgetEnabled;
+
+    @Value("${recommendation.latency-budget.total-ms:300}")
+    private long requestBudgetMillis;
+
+    @Value("${recommendation.latency-budget.skip-user-cf-at:0.5}")
+    private double skipUserCFAt;
+
+    @Value("${recommendation.latency-budget.skip-item-cf-at:0.7}")
+    private double skipItemCFAt;
+
+    @Value("${recommendation.latency-budget.skip-context-at:0.9}")
+    private double skipContextAt;
+
+    // 每个线程复用的评分缓冲区，按景点序号累加各阶段得分
+    private static final ThreadLocal<ScoringBuffer> SCORING_BUFFER = ThreadLocal.withInitial(ScoringBuffer::new);
+
+    @PostConstruct
+    void initCaches() {
+        long ttlMillis = cacheTtlMinutes * 60_000L;
+        // 相似度映射依赖其中的近邻用户：近邻的访问记录变化时通过反向索引只失效相关用户
+        similarityCache = new SegmentedLruCache<>("userSimilarity", cacheMaxSize, ttlMillis, Map::keySet);
+        tagProfileCache = new SegmentedLruCache<>("tagProfile", cacheMaxSize, ttlMillis);
+        recommendationMetrics.bindCache(similarityCache);
+        recommendationMetrics.bindCache(tagProfileCache);
+        recommendationMetrics.bindSingleFlight(recommendationFlight);
+    }
+
+    @PostConstruct
+    void initSignalExecutor() {
+        // 有界队列；队列满时由提交线程自己执行，相当于退化为顺序计算
+        AtomicInteger threadCount = new AtomicInteger();
+        signalExecutor = new ThreadPoolExecutor(signalPoolSize, signalPoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(signalQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "recommendation-signal-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        signalExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdownSignalExecutor() {
+        signalExecutor.shutdownNow();
+    }
     
     // 混合推荐权重配置
     private static final double USER_BASED_WEIGHT = 0.3d; // User-Based CF权重
@@ -87,23 +192,65 @@ public class RecommendationService {
     }
     
     public List<ScenicSpot> recommendSpotsForUser(Long userId, RecommendationContext recommendationContext) {
-        logger.info("═══════════════════════════════════════════════════════════");
-        logger.info("🎯 开始为用户 {} 生成推荐", userId);
-        if (recommendationContext != null) {
-            logger.info("📌 上下文信息: 季节={}, 天气={}, 位置={}, 预算={}", 
-                    recommendationContext.getSeason(), 
-                    recommendationContext.getWeather(),
-                    recommendationContext.getCurrentLocation(),
-                    recommendationContext.getBudget());
+        if (logger.isDebugEnabled()) {
+            logger.debug("🎯 开始为用户 {} 生成推荐", userId);
+            if (recommendationContext != null) {
+                logger.debug("📌 上下文信息: 季节={}, 天气={}, 位置={}, 预算={}",
+                        recommendationContext.getSeason(),
+                        recommendationContext.getWeather(),
+                        recommendationContext.getCurrentLocation(),
+                        recommendationContext.getBudget());
+            }
         }
-        logger.info("═══════════════════════════════════════════════════════════");
-        
-        RecommendationComputationContext context = computeContext(userId, recommendationContext);
-        
-        logger.info("✅ 推荐完成，共生成 {} 个推荐结果", context.getRecommendations().size());
-        logger.info("═══════════════════════════════════════════════════════════\n");
         
-        return context.getRecommendations();
+        // 由发起计算的调用在当前线程算完；同时到达的相同请求等待并共享结果
+        CompletableFuture<List<ScenicSpot>> recommendations = coalesce(userId, recommendationContext,
+                () -> CompletableFuture.completedFuture(
+                        resolveContext(userId, recommendationContext, false).getRecommendations()));
+        try {
+            return recommendations.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 非阻塞接口：并发模式下调用线程只读取历史记录并提交各信号任务；顺序模式下整个计算交给线程池执行
+     */
+    public CompletableFuture<List<ScenicSpot>> recommendSpotsForUserAsync(Long userId,
+                                                                          RecommendationContext recommendationContext) {
+        return coalesce(userId, recommendationContext, () -> {
+            SpotCatalog catalog = spotCatalogService.getCatalog();
+            CompletableFuture<RecommendationComputationContext> future = concurrentEnabled
+                    ? computeContextConcurrently(userId, recommendationContext, catalog, false)
+                    : CompletableFuture.supplyAsync(() -> computeContext(userId, recommendationContext, catalog, false,
+                            requestBudgetNanos()), signalExecutor);
+            return future.thenApply(RecommendationComputationContext::getRecommendations);
+        });
+    }
+
+    /**
+     * 相同用户与上下文已有计算在进行时共享其结果（返回的列表由各请求共用，调用方不得修改）
+     * 合并键在计算开始前生成，计算中写入的推断旅伴类型不影响合并
+     */
+    private CompletableFuture<List<ScenicSpot>> coalesce(Long userId, RecommendationContext recommendationContext,
+                                                         Supplier<CompletableFuture<List<ScenicSpot>>> computation) {
+        if (!singleFlightEnabled) {
+            return computation.get();
+        }
+        return recommendationFlight.execute(RecommendationRequestKey.of(userId, recommendationContext), computation);
+    }
+
+    /**
+     * 批量预计算使用：多个用户共享同一份景点目录快照
+     * 始终顺序计算，批量任务本身已按用户并行；离线计算不受延迟预算限制
+     */
+    public List<ScenicSpot> recommendSpotsForUser(Long userId, RecommendationContext recommendationContext,
+                                                  SpotCatalog catalog) {
+        return computeContext(userId, recommendationContext, catalog, false, 0L).getRecommendations();
     }
 
     public RecommendationDebugResponse recommendWithDebug(Long userId) {
@@ -124,7 +271,7 @@ public class RecommendationService {
         }
         logger.info("═══════════════════════════════════════════════════════════");
         
-        RecommendationComputationContext context = computeContext(userId, recommendationContext);
+        RecommendationComputationContext context = resolveContext(userId, recommendationContext, true);
         
         RecommendationDebugResponse response = new RecommendationDebugResponse();
         response.setUserId(userId);
@@ -132,9 +279,11 @@ public class RecommendationService {
         response.setFallbackUsed(context.isFallbackUsed());
         response.setRecommendations(context.getRecommendations());
         response.setTagProfile(context.getTagProfile());
-        response.setHistory(buildHistoryEntries(context.getCurrentUserHistory()));
+        response.setHistory(buildHistoryEntries(context));
         response.setSimilarUsers(buildSimilarUserEntries(context, context.getUserSimilarityMap()));
         response.setCandidateScores(buildCandidateEntries(context));
+        response.setDegraded(context.isDegraded());
+        response.setSkippedStages(context.getSkippedStages());
         
         // 设置算法配置信息
         Map<String, Object> config = new HashMap<>();
@@ -145,8 +294,23 @@ public class RecommendationService {
         config.put("contentWeight", CONTENT_WEIGHT);
         config.put("diversityPenalty", DIVERSITY_PENALTY);
         config.put("explorationRate", EXPLORATION_RATE);
+        config.put("matrixFactorizationWeight", matrixFactorizationService.getWeight());
+        config.put("matrixFactorizationReplacesUserBasedCF", matrixFactorizationService.isReplacingUserBasedCF());
+        config.put("latencyBudgetMs", latencyBudgetEnabled ? requestBudgetMillis : 0L);
         response.setAlgorithmConfig(config);
         
+        // 设置数据快照版本信息
+        ItemSimilarityMatrix itemSimilarityMatrix = itemBasedRecommendationService.getSimilarityMatrix();
+        Map<String, Object> dataVersions = new LinkedHashMap<>();
+        dataVersions.put("interactionMatrixVersion", interactionMatrixService.getMatrix().getVersion());
+        dataVersions.put("spotCatalogVersion", context.getSpotCatalog().getVersion());
+        dataVersions.put("userNeighborhoodVersion", userNeighborhoodService.getIndex().getVersion());
+        dataVersions.put("itemSimilarityVersion", itemSimilarityMatrix.getVersion());
+        dataVersions.put("itemSimilarityBuiltAt", itemSimilarityMatrix.getBuiltAtMillis());
+        dataVersions.put("itemSimilarityStale", itemBasedRecommendationService.isSimilarityMatrixStale());
+        dataVersions.put("matrixFactorizationVersion", matrixFactorizationService.getModel().getVersion());
+        response.setDataVersions(dataVersions);
+        
         // 生成推荐原因
         Map<Long, String> recommendationReasons = generateRecommendationReasons(context);
         response.setRecommendationReasons(recommendationReasons);
@@ -224,32 +388,23 @@ public class RecommendationService {
         return reasons;
     }
 
-    private Map<String, Double> buildUserTagProfile(List<UserVisitHistory> histories, Set<Long> visitedSpotIds) {
-        if (histories.isEmpty() || visitedSpotIds.isEmpty()) {
+    Map<String, Double> buildUserTagProfile(InteractionMatrix matrix, int userIndex, Set<Long> visitedSpotIds,
+                                            SpotCatalog catalog) {
+        if (userIndex < 0 || visitedSpotIds.isEmpty()) {
             return Collections.emptyMap();
         }
 
-        List<SpotTag> spotTags = spotTagRepository.findBySpotIdIn(visitedSpotIds);
-        if (spotTags.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        Map<Long, List<String>> tagsBySpot = spotTags.stream()
-                .filter(tag -> tag.getSpot() != null && tag.getSpot().getId() != null)
-                .collect(Collectors.groupingBy(tag -> tag.getSpot().getId(),
-                        Collectors.mapping(SpotTag::getTag, Collectors.toList())));
-
         Map<String, Double> tagWeights = new HashMap<>();
-        for (UserVisitHistory history : histories) {
-            Long spotId = history.getSpot().getId();
-            List<String> tags = tagsBySpot.get(spotId);
-            if (tags == null || tags.isEmpty()) {
+        long nowEpochSeconds = currentEpochSeconds();
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            List<String> tags = catalog.tags(matrix.entrySpotId(entry));
+            if (tags.isEmpty()) {
                 continue;
             }
             // 增强权重计算：评分 + 时间衰减 + 行为权重
-            double ratingWeight = normalizeRating(history.getRating());
-            double recencyWeight = calculateRecencyBoost(history.getVisitDate());
-            double engagementWeight = calculateEngagementWeight(history.getClickCount(), history.getDwellSeconds());
+            double ratingWeight = matrix.entryRating(entry);
+            double recencyWeight = calculateRecencyBoost(matrix.entryVisitEpochSeconds(entry), nowEpochSeconds);
+            double engagementWeight = matrix.entryEngagement(entry);
             double weight = ratingWeight + recencyWeight + engagementWeight;
             
             for (String tagValue : tags) {
@@ -263,616 +418,1039 @@ public class RecommendationService {
     }
 
     /**
-     * 使用并行流优化标签评分计算
+     * 标签匹配评分：按序号遍历景点目录，加权得分写入 TAG 通道并计入候选得分，返回匹配的景点数
      */
-    private Map<Long, Double> scoreSpotsByTags(Map<String, Double> tagProfile, Set<Long> visitedSpotIds) {
+    int scoreSpotsByTags(Map<String, Double> tagProfile, ScoringBuffer buffer) {
         if (tagProfile.isEmpty()) {
-            return Collections.emptyMap();
+            return 0;
         }
 
-        List<ScenicSpot> allSpots = spotRepository.findAll();
-        
-        // 使用并行流处理以提高性能
-        return allSpots.parallelStream()
-                .filter(spot -> spot.getId() != null && !visitedSpotIds.contains(spot.getId()))
-                .filter(spot -> spot.getTags() != null && !spot.getTags().isEmpty())
-                .collect(Collectors.toConcurrentMap(
-                    ScenicSpot::getId,
-                    spot -> {
-                        List<String> spotTags = extractTagValues(spot.getTags());
-                        return spotTags.stream()
-                                .mapToDouble(tag -> tagProfile.getOrDefault(tag, 0.0))
-                                .sum();
-                    },
-                    (v1, v2) -> v1 + v2
-                ))
-                .entrySet().stream()
-                .filter(entry -> entry.getValue() > 0.0)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
-
-    private List<String> extractTagValues(List<SpotTag> tags) {
-        if (tags == null) {
-            return Collections.emptyList();
+        SpotCatalog catalog = buffer.getCatalog();
+        int scored = 0;
+        for (int ordinal = 0; ordinal < catalog.ordinalCount(); ordinal++) {
+            if (buffer.isVisited(ordinal)) {
+                continue;
+            }
+            List<String> spotTags = catalog.tagsAt(ordinal);
+            double score = 0.0;
+            for (int t = 0; t < spotTags.size(); t++) {
+                Double weight = tagProfile.get(spotTags.get(t));
+                if (weight != null) {
+                    score += weight;
+                }
+            }
+            if (score > 0.0) {
+                double weighted = score * TAG_SCORE_MULTIPLIER * CONTENT_WEIGHT;
+                buffer.set(ScoringBuffer.TAG, ordinal, weighted);
+                buffer.add(ScoringBuffer.CANDIDATE, ordinal, weighted);
+                scored++;
+            }
         }
-        return tags.stream()
-                .map(SpotTag::getTag)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        return scored;
     }
 
-    /**
-     * 相似度详细信息类
-     */
-    private static class SimilarityDetails {
-        private double adjustedCosine;
-        private double jaccard;
-        private double timeWeighted;
-        private int commonSpotsCount;
-        
-        public double getAdjustedCosine() { return adjustedCosine; }
-        public void setAdjustedCosine(double adjustedCosine) { this.adjustedCosine = adjustedCosine; }
-        public double getJaccard() { return jaccard; }
-        public void setJaccard(double jaccard) { this.jaccard = jaccard; }
-        public double getTimeWeighted() { return timeWeighted; }
-        public void setTimeWeighted(double timeWeighted) { this.timeWeighted = timeWeighted; }
-        public int getCommonSpotsCount() { return commonSpotsCount; }
-        public void setCommonSpotsCount(int commonSpotsCount) { this.commonSpotsCount = commonSpotsCount; }
+    private long currentEpochSeconds() {
+        return InteractionMatrix.toEpochSeconds(LocalDateTime.now());
     }
-    
+
     /**
-     * 计算用户相似度 - 使用多种相似度度量方法的混合
-     * 1. 调整后的余弦相似度（考虑用户评分偏差）
-     * 2. Jaccard相似度（基于共同访问集合）
-     * 3. 时间加权相似度
-     * @deprecated 使用 calculateSimilarityWithDetails 替代以获取详细信息
+     * 优化的时间衰减 - 使用指数衰减而非线性衰减
+     * 同时考虑季节性因素
      */
-    @SuppressWarnings("unused")
-    private double calculateSimilarity(List<UserVisitHistory> user1History, List<UserVisitHistory> user2History) {
-        Map<Long, Double> user1Ratings = toRatingMap(user1History);
-        Map<Long, Double> user2Ratings = toRatingMap(user2History);
-
-        Set<Long> commonSpots = new HashSet<>(user1Ratings.keySet());
-        commonSpots.retainAll(user2Ratings.keySet());
-
-        if (commonSpots.size() < MIN_COMMON_ITEMS) return 0.0;
-
-        // 1. 调整后的余弦相似度（Adjusted Cosine Similarity）
-        double adjustedCosine = calculateAdjustedCosineSimilarity(user1History, user2History, commonSpots);
+    private double calculateRecencyBoost(long visitEpochSeconds, long nowEpochSeconds) {
+        if (visitEpochSeconds == InteractionMatrix.NO_VISIT_TIME) {
+            return 0.0;
+        }
+        long days = Math.max(0, (nowEpochSeconds - visitEpochSeconds) / SECONDS_PER_DAY);
         
-        // 2. Jaccard相似度（基于访问集合）
-        double jaccard = calculateJaccardSimilarity(user1Ratings.keySet(), user2Ratings.keySet());
+        // 指数衰减：越近期的访问权重越高
+        double exponentialDecay = Math.pow(EXPONENTIAL_DECAY_FACTOR, days / 30.0);
         
-        // 3. 时间加权相似度
-        double timeWeighted = calculateTimeWeightedSimilarity(user1History, user2History, commonSpots);
+        // 季节性增强：如果访问时间在旅游旺季，给予额外权重
+        double seasonalBoost = calculateSeasonalBoost(InteractionMatrix.toLocalDateTime(visitEpochSeconds));
         
-        // 加权组合：调整余弦(60%) + Jaccard(20%) + 时间加权(20%)
-        return 0.6 * adjustedCosine + 0.2 * jaccard + 0.2 * timeWeighted;
+        return exponentialDecay * seasonalBoost;
     }
     
     /**
-     * 计算用户相似度并返回详细信息
+     * 季节性增强 - 根据访问时间判断是否在旅游旺季
      */
-    private SimilarityDetails calculateSimilarityWithDetails(List<UserVisitHistory> user1History, List<UserVisitHistory> user2History) {
-        SimilarityDetails details = new SimilarityDetails();
-        Map<Long, Double> user1Ratings = toRatingMap(user1History);
-        Map<Long, Double> user2Ratings = toRatingMap(user2History);
-
-        Set<Long> commonSpots = new HashSet<>(user1Ratings.keySet());
-        commonSpots.retainAll(user2Ratings.keySet());
+    private double calculateSeasonalBoost(LocalDateTime visitDate) {
+        if (visitDate == null) return 1.0;
         
-        details.setCommonSpotsCount(commonSpots.size());
-
-        if (commonSpots.size() < MIN_COMMON_ITEMS) {
-            return details;
+        int month = visitDate.getMonthValue();
+        // 西藏旅游旺季：5-10月（春季到秋季）
+        if (month >= 5 && month <= 10) {
+            return SEASONAL_BOOST;
         }
-
-        double adjustedCosine = calculateAdjustedCosineSimilarity(user1History, user2History, commonSpots);
-        double jaccard = calculateJaccardSimilarity(user1Ratings.keySet(), user2Ratings.keySet());
-        double timeWeighted = calculateTimeWeightedSimilarity(user1History, user2History, commonSpots);
-        
-        details.setAdjustedCosine(adjustedCosine);
-        details.setJaccard(jaccard);
-        details.setTimeWeighted(timeWeighted);
-        
-        return details;
+        return 1.0;
     }
     
-    /**
-     * 调整后的余弦相似度 - 考虑用户平均评分偏差
-     */
-    private double calculateAdjustedCosineSimilarity(List<UserVisitHistory> user1History, 
-                                                      List<UserVisitHistory> user2History,
-                                                      Set<Long> commonSpots) {
-        if (commonSpots.isEmpty()) return 0.0;
-        
-        // 计算用户平均评分
-        double user1Avg = user1History.stream()
-                .mapToDouble(h -> normalizeRating(h.getRating()))
-                .average()
-                .orElse(DEFAULT_RATING);
-        
-        double user2Avg = user2History.stream()
-                .mapToDouble(h -> normalizeRating(h.getRating()))
-                .average()
-                .orElse(DEFAULT_RATING);
-        
-        Map<Long, Double> user1Ratings = toRatingMap(user1History);
-        Map<Long, Double> user2Ratings = toRatingMap(user2History);
-        
-        double numerator = 0.0;
-        double sumSq1 = 0.0;
-        double sumSq2 = 0.0;
-        
-        for (Long spotId : commonSpots) {
-            double diff1 = user1Ratings.get(spotId) - user1Avg;
-            double diff2 = user2Ratings.get(spotId) - user2Avg;
-            numerator += diff1 * diff2;
-            sumSq1 += diff1 * diff1;
-            sumSq2 += diff2 * diff2;
+    private List<ScenicSpot> fallbackPopularSpots(SpotCatalog catalog) {
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        if (matrix.nonZeroCount() == 0) {
+            return catalog.getSpots().stream()
+                    .limit(MAX_RESULTS)
+                    .collect(Collectors.toList());
         }
-        
-        double denominator = Math.sqrt(sumSq1) * Math.sqrt(sumSq2);
-        return denominator == 0 ? 0.0 : numerator / denominator;
+
+        long[] ranking = popularityRanking;
+        if (ranking == null) {
+            ranking = rankByPopularity(matrix, BuildProgress.untracked());
+        }
+        return Arrays.stream(ranking)
+                .mapToObj(catalog::get)
+                .filter(Objects::nonNull)
+                .limit(MAX_RESULTS)
+                .collect(Collectors.toList());
     }
-    
+
     /**
-     * Jaccard相似度 - 基于共同访问的景点比例
+     * 重建热门景点排名并发布，返回排名（取消时抛出 CancellationException，当前排名不变）
      */
-    private double calculateJaccardSimilarity(Set<Long> set1, Set<Long> set2) {
-        Set<Long> intersection = new HashSet<>(set1);
-        intersection.retainAll(set2);
-        
-        Set<Long> union = new HashSet<>(set1);
-        union.addAll(set2);
-        
-        return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
+    public long[] rebuildPopularity(BuildProgress progress) {
+        long[] ranking = rankByPopularity(interactionMatrixService.getMatrix(), progress);
+        popularityRanking = ranking;
+        return ranking;
     }
-    
+
     /**
-     * 时间加权相似度 - 考虑访问时间的接近程度
+     * 按景点列累加评分与时间衰减，返回按热度降序的景点ID
      */
-    private double calculateTimeWeightedSimilarity(List<UserVisitHistory> user1History,
-                                                   List<UserVisitHistory> user2History,
-                                                   Set<Long> commonSpots) {
-        if (commonSpots.isEmpty()) return 0.0;
-        
-        Map<Long, LocalDateTime> user1VisitTimes = user1History.stream()
-                .filter(h -> commonSpots.contains(h.getSpot().getId()))
-                .collect(Collectors.toMap(
-                    h -> h.getSpot().getId(),
-                    h -> h.getVisitDate() != null ? h.getVisitDate() : LocalDateTime.now(),
-                    (a, b) -> a.isAfter(b) ? a : b
-                ));
-        
-        Map<Long, LocalDateTime> user2VisitTimes = user2History.stream()
-                .filter(h -> commonSpots.contains(h.getSpot().getId()))
-                .collect(Collectors.toMap(
-                    h -> h.getSpot().getId(),
-                    h -> h.getVisitDate() != null ? h.getVisitDate() : LocalDateTime.now(),
-                    (a, b) -> a.isAfter(b) ? a : b
-                ));
-        
-        double totalWeight = 0.0;
-        double weightedSum = 0.0;
-        
-        for (Long spotId : commonSpots) {
-            LocalDateTime time1 = user1VisitTimes.get(spotId);
-            LocalDateTime time2 = user2VisitTimes.get(spotId);
-            if (time1 == null || time2 == null) continue;
-            
-            long daysDiff = Math.abs(Duration.between(time1, time2).toDays());
-            // 时间越接近，权重越高（指数衰减）
-            double timeWeight = Math.pow(EXPONENTIAL_DECAY_FACTOR, daysDiff / 30.0);
-            totalWeight += timeWeight;
-            weightedSum += timeWeight;
+    private long[] rankByPopularity(InteractionMatrix matrix, BuildProgress progress) {
+        long nowEpochSeconds = currentEpochSeconds();
+        int spotCount = matrix.spotCount();
+        double[] scores = new double[spotCount];
+        progress.begin(spotCount);
+        for (int col = 0; col < spotCount; col++) {
+            if ((col & 255) == 0) {
+                progress.checkCancelled();
+            }
+            double score = 0.0;
+            for (int pos = matrix.colStart(col); pos < matrix.colEnd(col); pos++) {
+                int entry = matrix.colEntry(pos);
+                score += matrix.entryRating(entry)
+                        + calculateRecencyBoost(matrix.entryVisitEpochSeconds(entry), nowEpochSeconds);
+            }
+            scores[col] = score;
+            progress.advance(1);
         }
-        
-        return totalWeight == 0 ? 0.0 : weightedSum / (totalWeight * commonSpots.size());
-    }
 
-    private Map<Long, Double> toRatingMap(List<UserVisitHistory> histories) {
-        return histories.stream()
-                .collect(Collectors.toMap(
-                        history -> history.getSpot().getId(),
-                        history -> normalizeRating(history.getRating()),
-                        (left, right) -> Math.max(left, right)
-                ));
+        Integer[] order = new Integer[spotCount];
+        for (int col = 0; col < spotCount; col++) {
+            order[col] = col;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        long[] ranking = new long[spotCount];
+        for (int i = 0; i < spotCount; i++) {
+            ranking[i] = matrix.spotIdAt(order[i]);
+        }
+        return ranking;
     }
 
     /**
-     * 归一化评分 - 考虑用户评分偏差
+     * 为最近活跃的前 cache.max-size 个用户重建标签画像，全部构建完成后写入缓存，返回构建的画像
+     * 取消时抛出 CancellationException，缓存不变
      */
-    private double normalizeRating(Integer rating) {
-        return rating == null ? DEFAULT_RATING : rating.doubleValue();
-    }
-    
-    /**
-     * 计算用户平均评分（用于偏差调整）
-     */
-    private double calculateUserAverageRating(List<UserVisitHistory> histories) {
-        if (histories.isEmpty()) return DEFAULT_RATING;
-        return histories.stream()
-                .mapToDouble(h -> normalizeRating(h.getRating()))
-                .average()
-                .orElse(DEFAULT_RATING);
+    public Map<Long, Map<String, Double>> rebuildTagProfiles(BuildProgress progress) {
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+
+        // 按最近访问时间挑选活跃用户
+        int userCount = matrix.userCount();
+        long[] lastVisits = new long[userCount];
+        Integer[] order = new Integer[userCount];
+        for (int u = 0; u < userCount; u++) {
+            long lastVisit = InteractionMatrix.NO_VISIT_TIME;
+            for (int entry = matrix.rowStart(u); entry < matrix.rowEnd(u); entry++) {
+                lastVisit = Math.max(lastVisit, matrix.entryVisitEpochSeconds(entry));
+            }
+            lastVisits[u] = lastVisit;
+            order[u] = u;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastVisits[b], lastVisits[a]));
+        int limit = Math.min(cacheMaxSize, userCount);
+
+        progress.begin(limit);
+        Map<Long, Map<String, Double>> profiles = new HashMap<>(limit * 2);
+        for (int i = 0; i < limit; i++) {
+            if ((i & 63) == 0) {
+                progress.checkCancelled();
+            }
+            int userIndex = order[i];
+            Set<Long> visitedSpotIds = new HashSet<>();
+            for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+                visitedSpotIds.add(matrix.entrySpotId(entry));
+            }
+            profiles.put(matrix.userIdAt(userIndex), buildUserTagProfile(matrix, userIndex, visitedSpotIds, catalog));
+            progress.advance(1);
+        }
+        profiles.forEach((userId, profile) -> putTagProfile(userId, profile, matrix));
+        return profiles;
     }
 
     /**
-     * 优化的时间衰减 - 使用指数衰减而非线性衰减
-     * 同时考虑季节性因素
+     * 写入按 matrix 快照构建的标签画像；写入后该用户的访问记录已更新（或矩阵已全量重建）时撤销，
+     * 避免失效事件先于写入执行而把旧画像留到 TTL 过期
      */
-    private double calculateRecencyBoost(LocalDateTime visitDate) {
-        if (visitDate == null) {
-            return 0.0;
+    private void putTagProfile(Long userId, Map<String, Double> profile, InteractionMatrix matrix) {
+        tagProfileCache.put(userId, profile);
+        if (interactionMatrixService.getUserHistoryVersion(userId) > matrix.getVersion()) {
+            tagProfileCache.invalidate(userId);
         }
-        long days = Math.max(0, Duration.between(visitDate, LocalDateTime.now()).toDays());
-        
-        // 指数衰减：越近期的访问权重越高
-        double exponentialDecay = Math.pow(EXPONENTIAL_DECAY_FACTOR, days / 30.0);
-        
-        // 季节性增强：如果访问时间在旅游旺季，给予额外权重
-        double seasonalBoost = calculateSeasonalBoost(visitDate);
-        
-        return exponentialDecay * seasonalBoost;
     }
-    
+
     /**
-     * 季节性增强 - 根据访问时间判断是否在旅游旺季
+     * 对离线索引中的近邻按当前矩阵重新计算相似度，过滤掉已低于阈值的近邻
      */
-    private double calculateSeasonalBoost(LocalDateTime visitDate) {
-        if (visitDate == null) return 1.0;
-        
-        int month = visitDate.getMonthValue();
-        // 西藏旅游旺季：5-10月（春季到秋季）
-        if (month >= 5 && month <= 10) {
-            return SEASONAL_BOOST;
+    void rescoreIndexedNeighbors(InteractionMatrix matrix, int userIndex,
+                                 UserNeighborhoodIndex neighborhoodIndex, int neighborhoodPos,
+                                 Map<Long, Double> userSimilarityMap,
+                                 Map<Long, SimilarityDetails> similarityDetailsMap) {
+        long nowEpochSeconds = currentEpochSeconds();
+        for (int pos = neighborhoodIndex.neighborStart(neighborhoodPos); pos < neighborhoodIndex.neighborEnd(neighborhoodPos); pos++) {
+            long neighborId = neighborhoodIndex.neighborId(pos);
+            int neighborIndex = matrix.userIndex(neighborId);
+            if (neighborIndex < 0) {
+                continue;
+            }
+            SimilarityDetails details = UserSimilarityCalculator.calculate(similarityKernel, matrix, userIndex, neighborIndex, nowEpochSeconds);
+            double similarity = details.getSimilarity();
+            if (similarity >= MIN_SIMILARITY) {
+                similarityDetailsMap.put(neighborId, details);
+                userSimilarityMap.put(neighborId, similarity);
+            }
         }
-        return 1.0;
     }
-    
+
     /**
-     * 计算行为权重 - 结合点击次数和停留时间
+     * 找出与当前用户有共同访问的其他用户，逐个计算相似度
+     * 重叠用户不多时通过CSC列精确枚举；热门景点导致重叠用户过多时改用 LSH 分桶召回有限的候选
      */
-    private double calculateEngagementWeight(Integer clickCount, Integer dwellSeconds) {
-        double clickWeight = clickCount == null ? 0.0 : Math.log1p(clickCount) * CLICK_WEIGHT;
-        double dwellWeight = dwellSeconds == null ? 0.0 : Math.min(dwellSeconds / 60.0, 5.0) * DWELL_WEIGHT;
-        return clickWeight + dwellWeight;
-    }
-
-    private List<ScenicSpot> fallbackPopularSpots() {
-        List<UserVisitHistory> histories = historyRepository.findAll();
-        if (histories.isEmpty()) {
-            return spotRepository.findAll().stream()
-                    .limit(MAX_RESULTS)
-                    .collect(Collectors.toList());
+    private void scanSimilarUsers(InteractionMatrix matrix, Long userId, int userIndex, Set<Long> visitedSpotIds,
+                                  Map<Long, Double> userSimilarityMap,
+                                  Map<Long, SimilarityDetails> similarityDetailsMap) {
+        Set<Long> overlapUserIds = new HashSet<>();
+        if (userLshService.shouldUseLsh(matrix, userIndex)) {
+            for (long candidateId : userLshService.candidates(matrix, userIndex)) {
+                overlapUserIds.add(candidateId);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("🪣 重叠用户过多，LSH 分桶召回 {} 个候选近邻", overlapUserIds.size());
+            }
+        } else {
+            for (Long spotId : visitedSpotIds) {
+                int col = matrix.spotIndex(spotId);
+                if (col < 0) continue;
+                for (int pos = matrix.colStart(col); pos < matrix.colEnd(col); pos++) {
+                    long otherUserId = matrix.colUserId(pos);
+                    if (otherUserId != userId) {
+                        overlapUserIds.add(otherUserId);
+                    }
+                }
+            }
         }
 
-        Map<Long, Double> spotScores = histories.stream()
-                .collect(Collectors.groupingBy(
-                        history -> history.getSpot().getId(),
-                        Collectors.summingDouble(history -> normalizeRating(history.getRating()) + calculateRecencyBoost(history.getVisitDate()))
-                ));
+        // 使用并行流计算相似度以提高性能，同时收集详细信息
+        long nowEpochSeconds = currentEpochSeconds();
+        Map<Long, Double> cachedSimilarities = similarityCache.get(userId);
+        overlapUserIds.parallelStream().forEach(otherUserId -> {
+            // 尝试从缓存获取
+            if (cachedSimilarities != null && cachedSimilarities.containsKey(otherUserId)) {
+                // 缓存命中时，详细信息可能不完整，但为了性能可以接受
+                userSimilarityMap.put(otherUserId, cachedSimilarities.get(otherUserId));
+                return;
+            }
+            
+            // 计算相似度及详细信息（LSH 分桶可能仍保留着已不在矩阵中的用户）
+            int otherUserIndex = matrix.userIndex(otherUserId);
+            if (otherUserIndex < 0) {
+                return;
+            }
+            SimilarityDetails details = UserSimilarityCalculator.calculate(similarityKernel, matrix, userIndex, otherUserIndex, nowEpochSeconds);
+            double similarity = details.getSimilarity();
+            
+            if (similarity >= MIN_SIMILARITY) {
+                similarityDetailsMap.put(otherUserId, details);
+                userSimilarityMap.put(otherUserId, similarity);
+            }
+        });
 
-        return spotScores.entrySet().stream()
-                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                .limit(MAX_RESULTS)
-                .map(entry -> {
-                    Long spotId = Objects.requireNonNull(entry.getKey());
-                    return spotRepository.findById(spotId).orElse(null);
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        // 更新缓存：相似度取决于其他用户的行，写入后矩阵已被替换时撤销，
+        // 否则失效事件先于写入执行时旧结果会留到 TTL 过期
+        similarityCache.put(userId, new HashMap<>(userSimilarityMap));
+        if (interactionMatrixService.getMatrix().getVersion() != matrix.getVersion()) {
+            similarityCache.invalidate(userId);
+        }
     }
 
-    private RecommendationComputationContext computeContext(Long userId) {
-        return computeContext(userId, null);
+    /**
+     * 按配置选择顺序或并发模式计算推荐
+     */
+    private RecommendationComputationContext resolveContext(Long userId, RecommendationContext recommendationContext,
+                                                            boolean captureScores) {
+        SpotCatalog catalog = spotCatalogService.getCatalog();
+        if (!concurrentEnabled) {
+            return computeContext(userId, recommendationContext, catalog, captureScores, requestBudgetNanos());
+        }
+        try {
+            return computeContextConcurrently(userId, recommendationContext, catalog, captureScores).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
-    
-    private RecommendationComputationContext computeContext(Long userId, RecommendationContext recommendationContext) {
-        RecommendationComputationContext context = new RecommendationComputationContext();
+
+    /**
+     * 顺序模式：各信号依次在当前线程计算
+     * 常规请求只在结束时按采样输出一条结构化事件（慢请求、兜底和调试请求必定输出）；
+     * 逐阶段的明细日志仅在调试接口或 DEBUG 级别下输出
+     *
+     * 已用时间超过延迟预算的相应比例时依次跳过 User-Based CF、Item-Based CF 与上下文打分，用其余信号给出排序
+     *
+     * @param captureScores 是否导出各阶段得分明细（调试接口使用，常规请求不生成这些 Map）
+     * @param budgetNanos   端到端延迟预算，0 表示不限
+     */
+    private RecommendationComputationContext computeContext(Long userId, RecommendationContext recommendationContext,
+                                                            SpotCatalog catalog, boolean captureScores,
+                                                            long budgetNanos) {
+        long requestStart = System.nanoTime();
+        long stageStart = requestStart;
+        boolean trace = captureScores || logger.isDebugEnabled();
         
         // 如果上下文未提供旅伴类型，尝试自动推断
-        if (recommendationContext == null || recommendationContext.getCompanion() == null) {
+        if (needsCompanionInference(recommendationContext)) {
+            String inferredCompanion = null;
             try {
-                String inferredCompanion = companionInferenceService.getCompanionType(userId);
-                if (recommendationContext == null) {
-                    recommendationContext = new RecommendationContext();
-                }
-                recommendationContext.setCompanion(inferredCompanion);
-                logger.info("🔍 自动推断旅伴类型: {}", inferredCompanion);
+                inferredCompanion = companionInferenceService.getCompanionType(userId);
             } catch (Exception e) {
                 logger.warn("⚠️  旅伴类型推断失败: {}", e.getMessage());
+                recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.COMPANION_INFERENCE_FAILED);
             }
+            recommendationContext = withCompanion(recommendationContext, inferredCompanion, trace);
+            stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.COMPANION_INFERENCE, stageStart);
         }
         
-        context.setRecommendationContext(recommendationContext);
+        RecommendationComputationContext context = newComputationContext(userId, recommendationContext, catalog);
+        context.setBudgetNanos(budgetNanos);
+        if (!context.hasHistory()) {
+            return coldStart(userId, context, requestStart, captureScores, trace);
+        }
+        InteractionMatrix matrix = context.getInteractionMatrix();
+        int userIndex = context.getUserIndex();
 
-        List<UserVisitHistory> currentUserHistory = historyRepository.findByUserId(userId);
-        context.setCurrentUserHistory(currentUserHistory);
-        context.setHasHistory(!currentUserHistory.isEmpty());
+        // 各阶段得分写入线程内复用的评分缓冲区，按景点序号索引
+        ScoringBuffer buffer = SCORING_BUFFER.get().reset(catalog);
+        Set<Long> visitedSpotIds = markVisited(matrix, userIndex, buffer);
+        stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.HISTORY_LOAD, stageStart);
 
-        logger.info("📊 用户历史记录: {} 条访问记录", currentUserHistory.size());
+        Map<String, Double> tagPreferenceProfile = loadTagProfile(userId, matrix, userIndex, visitedSpotIds, catalog, trace);
+        context.setTagProfile(tagPreferenceProfile);
+        // 标签画像属于标签匹配的准备工作，计入 tag_scoring 阶段
+        long tagProfileNanos = System.nanoTime() - stageStart;
+        stageStart += tagProfileNanos;
 
-        if (currentUserHistory.isEmpty()) {
-            logger.warn("⚠️  用户无历史记录，使用冷启动优化策略");
-            context.setFallbackUsed(true);
-            
-            // 使用冷启动优化服务
-            List<ScenicSpot> coldStartRecommendations;
-            if (recommendationContext != null) {
-                // 如果有上下文信息（位置、偏好等），使用混合冷启动推荐
-                coldStartRecommendations = coldStartOptimizationService.hybridColdStartRecommendation(
-                        userId,
-                        recommendationContext.getCurrentLatitude() != null ? 
-                                recommendationContext.getCurrentLatitude().doubleValue() : null,
-                        recommendationContext.getCurrentLongitude() != null ? 
-                                recommendationContext.getCurrentLongitude().doubleValue() : null,
-                        recommendationContext.getPreferredActivities() != null ? 
-                                Arrays.asList(recommendationContext.getPreferredActivities().split(",")) : null,
-                        recommendationContext.getSeason(), // 可以作为类别参考
-                        recommendationContext.getCompanion()
-                );
-            } else {
-                // 否则使用基于用户属性的推荐
-                coldStartRecommendations = coldStartOptimizationService.recommendForNewUserByAttributes(userId);
-            }
-            
-            context.setRecommendations(coldStartRecommendations);
-            logger.info("📌 冷启动推荐返回 {} 个景点", context.getRecommendations().size());
-            return context;
+        // 相似用户查找与 User-Based CF 最耗时，预算紧张时最先跳过
+        if (!skipOverBudget(context, requestStart, RecommendationMetrics.Degradation.USER_CF, trace)) {
+            Map<Long, SimilarityDetails> similarityDetailsMap = new ConcurrentHashMap<>();
+            Map<Long, Double> userSimilarityMap = new ConcurrentHashMap<>();
+            boolean replacedByMatrixFactorization = findSimilarUsers(matrix, userId, userIndex, visitedSpotIds,
+                    userSimilarityMap, similarityDetailsMap, trace);
+            context.setUserSimilarityMap(userSimilarityMap);
+            context.setSimilarityDetails(similarityDetailsMap);
+            stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.SIMILARITY, stageStart);
+
+            scoreUserBasedSignal(matrix, userIndex, userSimilarityMap, replacedByMatrixFactorization, buffer, trace);
+            stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.USER_CF, stageStart);
+        }
+
+        // Item-Based CF推荐得分
+        if (!skipOverBudget(context, requestStart, RecommendationMetrics.Degradation.ITEM_CF, trace)) {
+            scoreItemBasedSignal(userId, buffer, trace);
+            stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.ITEM_CF, stageStart);
         }
         
-        // 检查是否为新用户（访问记录少于3条）
-        if (coldStartOptimizationService.isNewUser(userId)) {
-            logger.info("🆕 检测到新用户（访问记录<3），增强冷启动推荐");
-            
-            // 对于新用户，可以混合使用冷启动推荐和少量协同过滤
-            // 这里先使用冷启动推荐，后续可以优化为混合策略
+        // 矩阵分解得分
+        scoreMatrixFactorizationSignal(matrix, userIndex, buffer, trace);
+        stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.MATRIX_FACTORIZATION, stageStart);
+        
+        // 内容过滤得分（标签匹配）
+        scoreTagSignal(tagPreferenceProfile, buffer);
+        long now = System.nanoTime();
+        recommendationMetrics.recordStage(RecommendationMetrics.Stage.TAG_SCORING, tagProfileNanos + now - stageStart);
+
+        return finishRanking(userId, context, buffer, requestStart, now, captureScores, trace);
+    }
+
+    /**
+     * 并发模式：旅伴推断、相似用户与 User-Based CF、Item-Based CF、矩阵分解、标签匹配各作为一个任务提交到有界线程池，
+     * 各自在工作线程的评分缓冲区中计算并导出单个通道的得分。
+     * 每个任务有自己的超时；合并最晚在延迟预算（recommendation.latency-budget）的 skip-context-at 比例处开始，
+     * 到期未完成的信号按缺失处理，用已完成的信号合并、重排，上下文打分仍按预算判断是否跳过。
+     * 历史记录读取与任务提交在调用线程完成，合并与重排在线程池中执行，调用线程不会阻塞
+     */
+    private CompletableFuture<RecommendationComputationContext> computeContextConcurrently(
+            Long userId, RecommendationContext recommendationContext, SpotCatalog catalog, boolean captureScores) {
+        long requestStart = System.nanoTime();
+        boolean trace = captureScores || logger.isDebugEnabled();
+
+        CompletableFuture<String> companionSignal = needsCompanionInference(recommendationContext)
+                ? submitSignal(RecommendationMetrics.Stage.COMPANION_INFERENCE, companionTimeoutMillis,
+                        () -> companionInferenceService.getCompanionType(userId))
+                : null;
+
+        RecommendationComputationContext context = newComputationContext(userId, recommendationContext, catalog);
+        context.setBudgetNanos(requestBudgetNanos());
+        if (!context.hasHistory()) {
+            // 冷启动推荐用到旅伴类型，等待推断结果（或超时）后再计算
+            CompletableFuture<String> companion = companionSignal != null
+                    ? companionSignal : CompletableFuture.completedFuture(null);
+            return companion.thenApplyAsync(inferredCompanion -> {
+                if (companionSignal != null) {
+                    context.setRecommendationContext(withCompanion(recommendationContext, inferredCompanion, trace));
+                }
+                return coldStart(userId, context, requestStart, captureScores, trace);
+            }, signalExecutor);
+        }
+        InteractionMatrix matrix = context.getInteractionMatrix();
+        int userIndex = context.getUserIndex();
+        recommendationMetrics.recordStage(RecommendationMetrics.Stage.HISTORY_LOAD, System.nanoTime() - requestStart);
+
+        boolean replacedByMatrixFactorization = matrixFactorizationService.isReplacingUserBasedCF();
+        // 与顺序模式一致：相似用户查找计入 SIMILARITY，USER_CF 只计打分部分
+        CompletableFuture<UserBasedSignal> userBasedSignal = submitSignal(RecommendationMetrics.Stage.USER_CF,
+                signalTimeoutMillis, false, () -> {
+                    ScoringBuffer local = SCORING_BUFFER.get().reset(catalog);
+                    Set<Long> visitedSpotIds = markVisited(matrix, userIndex, local);
+                    long start = System.nanoTime();
+                    Map<Long, SimilarityDetails> similarityDetailsMap = new ConcurrentHashMap<>();
+                    Map<Long, Double> userSimilarityMap = new ConcurrentHashMap<>();
+                    findSimilarUsers(matrix, userId, userIndex, visitedSpotIds, userSimilarityMap,
+                            similarityDetailsMap, trace);
+                    start = recommendationMetrics.lap(RecommendationMetrics.Stage.SIMILARITY, start);
+                    scoreUserBasedSignal(matrix, userIndex, userSimilarityMap, replacedByMatrixFactorization, local, trace);
+                    recommendationMetrics.lap(RecommendationMetrics.Stage.USER_CF, start);
+                    return new UserBasedSignal(userSimilarityMap, similarityDetailsMap,
+                            local.export(ScoringBuffer.USER_BASED));
+                });
+        CompletableFuture<ScoringBuffer.ChannelScores> itemBasedSignal = submitSignal(RecommendationMetrics.Stage.ITEM_CF,
+                signalTimeoutMillis, () -> {
+                    ScoringBuffer local = SCORING_BUFFER.get().reset(catalog);
+                    markVisited(matrix, userIndex, local);
+                    scoreItemBasedSignal(userId, local, trace);
+                    return local.export(ScoringBuffer.ITEM_BASED);
+                });
+        CompletableFuture<ScoringBuffer.ChannelScores> factorizationSignal = submitSignal(
+                RecommendationMetrics.Stage.MATRIX_FACTORIZATION, signalTimeoutMillis, () -> {
+                    ScoringBuffer local = SCORING_BUFFER.get().reset(catalog);
+                    markVisited(matrix, userIndex, local);
+                    scoreMatrixFactorizationSignal(matrix, userIndex, local, trace);
+                    return local.export(ScoringBuffer.MATRIX_FACTORIZATION);
+                });
+        CompletableFuture<TagSignal> tagSignal = submitSignal(RecommendationMetrics.Stage.TAG_SCORING,
+                signalTimeoutMillis, () -> {
+                    ScoringBuffer local = SCORING_BUFFER.get().reset(catalog);
+                    Set<Long> visitedSpotIds = markVisited(matrix, userIndex, local);
+                    Map<String, Double> tagProfile = loadTagProfile(userId, matrix, userIndex, visitedSpotIds, catalog, trace);
+                    scoreTagSignal(tagProfile, local);
+                    return new TagSignal(tagProfile, local.export(ScoringBuffer.TAG));
+                });
+
+        List<CompletableFuture<?>> signals = new ArrayList<>(List.of(userBasedSignal, itemBasedSignal,
+                factorizationSignal, tagSignal));
+        if (companionSignal != null) {
+            signals.add(companionSignal);
+        }
+        CompletableFuture<Void> allSignals = CompletableFuture.allOf(signals.toArray(new CompletableFuture<?>[0]));
+        long budgetNanos = context.getBudgetNanos();
+        if (budgetNanos > 0) {
+            // 与顺序模式共用同一预算：到跳过上下文打分的时间点为止只合并已完成的信号
+            long remainingNanos = (long) (budgetNanos * skipContextAt) - (System.nanoTime() - requestStart);
+            allSignals = allSignals.completeOnTimeout(null, Math.max(0L, remainingNanos), TimeUnit.NANOSECONDS);
+        }
+        return allSignals
+                .thenApplyAsync(ignored -> {
+                    // 到这里仍未完成的信号视为超出预算（getNow 返回 null）
+                    long mergeStart = System.nanoTime();
+                    if (companionSignal != null) {
+                        String inferredCompanion = completedSignal(companionSignal,
+                                RecommendationMetrics.Stage.COMPANION_INFERENCE, context);
+                        context.setRecommendationContext(
+                                withCompanion(recommendationContext, inferredCompanion, trace));
+                    }
+                    ScoringBuffer buffer = SCORING_BUFFER.get().reset(catalog);
+                    markVisited(matrix, userIndex, buffer);
+
+                    UserBasedSignal userBased = completedSignal(userBasedSignal,
+                            RecommendationMetrics.Stage.USER_CF, context);
+                    if (userBased != null) {
+                        context.setUserSimilarityMap(userBased.userSimilarityMap);
+                        context.setSimilarityDetails(userBased.similarityDetailsMap);
+                        buffer.addAll(ScoringBuffer.USER_BASED, userBased.scores);
+                        buffer.addAll(ScoringBuffer.CANDIDATE, userBased.scores);
+                    }
+                    ScoringBuffer.ChannelScores itemBased = completedSignal(itemBasedSignal,
+                            RecommendationMetrics.Stage.ITEM_CF, context);
+                    if (itemBased != null) {
+                        buffer.addAll(ScoringBuffer.ITEM_BASED, itemBased);
+                    }
+                    ScoringBuffer.ChannelScores factorization = completedSignal(factorizationSignal,
+                            RecommendationMetrics.Stage.MATRIX_FACTORIZATION, context);
+                    if (factorization != null) {
+                        buffer.addAll(ScoringBuffer.MATRIX_FACTORIZATION, factorization);
+                    }
+                    TagSignal tag = completedSignal(tagSignal, RecommendationMetrics.Stage.TAG_SCORING, context);
+                    if (tag != null) {
+                        context.setTagProfile(tag.tagProfile);
+                        buffer.addAll(ScoringBuffer.TAG, tag.scores);
+                        buffer.addAll(ScoringBuffer.CANDIDATE, tag.scores);
+                    }
+                    if (!context.getSkippedStages().isEmpty()) {
+                        logger.warn("⚠️  推荐信号未在时限内完成，按缺失处理: {}", context.getSkippedStages());
+                    }
+                    return finishRanking(userId, context, buffer, requestStart, mergeStart, captureScores, trace);
+                }, signalExecutor);
+    }
+
+    /**
+     * 提交一个信号任务：记录阶段耗时，异常时记为缺失（返回 null），超过 timeoutMillis 仍未完成时同样以 null 结束
+     * 超时后任务本身仍会执行完，只是结果不再使用；任务只写工作线程自己的缓冲区，不影响请求的结果
+     */
+    private <T> CompletableFuture<T> submitSignal(RecommendationMetrics.Stage stage, long timeoutMillis,
+                                                  Supplier<T> task) {
+        return submitSignal(stage, timeoutMillis, true, task);
+    }
+
+    /**
+     * recordStage 为 false 时由任务自己记录阶段耗时（任务内包含多个阶段时）
+     */
+    private <T> CompletableFuture<T> submitSignal(RecommendationMetrics.Stage stage, long timeoutMillis,
+                                                  boolean recordStage, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+                    long start = System.nanoTime();
+                    T result = task.get();
+                    if (recordStage) {
+                        recommendationMetrics.recordStage(stage, System.nanoTime() - start);
+                    }
+                    return result;
+                }, signalExecutor)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    logger.warn("⚠️  推荐信号 {} 计算失败: {}", stage.getTag(), cause.getMessage());
+                    if (stage == RecommendationMetrics.Stage.COMPANION_INFERENCE) {
+                        recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.COMPANION_INFERENCE_FAILED);
+                    } else if (stage == RecommendationMetrics.Stage.ITEM_CF) {
+                        recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.ITEM_CF_FAILED);
+                    }
+                    return null;
+                })
+                .completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取已完成信号的结果；未完成、失败或超时的信号记入跳过的阶段并返回 null
+     */
+    private <T> T completedSignal(CompletableFuture<T> signal, RecommendationMetrics.Stage stage,
+                                  RecommendationComputationContext context) {
+        T result = signal.getNow(null);
+        if (result == null) {
+            context.addSkippedStage(stage.getTag());
+            recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.SIGNAL_SKIPPED);
+        }
+        return result;
+    }
+
+    private long requestBudgetNanos() {
+        return latencyBudgetEnabled && requestBudgetMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(requestBudgetMillis) : 0L;
+    }
+
+    /**
+     * 已用时间达到延迟预算中该级别的比例时跳过对应阶段：记入跳过的阶段并计数
+     */
+    private boolean skipOverBudget(RecommendationComputationContext context, long requestStart,
+                                   RecommendationMetrics.Degradation degradation, boolean trace) {
+        long budgetNanos = context.getBudgetNanos();
+        if (budgetNanos <= 0) {
+            return false;
+        }
+        double threshold = switch (degradation) {
+            case USER_CF -> skipUserCFAt;
+            case ITEM_CF -> skipItemCFAt;
+            case CONTEXT_FILTERING -> skipContextAt;
+        };
+        long elapsedNanos = System.nanoTime() - requestStart;
+        if (elapsedNanos < budgetNanos * threshold) {
+            return false;
+        }
+        context.addSkippedStage(degradation.getStage().getTag());
+        recommendationMetrics.recordDegradation(degradation);
+        if (trace) {
+            logger.info("⏱️  已用 {}ms，超过延迟预算的 {}%，跳过 {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    Math.round(threshold * 100), degradation.getStage().getTag());
+        }
+        return true;
+    }
+
+    private static boolean needsCompanionInference(RecommendationContext recommendationContext) {
+        return recommendationContext == null || recommendationContext.getCompanion() == null;
+    }
+
+    /**
+     * 写入推断出的旅伴类型（推断失败时保持原样；原上下文为空时新建）
+     */
+    private RecommendationContext withCompanion(RecommendationContext recommendationContext, String inferredCompanion,
+                                                boolean trace) {
+        if (inferredCompanion == null) {
+            return recommendationContext;
+        }
+        if (recommendationContext == null) {
+            recommendationContext = new RecommendationContext();
+        }
+        recommendationContext.setCompanion(inferredCompanion);
+        if (trace) {
+            logger.info("🔍 自动推断旅伴类型: {}", inferredCompanion);
         }
+        return recommendationContext;
+    }
 
-        Set<Long> visitedSpotIds = currentUserHistory.stream()
-                .map(history -> history.getSpot().getId())
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-        if (visitedSpotIds.isEmpty()) {
-            logger.warn("⚠️  访问记录中无有效景点ID，使用热门景点兜底策略");
-            context.setFallbackUsed(true);
-            context.setRecommendations(fallbackPopularSpots());
-            return context;
+    /**
+     * 从内存交互矩阵读取用户行，不再逐请求查询数据库
+     */
+    private RecommendationComputationContext newComputationContext(Long userId,
+                                                                   RecommendationContext recommendationContext,
+                                                                   SpotCatalog catalog) {
+        RecommendationComputationContext context = new RecommendationComputationContext();
+        context.setSpotCatalog(catalog);
+        context.setRecommendationContext(recommendationContext);
+        InteractionMatrix matrix = interactionMatrixService.getMatrix();
+        int userIndex = matrix.userIndex(userId);
+        context.setInteractionMatrix(matrix);
+        context.setUserIndex(userIndex);
+        context.setHasHistory(userIndex >= 0 && matrix.rowEnd(userIndex) > matrix.rowStart(userIndex));
+        return context;
+    }
+
+    /**
+     * 用户无访问记录时的冷启动推荐
+     */
+    private RecommendationComputationContext coldStart(Long userId, RecommendationComputationContext context,
+                                                       long requestStart, boolean captureScores, boolean trace) {
+        if (trace) {
+            logger.info("⚠️  用户无历史记录，使用冷启动优化策略");
+        }
+        context.setFallbackUsed(true);
+        recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.COLD_START);
+        RecommendationContext recommendationContext = context.getRecommendationContext();
+        
+        // 使用冷启动优化服务
+        List<ScenicSpot> coldStartRecommendations;
+        if (recommendationContext != null) {
+            // 如果有上下文信息（位置、偏好等），使用混合冷启动推荐
+            coldStartRecommendations = coldStartOptimizationService.hybridColdStartRecommendation(
+                    userId,
+                    recommendationContext.getCurrentLatitude() != null ? 
+                            recommendationContext.getCurrentLatitude().doubleValue() : null,
+                    recommendationContext.getCurrentLongitude() != null ? 
+                            recommendationContext.getCurrentLongitude().doubleValue() : null,
+                    recommendationContext.getPreferredActivities() != null ? 
+                            Arrays.asList(recommendationContext.getPreferredActivities().split(",")) : null,
+                    recommendationContext.getSeason(), // 可以作为类别参考
+                    recommendationContext.getCompanion()
+            );
+        } else {
+            // 否则使用基于用户属性的推荐
+            coldStartRecommendations = coldStartOptimizationService.recommendForNewUserByAttributes(userId);
         }
+        
+        context.setRecommendations(coldStartRecommendations);
+        long elapsedNanos = System.nanoTime() - requestStart;
+        recommendationMetrics.recordRequest(elapsedNanos, true);
+        logRecommendationEvent(userId, context, null, elapsedNanos, captureScores);
+        return context;
+    }
 
-        logger.info("📍 已访问景点数: {}", visitedSpotIds.size());
+    /**
+     * 在缓冲区中标记用户访问过的景点，返回已访问景点ID集合
+     */
+    private static Set<Long> markVisited(InteractionMatrix matrix, int userIndex, ScoringBuffer buffer) {
+        Set<Long> visitedSpotIds = new HashSet<>();
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            long spotId = matrix.entrySpotId(entry);
+            visitedSpotIds.add(spotId);
+            buffer.markVisited(spotId);
+        }
+        return visitedSpotIds;
+    }
 
-        // 尝试从缓存获取标签画像
+    /**
+     * 读取标签画像（优先从缓存获取）
+     */
+    private Map<String, Double> loadTagProfile(Long userId, InteractionMatrix matrix, int userIndex,
+                                               Set<Long> visitedSpotIds, SpotCatalog catalog, boolean trace) {
         Map<String, Double> tagPreferenceProfile = tagProfileCache.get(userId);
         if (tagPreferenceProfile == null) {
-            tagPreferenceProfile = buildUserTagProfile(currentUserHistory, visitedSpotIds);
+            tagPreferenceProfile = buildUserTagProfile(matrix, userIndex, visitedSpotIds, catalog);
             // 更新缓存
-            if (tagProfileCache.size() < CACHE_SIZE_LIMIT) {
-                tagProfileCache.put(userId, tagPreferenceProfile);
+            putTagProfile(userId, tagPreferenceProfile, matrix);
+            if (trace) {
+                logger.info("🏷️  构建用户标签画像: {} 个标签", tagPreferenceProfile.size());
             }
-            logger.info("🏷️  构建用户标签画像: {} 个标签", tagPreferenceProfile.size());
-        } else {
+        } else if (trace) {
             logger.info("🏷️  从缓存获取标签画像: {} 个标签", tagPreferenceProfile.size());
         }
-        context.setTagProfile(tagPreferenceProfile);
-
-        List<Long> visitedSpotList = new ArrayList<>(visitedSpotIds);
-        Map<Long, List<UserVisitHistory>> overlapHistoryByUser = historyRepository.findBySpotIdIn(visitedSpotList)
-                .stream()
-                .filter(history -> !history.getUser().getId().equals(userId))
-                .collect(Collectors.groupingBy(history -> history.getUser().getId()));
+        return tagPreferenceProfile;
+    }
 
-        // 使用并行流计算相似度以提高性能，同时收集详细信息
-        Map<Long, SimilarityDetails> similarityDetailsMap = new ConcurrentHashMap<>();
-        Map<Long, Double> userSimilarityMap = overlapHistoryByUser.entrySet().parallelStream()
-                .collect(Collectors.toConcurrentMap(
-                    Map.Entry::getKey,
-                    entry -> {
-                        // 尝试从缓存获取
-                        Long otherUserId = entry.getKey();
-                        Map<Long, Double> cached = similarityCache.get(userId);
-                        if (cached != null && cached.containsKey(otherUserId)) {
-                            // 缓存命中时，详细信息可能不完整，但为了性能可以接受
-                            return cached.get(otherUserId);
-                        }
-                        
-                        // 计算相似度及详细信息
-                        SimilarityDetails details = calculateSimilarityWithDetails(currentUserHistory, entry.getValue());
-                        double similarity = 0.6 * details.getAdjustedCosine() + 0.2 * details.getJaccard() + 0.2 * details.getTimeWeighted();
-                        
-                        if (similarity >= MIN_SIMILARITY) {
-                            similarityDetailsMap.put(otherUserId, details);
-                            return similarity;
-                        }
-                        return null;
-                    },
-                    (v1, v2) -> v1 != null ? v1 : v2
-                ));
-        
-        // 移除null值
-        userSimilarityMap.entrySet().removeIf(entry -> entry.getValue() == null);
-        
-        logger.info("👥 找到 {} 个相似用户（相似度 >= {}）", userSimilarityMap.size(), MIN_SIMILARITY);
-        if (!userSimilarityMap.isEmpty()) {
-            userSimilarityMap.entrySet().stream()
-                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                    .limit(5)
-                    .forEach(entry -> {
-                        SimilarityDetails details = similarityDetailsMap.get(entry.getKey());
-                        if (details != null) {
-                            logger.info("   - 用户 {}: 总相似度={:.4f} (余弦={:.4f}, Jaccard={:.4f}, 时间={:.4f}, 共同景点={})",
-                                    entry.getKey(), entry.getValue(), 
-                                    details.getAdjustedCosine(), details.getJaccard(), 
-                                    details.getTimeWeighted(), details.getCommonSpotsCount());
-                        } else {
-                            logger.info("   - 用户 {}: 相似度={:.4f}", entry.getKey(), entry.getValue());
-                        }
-                    });
+    /**
+     * 查找相似用户：优先使用离线近邻索引，仅对前K个近邻按当前矩阵重新打分；索引未覆盖的用户退回全量扫描。
+     * 矩阵分解替代 User-Based CF 时不再计算相似用户，返回 true
+     */
+    private boolean findSimilarUsers(InteractionMatrix matrix, Long userId, int userIndex, Set<Long> visitedSpotIds,
+                                     Map<Long, Double> userSimilarityMap,
+                                     Map<Long, SimilarityDetails> similarityDetailsMap, boolean trace) {
+        if (matrixFactorizationService.isReplacingUserBasedCF()) {
+            if (trace) {
+                logger.info("🧮 矩阵分解替代 User-Based CF，跳过相似用户计算");
+            }
+            return true;
+        }
+        UserNeighborhoodIndex neighborhoodIndex = userNeighborhoodService.getIndex();
+        int neighborhoodPos = neighborhoodIndex.userIndex(userId);
+        if (neighborhoodPos >= 0) {
+            rescoreIndexedNeighbors(matrix, userIndex, neighborhoodIndex, neighborhoodPos,
+                    userSimilarityMap, similarityDetailsMap);
+            if (trace) {
+                logger.info("👥 使用近邻索引 v{} 重新打分 {} 个候选近邻", neighborhoodIndex.getVersion(),
+                        neighborhoodIndex.neighborEnd(neighborhoodPos) - neighborhoodIndex.neighborStart(neighborhoodPos));
+            }
+        } else {
+            scanSimilarUsers(matrix, userId, userIndex, visitedSpotIds, userSimilarityMap, similarityDetailsMap);
         }
-        
-        // 更新缓存
-        updateSimilarityCache(userId, userSimilarityMap);
-        
-        context.setUserSimilarityMap(userSimilarityMap);
-        context.setSimilarityDetails(similarityDetailsMap);
-
-        Map<Long, Double> candidateSpots = new HashMap<>();
-        Map<Long, Double> collaborativeScores = new HashMap<>();
+        if (trace) {
+            logSimilarUsers(userSimilarityMap, similarityDetailsMap);
+        }
+        return false;
+    }
 
+    private void scoreUserBasedSignal(InteractionMatrix matrix, int userIndex, Map<Long, Double> userSimilarityMap,
+                                      boolean replacedByMatrixFactorization, ScoringBuffer buffer, boolean trace) {
         if (!userSimilarityMap.isEmpty()) {
-            List<Long> similarUserIds = userSimilarityMap.entrySet().stream()
-                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                    .limit(MAX_SIMILAR_USERS)
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toList());
-
-            logger.info("🔄 使用前 {} 个相似用户生成候选推荐", Math.min(similarUserIds.size(), MAX_SIMILAR_USERS));
-
-            if (!similarUserIds.isEmpty()) {
-                Map<Long, List<UserVisitHistory>> similarUserHistories = historyRepository.findByUserIdIn(similarUserIds)
-                        .stream()
-                        .collect(Collectors.groupingBy(history -> history.getUser().getId()));
-
-                int candidateCount = 0;
-                for (Long similarUserId : similarUserIds) {
-                    double similarity = userSimilarityMap.get(similarUserId);
-                    List<UserVisitHistory> histories = similarUserHistories.getOrDefault(similarUserId, Collections.emptyList());
-                    
-                    // 计算相似用户的平均评分（用于偏差调整）
-                    double similarUserAvg = calculateUserAverageRating(histories);
-                    double currentUserAvg = calculateUserAverageRating(currentUserHistory);
-                    
-                    for (UserVisitHistory history : histories) {
-                        Long spotId = history.getSpot().getId();
-                        if (spotId == null || visitedSpotIds.contains(spotId)) {
-                            continue;
-                        }
-                        
-                        // 调整后的评分（考虑用户评分偏差）
-                        double rawRating = normalizeRating(history.getRating());
-                        double adjustedRating = rawRating - similarUserAvg + currentUserAvg;
-                        adjustedRating = Math.max(1.0, Math.min(5.0, adjustedRating)); // 限制在1-5范围内
-                        
-                        double recencyBoost = calculateRecencyBoost(history.getVisitDate());
-                        double engagementWeight = calculateEngagementWeight(history.getClickCount(), history.getDwellSeconds());
-                        
-                        // 增强的评分计算
-                        double score = similarity * (adjustedRating + recencyBoost + engagementWeight);
-                        collaborativeScores.merge(spotId, score, this::accumulateScores);
-                        candidateSpots.merge(spotId, score, this::accumulateScores);
-                        candidateCount++;
-                    }
-                }
+            int candidateCount = scoreByUserBasedCF(matrix, userIndex, userSimilarityMap, buffer);
+            if (trace) {
                 logger.info("📊 协同过滤生成 {} 个候选景点", candidateCount);
             }
-        } else {
-            logger.warn("⚠️  未找到相似用户，仅使用标签匹配");
+        } else if (!replacedByMatrixFactorization) {
+            if (trace) {
+                logger.info("⚠️  未找到相似用户，仅使用标签匹配");
+            }
+            recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.NO_SIMILAR_USERS);
         }
+        recommendationMetrics.recordCandidates(RecommendationMetrics.CandidateSource.USER_BASED,
+                buffer.count(ScoringBuffer.USER_BASED));
+    }
 
-        // Item-Based CF推荐得分
-        Map<Long, Double> itemBasedScores = new HashMap<>();
-        if (!visitedSpotIds.isEmpty()) {
-            try {
-                itemBasedScores = itemBasedRecommendationService.recommendByItemCF(userId, visitedSpotIds);
-                logger.info("🎯 Item-Based CF生成 {} 个候选景点", itemBasedScores.size());
-            } catch (Exception e) {
-                logger.warn("⚠️  Item-Based CF推荐失败: {}", e.getMessage());
+    private void scoreItemBasedSignal(Long userId, ScoringBuffer buffer, boolean trace) {
+        try {
+            itemBasedRecommendationService.recommendByItemCF(userId, buffer);
+            if (trace) {
+                logger.info("🎯 Item-Based CF生成 {} 个候选景点", buffer.count(ScoringBuffer.ITEM_BASED));
             }
+        } catch (Exception e) {
+            logger.warn("⚠️  Item-Based CF推荐失败: {}", e.getMessage());
+            recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.ITEM_CF_FAILED);
         }
-        
-        // 归一化User-Based CF得分
-        Map<Long, Double> normalizedCollaborativeScores = normalizeScores(collaborativeScores);
-        
-        // 归一化Item-Based CF得分
-        Map<Long, Double> normalizedItemBasedScores = normalizeScores(itemBasedScores);
-        
-        // 混合User-Based和Item-Based得分
-        Map<Long, Double> hybridCollaborativeScores = new HashMap<>();
-        
-        // 合并User-Based和Item-Based得分
-        normalizedCollaborativeScores.forEach((spotId, score) -> {
-            hybridCollaborativeScores.put(spotId, score * USER_BASED_WEIGHT);
-        });
-        
-        normalizedItemBasedScores.forEach((spotId, score) -> {
-            hybridCollaborativeScores.merge(spotId, score * ITEM_BASED_WEIGHT, Double::sum);
-        });
-        
-        // 将混合得分加入候选集合
-        hybridCollaborativeScores.forEach((spotId, score) -> {
-            candidateSpots.merge(spotId, score * COLLABORATIVE_WEIGHT, this::accumulateScores);
-        });
-        
-        // 内容过滤得分（标签匹配）
-        Map<Long, Double> tagBasedScores = scoreSpotsByTags(tagPreferenceProfile, visitedSpotIds);
-        logger.info("🏷️  标签匹配生成 {} 个候选景点", tagBasedScores.size());
-        Map<Long, Double> weightedTagScores = new HashMap<>();
-        tagBasedScores.forEach((spotId, score) -> {
-            double weighted = score * TAG_SCORE_MULTIPLIER * CONTENT_WEIGHT;
-            weightedTagScores.put(spotId, weighted);
-            candidateSpots.merge(spotId, weighted, this::accumulateScores);
-        });
+        recommendationMetrics.recordCandidates(RecommendationMetrics.CandidateSource.ITEM_BASED,
+                buffer.count(ScoringBuffer.ITEM_BASED));
+    }
+
+    private void scoreMatrixFactorizationSignal(InteractionMatrix matrix, int userIndex, ScoringBuffer buffer,
+                                                boolean trace) {
+        int factorizationCount = matrixFactorizationService.recommendByMatrixFactorization(matrix, userIndex, buffer);
+        if (trace && factorizationCount > 0) {
+            logger.info("🧮 矩阵分解生成 {} 个候选景点", factorizationCount);
+        }
+        recommendationMetrics.recordCandidates(RecommendationMetrics.CandidateSource.MATRIX_FACTORIZATION,
+                factorizationCount);
+    }
+
+    private void scoreTagSignal(Map<String, Double> tagPreferenceProfile, ScoringBuffer buffer) {
+        int tagCount = scoreSpotsByTags(tagPreferenceProfile, buffer);
+        recommendationMetrics.recordCandidates(RecommendationMetrics.CandidateSource.TAG, tagCount);
+    }
+
+    /**
+     * 各路信号写入缓冲区之后的共同流程：混合协同过滤得分、上下文过滤、多样性重排与兜底
+     * 混合耗时计入 context_filtering 阶段
+     */
+    private RecommendationComputationContext finishRanking(Long userId, RecommendationComputationContext context,
+                                                           ScoringBuffer buffer, long requestStart, long stageStart,
+                                                           boolean captureScores, boolean trace) {
+        // 原地归一化User-Based、Item-Based与矩阵分解得分，混合后计入候选得分
+        int collaborativeCount = blendCollaborativeScores(buffer);
 
-        context.setCollaborativeScores(hybridCollaborativeScores);
-        context.setTagScores(weightedTagScores);
-        context.setCandidateScores(candidateSpots);
-        
         // 保存详细得分用于调试
-        context.setUserBasedScores(normalizedCollaborativeScores);
-        context.setItemBasedScores(normalizedItemBasedScores);
+        if (captureScores) {
+            captureScoreDetails(context, buffer);
+        }
 
-        logger.info("📈 候选景点总数: {} (混合协同过滤: {}, User-Based: {}, Item-Based: {}, 标签匹配: {})", 
-                candidateSpots.size(), 
-                hybridCollaborativeScores.size(),
-                normalizedCollaborativeScores.size(),
-                normalizedItemBasedScores.size(),
-                weightedTagScores.size());
+        if (trace) {
+            logger.info("📈 候选景点总数: {} (混合协同过滤: {}, User-Based: {}, Item-Based: {}, 矩阵分解: {}, 标签匹配: {})",
+                    buffer.count(ScoringBuffer.CANDIDATE),
+                    collaborativeCount,
+                    buffer.count(ScoringBuffer.USER_BASED),
+                    buffer.count(ScoringBuffer.ITEM_BASED),
+                    buffer.count(ScoringBuffer.MATRIX_FACTORIZATION),
+                    buffer.count(ScoringBuffer.TAG));
+        }
 
         // 应用上下文感知过滤和加权
-        Map<Long, Double> finalCandidateSpots = candidateSpots;
-        if (recommendationContext != null) {
-            finalCandidateSpots = applyContextAwareFiltering(candidateSpots, recommendationContext);
-            logger.info("🌍 上下文过滤后候选景点数: {}", finalCandidateSpots.size());
+        // 上下文打分是最后一个可跳过的阶段，跳过时直接按已有得分重排
+        RecommendationContext recommendationContext = context.getRecommendationContext();
+        if (recommendationContext != null
+                && !skipOverBudget(context, requestStart, RecommendationMetrics.Degradation.CONTEXT_FILTERING, trace)) {
+            applyContextAwareFiltering(buffer, recommendationContext);
+            if (trace) {
+                logger.info("🌍 上下文过滤后候选景点数: {}", buffer.count(ScoringBuffer.CANDIDATE));
+            }
         }
+        recommendationMetrics.recordCandidates(RecommendationMetrics.CandidateSource.FILTERED,
+                buffer.count(ScoringBuffer.CANDIDATE));
+        stageStart = recommendationMetrics.lap(RecommendationMetrics.Stage.CONTEXT_FILTERING, stageStart);
 
-        // 应用多样性惩罚和探索机制（如果无上下文，传入null）
-        List<ScenicSpot> recommendations = rerankWithDiversityAndExploration(
-                finalCandidateSpots, visitedSpotIds, tagPreferenceProfile, recommendationContext);
-
-        context.setRecommendations(recommendations);
+        // 应用多样性惩罚和探索机制
+        List<ScenicSpot> recommendations = rerankWithDiversityAndExploration(buffer);
+        recommendationMetrics.lap(RecommendationMetrics.Stage.RERANK, stageStart);
 
         if (recommendations.isEmpty()) {
             logger.warn("⚠️  重排序后无推荐结果，使用热门景点兜底");
             context.setFallbackUsed(true);
-            recommendations = fallbackPopularSpots();
+            recommendationMetrics.recordFallback(RecommendationMetrics.Fallback.EMPTY_RERANK);
+            recommendations = fallbackPopularSpots(context.getSpotCatalog());
         }
+        long elapsedNanos = System.nanoTime() - requestStart;
+        recommendationMetrics.recordRequest(elapsedNanos, false);
 
-        logger.info("✨ 最终推荐结果: {} 个景点", recommendations.size());
-        recommendations.stream()
-                .limit(5)
-                .forEach(spot -> logger.info("   - {}", spot.getName()));
+        if (trace) {
+            logger.info("✨ 最终推荐结果: {} 个景点", recommendations.size());
+            recommendations.stream()
+                    .limit(5)
+                    .forEach(spot -> logger.info("   - {}", spot.getName()));
+        }
 
         context.setRecommendations(recommendations);
+        logRecommendationEvent(userId, context, buffer, elapsedNanos, captureScores);
         return context;
     }
 
-    private List<HistoryEntry> buildHistoryEntries(List<UserVisitHistory> histories) {
-        if (histories == null) {
+    /**
+     * 输出前5个相似用户的相似度明细（仅调试时调用）
+     */
+    private void logSimilarUsers(Map<Long, Double> userSimilarityMap,
+                                 Map<Long, SimilarityDetails> similarityDetailsMap) {
+        logger.info("👥 找到 {} 个相似用户（相似度 >= {}）", userSimilarityMap.size(), MIN_SIMILARITY);
+        userSimilarityMap.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(5)
+                .forEach(entry -> {
+                    SimilarityDetails details = similarityDetailsMap.get(entry.getKey());
+                    if (details != null) {
+                        logger.info("   - 用户 {}: 总相似度={} (余弦={}, Jaccard={}, 时间={}, 共同景点={})",
+                                entry.getKey(), String.format("%.4f", entry.getValue()),
+                                String.format("%.4f", details.getAdjustedCosine()),
+                                String.format("%.4f", details.getJaccard()),
+                                String.format("%.4f", details.getTimeWeighted()),
+                                details.getCommonSpotsCount());
+                    } else {
+                        logger.info("   - 用户 {}: 相似度={}", entry.getKey(), String.format("%.4f", entry.getValue()));
+                    }
+                });
+    }
+
+    /**
+     * 单次推荐的结构化事件：常规请求按采样率输出，慢请求、兜底与调试请求必定输出
+     *
+     * @param buffer 冷启动路径为 null
+     */
+    private void logRecommendationEvent(Long userId, RecommendationComputationContext context, ScoringBuffer buffer,
+                                        long elapsedNanos, boolean force) {
+        boolean forced = force || context.isFallbackUsed() || context.isDegraded()
+                || structuredEventLog.isSlow(elapsedNanos);
+        if (!structuredEventLog.shouldLog(RECOMMENDATION_EVENT, forced)) {
+            return;
+        }
+        InteractionMatrix matrix = context.getInteractionMatrix();
+        int userIndex = context.getUserIndex();
+        StructuredEventLog.Event event = structuredEventLog.event(RECOMMENDATION_EVENT)
+                .with("userId", userId)
+                .with("path", buffer == null ? "cold_start" : "personalized")
+                .with("history", userIndex < 0 ? 0 : matrix.rowEnd(userIndex) - matrix.rowStart(userIndex));
+        if (buffer != null) {
+            event.with("similarUsers", context.getUserSimilarityMap().size())
+                    .with("userBased", buffer.count(ScoringBuffer.USER_BASED))
+                    .with("itemBased", buffer.count(ScoringBuffer.ITEM_BASED))
+                    .with("matrixFactorization", buffer.count(ScoringBuffer.MATRIX_FACTORIZATION))
+                    .with("tag", buffer.count(ScoringBuffer.TAG))
+                    .with("candidates", buffer.count(ScoringBuffer.CANDIDATE));
+        }
+        if (context.isDegraded()) {
+            event.with("skipped", String.join(",", context.getSkippedStages()));
+        }
+        structuredEventLog.emit(event
+                .with("results", context.getRecommendations().size())
+                .with("fallback", context.isFallbackUsed())
+                .with("elapsedUs", elapsedNanos / 1_000L));
+    }
+
+    /**
+     * User-Based CF：取前 MAX_SIMILAR_USERS 个相似用户，按评分偏差调整后累加到 USER_BASED 与 CANDIDATE 通道
+     * 返回写入的得分条数
+     */
+    int scoreByUserBasedCF(InteractionMatrix matrix, int userIndex, Map<Long, Double> userSimilarityMap,
+                           ScoringBuffer buffer) {
+        List<Long> similarUserIds = userSimilarityMap.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(MAX_SIMILAR_USERS)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("🔄 使用前 {} 个相似用户生成候选推荐", similarUserIds.size());
+        }
+
+        long nowEpochSeconds = currentEpochSeconds();
+        double currentUserAvg = UserSimilarityCalculator.averageRating(matrix, userIndex);
+        int candidateCount = 0;
+        for (Long similarUserId : similarUserIds) {
+            double similarity = userSimilarityMap.get(similarUserId);
+            int similarUserIndex = matrix.userIndex(similarUserId);
+            if (similarUserIndex < 0) {
+                continue;
+            }
+            
+            // 计算相似用户的平均评分（用于偏差调整）
+            double similarUserAvg = UserSimilarityCalculator.averageRating(matrix, similarUserIndex);
+            
+            for (int entry = matrix.rowStart(similarUserIndex); entry < matrix.rowEnd(similarUserIndex); entry++) {
+                int ordinal = buffer.ordinal(matrix.entrySpotId(entry));
+                if (ordinal < 0 || buffer.isVisited(ordinal)) {
+                    continue;
+                }
+                
+                // 调整后的评分（考虑用户评分偏差）
+                double rawRating = matrix.entryRating(entry);
+                double adjustedRating = rawRating - similarUserAvg + currentUserAvg;
+                adjustedRating = Math.max(1.0, Math.min(5.0, adjustedRating)); // 限制在1-5范围内
+                
+                double recencyBoost = calculateRecencyBoost(matrix.entryVisitEpochSeconds(entry), nowEpochSeconds);
+                double engagementWeight = matrix.entryEngagement(entry);
+                
+                // 增强的评分计算
+                double score = similarity * (adjustedRating + recencyBoost + engagementWeight);
+                buffer.add(ScoringBuffer.USER_BASED, ordinal, score);
+                buffer.add(ScoringBuffer.CANDIDATE, ordinal, score);
+                candidateCount++;
+            }
+        }
+        return candidateCount;
+    }
+
+    /**
+     * 原地归一化 User-Based、Item-Based 与矩阵分解得分，混合后计入候选得分，返回混合的景点数
+     */
+    int blendCollaborativeScores(ScoringBuffer buffer) {
+        buffer.normalize(ScoringBuffer.USER_BASED);
+        buffer.normalize(ScoringBuffer.ITEM_BASED);
+        buffer.normalize(ScoringBuffer.MATRIX_FACTORIZATION);
+        double factorizationWeight = matrixFactorizationWeight(buffer);
+        int collaborativeCount = 0;
+        for (int i = 0; i < buffer.touchedCount(); i++) {
+            int ordinal = buffer.touchedOrdinal(i);
+            if (isCollaborativeCandidate(buffer, ordinal)) {
+                buffer.add(ScoringBuffer.CANDIDATE, ordinal,
+                        hybridCollaborativeScore(buffer, ordinal, factorizationWeight) * COLLABORATIVE_WEIGHT);
+                collaborativeCount++;
+            }
+        }
+        return collaborativeCount;
+    }
+
+    private static boolean isCollaborativeCandidate(ScoringBuffer buffer, int ordinal) {
+        return buffer.has(ScoringBuffer.USER_BASED, ordinal) || buffer.has(ScoringBuffer.ITEM_BASED, ordinal)
+                || buffer.has(ScoringBuffer.MATRIX_FACTORIZATION, ordinal);
+    }
+
+    /**
+     * 本次推荐中矩阵分解得分的权重：没有矩阵分解得分时为0；替代 User-Based CF 时沿用其权重
+     */
+    private double matrixFactorizationWeight(ScoringBuffer buffer) {
+        if (buffer.count(ScoringBuffer.MATRIX_FACTORIZATION) == 0) {
+            return 0.0;
+        }
+        return matrixFactorizationService.isReplacingUserBasedCF() ? USER_BASED_WEIGHT : matrixFactorizationService.getWeight();
+    }
+
+    /**
+     * 混合协同过滤得分（各路得分归一化后加权）
+     * 矩阵分解作为附加信号时，近邻协同过滤的得分整体按 (1 - 权重) 缩放
+     */
+    private double hybridCollaborativeScore(ScoringBuffer buffer, int ordinal, double factorizationWeight) {
+        double neighborhoodScale = matrixFactorizationService.isReplacingUserBasedCF() ? 1.0 : 1.0 - factorizationWeight;
+        return (buffer.get(ScoringBuffer.USER_BASED, ordinal) * USER_BASED_WEIGHT
+                + buffer.get(ScoringBuffer.ITEM_BASED, ordinal) * ITEM_BASED_WEIGHT) * neighborhoodScale
+                + buffer.get(ScoringBuffer.MATRIX_FACTORIZATION, ordinal) * factorizationWeight;
+    }
+
+    /**
+     * 从评分缓冲区导出各阶段得分（上下文过滤之前）
+     */
+    private void captureScoreDetails(RecommendationComputationContext context, ScoringBuffer buffer) {
+        Map<Long, Double> collaborativeScores = new HashMap<>();
+        double factorizationWeight = matrixFactorizationWeight(buffer);
+        for (int i = 0; i < buffer.touchedCount(); i++) {
+            int ordinal = buffer.touchedOrdinal(i);
+            if (isCollaborativeCandidate(buffer, ordinal)) {
+                collaborativeScores.put(buffer.getCatalog().spotIdAt(ordinal),
+                        hybridCollaborativeScore(buffer, ordinal, factorizationWeight));
+            }
+        }
+        context.setCollaborativeScores(collaborativeScores);
+        context.setUserBasedScores(buffer.toMap(ScoringBuffer.USER_BASED));
+        context.setItemBasedScores(buffer.toMap(ScoringBuffer.ITEM_BASED));
+        context.setMatrixFactorizationScores(buffer.toMap(ScoringBuffer.MATRIX_FACTORIZATION));
+        context.setTagScores(buffer.toMap(ScoringBuffer.TAG));
+        context.setCandidateScores(buffer.toMap(ScoringBuffer.CANDIDATE));
+    }
+
+    private List<HistoryEntry> buildHistoryEntries(RecommendationComputationContext context) {
+        InteractionMatrix matrix = context.getInteractionMatrix();
+        int userIndex = context.getUserIndex();
+        if (matrix == null || userIndex < 0) {
             return Collections.emptyList();
         }
-        return histories.stream()
-                .filter(history -> history.getSpot() != null)
-                .map(history -> {
-                    HistoryEntry entry = new HistoryEntry();
-                    entry.setSpotId(history.getSpot().getId());
-                    entry.setSpotName(history.getSpot().getName());
-                    entry.setRating(history.getRating() == null ? null : history.getRating().doubleValue());
-                    entry.setVisitDate(history.getVisitDate());
-                    return entry;
-                })
-                .collect(Collectors.toList());
+
+        List<Long> spotIds = new ArrayList<>();
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            spotIds.add(matrix.entrySpotId(entry));
+        }
+        SpotCatalog catalog = context.getSpotCatalog();
+        Map<Long, String> spotNames = spotIds.stream()
+                .map(catalog::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(ScenicSpot::getId, ScenicSpot::getName));
+
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            HistoryEntry historyEntry = new HistoryEntry();
+            long spotId = matrix.entrySpotId(entry);
+            historyEntry.setSpotId(spotId);
+            historyEntry.setSpotName(spotNames.get(spotId));
+            historyEntry.setRating((double) matrix.entryRating(entry));
+            historyEntry.setVisitDate(InteractionMatrix.toLocalDateTime(matrix.entryVisitEpochSeconds(entry)));
+            entries.add(historyEntry);
+        }
+        return entries;
     }
 
     private List<SimilarUserEntry> buildSimilarUserEntries(RecommendationComputationContext context, Map<Long, Double> userSimilarityMap) {
@@ -912,10 +1490,14 @@ public class RecommendationService {
         Map<Long, Double> collaborativeScores = context.getCollaborativeScores();
         Map<Long, Double> userBasedScores = context.getUserBasedScores();
         Map<Long, Double> itemBasedScores = context.getItemBasedScores();
+        Map<Long, Double> matrixFactorizationScores = context.getMatrixFactorizationScores();
         Map<Long, Double> tagScores = context.getTagScores();
 
         List<Long> candidateIds = new ArrayList<>(finalScores.keySet());
-        Map<Long, String> spotNames = spotRepository.findAllById(candidateIds).stream()
+        SpotCatalog catalog = context.getSpotCatalog();
+        Map<Long, String> spotNames = candidateIds.stream()
+                .map(catalog::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toMap(ScenicSpot::getId, ScenicSpot::getName));
 
         return finalScores.entrySet().stream()
@@ -929,26 +1511,81 @@ public class RecommendationService {
                     candidateEntry.setCollaborativeScore(collaborativeScores.getOrDefault(spotId, 0.0));
                     candidateEntry.setUserBasedScore(userBasedScores.getOrDefault(spotId, 0.0));
                     candidateEntry.setItemBasedScore(itemBasedScores.getOrDefault(spotId, 0.0));
+                    candidateEntry.setMatrixFactorizationScore(matrixFactorizationScores.getOrDefault(spotId, 0.0));
                     candidateEntry.setTagScore(tagScores.getOrDefault(spotId, 0.0));
                     return candidateEntry;
                 })
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 并发模式下 User-Based CF 信号的结果
+     */
+    private static final class UserBasedSignal {
+        private final Map<Long, Double> userSimilarityMap;
+        private final Map<Long, SimilarityDetails> similarityDetailsMap;
+        private final ScoringBuffer.ChannelScores scores;
+
+        UserBasedSignal(Map<Long, Double> userSimilarityMap, Map<Long, SimilarityDetails> similarityDetailsMap,
+                        ScoringBuffer.ChannelScores scores) {
+            this.userSimilarityMap = userSimilarityMap;
+            this.similarityDetailsMap = similarityDetailsMap;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * 并发模式下标签匹配信号的结果
+     */
+    private static final class TagSignal {
+        private final Map<String, Double> tagProfile;
+        private final ScoringBuffer.ChannelScores scores;
+
+        TagSignal(Map<String, Double> tagProfile, ScoringBuffer.ChannelScores scores) {
+            this.tagProfile = tagProfile;
+            this.scores = scores;
+        }
+    }
+
     private static class RecommendationComputationContext {
         private boolean hasHistory;
         private boolean fallbackUsed;
-        private List<UserVisitHistory> currentUserHistory = Collections.emptyList();
+        private InteractionMatrix interactionMatrix;
+        private int userIndex = -1;
+        private SpotCatalog spotCatalog;
         private Map<Long, Double> userSimilarityMap = Collections.emptyMap();
         private Map<Long, SimilarityDetails> similarityDetails = Collections.emptyMap();
         private Map<String, Double> tagProfile = Collections.emptyMap();
         private Map<Long, Double> collaborativeScores = Collections.emptyMap(); // 混合协同过滤得分
         private Map<Long, Double> userBasedScores = Collections.emptyMap(); // User-Based CF得分
         private Map<Long, Double> itemBasedScores = Collections.emptyMap(); // Item-Based CF得分
+        private Map<Long, Double> matrixFactorizationScores = Collections.emptyMap(); // 矩阵分解得分
         private Map<Long, Double> tagScores = Collections.emptyMap();
         private Map<Long, Double> candidateScores = Collections.emptyMap();
         private List<ScenicSpot> recommendations = Collections.emptyList();
         private RecommendationContext recommendationContext;
+        private final List<String> skippedStages = new ArrayList<>(); // 超出延迟预算或未在时限内完成而跳过的阶段
+        private long budgetNanos; // 端到端延迟预算，0 表示不限
+
+        public boolean isDegraded() {
+            return !skippedStages.isEmpty();
+        }
+
+        public long getBudgetNanos() {
+            return budgetNanos;
+        }
+
+        public void setBudgetNanos(long budgetNanos) {
+            this.budgetNanos = budgetNanos;
+        }
+
+        public List<String> getSkippedStages() {
+            return skippedStages;
+        }
+
+        public void addSkippedStage(String stage) {
+            skippedStages.add(stage);
+        }
 
         public boolean hasHistory() {
             return hasHistory;
@@ -966,12 +1603,28 @@ public class RecommendationService {
             this.fallbackUsed = fallbackUsed;
         }
 
-        public List<UserVisitHistory> getCurrentUserHistory() {
-            return currentUserHistory;
+        public SpotCatalog getSpotCatalog() {
+            return spotCatalog;
+        }
+
+        public void setSpotCatalog(SpotCatalog spotCatalog) {
+            this.spotCatalog = spotCatalog;
+        }
+
+        public InteractionMatrix getInteractionMatrix() {
+            return interactionMatrix;
+        }
+
+        public void setInteractionMatrix(InteractionMatrix interactionMatrix) {
+            this.interactionMatrix = interactionMatrix;
+        }
+
+        public int getUserIndex() {
+            return userIndex;
         }
 
-        public void setCurrentUserHistory(List<UserVisitHistory> currentUserHistory) {
-            this.currentUserHistory = currentUserHistory;
+        public void setUserIndex(int userIndex) {
+            this.userIndex = userIndex;
         }
 
         public Map<Long, Double> getUserSimilarityMap() {
@@ -1053,81 +1706,56 @@ public class RecommendationService {
         public void setItemBasedScores(Map<Long, Double> itemBasedScores) {
             this.itemBasedScores = itemBasedScores;
         }
-    }
 
-    /**
-     * 归一化得分 - 将得分映射到 [0, 1] 范围
-     */
-    private Map<Long, Double> normalizeScores(Map<Long, Double> scores) {
-        if (scores.isEmpty()) return Collections.emptyMap();
-        
-        double maxScore = scores.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
-        double minScore = scores.values().stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-        double range = maxScore - minScore;
-        
-        if (range == 0) {
-            // 如果所有得分相同，返回原始值
-            return new HashMap<>(scores);
+        public Map<Long, Double> getMatrixFactorizationScores() {
+            return matrixFactorizationScores;
+        }
+
+        public void setMatrixFactorizationScores(Map<Long, Double> matrixFactorizationScores) {
+            this.matrixFactorizationScores = matrixFactorizationScores;
         }
-        
-        Map<Long, Double> normalized = new HashMap<>();
-        scores.forEach((spotId, score) -> {
-            double normalizedScore = (score - minScore) / range;
-            normalized.put(spotId, normalizedScore);
-        });
-        
-        return normalized;
     }
-    
+
     /**
      * 应用上下文感知过滤和加权
      */
-    private Map<Long, Double> applyContextAwareFiltering(
-            Map<Long, Double> candidateScores,
-            RecommendationContext context) {
-        
-        if (candidateScores.isEmpty()) {
-            return candidateScores;
-        }
-        
-        // 获取所有候选景点
-        List<Long> candidateIds = new ArrayList<>(candidateScores.keySet());
-        Map<Long, ScenicSpot> spotMap = spotRepository.findAllById(candidateIds).stream()
-                .collect(Collectors.toMap(ScenicSpot::getId, spot -> spot));
-        
-        Map<Long, Double> contextScores = new HashMap<>();
-        Map<Long, Double> filteredScores = new HashMap<>();
-        
-        for (Map.Entry<Long, Double> entry : candidateScores.entrySet()) {
-            Long spotId = entry.getKey();
-            ScenicSpot spot = spotMap.get(spotId);
-            if (spot == null) continue;
+    void applyContextAwareFiltering(ScoringBuffer buffer, RecommendationContext context) {
+        SpotCatalog catalog = buffer.getCatalog();
+        int originalCount = 0;
+        int filteredCount = 0;
+        for (int i = 0; i < buffer.touchedCount(); i++) {
+            int ordinal = buffer.touchedOrdinal(i);
+            if (!buffer.has(ScoringBuffer.CANDIDATE, ordinal)) {
+                continue;
+            }
+            originalCount++;
             
             // 计算上下文得分
-            double contextScore = calculateContextScore(spot, context);
+            double contextScore = calculateContextScore(ordinal, context, catalog);
             
             // 如果上下文得分太低，过滤掉
             if (contextScore < 0.3) {
+                buffer.remove(ScoringBuffer.CANDIDATE, ordinal);
                 continue;
             }
             
             // 应用上下文加权
-            double baseScore = entry.getValue();
+            double baseScore = buffer.get(ScoringBuffer.CANDIDATE, ordinal);
             double finalScore = baseScore * (1.0 - CONTEXT_WEIGHT) + contextScore * CONTEXT_WEIGHT;
-            
-            contextScores.put(spotId, contextScore);
-            filteredScores.put(spotId, finalScore);
+            buffer.set(ScoringBuffer.CANDIDATE, ordinal, finalScore);
+            filteredCount++;
         }
         
-        logger.info("🌍 上下文过滤: 原始{}个 -> 过滤后{}个", candidateScores.size(), filteredScores.size());
-        
-        return filteredScores;
+        if (logger.isDebugEnabled()) {
+            logger.debug("🌍 上下文过滤: 原始{}个 -> 过滤后{}个", originalCount, filteredCount);
+        }
     }
     
     /**
      * 计算景点的上下文得分
      */
-    private double calculateContextScore(ScenicSpot spot, RecommendationContext context) {
+    private double calculateContextScore(int ordinal, RecommendationContext context, SpotCatalog catalog) {
+        ScenicSpot spot = catalog.spotAt(ordinal);
         double score = 1.0;
         
         // 1. 季节性匹配
@@ -1140,7 +1768,7 @@ public class RecommendationService {
         
         // 2. 天气匹配
         if (context.getWeather() != null) {
-            if (isWeatherSuitable(spot, context.getWeather())) {
+            if (isWeatherSuitable(spot, catalog.altitudeAt(ordinal), context.getWeather())) {
                 score *= WEATHER_MATCH_BOOST;
                 logger.debug("  景点 {} 天气匹配: {}", spot.getName(), context.getWeather());
             }
@@ -1149,11 +1777,9 @@ public class RecommendationService {
         // 3. 距离匹配
         if (context.getConsiderDistance() != null && context.getConsiderDistance() 
             && context.getCurrentLatitude() != null && context.getCurrentLongitude() != null
-            && spot.getLatitude() != null && spot.getLongitude() != null) {
-            double distance = calculateDistance(
-                    context.getCurrentLatitude(), context.getCurrentLongitude(),
-                    spot.getLatitude().doubleValue(), spot.getLongitude().doubleValue()
-            );
+            && catalog.hasLocation(ordinal)) {
+            double distance = catalog.geoIndex().distanceKm(
+                    ordinal, context.getCurrentLatitude(), context.getCurrentLongitude());
             // 距离越近，分数越高（使用反比例函数）
             double distanceScore = 1.0 / (1.0 + distance / 100.0); // 100km为基准
             score *= (1.0 + distanceScore * DISTANCE_BOOST_FACTOR);
@@ -1182,7 +1808,7 @@ public class RecommendationService {
         
         // 6. 活动偏好匹配
         if (context.getPreferredActivities() != null && !context.getPreferredActivities().isEmpty()) {
-            double activityMatch = calculateActivityMatch(spot, context.getPreferredActivities());
+            double activityMatch = calculateActivityMatch(catalog.tagsAt(ordinal), context.getPreferredActivities());
             score *= (1.0 + activityMatch * 0.2); // 活动匹配最多提升20%
         }
         
@@ -1222,7 +1848,7 @@ public class RecommendationService {
     /**
      * 判断景点是否适合当前天气
      */
-    private boolean isWeatherSuitable(ScenicSpot spot, String weather) {
+    private boolean isWeatherSuitable(ScenicSpot spot, double altitude, String weather) {
         if (weather == null) return true;
         
         switch (weather.toUpperCase()) {
@@ -1240,7 +1866,7 @@ public class RecommendationService {
                 // 雪天更适合室内景点，但高海拔景点可能因雪景而加分
                 return spot.getCategory() == ScenicSpot.Category.CULTURAL 
                     || spot.getCategory() == ScenicSpot.Category.RELIGIOUS
-                    || (spot.getAltitude() != null && parseAltitude(spot.getAltitude()) > 4000);
+                    || altitude > 4000;
             default:
                 return true;
         }
@@ -1276,13 +1902,12 @@ public class RecommendationService {
     /**
      * 计算活动偏好匹配度
      */
-    private double calculateActivityMatch(ScenicSpot spot, String preferredActivities) {
+    private double calculateActivityMatch(List<String> spotTags, String preferredActivities) {
         if (preferredActivities == null || preferredActivities.isEmpty()) {
             return 0.0;
         }
         
         String[] activities = preferredActivities.split(",");
-        List<String> spotTags = extractTagValues(spot.getTags());
         
         int matchCount = 0;
         for (String activity : activities) {
@@ -1322,183 +1947,136 @@ public class RecommendationService {
         return false;
     }
     
-    /**
-     * 计算两点之间的距离（公里）- 使用Haversine公式
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // 地球半径（公里）
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c;
-    }
-    
-    /**
-     * 解析海拔字符串（如"5000m" -> 5000）
-     */
-    private double parseAltitude(String altitude) {
-        if (altitude == null || altitude.isEmpty()) {
-            return 0.0;
-        }
-        try {
-            // 移除单位，提取数字
-            String numeric = altitude.replaceAll("[^0-9.]", "");
-            return Double.parseDouble(numeric);
-        } catch (NumberFormatException e) {
-            return 0.0;
-        }
-    }
-    
     /**
      * 重排序 - 应用多样性惩罚和探索机制
      */
-    private List<ScenicSpot> rerankWithDiversityAndExploration(
-            Map<Long, Double> candidateScores,
-            Set<Long> visitedSpotIds,
-            Map<String, Double> tagProfile) {
-        return rerankWithDiversityAndExploration(candidateScores, visitedSpotIds, tagProfile, null);
-    }
-    
-    private List<ScenicSpot> rerankWithDiversityAndExploration(
-            Map<Long, Double> candidateScores,
-            Set<Long> visitedSpotIds,
-            Map<String, Double> tagProfile,
-            RecommendationContext recommendationContext) {
-        
-        if (candidateScores.isEmpty()) {
+    List<ScenicSpot> rerankWithDiversityAndExploration(ScoringBuffer buffer) {
+        SpotCatalog catalog = buffer.getCatalog();
+        
+        // 收集候选景点序号
+        int[] candidates = new int[buffer.touchedCount()];
+        int candidateCount = 0;
+        for (int i = 0; i < buffer.touchedCount(); i++) {
+            int ordinal = buffer.touchedOrdinal(i);
+            if (buffer.has(ScoringBuffer.CANDIDATE, ordinal)) {
+                candidates[candidateCount++] = ordinal;
+            }
+        }
+        if (candidateCount == 0) {
             return Collections.emptyList();
         }
         
-        // 获取所有候选景点
-        List<Long> candidateIds = new ArrayList<>(candidateScores.keySet());
-        Map<Long, ScenicSpot> spotMap = spotRepository.findAllById(candidateIds).stream()
-                .collect(Collectors.toMap(ScenicSpot::getId, spot -> spot));
-        
-        // 计算多样性惩罚后的得分
-        List<Long> selectedSpots = new ArrayList<>();
+        // 每个候选与已选景点的最大相似度，每选出一个景点只需与剩余候选比较一次
+        double[] maxSimilarity = new double[candidateCount];
+        int[] selected = new int[MAX_RESULTS];
+        int selectedCount = 0;
         
-        Random random = new Random();
+        Random random = ThreadLocalRandom.current();
         int explorationCount = (int) (MAX_RESULTS * EXPLORATION_RATE);
         
-        for (int i = 0; i < MAX_RESULTS && !candidateIds.isEmpty(); i++) {
+        for (int i = 0; i < MAX_RESULTS && candidateCount > 0; i++) {
+            int chosen;
             // ε-greedy: 探索机制
             if (i < explorationCount && random.nextDouble() < EXPLORATION_RATE) {
                 // 随机选择一个低曝光景点
-                Long randomSpotId = candidateIds.get(random.nextInt(candidateIds.size()));
-                ScenicSpot spot = spotMap.get(randomSpotId);
-                if (spot != null) {
-                    selectedSpots.add(randomSpotId);
-                    candidateIds.remove(randomSpotId);
-                    continue;
+                chosen = random.nextInt(candidateCount);
+            } else {
+                // 选择多样性调整后得分最高的候选
+                chosen = 0;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int c = 0; c < candidateCount; c++) {
+                    double baseScore = buffer.get(ScoringBuffer.CANDIDATE, candidates[c]);
+                    double adjustedScore = baseScore * (1.0 - maxSimilarity[c] * DIVERSITY_PENALTY);
+                    if (adjustedScore > bestScore) {
+                        bestScore = adjustedScore;
+                        chosen = c;
+                    }
                 }
             }
+            int chosenOrdinal = candidates[chosen];
+            selected[selectedCount++] = chosenOrdinal;
+            candidateCount--;
+            candidates[chosen] = candidates[candidateCount];
+            maxSimilarity[chosen] = maxSimilarity[candidateCount];
             
-            // 计算每个候选的多样性调整得分
-            Map<Long, Double> adjustedScores = new HashMap<>();
-            for (Long spotId : candidateIds) {
-                double baseScore = candidateScores.getOrDefault(spotId, 0.0);
-                double diversityPenalty = calculateDiversityPenalty(spotId, selectedSpots, spotMap);
-                adjustedScores.put(spotId, baseScore * (1.0 - diversityPenalty));
-            }
-            
-            // 选择得分最高的
-            Long bestSpotId = adjustedScores.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse(null);
-            
-            if (bestSpotId != null) {
-                selectedSpots.add(bestSpotId);
-                candidateIds.remove(bestSpotId);
+            // 更新剩余候选的最大相似度
+            for (int c = 0; c < candidateCount; c++) {
+                maxSimilarity[c] = Math.max(maxSimilarity[c], spotSimilarity(catalog, candidates[c], chosenOrdinal));
             }
         }
         
         // 转换为景点列表
-        return selectedSpots.stream()
-                .map(spotMap::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<ScenicSpot> recommendations = new ArrayList<>(selectedCount);
+        for (int i = 0; i < selectedCount; i++) {
+            recommendations.add(catalog.spotAt(selected[i]));
+        }
+        return recommendations;
     }
     
     /**
-     * 计算多样性惩罚 - 避免推荐过于相似的景点
+     * 两个景点的相似度（用于多样性惩罚）：标签 Jaccard 与类别是否相同的加权
      */
-    private double calculateDiversityPenalty(Long spotId, List<Long> selectedSpots, Map<Long, ScenicSpot> spotMap) {
-        if (selectedSpots.isEmpty()) return 0.0;
-        
-        ScenicSpot currentSpot = spotMap.get(spotId);
-        if (currentSpot == null) return 0.0;
-        
-        double maxSimilarity = 0.0;
-        for (Long selectedId : selectedSpots) {
-            ScenicSpot selectedSpot = spotMap.get(selectedId);
-            if (selectedSpot == null) continue;
-            
-            // 基于标签的相似度
-            double tagSimilarity = calculateTagSimilarity(currentSpot, selectedSpot);
-            // 基于类别的相似度
-            double categorySimilarity = currentSpot.getCategory() == selectedSpot.getCategory() ? 1.0 : 0.0;
-            
-            double totalSimilarity = 0.7 * tagSimilarity + 0.3 * categorySimilarity;
-            maxSimilarity = Math.max(maxSimilarity, totalSimilarity);
-        }
-        
-        return maxSimilarity * DIVERSITY_PENALTY;
+    private double spotSimilarity(SpotCatalog catalog, int ordinalA, int ordinalB) {
+        double tagSimilarity = catalog.tagJaccard(ordinalA, ordinalB);
+        double categorySimilarity = catalog.categoryAt(ordinalA) == catalog.categoryAt(ordinalB) ? 1.0 : 0.0;
+        return 0.7 * tagSimilarity + 0.3 * categorySimilarity;
     }
-    
+
     /**
-     * 计算标签相似度
+     * 清除用户缓存（当用户行为更新时调用）
      */
-    private double calculateTagSimilarity(ScenicSpot spot1, ScenicSpot spot2) {
-        List<String> tags1 = extractTagValues(spot1.getTags());
-        List<String> tags2 = extractTagValues(spot2.getTags());
-        
-        if (tags1.isEmpty() || tags2.isEmpty()) return 0.0;
-        
-        Set<String> set1 = new HashSet<>(tags1);
-        Set<String> set2 = new HashSet<>(tags2);
-        
-        Set<String> intersection = new HashSet<>(set1);
-        intersection.retainAll(set2);
-        
-        Set<String> union = new HashSet<>(set1);
-        union.addAll(set2);
-        
-        return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
+    public void invalidateUserCache(Long userId) {
+        similarityCache.invalidate(userId);
+        tagProfileCache.invalidate(userId);
     }
 
     /**
-     * 更新相似度缓存
+     * 交互矩阵更新后失效相关缓存：
+     * 变更用户自身的相似度与标签画像，以及其他用户缓存中包含这些用户的相似度映射（按反向索引定位，不扫描缓存）
      */
-    private void updateSimilarityCache(Long userId, Map<Long, Double> similarities) {
-        if (similarityCache.size() >= CACHE_SIZE_LIMIT) {
-            // 简单的LRU策略：清除最旧的缓存（这里简化处理，实际可以使用LinkedHashMap实现真正的LRU）
-            if (similarityCache.size() >= CACHE_SIZE_LIMIT * 1.5) {
-                similarityCache.clear();
-            }
-        }
-        similarityCache.put(userId, new HashMap<>(similarities));
+    @EventListener
+    public void onInteractionMatrixChanged(InteractionMatrixChangedEvent event) {
+        if (event.isFullRebuild()) {
+            similarityCache.invalidateAll();
+            tagProfileCache.invalidateAll();
+            return;
+        }
+        Set<Long> changedUsers = new HashSet<>(event.getUserIds());
+        for (Long userId : changedUsers) {
+            invalidateUserCache(userId);
+        }
+        similarityCache.invalidateDependents(changedUsers);
     }
-    
+
     /**
-     * 清除用户缓存（当用户行为更新时调用）
+     * 景点目录快照替换后，所有标签画像都可能失效
      */
-    public void invalidateUserCache(Long userId) {
-        similarityCache.remove(userId);
-        tagProfileCache.remove(userId);
+    @EventListener
+    public void onSpotCatalogRefreshed(SpotCatalogRefreshedEvent event) {
+        tagProfileCache.invalidateAll();
+    }
+
+    /**
+     * 当前缓存中的标签画像（写入模型快照用）
+     */
+    public Map<Long, Map<String, Double>> tagProfileSnapshot() {
+        Map<Long, Map<String, Double>> profiles = new HashMap<>();
+        tagProfileCache.forEach(profiles::put);
+        return profiles;
+    }
+
+    /**
+     * 用模型快照中的标签画像预热缓存（交互矩阵与景点目录都与快照一致时调用）
+     */
+    public void restoreTagProfiles(Map<Long, Map<String, Double>> profiles) {
+        profiles.forEach(tagProfileCache::put);
     }
 
-    private Double accumulateScores(Double existing, Double addition) {
-        double left = existing == null ? 0.0d : existing;
-        double right = addition == null ? 0.0d : addition;
-        return left + right;
+    /**
+     * 缓存统计信息
+     */
+    public List<SegmentedLruCache.CacheStats> getCacheStats() {
+        return List.of(similarityCache.stats(), tagProfileCache.stats());
     }
 }
 
@@ -0,0 +1,36 @@
+package com.tibet.tourism.service;
+
+/**
+ * 标量求交内核：双指针归并
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    static final String NAME = "scalar";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int intersect(long[] ids1, int from1, int to1, long[] ids2, int from2, int to2,
+                         int[] matches1, int[] matches2) {
+        int i = from1;
+        int j = from2;
+        int count = 0;
+        while (i < to1 && j < to2) {
+            long id1 = ids1[i];
+            long id2 = ids2[j];
+            if (id1 == id2) {
+                matches1[count] = i++;
+                matches2[count] = j++;
+                count++;
+            } else if (id1 < id2) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return count;
+    }
+}
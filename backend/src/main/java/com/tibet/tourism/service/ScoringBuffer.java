@@ -0,0 +1,226 @@
+package com.tibet.tourism.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 推荐评分缓冲区
+ * 以景点目录序号为下标，按通道保存各阶段得分（double[]），并用标记位区分"得分为0"与"不是候选"。
+ * 每个线程复用一个实例：reset 时只清理上次写过的位置，单次推荐几乎不产生装箱和临时 Map。
+ * 非线程安全
+ */
+final class ScoringBuffer {
+
+    static final int USER_BASED = 0;    // User-Based CF 得分
+    static final int ITEM_BASED = 1;    // Item-Based CF 得分
+    static final int TAG = 2;           // 加权后的标签匹配得分
+    static final int CANDIDATE = 3;     // 候选综合得分
+    static final int MATRIX_FACTORIZATION = 4;  // 矩阵分解（ALS）得分
+    private static final int CHANNELS = 5;
+    private static final int VISITED = 1 << CHANNELS;
+    private static final int TOUCHED = 1 << (CHANNELS + 1);
+
+    private SpotCatalog catalog;
+    private double[] scores = new double[0];   // ordinal * CHANNELS + channel
+    private byte[] flags = new byte[0];        // 低5位为通道是否有值，另有已访问、已记录两个标记位
+    private int[] touched = new int[0];        // 本次写过的序号
+    private int touchedCount;
+
+    /**
+     * 清空上次的结果并绑定景点目录，容量不足时扩容
+     */
+    ScoringBuffer reset(SpotCatalog catalog) {
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            flags[ordinal] = 0;
+            Arrays.fill(scores, ordinal * CHANNELS, ordinal * CHANNELS + CHANNELS, 0.0);
+        }
+        touchedCount = 0;
+        int capacity = catalog.ordinalCount();
+        if (flags.length < capacity) {
+            scores = new double[capacity * CHANNELS];
+            flags = new byte[capacity];
+            touched = new int[capacity];
+        }
+        this.catalog = catalog;
+        return this;
+    }
+
+    SpotCatalog getCatalog() {
+        return catalog;
+    }
+
+    int ordinal(long spotId) {
+        return catalog.ordinal(spotId);
+    }
+
+    void markVisited(long spotId) {
+        int ordinal = catalog.ordinal(spotId);
+        if (ordinal >= 0) {
+            touch(ordinal);
+            flags[ordinal] |= VISITED;
+        }
+    }
+
+    boolean isVisited(int ordinal) {
+        return (flags[ordinal] & VISITED) != 0;
+    }
+
+    /**
+     * 累加得分，景点不在目录中时忽略
+     */
+    void add(int channel, long spotId, double score) {
+        int ordinal = catalog.ordinal(spotId);
+        if (ordinal >= 0) {
+            add(channel, ordinal, score);
+        }
+    }
+
+    void add(int channel, int ordinal, double score) {
+        touch(ordinal);
+        flags[ordinal] |= (byte) (1 << channel);
+        scores[ordinal * CHANNELS + channel] += score;
+    }
+
+    void set(int channel, int ordinal, double score) {
+        touch(ordinal);
+        flags[ordinal] |= (byte) (1 << channel);
+        scores[ordinal * CHANNELS + channel] = score;
+    }
+
+    void remove(int channel, int ordinal) {
+        flags[ordinal] &= (byte) ~(1 << channel);
+        scores[ordinal * CHANNELS + channel] = 0.0;
+    }
+
+    boolean has(int channel, int ordinal) {
+        return (flags[ordinal] & (1 << channel)) != 0;
+    }
+
+    double get(int channel, int ordinal) {
+        return scores[ordinal * CHANNELS + channel];
+    }
+
+    int touchedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * 第 i 个写过的序号（包括仅标记为已访问的）
+     */
+    int touchedOrdinal(int i) {
+        return touched[i];
+    }
+
+    int count(int channel) {
+        int count = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            if (has(channel, touched[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 将通道得分原地归一化到 [0, 1]；所有得分相同时保持原值
+     */
+    void normalize(int channel) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            if (has(channel, ordinal)) {
+                double score = get(channel, ordinal);
+                min = Math.min(min, score);
+                max = Math.max(max, score);
+            }
+        }
+        double range = max - min;
+        if (!(range > 0)) {
+            return;
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            if (has(channel, ordinal)) {
+                scores[ordinal * CHANNELS + channel] = (get(channel, ordinal) - min) / range;
+            }
+        }
+    }
+
+    /**
+     * 导出通道中的得分（序号与得分数组），供在其他线程的缓冲区中计算的信号合并回请求的缓冲区
+     */
+    ChannelScores export(int channel) {
+        int size = count(channel);
+        if (size == 0) {
+            return ChannelScores.EMPTY;
+        }
+        int[] ordinals = new int[size];
+        double[] values = new double[size];
+        int n = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            if (has(channel, ordinal)) {
+                ordinals[n] = ordinal;
+                values[n] = get(channel, ordinal);
+                n++;
+            }
+        }
+        return new ChannelScores(ordinals, values);
+    }
+
+    /**
+     * 将导出的得分累加到指定通道（须基于同一份景点目录导出）
+     */
+    void addAll(int channel, ChannelScores channelScores) {
+        for (int i = 0; i < channelScores.size(); i++) {
+            add(channel, channelScores.ordinals[i], channelScores.scores[i]);
+        }
+    }
+
+    /**
+     * 导出通道得分（景点ID -> 得分），仅用于调试输出
+     */
+    Map<Long, Double> toMap(int channel) {
+        if (touchedCount == 0) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Double> map = new HashMap<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            if (has(channel, ordinal)) {
+                map.put(catalog.spotIdAt(ordinal), get(channel, ordinal));
+            }
+        }
+        return map;
+    }
+
+    private void touch(int ordinal) {
+        if ((flags[ordinal] & TOUCHED) == 0) {
+            flags[ordinal] |= TOUCHED;
+            touched[touchedCount++] = ordinal;
+        }
+    }
+
+    /**
+     * 单个通道的得分快照（不可变）
+     */
+    static final class ChannelScores {
+        static final ChannelScores EMPTY = new ChannelScores(new int[0], new double[0]);
+
+        private final int[] ordinals;
+        private final double[] scores;
+
+        private ChannelScores(int[] ordinals, double[] scores) {
+            this.ordinals = ordinals;
+            this.scores = scores;
+        }
+
+        int size() {
+            return ordinals.length;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.tibet.tourism.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * 有界分段LRU缓存（SLRU）+ TTL
+ * 新条目进入试用段，再次命中后晋升到保护段；保护段满时最久未用的条目降级回试用段，
+ * 淘汰总是从试用段尾部开始，避免一次性扫描的冷数据冲掉热点。
+ * 可选的依赖索引：值依赖其他键时（如用户相似度依赖近邻用户），维护"被依赖键 -> 依赖它的条目"的反向索引，
+ * 被依赖键变化时只失效相关条目，不扫描整个缓存。
+ * 记录命中、未命中、淘汰、过期与主动失效次数
+ */
+public final class SegmentedLruCache<K, V> {
+
+    private static final double PROTECTED_RATIO = 0.8d;
+
+    private final String name;
+    private final int maximumSize;
+    private final int protectedCapacity;
+    private final long ttlNanos;
+    private final Function<V, ? extends Collection<K>> dependencies; // 为 null 时不维护依赖索引
+
+    // accessOrder=true：迭代顺序即从最久未用到最近使用
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, Set<K>> dependents = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public SegmentedLruCache(String name, int maximumSize, long ttlMillis) {
+        this(name, maximumSize, ttlMillis, null);
+    }
+
+    /**
+     * dependencies 返回值所依赖的键，用于 invalidateDependents
+     */
+    public SegmentedLruCache(String name, int maximumSize, long ttlMillis,
+                             Function<V, ? extends Collection<K>> dependencies) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.protectedCapacity = Math.max(1, (int) (maximumSize * PROTECTED_RATIO));
+        this.ttlNanos = ttlMillis <= 0 ? Long.MAX_VALUE : ttlMillis * 1_000_000L;
+        this.dependencies = dependencies;
+    }
+
+    public synchronized V get(K key) {
+        long now = System.nanoTime();
+        Node<V> node = protectedSegment.get(key);
+        if (node != null) {
+            if (node.isExpired(now)) {
+                protectedSegment.remove(key);
+                unindex(key, node);
+                expirations++;
+                misses++;
+                return null;
+            }
+            hits++;
+            return node.value;
+        }
+
+        node = probation.remove(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (node.isExpired(now)) {
+            unindex(key, node);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        promote(key, node);
+        return node.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        Node<V> node = new Node<>(value, expiresAt(System.nanoTime()));
+        if (protectedSegment.containsKey(key)) {
+            unindex(key, protectedSegment.put(key, node));
+            index(key, node);
+            return;
+        }
+        unindex(key, probation.put(key, node));
+        index(key, node);
+        evictIfNeeded();
+    }
+
+    /**
+     * 读取未过期的值，不计入命中统计，也不从试用段晋升（仍刷新段内的最近使用顺序）
+     */
+    public synchronized V peek(K key) {
+        long now = System.nanoTime();
+        Node<V> node = protectedSegment.get(key);
+        if (node == null) {
+            node = probation.get(key);
+        }
+        return node != null && !node.isExpired(now) ? node.value : null;
+    }
+
+    /**
+     * 与已有的未过期值合并后写入（合并函数参数依次为已有值、新值），不计入命中统计
+     */
+    public synchronized void merge(K key, V value, BinaryOperator<V> remapping) {
+        V current = peek(key);
+        put(key, current == null ? value : remapping.apply(current, value));
+    }
+
+    public synchronized void invalidate(K key) {
+        Node<V> node = protectedSegment.remove(key);
+        if (node == null) {
+            node = probation.remove(key);
+        }
+        if (node != null) {
+            unindex(key, node);
+            invalidations++;
+        }
+    }
+
+    /**
+     * 失效依赖于任一指定键的条目（需在构造时提供 dependencies），返回失效的条目数
+     */
+    public synchronized int invalidateDependents(Collection<K> keys) {
+        Set<K> affected = new HashSet<>();
+        for (K key : keys) {
+            Set<K> keyDependents = dependents.get(key);
+            if (keyDependents != null) {
+                affected.addAll(keyDependents);
+            }
+        }
+        int removed = 0;
+        for (K key : affected) {
+            long before = invalidations;
+            invalidate(key);
+            removed += (int) (invalidations - before);
+        }
+        return removed;
+    }
+
+    /**
+     * 失效满足条件的所有条目
+     */
+    public synchronized int invalidateIf(BiPredicate<K, V> predicate) {
+        int removed = removeMatching(protectedSegment, predicate) + removeMatching(probation, predicate);
+        invalidations += removed;
+        return removed;
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations += protectedSegment.size() + probation.size();
+        protectedSegment.clear();
+        probation.clear();
+        dependents.clear();
+    }
+
+    /**
+     * 按从冷到热的顺序遍历未过期的条目（试用段在前，保护段在后），不计入命中统计也不调整顺序
+     */
+    public synchronized void forEach(BiConsumer<K, V> action) {
+        long now = System.nanoTime();
+        for (LinkedHashMap<K, Node<V>> segment : List.of(probation, protectedSegment)) {
+            for (Map.Entry<K, Node<V>> entry : segment.entrySet()) {
+                if (!entry.getValue().isExpired(now)) {
+                    action.accept(entry.getKey(), entry.getValue().value);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return protectedSegment.size() + probation.size();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(name, size(), maximumSize, hits, misses, evictions, expirations, invalidations);
+    }
+
+    private void promote(K key, Node<V> node) {
+        protectedSegment.put(key, node);
+        if (protectedSegment.size() > protectedCapacity) {
+            // 保护段溢出：最久未用的条目降级为试用段的最近使用
+            Iterator<Map.Entry<K, Node<V>>> it = protectedSegment.entrySet().iterator();
+            Map.Entry<K, Node<V>> eldest = it.next();
+            it.remove();
+            probation.put(eldest.getKey(), eldest.getValue());
+        }
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Node<V>>> it = probation.entrySet().iterator();
+        while (probation.size() + protectedSegment.size() > maximumSize && it.hasNext()) {
+            Map.Entry<K, Node<V>> eldest = it.next();
+            Node<V> victim = eldest.getValue();
+            it.remove();
+            unindex(eldest.getKey(), victim);
+            if (victim.isExpired(now)) {
+                expirations++;
+            } else {
+                evictions++;
+            }
+        }
+    }
+
+    private int removeMatching(LinkedHashMap<K, Node<V>> segment, BiPredicate<K, V> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Node<V>>> it = segment.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Node<V>> entry = it.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                it.remove();
+                unindex(entry.getKey(), entry.getValue());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void index(K key, Node<V> node) {
+        if (dependencies == null) {
+            return;
+        }
+        for (K dependency : dependencies.apply(node.value)) {
+            dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * 条目移除或被替换后撤销其依赖索引（替换时先撤销旧值再索引新值）
+     */
+    private void unindex(K key, Node<V> node) {
+        if (dependencies == null || node == null) {
+            return;
+        }
+        for (K dependency : dependencies.apply(node.value)) {
+            Set<K> keyDependents = dependents.get(dependency);
+            if (keyDependents != null && keyDependents.remove(key) && keyDependents.isEmpty()) {
+                dependents.remove(dependency);
+            }
+        }
+    }
+
+    private long expiresAt(long now) {
+        return ttlNanos == Long.MAX_VALUE ? Long.MAX_VALUE : now + ttlNanos;
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        private final long expiresAtNanos;
+
+        Node(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAtNanos != Long.MAX_VALUE && now - expiresAtNanos >= 0;
+        }
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public static class CacheStats {
+        private final String name;
+        private final int size;
+        private final int maximumSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+
+        CacheStats(String name, int size, int maximumSize, long hits, long misses,
+                   long evictions, long expirations, long invalidations) {
+            this.name = name;
+            this.size = size;
+            this.maximumSize = maximumSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+
+        public String getName() { return name; }
+        public int getSize() { return size; }
+        public int getMaximumSize() { return maximumSize; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+    }
+}
@@ -0,0 +1,21 @@
+package com.tibet.tourism.service;
+
+/**
+ * 相似度计算内核（求交）
+ * 在两个按ID升序、无重复的 long 数组区间上求交集，相似度计算再按交集下标读取评分、时间等权重。
+ * 实现：scalar（标量归并）与 vector（Vector API），由 recommendation.similarity.kernel 选择
+ */
+public interface SimilarityKernel {
+
+    /**
+     * 内核名称（与配置值一致）
+     */
+    String name();
+
+    /**
+     * 求 ids1[from1, to1) 与 ids2[from2, to2) 的交集，按升序把交集元素在两侧的下标写入 matches1 / matches2，
+     * 两个下标数组的长度至少为两段区间长度的较小值；返回交集大小
+     */
+    int intersect(long[] ids1, int from1, int to1, long[] ids2, int from2, int to2,
+                  int[] matches1, int[] matches2);
+}
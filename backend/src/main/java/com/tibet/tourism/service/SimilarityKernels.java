@@ -0,0 +1,49 @@
+package com.tibet.tourism.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 相似度内核工厂
+ * vector 内核依赖 incubator 模块，只在 -Pvector 构建时编译（src/vector/java）；
+ * 未编译该内核或 JVM 未加载该模块时回退到 scalar，避免启动失败
+ */
+public final class SimilarityKernels {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityKernels.class);
+
+    private static final String VECTOR_NAME = "vector";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS = "com.tibet.tourism.service.VectorSimilarityKernel";
+
+    private SimilarityKernels() {
+    }
+
+    public static SimilarityKernel forName(String name) {
+        if (VECTOR_NAME.equalsIgnoreCase(name)) {
+            if (!isVectorApiAvailable()) {
+                logger.warn("⚠️  未加载 {} 模块（启动参数需加 --add-modules {}），相似度内核回退为 scalar",
+                        VECTOR_MODULE, VECTOR_MODULE);
+                return new ScalarSimilarityKernel();
+            }
+            try {
+                // 反射创建：默认构建不包含该类，未加载模块时也不能让该类参与链接
+                return (SimilarityKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ClassNotFoundException e) {
+                logger.warn("⚠️  未包含 vector 相似度内核（需以 mvn -Pvector 构建），相似度内核回退为 scalar");
+                return new ScalarSimilarityKernel();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("⚠️  vector 相似度内核初始化失败，回退为 scalar: {}", e.toString());
+                return new ScalarSimilarityKernel();
+            }
+        }
+        if (!ScalarSimilarityKernel.NAME.equalsIgnoreCase(name)) {
+            logger.warn("⚠️  未知的相似度内核 {}，使用 scalar", name);
+        }
+        return new ScalarSimilarityKernel();
+    }
+
+    public static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+}
@@ -0,0 +1,80 @@
+package com.tibet.tourism.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合并并发的相同计算（single-flight）
+ * 同一个键已有计算在进行时，后到的调用直接共享它的结果而不重复计算；计算结束（成功或失败）即移除，
+ * 之后的调用重新计算，不缓存结果。记录发起计算（leader）与合并到已有计算（joined）的次数
+ */
+public final class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 发起或加入计算：该键没有进行中的计算时调用 computation（在当前线程调用，可同步算完也可返回异步结果），
+     * 否则返回进行中计算的结果。每个调用方拿到各自的副本，取消或完成副本不影响其他调用方
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> computation) {
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            joined.increment();
+            return existing.copy();
+        }
+        leaders.increment();
+        try {
+            computation.get().whenComplete((value, error) -> {
+                // 先移除再完成：完成之后到达的调用会重新计算，而不是拿到即将过时的结果
+                inFlight.remove(key, pending);
+                if (error != null) {
+                    pending.completeExceptionally(error);
+                } else {
+                    pending.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, pending);
+            pending.completeExceptionally(e);
+        }
+        return pending.copy();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前进行中的计算数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getLeaderCount() {
+        return leaders.sum();
+    }
+
+    public long getJoinedCount() {
+        return joined.sum();
+    }
+
+    /**
+     * 合并率：加入已有计算的调用占全部调用的比例
+     */
+    public double getCoalescedRate() {
+        long joinedCount = joined.sum();
+        long total = leaders.sum() + joinedCount;
+        return total == 0 ? 0.0 : (double) joinedCount / total;
+    }
+}
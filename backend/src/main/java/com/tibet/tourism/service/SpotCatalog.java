@@ -0,0 +1,265 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.entity.ScenicSpot;
+import com.tibet.tourism.entity.SpotTag;
+import com.tibet.tourism.repository.ScenicSpotRepository;
+import com.tibet.tourism.repository.SpotTagRepository;
+
+import java.util.*;
+
+/**
+ * 景点目录快照（不可变）
+ * 一次性加载全部景点及其标签，由 SpotCatalogService 发布，推荐流水线只读此快照，不再逐阶段查询数据库。
+ * 景点按ID升序分配从0开始的序号，评分阶段可用序号直接索引基本类型数组；
+ * 海拔、经纬度、类别以及标签位图在构建时预先解析，有经纬度的景点同时建立地理索引（SpotGeoIndex）。
+ * 快照中的景点对象为共享实例，调用方不得修改
+ */
+public final class SpotCatalog {
+
+    private static final SpotCatalog EMPTY = new SpotCatalog(Collections.emptyList(), Collections.emptyMap(), 0L);
+
+    private final long version;
+    private final long builtAtMillis;
+
+    private final List<ScenicSpot> spots;
+    private final Map<Long, ScenicSpot> spotsById;
+    private final Map<Long, List<String>> tagsBySpot;
+
+    private final long[] ordinalSpotIds;          // 升序，下标即序号
+    private final ScenicSpot[] ordinalSpots;
+    private final List<String>[] ordinalTags;
+    private final double[] altitudes;             // 无法解析时为 0
+    private final double[] latitudes;             // 缺失时为 NaN
+    private final double[] longitudes;
+    private final int[] categories;               // Category 枚举序号，缺失时为 -1
+    private final SpotGeoIndex geoIndex;
+
+    private final Map<String, Integer> tagIndex;  // 标签字典
+    private final long[][] tagBits;               // 每个景点的标签位图，按标签字典下标置位
+    private final int[] tagBitCounts;             // 每个景点的不重复标签数
+
+    @SuppressWarnings("unchecked")
+    private SpotCatalog(List<ScenicSpot> spots, Map<Long, List<String>> tagsBySpot, long version) {
+        this.version = version;
+        this.builtAtMillis = System.currentTimeMillis();
+        this.spots = Collections.unmodifiableList(spots);
+        this.tagsBySpot = tagsBySpot;
+        Map<Long, ScenicSpot> byId = new HashMap<>();
+        for (ScenicSpot spot : spots) {
+            if (spot.getId() != null) {
+                byId.put(spot.getId(), spot);
+            }
+        }
+        this.spotsById = byId;
+
+        this.ordinalSpotIds = new long[byId.size()];
+        int i = 0;
+        for (Long spotId : byId.keySet()) {
+            ordinalSpotIds[i++] = spotId;
+        }
+        Arrays.sort(ordinalSpotIds);
+
+        int count = ordinalSpotIds.length;
+        this.ordinalSpots = new ScenicSpot[count];
+        this.ordinalTags = new List[count];
+        this.altitudes = new double[count];
+        this.latitudes = new double[count];
+        this.longitudes = new double[count];
+        this.categories = new int[count];
+        this.tagIndex = new HashMap<>();
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            ScenicSpot spot = byId.get(ordinalSpotIds[ordinal]);
+            ordinalSpots[ordinal] = spot;
+            ordinalTags[ordinal] = tags(ordinalSpotIds[ordinal]);
+            altitudes[ordinal] = parseAltitude(spot.getAltitude());
+            latitudes[ordinal] = spot.getLatitude() != null ? spot.getLatitude().doubleValue() : Double.NaN;
+            longitudes[ordinal] = spot.getLongitude() != null ? spot.getLongitude().doubleValue() : Double.NaN;
+            categories[ordinal] = spot.getCategory() != null ? spot.getCategory().ordinal() : -1;
+            for (String tag : ordinalTags[ordinal]) {
+                tagIndex.putIfAbsent(tag, tagIndex.size());
+            }
+        }
+        this.geoIndex = SpotGeoIndex.build(latitudes, longitudes);
+
+        int words = Math.max(1, (tagIndex.size() + 63) >>> 6);
+        this.tagBits = new long[count][words];
+        this.tagBitCounts = new int[count];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            for (String tag : ordinalTags[ordinal]) {
+                int bit = tagIndex.get(tag);
+                tagBits[ordinal][bit >>> 6] |= 1L << bit;
+            }
+            for (long word : tagBits[ordinal]) {
+                tagBitCounts[ordinal] += Long.bitCount(word);
+            }
+        }
+    }
+
+    public static SpotCatalog empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 从数据库加载景点与标签（两次查询）
+     */
+    public static SpotCatalog load(ScenicSpotRepository spotRepository, SpotTagRepository spotTagRepository,
+                                   long version) {
+        Map<Long, List<String>> tagsBySpot = new HashMap<>();
+        for (SpotTag tag : spotTagRepository.findAll()) {
+            if (tag.getSpot() == null || tag.getSpot().getId() == null || tag.getTag() == null) {
+                continue;
+            }
+            tagsBySpot.computeIfAbsent(tag.getSpot().getId(), id -> new ArrayList<>()).add(tag.getTag());
+        }
+        return of(new ArrayList<>(spotRepository.findAll()), tagsBySpot, version);
+    }
+
+    /**
+     * 由内存中的景点与标签构建快照（基准测试等不经过数据库的场景使用）
+     */
+    static SpotCatalog of(List<ScenicSpot> spots, Map<Long, List<String>> tagsBySpot, long version) {
+        return new SpotCatalog(spots, tagsBySpot, version);
+    }
+
+    /**
+     * 解析海拔字符串（如"5000m" -> 5000），无法解析返回 0
+     */
+    static double parseAltitude(String altitude) {
+        if (altitude == null || altitude.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            // 移除单位，提取数字
+            String numeric = altitude.replaceAll("[^0-9.]", "");
+            return Double.parseDouble(numeric);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    public List<ScenicSpot> getSpots() {
+        return spots;
+    }
+
+    public ScenicSpot get(Long spotId) {
+        return spotsById.get(spotId);
+    }
+
+    /**
+     * 景点标签，无标签返回空列表
+     */
+    public List<String> tags(Long spotId) {
+        return tagsBySpot.getOrDefault(spotId, Collections.emptyList());
+    }
+
+    public int size() {
+        return spots.size();
+    }
+
+    /**
+     * 序号数量（即有ID的景点数）
+     */
+    public int ordinalCount() {
+        return ordinalSpotIds.length;
+    }
+
+    /**
+     * 景点序号，不在目录中返回 -1
+     */
+    public int ordinal(long spotId) {
+        int ordinal = Arrays.binarySearch(ordinalSpotIds, spotId);
+        return ordinal >= 0 ? ordinal : -1;
+    }
+
+    public long spotIdAt(int ordinal) {
+        return ordinalSpotIds[ordinal];
+    }
+
+    public ScenicSpot spotAt(int ordinal) {
+        return ordinalSpots[ordinal];
+    }
+
+    public List<String> tagsAt(int ordinal) {
+        return ordinalTags[ordinal];
+    }
+
+    public double altitudeAt(int ordinal) {
+        return altitudes[ordinal];
+    }
+
+    /**
+     * 景点是否有经纬度
+     */
+    public boolean hasLocation(int ordinal) {
+        return !Double.isNaN(latitudes[ordinal]) && !Double.isNaN(longitudes[ordinal]);
+    }
+
+    public double latitudeAt(int ordinal) {
+        return latitudes[ordinal];
+    }
+
+    public double longitudeAt(int ordinal) {
+        return longitudes[ordinal];
+    }
+
+    /**
+     * 地理索引（半径与 k 近邻查询、按序号计算距离）
+     */
+    public SpotGeoIndex geoIndex() {
+        return geoIndex;
+    }
+
+    /**
+     * 类别枚举序号，未设置类别返回 -1
+     */
+    public int categoryAt(int ordinal) {
+        return categories[ordinal];
+    }
+
+    /**
+     * 标签字典大小
+     */
+    public int tagCount() {
+        return tagIndex.size();
+    }
+
+    /**
+     * 标签在字典中的下标，不存在返回 -1
+     */
+    public int tagIndex(String tag) {
+        return tagIndex.getOrDefault(tag, -1);
+    }
+
+    /**
+     * 景点的标签位图（按标签字典下标置位），返回内部数组，调用方不得修改
+     */
+    public long[] tagBitsAt(int ordinal) {
+        return tagBits[ordinal];
+    }
+
+    /**
+     * 两个景点标签集合的 Jaccard 相似度（位图按位与后计数），任一方无标签返回 0
+     */
+    public double tagJaccard(int ordinalA, int ordinalB) {
+        int countA = tagBitCounts[ordinalA];
+        int countB = tagBitCounts[ordinalB];
+        if (countA == 0 || countB == 0) {
+            return 0.0;
+        }
+        long[] bitsA = tagBits[ordinalA];
+        long[] bitsB = tagBits[ordinalB];
+        int intersection = 0;
+        for (int w = 0; w < bitsA.length; w++) {
+            intersection += Long.bitCount(bitsA[w] & bitsB[w]);
+        }
+        return (double) intersection / (countA + countB - intersection);
+    }
+}
@@ -0,0 +1,121 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.SpotCatalogChangedEvent;
+import com.tibet.tourism.event.SpotCatalogRefreshedEvent;
+import com.tibet.tourism.repository.ScenicSpotRepository;
+import com.tibet.tourism.repository.SpotTagRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 景点目录快照服务
+ * 启动时加载全部景点与标签；景点或标签写入提交后在后台线程重新加载，
+ * 同一批写入（如整组替换标签）合并为一次刷新。推荐相关服务只读取这里发布的快照
+ */
+@Service
+public class SpotCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpotCatalogService.class);
+
+    @Autowired
+    private ScenicSpotRepository spotRepository;
+
+    @Autowired
+    private SpotTagRepository spotTagRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private volatile SpotCatalog catalog;
+
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    // 加载期间访问数据库，用 ReentrantLock 而非 synchronized，虚拟线程等待时不会占住载体线程
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spot-catalog-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 当前景点目录快照；启动加载之前被调用时同步加载
+     */
+    public SpotCatalog getCatalog() {
+        SpotCatalog current = catalog;
+        if (current == null) {
+            refreshLock.lock();
+            try {
+                if (catalog == null) {
+                    refresh();
+                }
+                current = catalog;
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void initialize() {
+        refresh();
+    }
+
+    /**
+     * 从数据库重新加载景点目录并发布新快照
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+            catalog = SpotCatalog.load(spotRepository, spotTagRepository, versionSequence.incrementAndGet());
+            logger.info("🗂️  景点目录加载完成（版本 {}）: {} 个景点, {} 个标签, 耗时 {}ms",
+                    catalog.getVersion(), catalog.size(), catalog.tagCount(), System.currentTimeMillis() - startTime);
+            eventPublisher.publishEvent(new SpotCatalogRefreshedEvent(catalog));
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 景点或标签写入提交后安排刷新，多次写入会在后台合并为一次加载
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSpotCatalogChanged(SpotCatalogChangedEvent event) {
+        if (catalog == null) {
+            return; // 尚未加载，首次加载会包含这些变更
+        }
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                refreshScheduled.set(false);
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    logger.error("景点目录刷新失败，继续使用版本 {}", catalog.getVersion(), e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
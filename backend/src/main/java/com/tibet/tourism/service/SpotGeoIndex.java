@@ -0,0 +1,407 @@
+package com.tibet.tourism.service;
+
+import java.util.Arrays;
+
+/**
+ * 景点地理索引（不可变，随 SpotCatalog 一起构建，景点变更时随目录重建）
+ * 有经纬度的景点按单位球面上的三维坐标建成 k-d 树，树隐式存放在基本类型数组中：
+ * 区间 [lo, hi) 的中点是该子树的根，左右子树分别是 [lo, mid) 与 [mid + 1, hi)，按深度轮换切分 x / y / z 轴。
+ * 球面上弦长与大圆距离单调对应，剪枝用弦长比较，不受经度 ±180° 与两极的影响；
+ * 命中的景点再用 Haversine 公式计算精确距离，结果与逐个计算一致。
+ * 半径查询与 k 近邻查询的开销随结果数而非景点总数增长
+ */
+public final class SpotGeoIndex {
+
+    /**
+     * 地球半径（公里）
+     */
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    private static final int AXES = 3;
+    private static final double CHORD_SLACK = 1e-9; // 剪枝放宽量，最终以 Haversine 距离为准
+
+    private final double[] latRadians;   // 按序号，缺失时为 NaN
+    private final double[] lonRadians;
+    private final double[] cosLatitudes;
+
+    private final int[] treeOrdinals;    // k-d 树节点对应的景点序号
+    private final double[] treeCoords;   // 节点的单位向量，每个节点 3 个分量
+
+    private SpotGeoIndex(double[] latitudes, double[] longitudes) {
+        int count = latitudes.length;
+        this.latRadians = new double[count];
+        this.lonRadians = new double[count];
+        this.cosLatitudes = new double[count];
+        double[] coords = new double[count * AXES];
+        int located = 0;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (Double.isNaN(latitudes[ordinal]) || Double.isNaN(longitudes[ordinal])) {
+                latRadians[ordinal] = Double.NaN;
+                lonRadians[ordinal] = Double.NaN;
+                cosLatitudes[ordinal] = Double.NaN;
+                continue;
+            }
+            latRadians[ordinal] = Math.toRadians(latitudes[ordinal]);
+            lonRadians[ordinal] = Math.toRadians(longitudes[ordinal]);
+            cosLatitudes[ordinal] = Math.cos(latRadians[ordinal]);
+            toUnitVector(latRadians[ordinal], lonRadians[ordinal], coords, ordinal * AXES);
+            located++;
+        }
+
+        this.treeOrdinals = new int[located];
+        int next = 0;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (!Double.isNaN(latRadians[ordinal])) {
+                treeOrdinals[next++] = ordinal;
+            }
+        }
+        build(coords, 0, located, 0);
+        this.treeCoords = new double[located * AXES];
+        for (int node = 0; node < located; node++) {
+            System.arraycopy(coords, treeOrdinals[node] * AXES, treeCoords, node * AXES, AXES);
+        }
+    }
+
+    /**
+     * 由按序号排列的经纬度（度，缺失为 NaN）构建索引
+     */
+    static SpotGeoIndex build(double[] latitudes, double[] longitudes) {
+        return new SpotGeoIndex(latitudes, longitudes);
+    }
+
+    /**
+     * 两点之间的大圆距离（公里）- Haversine 公式，经纬度单位为度
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * 已建索引的景点数（有经纬度的景点）
+     */
+    public int size() {
+        return treeOrdinals.length;
+    }
+
+    /**
+     * 景点到指定位置的距离（公里），使用构建时预先换算的弧度与余弦；景点无经纬度返回 NaN
+     */
+    public double distanceKm(int ordinal, double latitude, double longitude) {
+        if (Double.isNaN(latRadians[ordinal])) {
+            return Double.NaN;
+        }
+        double latRad = Math.toRadians(latitude);
+        return haversine(latRad, Math.toRadians(longitude), Math.cos(latRad), ordinal);
+    }
+
+    /**
+     * 半径查询：距离不超过 radiusKm 的景点，按距离升序（距离相同按序号）
+     */
+    public Neighbors withinRadius(double latitude, double longitude, double radiusKm) {
+        Query query = new Query(latitude, longitude);
+        Neighbors result = new Neighbors(16);
+        if (treeOrdinals.length == 0 || !(radiusKm >= 0)) {
+            return result;
+        }
+        double chord = chordLength(radiusKm);
+        searchRadius(query, chord * chord, radiusKm, 0, treeOrdinals.length, 0, result);
+        result.sort();
+        return result;
+    }
+
+    /**
+     * k 近邻查询：距离最近的 k 个景点，按距离升序（距离相同按序号）
+     */
+    public Neighbors nearest(double latitude, double longitude, int k) {
+        int limit = Math.min(k, treeOrdinals.length);
+        if (limit <= 0) {
+            return new Neighbors(0);
+        }
+        Query query = new Query(latitude, longitude);
+        NearestHeap heap = new NearestHeap(limit);
+        searchNearest(query, 0, treeOrdinals.length, 0, heap);
+        Neighbors result = new Neighbors(heap.size);
+        for (int i = 0; i < heap.size; i++) {
+            int ordinal = heap.ordinals[i];
+            result.add(ordinal, haversine(query.latRad, query.lonRad, query.cosLat, ordinal));
+        }
+        result.sort();
+        return result;
+    }
+
+    private void searchRadius(Query query, double limitSquared, double radiusKm,
+                              int lo, int hi, int depth, Neighbors result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int offset = mid * AXES;
+        if (squaredChord(query.coords, treeCoords, offset) <= limitSquared * (1 + CHORD_SLACK)) {
+            int ordinal = treeOrdinals[mid];
+            double distance = haversine(query.latRad, query.lonRad, query.cosLat, ordinal);
+            if (distance <= radiusKm) {
+                result.add(ordinal, distance);
+            }
+        }
+        int axis = depth % AXES;
+        double diff = query.coords[axis] - treeCoords[offset + axis];
+        if (diff <= 0) {
+            searchRadius(query, limitSquared, radiusKm, lo, mid, depth + 1, result);
+            if (diff * diff <= limitSquared * (1 + CHORD_SLACK)) {
+                searchRadius(query, limitSquared, radiusKm, mid + 1, hi, depth + 1, result);
+            }
+        } else {
+            searchRadius(query, limitSquared, radiusKm, mid + 1, hi, depth + 1, result);
+            if (diff * diff <= limitSquared * (1 + CHORD_SLACK)) {
+                searchRadius(query, limitSquared, radiusKm, lo, mid, depth + 1, result);
+            }
+        }
+    }
+
+    private void searchNearest(Query query, int lo, int hi, int depth, NearestHeap heap) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int offset = mid * AXES;
+        heap.offer(treeOrdinals[mid], squaredChord(query.coords, treeCoords, offset));
+        int axis = depth % AXES;
+        double diff = query.coords[axis] - treeCoords[offset + axis];
+        int nearLo = diff <= 0 ? lo : mid + 1;
+        int nearHi = diff <= 0 ? mid : hi;
+        int farLo = diff <= 0 ? mid + 1 : lo;
+        int farHi = diff <= 0 ? hi : mid;
+        searchNearest(query, nearLo, nearHi, depth + 1, heap);
+        if (!heap.isFull() || diff * diff <= heap.worst()) {
+            searchNearest(query, farLo, farHi, depth + 1, heap);
+        }
+    }
+
+    /**
+     * 按切分轴递归选出中位数，使 [lo, mid) 不大于、(mid, hi) 不小于中点
+     */
+    private void build(double[] coords, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(coords, lo, hi - 1, mid, depth % AXES);
+        build(coords, lo, mid, depth + 1);
+        build(coords, mid + 1, hi, depth + 1);
+    }
+
+    private void select(double[] coords, int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = coords[treeOrdinals[(left + right) >>> 1] * AXES + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coords[treeOrdinals[i] * AXES + axis] < pivot) {
+                    i++;
+                }
+                while (coords[treeOrdinals[j] * AXES + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = treeOrdinals[i];
+                    treeOrdinals[i] = treeOrdinals[j];
+                    treeOrdinals[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double haversine(double latRad, double lonRad, double cosLat, int ordinal) {
+        double sinLat = Math.sin((latRadians[ordinal] - latRad) / 2);
+        double sinLon = Math.sin((lonRadians[ordinal] - lonRad) / 2);
+        double a = sinLat * sinLat + cosLat * cosLatitudes[ordinal] * sinLon * sinLon;
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * 大圆距离对应的单位球弦长，超过半个周长按直径计
+     */
+    private static double chordLength(double distanceKm) {
+        double angle = Math.min(distanceKm / EARTH_RADIUS_KM, Math.PI);
+        return 2 * Math.sin(angle / 2);
+    }
+
+    private static double squaredChord(double[] point, double[] coords, int offset) {
+        double dx = point[0] - coords[offset];
+        double dy = point[1] - coords[offset + 1];
+        double dz = point[2] - coords[offset + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static void toUnitVector(double latRad, double lonRad, double[] target, int offset) {
+        double cosLat = Math.cos(latRad);
+        target[offset] = cosLat * Math.cos(lonRad);
+        target[offset + 1] = cosLat * Math.sin(lonRad);
+        target[offset + 2] = Math.sin(latRad);
+    }
+
+    /**
+     * 查询点：换算一次弧度、余弦与单位向量
+     */
+    private static final class Query {
+        final double latRad;
+        final double lonRad;
+        final double cosLat;
+        final double[] coords = new double[AXES];
+
+        Query(double latitude, double longitude) {
+            this.latRad = Math.toRadians(latitude);
+            this.lonRad = Math.toRadians(longitude);
+            this.cosLat = Math.cos(latRad);
+            toUnitVector(latRad, lonRad, coords, 0);
+        }
+    }
+
+    /**
+     * k 近邻候选：按弦长平方的大顶堆，堆顶为当前最远的候选
+     */
+    private static final class NearestHeap {
+        final int[] ordinals;
+        final double[] distances;
+        int size;
+
+        NearestHeap(int capacity) {
+            this.ordinals = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        boolean isFull() {
+            return size == ordinals.length;
+        }
+
+        double worst() {
+            return distances[0];
+        }
+
+        void offer(int ordinal, double distance) {
+            if (!isFull()) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    ordinals[i] = ordinals[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                ordinals[i] = ordinal;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    ordinals[i] = ordinals[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                ordinals[i] = ordinal;
+                distances[i] = distance;
+            }
+        }
+    }
+
+    /**
+     * 查询结果：景点序号与距离（公里）的平行数组，按距离升序
+     */
+    public static final class Neighbors {
+        private int[] ordinals;
+        private double[] distances;
+        private int size;
+
+        private Neighbors(int capacity) {
+            this.ordinals = new int[Math.max(capacity, 1)];
+            this.distances = new double[Math.max(capacity, 1)];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int ordinalAt(int index) {
+            return ordinals[index];
+        }
+
+        public double distanceKmAt(int index) {
+            return distances[index];
+        }
+
+        private void add(int ordinal, double distance) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            ordinals[size] = ordinal;
+            distances[size] = distance;
+            size++;
+        }
+
+        private void sort() {
+            if (size <= 32) {
+                insertionSort();
+                return;
+            }
+            // 大半径查询可能命中大量景点，按距离排序下标后重排
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> distances[a] != distances[b]
+                    ? Double.compare(distances[a], distances[b])
+                    : Integer.compare(ordinals[a], ordinals[b]));
+            int[] sortedOrdinals = new int[ordinals.length];
+            double[] sortedDistances = new double[distances.length];
+            for (int i = 0; i < size; i++) {
+                sortedOrdinals[i] = ordinals[order[i]];
+                sortedDistances[i] = distances[order[i]];
+            }
+            ordinals = sortedOrdinals;
+            distances = sortedDistances;
+        }
+
+        private void insertionSort() {
+            for (int i = 1; i < size; i++) {
+                int ordinal = ordinals[i];
+                double distance = distances[i];
+                int j = i - 1;
+                while (j >= 0 && (distances[j] > distance || (distances[j] == distance && ordinals[j] > ordinal))) {
+                    ordinals[j + 1] = ordinals[j];
+                    distances[j + 1] = distances[j];
+                    j--;
+                }
+                ordinals[j + 1] = ordinal;
+                distances[j + 1] = distance;
+            }
+        }
+    }
+}
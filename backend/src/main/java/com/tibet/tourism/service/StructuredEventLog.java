@@ -0,0 +1,178 @@
+package com.tibet.tourism.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 结构化事件日志（推荐、认证等热路径使用）
+ * 每个事件是一行 key=value，写入名为 events.&lt;类型&gt; 的 logger，可按类型单独调整级别或关闭。
+ * 调用线程只做采样判断并把字段放入有界队列，格式化和写日志由后台线程完成；
+ * 队列满时丢弃事件而不阻塞请求，丢弃数通过 app.event.log.dropped 上报
+ */
+@Component
+public class StructuredEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(StructuredEventLog.class);
+
+    private static final String LOGGER_PREFIX = "events.";
+    private static final int MAX_FIELDS = 16;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.event-log.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Value("${app.event-log.slow-threshold-ms:200}")
+    private long slowThresholdMillis;
+
+    @Value("${app.event-log.queue-capacity:4096}")
+    private int queueCapacity;
+
+    private final Map<String, Logger> eventLoggers = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile BlockingQueue<Event> queue;
+    private volatile Thread writer;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::drain, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        FunctionCounter.builder("app.event.log.dropped", dropped, AtomicLong::get)
+                .description("队列已满而丢弃的结构化事件数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 是否需要记录该类型的事件：对应 logger 未开启 INFO 时一律不记录；
+     * force 为 true（调试请求、慢请求、兜底等）时不经采样
+     */
+    public boolean shouldLog(String type, boolean force) {
+        if (writer == null || !eventLogger(type).isInfoEnabled()) {
+            return false;
+        }
+        return force || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * 是否达到慢请求阈值（慢请求不经采样直接记录）
+     */
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    public Event event(String type) {
+        return new Event(type);
+    }
+
+    /**
+     * 提交事件，不阻塞；队列已满时丢弃
+     */
+    public void emit(Event event) {
+        BlockingQueue<Event> current = queue;
+        if (current == null || !current.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private Logger eventLogger(String type) {
+        return eventLoggers.computeIfAbsent(type, t -> LoggerFactory.getLogger(LOGGER_PREFIX + t));
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                write(queue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭时写出剩余事件
+        Event event;
+        while ((event = queue.poll()) != null) {
+            write(event);
+        }
+    }
+
+    private void write(Event event) {
+        try {
+            eventLogger(event.type).info(event.format());
+        } catch (Exception e) {
+            logger.warn("⚠️  写入结构化事件失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread current = writer;
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 单个事件：按添加顺序保存字段，格式化推迟到写日志线程
+     */
+    public static final class Event {
+        private final String type;
+        private final String[] keys = new String[MAX_FIELDS];
+        private final Object[] values = new Object[MAX_FIELDS];
+        private int size;
+
+        private Event(String type) {
+            this.type = type;
+        }
+
+        /**
+         * 添加字段，超过 MAX_FIELDS 的字段忽略
+         */
+        public Event with(String key, Object value) {
+            if (size < MAX_FIELDS) {
+                keys[size] = key;
+                values[size] = value;
+                size++;
+            }
+            return this;
+        }
+
+        String format() {
+            StringBuilder line = new StringBuilder(64 + size * 16).append("event=").append(type);
+            for (int i = 0; i < size; i++) {
+                line.append(' ').append(keys[i]).append('=');
+                String value = String.valueOf(values[i]);
+                if (value.isEmpty() || value.indexOf(' ') >= 0 || value.indexOf('"') >= 0) {
+                    line.append('"').append(value.replace("\"", "\\\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
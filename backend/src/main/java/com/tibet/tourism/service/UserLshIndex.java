@@ -0,0 +1,224 @@
+package com.tibet.tourism.service;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用户 MinHash / LSH 分桶索引
+ * 每个用户按访问过的景点集合计算 bands × rows 个 MinHash 值，每个 band 的 rows 个值合成一个桶键；
+ * 两个用户在任一 band 上桶键相同即互为候选，碰撞概率随 Jaccard 相似度单调上升。
+ * 每个桶最多保存 bucketCapacity 个用户，单次查询最多读取 bands × bucketCapacity 个ID，
+ * 与用户访问的景点有多热门无关。
+ * 与其他快照不同，此索引按用户增量修改：写操作由 UserLshService 串行调用，读操作可并发
+ */
+public final class UserLshIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final int bands;
+    private final int rows;
+    private final int bucketCapacity;
+    private final long[] hashSeeds;                                  // bands * rows 个哈希函数种子
+    private final ConcurrentHashMap<Long, long[]>[] buckets;        // 每个 band：桶键 -> 用户ID（不可变数组，写时复制）
+    private final ConcurrentHashMap<Long, long[]> userBandKeys = new ConcurrentHashMap<>();
+    private final AtomicInteger fullBuckets = new AtomicInteger();
+    private volatile long matrixVersion = -1L;
+
+    @SuppressWarnings("unchecked")
+    UserLshIndex(int bands, int rows, int bucketCapacity, long seed) {
+        this.bands = bands;
+        this.rows = rows;
+        this.bucketCapacity = bucketCapacity;
+        this.hashSeeds = new long[bands * rows];
+        Random random = new Random(seed);
+        for (int i = 0; i < hashSeeds.length; i++) {
+            hashSeeds[i] = random.nextLong();
+        }
+        this.buckets = new ConcurrentHashMap[bands];
+        for (int b = 0; b < bands; b++) {
+            buckets[b] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * 由用户行计算各 band 的桶键，用户无访问记录时返回空数组
+     */
+    long[] bandKeys(InteractionMatrix matrix, int userIndex) {
+        int start = matrix.rowStart(userIndex);
+        int end = matrix.rowEnd(userIndex);
+        if (start == end) {
+            return EMPTY;
+        }
+        long[] keys = new long[bands];
+        for (int b = 0; b < bands; b++) {
+            long key = b;
+            for (int r = 0; r < rows; r++) {
+                long seed = hashSeeds[b * rows + r];
+                long min = Long.MAX_VALUE;
+                for (int entry = start; entry < end; entry++) {
+                    min = Math.min(min, mix(matrix.entrySpotId(entry) ^ seed));
+                }
+                key = mix(key * 31 + min);
+            }
+            keys[b] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * 写入或替换用户的桶键（keys 为空表示删除）
+     */
+    void put(long userId, long[] keys) {
+        long[] previous = keys.length == 0 ? userBandKeys.remove(userId) : userBandKeys.put(userId, keys);
+        if (previous != null) {
+            for (int b = 0; b < bands; b++) {
+                if (keys.length == 0 || previous[b] != keys[b]) {
+                    removeFromBucket(b, previous[b], userId);
+                }
+            }
+        }
+        for (int b = 0; b < keys.length; b++) {
+            if (previous == null || previous[b] != keys[b]) {
+                addToBucket(b, keys[b], userId);
+            }
+        }
+    }
+
+    /**
+     * 候选近邻：与给定桶键同桶的用户，按碰撞的 band 数降序取前 maxCandidates 个（不含用户自己）
+     */
+    long[] candidates(long userId, long[] keys, int maxCandidates) {
+        if (keys.length == 0) {
+            return EMPTY;
+        }
+        long[] collected = new long[bands * bucketCapacity];
+        int size = 0;
+        for (int b = 0; b < bands; b++) {
+            long[] members = buckets[b].get(keys[b]);
+            if (members == null) {
+                continue;
+            }
+            for (long member : members) {
+                if (member != userId) {
+                    collected[size++] = member;
+                }
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+
+        // 排序后按连续段计数碰撞次数
+        Arrays.sort(collected, 0, size);
+        long[] distinct = new long[size];
+        int[] collisions = new int[size];
+        int distinctCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinctCount > 0 && distinct[distinctCount - 1] == collected[i]) {
+                collisions[distinctCount - 1]++;
+            } else {
+                distinct[distinctCount] = collected[i];
+                collisions[distinctCount] = 1;
+                distinctCount++;
+            }
+        }
+        if (distinctCount <= maxCandidates) {
+            return Arrays.copyOf(distinct, distinctCount);
+        }
+
+        // 碰撞次数不超过 bands，按次数从高到低依次取
+        long[] result = new long[maxCandidates];
+        int filled = 0;
+        for (int c = bands; c >= 1 && filled < maxCandidates; c--) {
+            for (int i = 0; i < distinctCount && filled < maxCandidates; i++) {
+                if (collisions[i] == c) {
+                    result[filled++] = distinct[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int userCount() {
+        return userBandKeys.size();
+    }
+
+    public long bucketCount() {
+        long count = 0;
+        for (ConcurrentHashMap<Long, long[]> band : buckets) {
+            count += band.size();
+        }
+        return count;
+    }
+
+    /**
+     * 已满（不再接收新用户）的桶数
+     */
+    public int fullBucketCount() {
+        return fullBuckets.get();
+    }
+
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    void setMatrixVersion(long matrixVersion) {
+        this.matrixVersion = matrixVersion;
+    }
+
+    private void addToBucket(int band, long key, long userId) {
+        buckets[band].compute(key, (k, members) -> {
+            if (members == null) {
+                return new long[]{userId};
+            }
+            if (members.length >= bucketCapacity) {
+                return members; // 桶已满：该用户仍能通过自己的桶键查到这些成员
+            }
+            long[] grown = Arrays.copyOf(members, members.length + 1);
+            grown[members.length] = userId;
+            if (grown.length == bucketCapacity) {
+                fullBuckets.incrementAndGet();
+            }
+            return grown;
+        });
+    }
+
+    private void removeFromBucket(int band, long key, long userId) {
+        buckets[band].computeIfPresent(key, (k, members) -> {
+            for (int i = 0; i < members.length; i++) {
+                if (members[i] == userId) {
+                    if (members.length == bucketCapacity) {
+                        fullBuckets.decrementAndGet();
+                    }
+                    if (members.length == 1) {
+                        return null;
+                    }
+                    long[] shrunk = new long[members.length - 1];
+                    System.arraycopy(members, 0, shrunk, 0, i);
+                    System.arraycopy(members, i + 1, shrunk, i, members.length - i - 1);
+                    return shrunk;
+                }
+            }
+            return members;
+        });
+    }
+
+    /**
+     * 64位混合哈希（SplitMix64 终结函数）
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,120 @@
+package com.tibet.tourism.service;
+
+import com.tibet.tourism.event.InteractionMatrixChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+/**
+ * 用户近似近邻召回服务（MinHash / LSH）
+ * 随交互矩阵维护 UserLshIndex：全量重建时整体重建并替换，增量更新时只改写变更用户的桶键。
+ * 精确路径需要评估的用户数（用户访问过的景点的列长度之和）不超过 max-candidates 时仍走精确路径，
+ * 只有热门景点导致重叠用户过多时才改用分桶召回，把单用户的候选数限制在 max-candidates 以内
+ */
+@Service
+public class UserLshService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserLshService.class);
+
+    private static final long HASH_SEED = 0x5EED_1E55L;
+
+    @Value("${recommendation.lsh.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.lsh.bands:32}")
+    private int bands;
+
+    @Value("${recommendation.lsh.rows:2}")
+    private int rows;
+
+    @Value("${recommendation.lsh.bucket-capacity:256}")
+    private int bucketCapacity;
+
+    @Value("${recommendation.lsh.max-candidates:2000}")
+    private int maxCandidates;
+
+    private volatile UserLshIndex index;
+
+    /**
+     * 当前索引，未启用或尚未构建时为 null
+     */
+    public UserLshIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 交互矩阵变更：先于缓存失效与推荐结果重算执行，保证重算时读到的是新的分桶
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onInteractionMatrixChanged(InteractionMatrixChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isFullRebuild() || index == null) {
+            rebuild(event.getMatrix());
+        } else {
+            applyUserChanges(event.getMatrix(), event.getUserIds());
+        }
+    }
+
+    private void rebuild(InteractionMatrix matrix) {
+        long startTime = System.currentTimeMillis();
+        UserLshIndex rebuilt = new UserLshIndex(bands, rows, bucketCapacity, HASH_SEED);
+        for (int user = 0; user < matrix.userCount(); user++) {
+            rebuilt.put(matrix.userIdAt(user), rebuilt.bandKeys(matrix, user));
+        }
+        rebuilt.setMatrixVersion(matrix.getVersion());
+        index = rebuilt;
+        logger.info("🪣 用户LSH索引构建完成: {} 用户, {} 个桶（已满 {}）, {}×{} MinHash, 耗时 {}ms",
+                rebuilt.userCount(), rebuilt.bucketCount(), rebuilt.fullBucketCount(), bands, rows,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void applyUserChanges(InteractionMatrix matrix, Collection<Long> userIds) {
+        UserLshIndex current = index;
+        if (matrix.getVersion() <= current.getMatrixVersion()) {
+            return;
+        }
+        for (Long userId : userIds) {
+            int userIndex = matrix.userIndex(userId);
+            current.put(userId, userIndex < 0 ? new long[0] : current.bandKeys(matrix, userIndex));
+        }
+        current.setMatrixVersion(matrix.getVersion());
+        logger.debug("用户LSH索引增量更新: {} 个用户, 矩阵版本 {}", userIds.size(), matrix.getVersion());
+    }
+
+    /**
+     * 是否应改用分桶召回：精确路径的重叠用户上界超过 max-candidates 且索引已就绪
+     */
+    public boolean shouldUseLsh(InteractionMatrix matrix, int userIndex) {
+        if (!enabled || index == null || userIndex < 0) {
+            return false;
+        }
+        long overlapBound = 0;
+        for (int entry = matrix.rowStart(userIndex); entry < matrix.rowEnd(userIndex); entry++) {
+            overlapBound += matrix.colLength(matrix.entrySpotId(entry)) - 1;
+            if (overlapBound > maxCandidates) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分桶召回的候选近邻ID（按当前矩阵中的用户行计算桶键，刚更新过的用户也能立即查询）
+     */
+    public long[] candidates(InteractionMatrix matrix, int userIndex) {
+        UserLshIndex current = index;
+        if (current == null || userIndex < 0) {
+            return new long[0];
+        }
+        return current.candidates(matrix.userIdAt(userIndex), current.bandKeys(matrix, userIndex), maxCandidates);
+    }
+}
@@ -0,0 +1,101 @@
+package com.tibet.tourism.service;
+
+import java.util.Arrays;
+
+/**
+ * 用户近邻索引（不可变快照）
+ * 每个用户按相似度降序保存前K个相似用户，构建完成后整体原子替换
+ */
+public final class UserNeighborhoodIndex {
+
+    private static final UserNeighborhoodIndex EMPTY =
+            new UserNeighborhoodIndex(0L, -1L, new long[0], new int[]{0}, new long[0], new float[0]);
+
+    private final long version;
+    private final long matrixVersion;
+    private final long builtAtMillis;
+
+    private final long[] userIds;      // 升序
+    private final int[] ptr;           // userIds.length + 1
+    private final long[] neighborIds;  // 每个用户内按相似度降序
+    private final float[] similarities;
+
+    UserNeighborhoodIndex(long version, long matrixVersion, long[] userIds, int[] ptr,
+                          long[] neighborIds, float[] similarities) {
+        this(version, matrixVersion, System.currentTimeMillis(), userIds, ptr, neighborIds, similarities);
+    }
+
+    UserNeighborhoodIndex(long version, long matrixVersion, long builtAtMillis, long[] userIds, int[] ptr,
+                          long[] neighborIds, float[] similarities) {
+        this.version = version;
+        this.matrixVersion = matrixVersion;
+        this.builtAtMillis = builtAtMillis;
+        this.userIds = userIds;
+        this.ptr = ptr;
+        this.neighborIds = neighborIds;
+        this.similarities = similarities;
+    }
+
+    public static UserNeighborhoodIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 共享数据、替换版本号的新快照；构建时间沿用当前快照
+     */
+    UserNeighborhoodIndex withVersions(long newVersion, long newMatrixVersion) {
+        return new UserNeighborhoodIndex(newVersion, newMatrixVersion, builtAtMillis,
+                userIds, ptr, neighborIds, similarities);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 构建时所用交互矩阵的版本
+     */
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    public int neighborCount() {
+        return neighborIds.length;
+    }
+
+    /**
+     * 用户在索引中的下标，不存在返回 -1
+     */
+    public int userIndex(long userId) {
+        int idx = Arrays.binarySearch(userIds, userId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    public long userIdAt(int userIndex) {
+        return userIds[userIndex];
+    }
+
+    public int neighborStart(int userIndex) {
+        return ptr[userIndex];
+    }
+
+    public int neighborEnd(int userIndex) {
+        return ptr[userIndex + 1];
+    }
+
+    public long neighborId(int pos) {
+        return neighborIds[pos];
+    }
+
+    public float similarity(int pos) {
+        return similarities[pos];
+    }
+}
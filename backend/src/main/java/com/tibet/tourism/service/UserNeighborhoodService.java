@@ -0,0 +1,255 @@
+package com.tibet.tourism.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 用户近邻离线构建服务
+ * 基于交互矩阵为每个用户预计算前K个相似用户，按用户分块并行（fork-join），
+ * 构建完成后带版本号原子替换，在线推荐只需查表并对少量近邻重新打分
+ */
+@Service
+public class UserNeighborhoodService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserNeighborhoodService.class);
+
+    private static final int MIN_BLOCK_SIZE = 256; // 每个并行任务最少处理的用户数
+
+    @Autowired
+    private InteractionMatrixService interactionMatrixService;
+
+    @Autowired
+    private SimilarityKernel similarityKernel;
+
+    @Autowired
+    private UserLshService userLshService;
+
+    @Value("${recommendation.neighborhood.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicReference<UserNeighborhoodIndex> index = new AtomicReference<>(UserNeighborhoodIndex.empty());
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final ForkJoinPool buildPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 当前近邻索引
+     */
+    public UserNeighborhoodIndex getIndex() {
+        return index.get();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 当前索引是否基于最新的交互矩阵构建（或由与之一致的模型快照恢复）
+     */
+    public boolean isCurrent() {
+        return index.get().getMatrixVersion() == interactionMatrixService.getMatrix().getVersion();
+    }
+
+    /**
+     * 发布从模型快照读回的近邻索引；matrixVersion 为 -1 表示快照已过期，启动时照常在后台重建
+     */
+    void restoreSnapshot(UserNeighborhoodIndex restored, long matrixVersion) {
+        if (!enabled) {
+            return;
+        }
+        index.set(restored.withVersions(versionSequence.incrementAndGet(), matrixVersion));
+    }
+
+    /**
+     * 全量重建近邻索引并返回新索引，已有构建在进行时返回 null；
+     * 由 ModelBuildJobService 在启动、每天凌晨 cron 与新增交互达到阈值时调度。
+     * 取消时抛出 CancellationException，当前索引保持不变
+     */
+    public UserNeighborhoodIndex rebuild(BuildProgress progress) {
+        if (!building.compareAndSet(false, true)) {
+            logger.info("用户近邻索引正在构建中，跳过本次请求");
+            return null;
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            InteractionMatrix matrix = interactionMatrixService.getMatrix();
+            UserNeighborhoodIndex built = build(matrix, versionSequence.incrementAndGet(), progress);
+            index.set(built);
+            logger.info("👥 用户近邻索引构建完成: 版本 {}, {} 用户, {} 条近邻, 耗时 {}ms",
+                    built.getVersion(), built.userCount(), built.neighborCount(),
+                    System.currentTimeMillis() - startTime);
+            return built;
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private UserNeighborhoodIndex build(InteractionMatrix matrix, long version, BuildProgress progress) {
+        int userCount = matrix.userCount();
+        progress.begin(userCount);
+        int k = RecommendationService.MAX_SIMILAR_USERS;
+        long[][] neighbors = new long[userCount][];
+        float[][] scores = new float[userCount][];
+        long nowEpochSeconds = InteractionMatrix.toEpochSeconds(LocalDateTime.now());
+
+        int blockSize = Math.max(MIN_BLOCK_SIZE, userCount / (buildPool.getParallelism() * 4));
+        buildPool.invoke(new NeighborhoodTask(similarityKernel, userLshService, matrix, 0, userCount, blockSize, k, nowEpochSeconds,
+                neighbors, scores, progress));
+
+        // 拼接为扁平数组
+        long[] userIds = new long[userCount];
+        int[] ptr = new int[userCount + 1];
+        int total = 0;
+        for (int u = 0; u < userCount; u++) {
+            userIds[u] = matrix.userIdAt(u);
+            ptr[u] = total;
+            total += neighbors[u].length;
+        }
+        ptr[userCount] = total;
+        long[] neighborIds = new long[total];
+        float[] similarities = new float[total];
+        for (int u = 0; u < userCount; u++) {
+            System.arraycopy(neighbors[u], 0, neighborIds, ptr[u], neighbors[u].length);
+            System.arraycopy(scores[u], 0, similarities, ptr[u], scores[u].length);
+        }
+        return new UserNeighborhoodIndex(version, matrix.getVersion(), userIds, ptr, neighborIds, similarities);
+    }
+
+    /**
+     * 按用户区间递归拆分的构建任务
+     */
+    private static final class NeighborhoodTask extends RecursiveAction {
+        private final SimilarityKernel kernel;
+        private final UserLshService lsh;
+        private final InteractionMatrix matrix;
+        private final int from;
+        private final int to;
+        private final int blockSize;
+        private final int k;
+        private final long nowEpochSeconds;
+        private final long[][] neighbors;
+        private final float[][] scores;
+        private final BuildProgress progress;
+
+        NeighborhoodTask(SimilarityKernel kernel, UserLshService lsh, InteractionMatrix matrix, int from, int to, int blockSize, int k,
+                         long nowEpochSeconds, long[][] neighbors, float[][] scores, BuildProgress progress) {
+            this.kernel = kernel;
+            this.lsh = lsh;
+            this.matrix = matrix;
+            this.from = from;
+            this.to = to;
+            this.blockSize = blockSize;
+            this.k = k;
+            this.nowEpochSeconds = nowEpochSeconds;
+            this.neighbors = neighbors;
+            this.scores = scores;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > blockSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new NeighborhoodTask(kernel, lsh, matrix, from, mid, blockSize, k, nowEpochSeconds, neighbors, scores, progress),
+                        new NeighborhoodTask(kernel, lsh, matrix, mid, to, blockSize, k, nowEpochSeconds, neighbors, scores, progress));
+                return;
+            }
+            progress.checkCancelled();
+
+            // 块内复用标记数组与候选缓冲，避免逐用户分配
+            int[] seenStamp = new int[matrix.userCount()];
+            int[] candidates = new int[16];
+            int[] topUsers = new int[k];
+            float[] topScores = new float[k];
+
+            for (int user = from; user < to; user++) {
+                int stamp = user + 1;
+                int candidateCount = 0;
+                if (lsh.shouldUseLsh(matrix, user)) {
+                    // 重叠用户过多：改用 LSH 分桶召回的有限候选
+                    long[] lshCandidates = lsh.candidates(matrix, user);
+                    if (candidates.length < lshCandidates.length) {
+                        candidates = new int[lshCandidates.length];
+                    }
+                    for (long candidateId : lshCandidates) {
+                        int other = matrix.userIndex(candidateId);
+                        if (other >= 0 && other != user) {
+                            candidates[candidateCount++] = other;
+                        }
+                    }
+                } else {
+                    for (int entry = matrix.rowStart(user); entry < matrix.rowEnd(user); entry++) {
+                        int col = matrix.spotIndex(matrix.entrySpotId(entry));
+                        for (int pos = matrix.colStart(col); pos < matrix.colEnd(col); pos++) {
+                            int other = matrix.colUserIndex(pos);
+                            if (other == user || seenStamp[other] == stamp) {
+                                continue;
+                            }
+                            seenStamp[other] = stamp;
+                            if (candidateCount == candidates.length) {
+                                candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                            }
+                            candidates[candidateCount++] = other;
+                        }
+                    }
+                }
+
+                int size = 0;
+                for (int c = 0; c < candidateCount; c++) {
+                    int other = candidates[c];
+                    double similarity = UserSimilarityCalculator.calculate(kernel, matrix, user, other, nowEpochSeconds)
+                            .getSimilarity();
+                    if (similarity < RecommendationService.MIN_SIMILARITY) {
+                        continue;
+                    }
+                    size = insertTopK(topUsers, topScores, size, other, (float) similarity);
+                }
+
+                long[] userNeighbors = new long[size];
+                float[] userScores = new float[size];
+                for (int i = 0; i < size; i++) {
+                    userNeighbors[i] = matrix.userIdAt(topUsers[i]);
+                    userScores[i] = topScores[i];
+                }
+                neighbors[user] = userNeighbors;
+                scores[user] = userScores;
+            }
+            progress.advance(to - from);
+        }
+
+        /**
+         * 插入到按得分降序的定长数组中，返回新的元素个数
+         */
+        private int insertTopK(int[] topUsers, float[] topScores, int size, int user, float score) {
+            if (size == topUsers.length && score <= topScores[size - 1]) {
+                return size;
+            }
+            int pos = Math.min(size, topUsers.length - 1);
+            while (pos > 0 && topScores[pos - 1] < score) {
+                topUsers[pos] = topUsers[pos - 1];
+                topScores[pos] = topScores[pos - 1];
+                pos--;
+            }
+            topUsers[pos] = user;
+            topScores[pos] = score;
+            return Math.min(size + 1, topUsers.length);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildPool.shutdownNow();
+    }
+}
@@ -0,0 +1,163 @@
+package com.tibet.tourism.service;
+
+/**
+ * 用户相似度计算
+ * 在交互矩阵的两条用户行上计算混合相似度，供在线推荐与离线邻域构建共用：
+ * 1. 调整后的余弦相似度（考虑用户评分偏差）
+ * 2. Jaccard相似度（基于共同访问集合）
+ * 3. 时间加权相似度
+ * 两个用户行均按景点ID有序，共同景点由 SimilarityKernel 求交得到
+ */
+public final class UserSimilarityCalculator {
+
+    static final int MIN_COMMON_ITEMS = 2; // 最小共同访问景点数
+    static final double ADJUSTED_COSINE_WEIGHT = 0.6d;
+    static final double JACCARD_WEIGHT = 0.2d;
+    static final double TIME_WEIGHTED_WEIGHT = 0.2d;
+
+    private static final double DEFAULT_RATING = 3d;
+    private static final double EXPONENTIAL_DECAY_FACTOR = 0.95d; // 指数衰减因子
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    // 每个线程复用的交集下标缓冲
+    private static final ThreadLocal<MatchBuffer> MATCH_BUFFER = ThreadLocal.withInitial(MatchBuffer::new);
+
+    private UserSimilarityCalculator() {
+    }
+
+    /**
+     * 相似度详细信息
+     */
+    public static class SimilarityDetails {
+        private double adjustedCosine;
+        private double jaccard;
+        private double timeWeighted;
+        private int commonSpotsCount;
+
+        /**
+         * 加权组合：调整余弦(60%) + Jaccard(20%) + 时间加权(20%)
+         */
+        public double getSimilarity() {
+            return ADJUSTED_COSINE_WEIGHT * adjustedCosine + JACCARD_WEIGHT * jaccard + TIME_WEIGHTED_WEIGHT * timeWeighted;
+        }
+
+        public double getAdjustedCosine() { return adjustedCosine; }
+        public void setAdjustedCosine(double adjustedCosine) { this.adjustedCosine = adjustedCosine; }
+        public double getJaccard() { return jaccard; }
+        public void setJaccard(double jaccard) { this.jaccard = jaccard; }
+        public double getTimeWeighted() { return timeWeighted; }
+        public void setTimeWeighted(double timeWeighted) { this.timeWeighted = timeWeighted; }
+        public int getCommonSpotsCount() { return commonSpotsCount; }
+        public void setCommonSpotsCount(int commonSpotsCount) { this.commonSpotsCount = commonSpotsCount; }
+    }
+
+    /**
+     * 计算用户相似度并返回详细信息
+     * 通过内核对两条用户行求交一次，余弦与时间加权都只遍历交集下标
+     */
+    public static SimilarityDetails calculate(SimilarityKernel kernel, InteractionMatrix matrix, int user1, int user2,
+                                              long nowEpochSeconds) {
+        SimilarityDetails details = new SimilarityDetails();
+        int start1 = matrix.rowStart(user1), end1 = matrix.rowEnd(user1);
+        int start2 = matrix.rowStart(user2), end2 = matrix.rowEnd(user2);
+        MatchBuffer matches = MATCH_BUFFER.get().ensureCapacity(Math.min(end1 - start1, end2 - start2));
+        long[] spotIds = matrix.entrySpotIds();
+        int commonCount = kernel.intersect(spotIds, start1, end1, spotIds, start2, end2,
+                matches.entries1, matches.entries2);
+        details.setCommonSpotsCount(commonCount);
+
+        if (commonCount < MIN_COMMON_ITEMS) {
+            return details;
+        }
+
+        details.setAdjustedCosine(adjustedCosine(matrix, user1, user2, matches, commonCount));
+        details.setJaccard(jaccard(end1 - start1, end2 - start2, commonCount));
+        details.setTimeWeighted(timeWeighted(matrix, matches, commonCount, nowEpochSeconds));
+        return details;
+    }
+
+    /**
+     * 调整后的余弦相似度 - 考虑用户平均评分偏差
+     */
+    static double adjustedCosine(InteractionMatrix matrix, int user1, int user2, MatchBuffer matches, int commonCount) {
+        double user1Avg = averageRating(matrix, user1);
+        double user2Avg = averageRating(matrix, user2);
+
+        double numerator = 0.0;
+        double sumSq1 = 0.0;
+        double sumSq2 = 0.0;
+        for (int m = 0; m < commonCount; m++) {
+            double diff1 = matrix.entryRating(matches.entries1[m]) - user1Avg;
+            double diff2 = matrix.entryRating(matches.entries2[m]) - user2Avg;
+            numerator += diff1 * diff2;
+            sumSq1 += diff1 * diff1;
+            sumSq2 += diff2 * diff2;
+        }
+
+        double denominator = Math.sqrt(sumSq1) * Math.sqrt(sumSq2);
+        return denominator == 0 ? 0.0 : numerator / denominator;
+    }
+
+    /**
+     * Jaccard相似度 - 基于共同访问的景点比例
+     */
+    static double jaccard(int size1, int size2, int intersectionSize) {
+        int unionSize = size1 + size2 - intersectionSize;
+        return unionSize == 0 ? 0.0 : (double) intersectionSize / unionSize;
+    }
+
+    /**
+     * 时间加权相似度 - 考虑访问时间的接近程度
+     */
+    static double timeWeighted(InteractionMatrix matrix, MatchBuffer matches, int commonCount, long nowEpochSeconds) {
+        if (commonCount == 0) return 0.0;
+
+        double totalWeight = 0.0;
+        double weightedSum = 0.0;
+        for (int m = 0; m < commonCount; m++) {
+            long time1 = visitTimeOrNow(matrix.entryVisitEpochSeconds(matches.entries1[m]), nowEpochSeconds);
+            long time2 = visitTimeOrNow(matrix.entryVisitEpochSeconds(matches.entries2[m]), nowEpochSeconds);
+            long daysDiff = Math.abs(time1 - time2) / SECONDS_PER_DAY;
+            // 时间越接近，权重越高（指数衰减）
+            double timeWeight = Math.pow(EXPONENTIAL_DECAY_FACTOR, daysDiff / 30.0);
+            totalWeight += timeWeight;
+            weightedSum += timeWeight;
+        }
+
+        return totalWeight == 0 ? 0.0 : weightedSum / (totalWeight * commonCount);
+    }
+
+    /**
+     * 计算用户平均评分（用于偏差调整）
+     */
+    public static double averageRating(InteractionMatrix matrix, int userIndex) {
+        int start = matrix.rowStart(userIndex);
+        int end = matrix.rowEnd(userIndex);
+        if (start == end) return DEFAULT_RATING;
+        double sum = 0.0;
+        for (int entry = start; entry < end; entry++) {
+            sum += matrix.entryRating(entry);
+        }
+        return sum / (end - start);
+    }
+
+    /**
+     * 交集在两条用户行中的条目下标
+     */
+    static final class MatchBuffer {
+        int[] entries1 = new int[32];
+        int[] entries2 = new int[32];
+
+        MatchBuffer ensureCapacity(int capacity) {
+            if (entries1.length < capacity) {
+                entries1 = new int[Math.max(capacity, entries1.length * 2)];
+                entries2 = new int[entries1.length];
+            }
+            return this;
+        }
+    }
+
+    private static long visitTimeOrNow(long visitEpochSeconds, long nowEpochSeconds) {
+        return visitEpochSeconds == InteractionMatrix.NO_VISIT_TIME ? nowEpochSeconds : visitEpochSeconds;
+    }
+}
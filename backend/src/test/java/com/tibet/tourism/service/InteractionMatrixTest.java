@@ -0,0 +1,157 @@
+package com.tibet.tourism.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * InteractionMatrix.replaceRows（增量更新路径）与按合并后的全部访问记录全量构建的结果一致
+ */
+class InteractionMatrixTest {
+
+    private static final long NOW = 1_700_000_000L;
+
+    @Test
+    void replaceRowsMatchesFullBuildAfterRandomPatches() {
+        Random random = new Random(31L);
+        for (int round = 0; round < 200; round++) {
+            Map<Long, TreeMap<Long, float[]>> truth = randomRows(random, random.nextInt(30), 40);
+            InteractionMatrix matrix = build(truth, 1L);
+            for (int patch = 0; patch < 10; patch++) {
+                Set<Long> users = patchRandomUsers(random, truth, 40);
+                matrix = replace(matrix, truth, users, patch + 2L);
+                assertSameContent(build(truth, patch + 2L), matrix);
+            }
+        }
+    }
+
+    @Test
+    void replaceRowsHandlesEmptyMatrixAndRemovingEveryUser() {
+        Random random = new Random(37L);
+        Map<Long, TreeMap<Long, float[]>> truth = new HashMap<>();
+        InteractionMatrix matrix = InteractionMatrix.empty();
+
+        truth.put(5L, randomRow(random, 20));
+        truth.put(2L, randomRow(random, 20));
+        matrix = replace(matrix, truth, Set.of(5L, 2L), 2L);
+        assertSameContent(build(truth, 2L), matrix);
+
+        truth.clear();
+        matrix = replace(matrix, truth, Set.of(5L, 2L, 9L), 3L);
+        assertEquals(0, matrix.userCount());
+        assertEquals(0, matrix.spotCount());
+        assertEquals(0, matrix.nonZeroCount());
+    }
+
+    /**
+     * 随机修改若干用户的访问记录（新增、删除用户，增删改单条记录），返回被修改的用户
+     */
+    static Set<Long> patchRandomUsers(Random random, Map<Long, TreeMap<Long, float[]>> truth, int idRange) {
+        Set<Long> users = new HashSet<>();
+        int changes = 1 + random.nextInt(4);
+        for (int c = 0; c < changes; c++) {
+            long userId = 1L + random.nextInt(idRange);
+            users.add(userId);
+            TreeMap<Long, float[]> row = truth.get(userId);
+            int kind = random.nextInt(4);
+            if (row == null || kind == 0) {
+                truth.put(userId, randomRow(random, idRange));
+            } else if (kind == 1) {
+                truth.remove(userId);
+            } else if (kind == 2) {
+                row.put(1L + random.nextInt(idRange), randomVisit(random));
+            } else {
+                row.remove(row.firstKey());
+                if (row.isEmpty()) {
+                    truth.remove(userId);
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * 按 InteractionMatrixService 的增量方式：只为被修改的用户构建替换行，已不存在的用户移除
+     */
+    static InteractionMatrix replace(InteractionMatrix matrix, Map<Long, TreeMap<Long, float[]>> truth,
+                                     Set<Long> users, long version) {
+        Map<Long, TreeMap<Long, float[]>> changed = new HashMap<>();
+        Set<Long> removed = new HashSet<>();
+        for (Long userId : users) {
+            if (truth.containsKey(userId)) {
+                changed.put(userId, truth.get(userId));
+            } else {
+                removed.add(userId);
+            }
+        }
+        return matrix.replaceRows(build(changed, 0L), removed, version);
+    }
+
+    static InteractionMatrix build(Map<Long, TreeMap<Long, float[]>> rows, long version) {
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        for (Map.Entry<Long, TreeMap<Long, float[]>> row : rows.entrySet()) {
+            for (Map.Entry<Long, float[]> visit : row.getValue().entrySet()) {
+                float[] v = visit.getValue();
+                long visitEpochSeconds = v[3] < 0 ? InteractionMatrix.NO_VISIT_TIME : NOW - (long) v[3] * 86_400L;
+                builder.add(row.getKey(), visit.getKey(), v[0], (int) v[1], (int) v[2], visitEpochSeconds);
+            }
+        }
+        return builder.build(version);
+    }
+
+    static Map<Long, TreeMap<Long, float[]>> randomRows(Random random, int users, int idRange) {
+        Map<Long, TreeMap<Long, float[]>> rows = new HashMap<>();
+        while (rows.size() < Math.min(users, idRange)) {
+            rows.put(1L + random.nextInt(idRange), randomRow(random, idRange));
+        }
+        return rows;
+    }
+
+    /**
+     * 随机的非空用户行：景点 -> {评分, 点击, 停留秒数, 距今天数（负数表示无访问时间）}
+     */
+    static TreeMap<Long, float[]> randomRow(Random random, int idRange) {
+        TreeMap<Long, float[]> row = new TreeMap<>();
+        int size = 1 + random.nextInt(8);
+        while (row.size() < Math.min(size, idRange)) {
+            row.put(1L + random.nextInt(idRange), randomVisit(random));
+        }
+        return row;
+    }
+
+    private static float[] randomVisit(Random random) {
+        return new float[]{1 + random.nextInt(5), random.nextInt(10), random.nextInt(600),
+                random.nextInt(10) == 0 ? -1 : random.nextInt(400)};
+    }
+
+    private static void assertSameContent(InteractionMatrix expected, InteractionMatrix actual) {
+        assertEquals(expected.userCount(), actual.userCount(), "用户数");
+        assertEquals(expected.spotCount(), actual.spotCount(), "景点数");
+        assertEquals(expected.nonZeroCount(), actual.nonZeroCount(), "交互数");
+        for (int u = 0; u < expected.userCount(); u++) {
+            assertEquals(expected.userIdAt(u), actual.userIdAt(u), "用户ID");
+            assertEquals(expected.rowStart(u), actual.rowStart(u), "用户行起点");
+            assertEquals(expected.rowEnd(u), actual.rowEnd(u), "用户行终点");
+        }
+        for (int e = 0; e < expected.nonZeroCount(); e++) {
+            assertEquals(expected.entrySpotId(e), actual.entrySpotId(e));
+            assertEquals(expected.entryRating(e), actual.entryRating(e));
+            assertEquals(expected.entryEngagement(e), actual.entryEngagement(e));
+            assertEquals(expected.entryClicks(e), actual.entryClicks(e));
+            assertEquals(expected.entryDwellSeconds(e), actual.entryDwellSeconds(e));
+            assertEquals(expected.entryVisitEpochSeconds(e), actual.entryVisitEpochSeconds(e));
+        }
+        for (int s = 0; s < expected.spotCount(); s++) {
+            assertEquals(expected.spotIdAt(s), actual.spotIdAt(s), "景点ID");
+            assertEquals(expected.colStart(s), actual.colStart(s), "景点列起点");
+            assertEquals(expected.colEnd(s), actual.colEnd(s), "景点列终点");
+        }
+        for (int pos = 0; pos < expected.nonZeroCount(); pos++) {
+            assertEquals(expected.colUserId(pos), actual.colUserId(pos));
+            assertEquals(expected.colUserIndex(pos), actual.colUserIndex(pos));
+            assertEquals(expected.colEntry(pos), actual.colEntry(pos));
+        }
+    }
+}
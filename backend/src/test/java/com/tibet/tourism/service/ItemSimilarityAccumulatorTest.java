@@ -0,0 +1,82 @@
+package com.tibet.tourism.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量维护的景点对累加器（applyUserChanges）与对最新交互矩阵全量构建的累加器一致
+ */
+class ItemSimilarityAccumulatorTest {
+
+    private static final long ANCHOR = 1_700_000_000L;
+    private static final double MIN_SIMILARITY = 0.1;
+    private static final int LIMIT = 50;
+    // 增量加减与全量累加的舍入差：共同用户少、方差小时相似度由 Σxy - ΣxΣy/n 相减得到，误差会放大
+    private static final double TOLERANCE = 1e-4;
+
+    @Test
+    void incrementalUpdatesMatchFullBuild() {
+        Random random = new Random(53L);
+        for (int round = 0; round < 100; round++) {
+            Map<Long, TreeMap<Long, float[]>> truth = InteractionMatrixTest.randomRows(random, random.nextInt(30), 25);
+            InteractionMatrix matrix = InteractionMatrixTest.build(truth, 1L);
+            ItemSimilarityAccumulator accumulator = ItemSimilarityAccumulator.build(matrix, ANCHOR);
+            Map<Long, Map<Long, Double>> rows = accumulator.allRows(MIN_SIMILARITY, LIMIT);
+
+            for (int patch = 0; patch < 20; patch++) {
+                Set<Long> users = InteractionMatrixTest.patchRandomUsers(random, truth, 25);
+                InteractionMatrix next = InteractionMatrixTest.replace(matrix, truth, users, patch + 2L);
+                Set<Long> affected = accumulator.applyUserChanges(matrix, next, users);
+                matrix = next;
+
+                // 与 ItemBasedRecommendationService 相同：只刷新受影响的景点行
+                for (Long spotId : affected) {
+                    Map<Long, Double> row = accumulator.similarRow(spotId, MIN_SIMILARITY, LIMIT);
+                    if (row.isEmpty()) {
+                        rows.remove(spotId);
+                    } else {
+                        rows.put(spotId, row);
+                    }
+                }
+
+                ItemSimilarityAccumulator full = ItemSimilarityAccumulator.build(matrix, ANCHOR);
+                assertEquals(0, accumulator.countMismatchedPairs(full), "共现结构不一致");
+                assertEquals(full.pairCount(), accumulator.pairCount(), "景点对数");
+                assertSameRows(full.allRows(MIN_SIMILARITY, LIMIT), accumulator.allRows(MIN_SIMILARITY, LIMIT));
+                assertSameRows(full.allRows(MIN_SIMILARITY, LIMIT), rows);
+            }
+        }
+    }
+
+    @Test
+    void removingEveryUserLeavesNoPairs() {
+        Random random = new Random(59L);
+        Map<Long, TreeMap<Long, float[]>> truth = InteractionMatrixTest.randomRows(random, 10, 20);
+        InteractionMatrix matrix = InteractionMatrixTest.build(truth, 1L);
+        ItemSimilarityAccumulator accumulator = ItemSimilarityAccumulator.build(matrix, ANCHOR);
+
+        Set<Long> users = new HashSet<>(truth.keySet());
+        truth.clear();
+        InteractionMatrix next = InteractionMatrixTest.replace(matrix, truth, users, 2L);
+        accumulator.applyUserChanges(matrix, next, users);
+
+        assertEquals(0, accumulator.pairCount());
+        assertTrue(accumulator.allRows(MIN_SIMILARITY, LIMIT).isEmpty());
+        assertEquals(0, accumulator.countMismatchedPairs(ItemSimilarityAccumulator.build(next, ANCHOR)));
+    }
+
+    private static void assertSameRows(Map<Long, Map<Long, Double>> expected, Map<Long, Map<Long, Double>> actual) {
+        assertEquals(expected.keySet(), actual.keySet(), "有相似景点的景点集合");
+        for (Map.Entry<Long, Map<Long, Double>> row : expected.entrySet()) {
+            Map<Long, Double> actualRow = actual.get(row.getKey());
+            assertEquals(row.getValue().keySet(), actualRow.keySet(), "景点 " + row.getKey() + " 的相似景点");
+            for (Map.Entry<Long, Double> neighbor : row.getValue().entrySet()) {
+                assertEquals(neighbor.getValue(), actualRow.get(neighbor.getKey()), TOLERANCE);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.tibet.tourism.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ItemSimilarityMatrix.withRows 与按合并后的行用 of(...) 全量构建的结果一致
+ */
+class ItemSimilarityMatrixTest {
+
+    private static final Map<Long, Double> REMOVED = Map.of();
+
+    @Test
+    void withRowsMatchesFullBuildOnRandomizedRows() {
+        Random random = new Random(20240517L);
+        for (int round = 0; round < 2000; round++) {
+            Map<Long, Map<Long, Double>> rows = randomRows(random, random.nextInt(40), 60);
+            Map<Long, Map<Long, Double>> replaced = new HashMap<>();
+            List<Long> existing = new ArrayList<>(rows.keySet());
+            int changes = random.nextInt(8);
+            for (int c = 0; c < changes; c++) {
+                int kind = random.nextInt(3);
+                if (kind == 0 && !existing.isEmpty()) {
+                    replaced.put(existing.get(random.nextInt(existing.size())), randomRow(random, 60));
+                } else if (kind == 1 && !existing.isEmpty()) {
+                    replaced.put(existing.get(random.nextInt(existing.size())), REMOVED);
+                } else {
+                    replaced.put(1L + random.nextInt(60), randomRow(random, 60));
+                }
+            }
+            assertWithRowsMatches(rows, replaced);
+        }
+    }
+
+    @Test
+    void replacesFirstAndLastRows() {
+        Random random = new Random(7L);
+        Map<Long, Map<Long, Double>> rows = randomRows(random, 10, 30);
+        long first = Collections.min(rows.keySet());
+        long last = Collections.max(rows.keySet());
+        assertWithRowsMatches(rows, Map.of(first, randomRow(random, 30)));
+        assertWithRowsMatches(rows, Map.of(last, randomRow(random, 30)));
+        assertWithRowsMatches(rows, Map.of(first, randomRow(random, 30), last, randomRow(random, 30)));
+    }
+
+    @Test
+    void removesRows() {
+        Random random = new Random(11L);
+        Map<Long, Map<Long, Double>> rows = randomRows(random, 10, 30);
+        long first = Collections.min(rows.keySet());
+        long last = Collections.max(rows.keySet());
+        assertWithRowsMatches(rows, Map.of(first, REMOVED));
+        assertWithRowsMatches(rows, Map.of(last, REMOVED));
+
+        Map<Long, Map<Long, Double>> all = new HashMap<>();
+        for (Long spotId : rows.keySet()) {
+            all.put(spotId, REMOVED);
+        }
+        assertWithRowsMatches(rows, all);
+        // 移除不存在的景点不改变矩阵
+        assertWithRowsMatches(rows, Map.of(1000L, REMOVED));
+    }
+
+    @Test
+    void addsRowsBeforeBetweenAndAfterExistingOnes() {
+        Random random = new Random(13L);
+        Map<Long, Map<Long, Double>> rows = new HashMap<>();
+        rows.put(10L, randomRow(random, 30));
+        rows.put(20L, randomRow(random, 30));
+        assertWithRowsMatches(rows, Map.of(5L, randomRow(random, 30)));
+        assertWithRowsMatches(rows, Map.of(15L, randomRow(random, 30)));
+        assertWithRowsMatches(rows, Map.of(25L, randomRow(random, 30)));
+        assertWithRowsMatches(rows, Map.of(5L, randomRow(random, 30), 15L, randomRow(random, 30),
+                25L, randomRow(random, 30)));
+    }
+
+    @Test
+    void handlesEmptyMatrixAndEmptyReplacement() {
+        Random random = new Random(17L);
+        assertWithRowsMatches(new HashMap<>(), Map.of());
+        assertWithRowsMatches(new HashMap<>(), Map.of(3L, randomRow(random, 30), 1L, randomRow(random, 30)));
+        assertWithRowsMatches(new HashMap<>(), Map.of(3L, REMOVED));
+        assertWithRowsMatches(randomRows(random, 10, 30), Map.of());
+
+        ItemSimilarityMatrix updated = ItemSimilarityMatrix.empty().withRows(Map.of(4L, randomRow(random, 30)), 2L, 3L);
+        assertEquals(1, updated.spotCount());
+        assertEquals(2L, updated.getVersion());
+        assertEquals(3L, updated.getSourceMatrixVersion());
+    }
+
+    private static void assertWithRowsMatches(Map<Long, Map<Long, Double>> rows,
+                                              Map<Long, Map<Long, Double>> replaced) {
+        Map<Long, Map<Long, Double>> merged = new HashMap<>(rows);
+        for (Map.Entry<Long, Map<Long, Double>> row : replaced.entrySet()) {
+            if (row.getValue().isEmpty()) {
+                merged.remove(row.getKey());
+            } else {
+                merged.put(row.getKey(), row.getValue());
+            }
+        }
+        ItemSimilarityMatrix expected = ItemSimilarityMatrix.of(merged, 2L, 2L);
+        ItemSimilarityMatrix actual = ItemSimilarityMatrix.of(rows, 1L, 1L).withRows(replaced, 2L, 2L);
+        assertSameContent(expected, actual);
+    }
+
+    private static void assertSameContent(ItemSimilarityMatrix expected, ItemSimilarityMatrix actual) {
+        assertEquals(expected.spotCount(), actual.spotCount(), "景点数");
+        assertEquals(expected.neighborCount(), actual.neighborCount(), "相似景点总数");
+        for (int s = 0; s < expected.spotCount(); s++) {
+            assertEquals(expected.spotIdAt(s), actual.spotIdAt(s), "景点ID");
+            int expectedStart = expected.neighborStart(s);
+            int actualStart = actual.neighborStart(s);
+            assertEquals(expected.neighborEnd(s) - expectedStart, actual.neighborEnd(s) - actualStart,
+                    "景点 " + expected.spotIdAt(s) + " 的相似景点数");
+            for (int k = 0; k < expected.neighborEnd(s) - expectedStart; k++) {
+                assertEquals(expected.neighborId(expectedStart + k), actual.neighborId(actualStart + k));
+                assertEquals(expected.similarity(expectedStart + k), actual.similarity(actualStart + k));
+            }
+        }
+    }
+
+    private static Map<Long, Map<Long, Double>> randomRows(Random random, int spots, int idRange) {
+        Map<Long, Map<Long, Double>> rows = new HashMap<>();
+        while (rows.size() < Math.min(spots, idRange)) {
+            rows.put(1L + random.nextInt(idRange), randomRow(random, idRange));
+        }
+        return rows;
+    }
+
+    /**
+     * 随机的相似景点行（非空，按相似度降序）
+     */
+    private static Map<Long, Double> randomRow(Random random, int idRange) {
+        int size = 1 + random.nextInt(6);
+        List<Double> values = new ArrayList<>();
+        Set<Long> neighbors = new LinkedHashSet<>();
+        while (neighbors.size() < size) {
+            neighbors.add(1L + random.nextInt(idRange));
+        }
+        for (int k = 0; k < size; k++) {
+            values.add(random.nextDouble());
+        }
+        values.sort(Comparator.reverseOrder());
+        Map<Long, Double> row = new LinkedHashMap<>();
+        int k = 0;
+        for (Long neighbor : neighbors) {
+            row.put(neighbor, values.get(k++));
+        }
+        return row;
+    }
+}
@@ -0,0 +1,205 @@
+package com.tibet.tourism.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 标量求交内核与基于集合的基线实现一致：求交结果，以及 UserSimilarityCalculator 算出的三项相似度（逐位相同）
+ */
+class ScalarSimilarityKernelTest {
+
+    private static final long NOW = 1_700_000_000L;
+    private static final long DAY = 86_400L;
+
+    private final SimilarityKernel kernel = SimilarityKernels.forName(ScalarSimilarityKernel.NAME);
+    // 基线使用的访问时间（用户:景点 -> epoch 秒）
+    private final Map<String, Long> visits = new HashMap<>();
+
+    @Test
+    void intersectMatchesSetIntersectionOnRandomSortedArrays() {
+        Random random = new Random(42L);
+        for (int round = 0; round < 5000; round++) {
+            long[] ids1 = randomSortedIds(random, random.nextInt(40), 1 + random.nextInt(100));
+            long[] ids2 = randomSortedIds(random, random.nextInt(40), 1 + random.nextInt(100));
+            int from1 = ids1.length == 0 ? 0 : random.nextInt(ids1.length);
+            int to1 = from1 + random.nextInt(ids1.length - from1 + 1);
+            int from2 = ids2.length == 0 ? 0 : random.nextInt(ids2.length);
+            int to2 = from2 + random.nextInt(ids2.length - from2 + 1);
+            assertIntersectMatches(ids1, from1, to1, ids2, from2, to2);
+        }
+    }
+
+    @Test
+    void intersectHandlesEmptyAndDisjointInputs() {
+        long[] empty = new long[0];
+        long[] odd = {1, 3, 5, 7, 9};
+        long[] even = {2, 4, 6, 8, 10};
+        assertIntersectMatches(empty, 0, 0, empty, 0, 0);
+        assertIntersectMatches(empty, 0, 0, odd, 0, odd.length);
+        assertIntersectMatches(odd, 0, odd.length, empty, 0, 0);
+        assertIntersectMatches(odd, 0, odd.length, even, 0, even.length);
+        assertIntersectMatches(odd, 0, odd.length, new long[]{10, 11, 12}, 0, 3);
+        assertIntersectMatches(odd, 0, odd.length, odd, 0, odd.length);
+        // 空区间
+        assertIntersectMatches(odd, 2, 2, odd, 0, odd.length);
+    }
+
+    @Test
+    void calculateMatchesSetBasedBaseline() {
+        Random random = new Random(7L);
+        for (int round = 0; round < 200; round++) {
+            Map<Long, TreeMap<Long, Float>> users = new HashMap<>();
+            InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+            int userCount = 2 + random.nextInt(20);
+            int spotRange = 2 + random.nextInt(40);
+            for (long userId = 1; userId <= userCount; userId++) {
+                TreeMap<Long, Float> row = new TreeMap<>();
+                int size = random.nextInt(Math.min(spotRange, 25) + 1);
+                for (long spotId : randomSortedIds(random, size, spotRange)) {
+                    float rating = 1 + random.nextInt(5);
+                    long visit = random.nextInt(8) == 0 ? InteractionMatrix.NO_VISIT_TIME
+                            : NOW - random.nextInt(720) * DAY - random.nextInt((int) DAY);
+                    row.put(spotId, rating);
+                    builder.add(userId, spotId, rating, 0, 0, visit);
+                    visits.put(key(userId, spotId), visit);
+                }
+                if (!row.isEmpty()) {
+                    users.put(userId, row);
+                }
+            }
+            InteractionMatrix matrix = builder.build(1L);
+            for (Long user1 : users.keySet()) {
+                for (Long user2 : users.keySet()) {
+                    assertCalculateMatches(matrix, users, user1, user2);
+                }
+            }
+            visits.clear();
+        }
+    }
+
+    @Test
+    void calculateHandlesDisjointAndSingleSpotUsers() {
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        Map<Long, TreeMap<Long, Float>> users = new HashMap<>();
+        long[][] rows = {{1, 3, 5}, {2, 4, 6}, {5}, {1, 3, 5, 7}};
+        for (int u = 0; u < rows.length; u++) {
+            long userId = u + 1;
+            TreeMap<Long, Float> row = new TreeMap<>();
+            for (long spotId : rows[u]) {
+                float rating = 1 + (spotId % 5);
+                builder.add(userId, spotId, rating, 0, 0, NOW - spotId * DAY);
+                visits.put(key(userId, spotId), NOW - spotId * DAY);
+                row.put(spotId, rating);
+            }
+            users.put(userId, row);
+        }
+        InteractionMatrix matrix = builder.build(1L);
+        for (Long user1 : users.keySet()) {
+            for (Long user2 : users.keySet()) {
+                assertCalculateMatches(matrix, users, user1, user2);
+            }
+        }
+        assertEquals(0, UserSimilarityCalculator.calculate(kernel, matrix, matrix.userIndex(1L),
+                matrix.userIndex(2L), NOW).getCommonSpotsCount());
+    }
+
+    // ========== 基线（集合实现） ==========
+
+    private static String key(long userId, long spotId) {
+        return userId + ":" + spotId;
+    }
+
+    private void assertCalculateMatches(InteractionMatrix matrix, Map<Long, TreeMap<Long, Float>> users,
+                                        long user1, long user2) {
+        TreeMap<Long, Float> row1 = users.get(user1);
+        TreeMap<Long, Float> row2 = users.get(user2);
+        SortedSet<Long> common = new TreeSet<>(row1.keySet());
+        common.retainAll(row2.keySet());
+        Set<Long> union = new HashSet<>(row1.keySet());
+        union.addAll(row2.keySet());
+
+        UserSimilarityCalculator.SimilarityDetails details = UserSimilarityCalculator.calculate(kernel, matrix,
+                matrix.userIndex(user1), matrix.userIndex(user2), NOW);
+        assertEquals(common.size(), details.getCommonSpotsCount(), "共同景点数");
+        if (common.size() < UserSimilarityCalculator.MIN_COMMON_ITEMS) {
+            assertEquals(0.0, details.getSimilarity());
+            return;
+        }
+
+        double avg1 = average(row1);
+        double avg2 = average(row2);
+        double numerator = 0.0;
+        double sumSq1 = 0.0;
+        double sumSq2 = 0.0;
+        double totalWeight = 0.0;
+        double weightedSum = 0.0;
+        for (Long spotId : common) {
+            double diff1 = row1.get(spotId) - avg1;
+            double diff2 = row2.get(spotId) - avg2;
+            numerator += diff1 * diff2;
+            sumSq1 += diff1 * diff1;
+            sumSq2 += diff2 * diff2;
+
+            long time1 = visitOrNow(visits.get(key(user1, spotId)));
+            long time2 = visitOrNow(visits.get(key(user2, spotId)));
+            double timeWeight = Math.pow(0.95d, (Math.abs(time1 - time2) / DAY) / 30.0);
+            totalWeight += timeWeight;
+            weightedSum += timeWeight;
+        }
+        double denominator = Math.sqrt(sumSq1) * Math.sqrt(sumSq2);
+        double cosine = denominator == 0 ? 0.0 : numerator / denominator;
+        double jaccard = (double) common.size() / union.size();
+        double timeWeighted = totalWeight == 0 ? 0.0 : weightedSum / (totalWeight * common.size());
+
+        assertEquals(cosine, details.getAdjustedCosine(), "调整余弦");
+        assertEquals(jaccard, details.getJaccard(), "Jaccard");
+        assertEquals(timeWeighted, details.getTimeWeighted(), "时间加权");
+    }
+
+    private static double average(TreeMap<Long, Float> row) {
+        double sum = 0.0;
+        for (float rating : row.values()) {
+            sum += rating;
+        }
+        return sum / row.size();
+    }
+
+    private static long visitOrNow(long visit) {
+        return visit == InteractionMatrix.NO_VISIT_TIME ? NOW : visit;
+    }
+
+    private void assertIntersectMatches(long[] ids1, int from1, int to1, long[] ids2, int from2, int to2) {
+        Map<Long, Integer> positions2 = new HashMap<>();
+        for (int j = from2; j < to2; j++) {
+            positions2.put(ids2[j], j);
+        }
+        List<int[]> expected = new ArrayList<>();
+        for (int i = from1; i < to1; i++) {
+            Integer j = positions2.get(ids1[i]);
+            if (j != null) {
+                expected.add(new int[]{i, j});
+            }
+        }
+
+        int capacity = Math.min(to1 - from1, to2 - from2);
+        int[] matches1 = new int[capacity];
+        int[] matches2 = new int[capacity];
+        int count = kernel.intersect(ids1, from1, to1, ids2, from2, to2, matches1, matches2);
+        assertEquals(expected.size(), count, "交集大小");
+        for (int m = 0; m < count; m++) {
+            assertArrayEquals(expected.get(m), new int[]{matches1[m], matches2[m]});
+        }
+    }
+
+    private static long[] randomSortedIds(Random random, int size, int range) {
+        TreeSet<Long> ids = new TreeSet<>();
+        while (ids.size() < Math.min(size, range)) {
+            ids.add(1L + random.nextInt(range));
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
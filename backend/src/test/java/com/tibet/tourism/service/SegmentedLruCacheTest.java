@@ -0,0 +1,75 @@
+package com.tibet.tourism.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * SegmentedLruCache 的依赖索引：只失效依赖变化键的条目，替换、淘汰与失效后不残留索引
+ */
+class SegmentedLruCacheTest {
+
+    private static SegmentedLruCache<Long, Map<Long, Double>> newCache(int maximumSize) {
+        return new SegmentedLruCache<>("test", maximumSize, 0L, Map::keySet);
+    }
+
+    @Test
+    void invalidatesOnlyEntriesThatDependOnChangedKeys() {
+        SegmentedLruCache<Long, Map<Long, Double>> cache = newCache(10);
+        cache.put(1L, Map.of(2L, 0.5, 3L, 0.4));
+        cache.put(2L, Map.of(1L, 0.5));
+        cache.put(4L, Map.of(5L, 0.3));
+
+        assertEquals(1, cache.invalidateDependents(List.of(3L)));
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+        assertNotNull(cache.get(4L));
+
+        assertEquals(1, cache.invalidateDependents(Set.of(5L, 99L)));
+        assertNull(cache.get(4L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void replacedValuesAreReindexed() {
+        SegmentedLruCache<Long, Map<Long, Double>> cache = newCache(10);
+        cache.put(1L, Map.of(2L, 0.5, 3L, 0.4));
+        cache.put(1L, Map.of(3L, 0.6, 4L, 0.2));
+
+        assertEquals(0, cache.invalidateDependents(List.of(2L)));
+        assertNotNull(cache.get(1L));
+        // 晋升到保护段后再替换
+        cache.put(1L, Map.of(5L, 0.1));
+        assertEquals(0, cache.invalidateDependents(List.of(3L, 4L)));
+        assertEquals(1, cache.invalidateDependents(List.of(5L)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictedAndInvalidatedEntriesLeaveNoIndex() {
+        SegmentedLruCache<Long, Map<Long, Double>> cache = newCache(2);
+        cache.put(1L, Map.of(10L, 0.5));
+        cache.put(2L, Map.of(10L, 0.5));
+        cache.put(3L, Map.of(10L, 0.5)); // 淘汰 1
+        assertEquals(1, cache.stats().getEvictions());
+
+        cache.invalidate(2L);
+        cache.put(1L, Map.of(20L, 0.5));
+        // 只剩 3 依赖 10；1 已按新值重新索引
+        assertEquals(1, cache.invalidateDependents(List.of(10L)));
+        assertNotNull(cache.get(1L));
+        assertEquals(1, cache.invalidateDependents(List.of(20L)));
+
+        cache.put(5L, Map.of(30L, 0.5));
+        cache.invalidateAll();
+        cache.put(6L, Map.of(40L, 0.5));
+        assertEquals(0, cache.invalidateDependents(List.of(30L)));
+        assertEquals(1, cache.size());
+    }
+}